@@ -10,122 +10,49 @@
 
 package fr.noop.subtitle;
 
+import fr.noop.subtitle.hls.LiveVttSegmenter;
+import fr.noop.subtitle.hls.VttSegmenter;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleFormat;
+import fr.noop.subtitle.model.SubtitleFormatRegistry;
 import fr.noop.subtitle.model.SubtitleObject;
 import fr.noop.subtitle.model.SubtitleParser;
 import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleStreamParser;
+import fr.noop.subtitle.model.SubtitleStreamWriter;
 import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.ttml.TtmlSegmenter;
+import fr.noop.subtitle.util.TailInputStream;
 import org.apache.commons.cli.*;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Convert {
     private Options options = new Options();
+    private SubtitleFormatRegistry registry = SubtitleFormatRegistry.getDefault();
 
-    private enum ConvertFormat {
-        TTML(new String[] {"xml"}),
-        SAMI(new String[] {"smi"}),
-        VTT(new String[] {"vtt"}),
-        SRT(new String[] {"srt"}),
-        STL(new String[] {"stl"});
-
-        private String[] availableExtensions;
-
-        ConvertFormat(String[] availableExtensions) {
-            this.availableExtensions = availableExtensions;
-        }
-
-        public String[] getAvailableExtensions() {
-            return this.availableExtensions;
-        }
-
-        public static ConvertFormat getEnum(String extension) {
-            for(ConvertFormat v : values())
-                if (ArrayUtils.contains(v.getAvailableExtensions(), extension)) {
-                    return v;
-                }
-            throw new IllegalArgumentException();
-        }
-    }
-
-    private enum ConvertParser {
-        SAMI(ConvertFormat.SAMI, "fr.noop.subtitle.sami.SamiParser", true),
-        VTT(ConvertFormat.VTT, "fr.noop.subtitle.vtt.VttParser", true),
-        SRT(ConvertFormat.SRT, "fr.noop.subtitle.srt.SrtParser", true),
-        STL(ConvertFormat.STL, "fr.noop.subtitle.stl.StlParser", false);
-
-        private ConvertFormat format;
-        private String className;
-        private boolean charsetConstructor;
-
-        ConvertParser(ConvertFormat format, String className, boolean charsetConstructor) {
-            this.format = format;
-            this.className = className;
-            this.charsetConstructor = charsetConstructor;
-        }
-
-        public ConvertFormat getFormat() {
-            return this.format;
-        }
-
-        public String getClassName() {
-            return this.className;
-        }
-
-        /**
-         * @return True if the parser constructor takes a charset as argument
-         */
-        public boolean hasCharsetConstructor() {
-            return this.charsetConstructor;
-        }
-
-        public static ConvertParser getEnum(ConvertFormat format) {
-            for(ConvertParser v : values())
-                if (v.getFormat() == format) {
-                    return v;
-                }
-            throw new IllegalArgumentException();
-        }
-    }
-
-    private enum ConvertWriter {
-        SAMI(ConvertFormat.SAMI, "fr.noop.subtitle.sami.SamiWriter", true),
-        VTT(ConvertFormat.VTT, "fr.noop.subtitle.vtt.VttWriter", true),
-        SRT(ConvertFormat.SRT, "fr.noop.subtitle.srt.SrtWriter", true),
-        TTML(ConvertFormat.TTML, "fr.noop.subtitle.ttml.TtmlWriter", false);
-
-        private ConvertFormat format;
-        private String className;
-        private boolean charsetConstructor;
-
-        ConvertWriter(ConvertFormat format, String className, boolean charsetConstructor) {
-            this.format = format;
-            this.className = className;
-            this.charsetConstructor = charsetConstructor;
-        }
-
-        public ConvertFormat getFormat() {
-            return this.format;
-        }
-
-        public String getClassName() {
-            return this.className;
-        }
-
-        /**
-         * @return True if the parser constructor takes a charset as argument
-         */
-        public boolean hasCharsetConstructor() {
-            return this.charsetConstructor;
-        }
-
-        public static ConvertWriter getEnum(ConvertFormat format) {
-            for(ConvertWriter v : values())
-                if (v.getFormat() == format) {
-                    return v;
-                }
-            throw new IllegalArgumentException();
+    /**
+     * Conversion of a file failed, the message describes why
+     */
+    static class ConvertException extends Exception {
+        ConvertException(String message) {
+            super(message);
         }
     }
 
@@ -137,20 +64,111 @@ public class Convert {
 
         // Input file
         this.options.addOption(Option.builder("i")
-                .required()
+                .required(false)
                 .longOpt("input-file")
                 .hasArg()
                 .desc("Input file")
                 .build());
 
-        // Input file
+        // Output file
         this.options.addOption(Option.builder("o")
-                .required()
+                .required(false)
                 .longOpt("output-file")
                 .hasArg()
                 .desc("Output file")
                 .build());
 
+        // Batch mode: input directory
+        this.options.addOption(Option.builder("id")
+                .required(false)
+                .longOpt("input-dir")
+                .hasArg()
+                .desc("Batch mode: convert the files of this directory")
+                .build());
+
+        // Batch mode: manifest file
+        this.options.addOption(Option.builder("m")
+                .required(false)
+                .longOpt("manifest")
+                .hasArg()
+                .desc("Batch mode: convert the files listed in this file, one path per line")
+                .build());
+
+        // Batch mode: output directory
+        this.options.addOption(Option.builder("od")
+                .required(false)
+                .longOpt("output-dir")
+                .hasArg()
+                .desc("Batch mode: output directory")
+                .build());
+
+        // Batch mode: output format
+        this.options.addOption(Option.builder("of")
+                .required(false)
+                .longOpt("output-format")
+                .hasArg()
+                .desc("Batch mode: output file extension, ie: vtt")
+                .build());
+
+        // Server mode
+        this.options.addOption(Option.builder("s")
+                .required(false)
+                .longOpt("server")
+                .hasArg()
+                .desc("Server mode: convert files posted to this port of the loopback interface, 0 for any free port")
+                .build());
+
+        // Batch and server modes: concurrency
+        this.options.addOption(Option.builder("t")
+                .required(false)
+                .longOpt("threads")
+                .hasArg()
+                .desc("Batch and server modes: number of files converted at the same time, defaults to the number of processors")
+                .build());
+
+        // HLS mode
+        this.options.addOption(Option.builder("hls")
+                .required(false)
+                .longOpt("hls-dir")
+                .hasArg()
+                .desc("HLS mode: write the input file as WebVTT segments and playlist in this directory")
+                .build());
+
+        // DASH mode
+        this.options.addOption(Option.builder("dash")
+                .required(false)
+                .longOpt("dash-dir")
+                .hasArg()
+                .desc("DASH mode: write the input file as IMSC1 TTML segments in fragmented MP4 in this directory")
+                .build());
+
+        this.options.addOption(Option.builder("sd")
+                .required(false)
+                .longOpt("segment-duration")
+                .hasArg()
+                .desc("HLS and DASH modes: segment duration in milliseconds, defaults to 6000")
+                .build());
+
+        this.options.addOption(Option.builder("live")
+                .required(false)
+                .longOpt("live")
+                .desc("HLS mode: read the input file while it is written, until the process is stopped")
+                .build());
+
+        this.options.addOption(Option.builder("pd")
+                .required(false)
+                .longOpt("part-duration")
+                .hasArg()
+                .desc("Live mode: partial segment duration in milliseconds for low latency HLS, defaults to 0 (none)")
+                .build());
+
+        this.options.addOption(Option.builder("it")
+                .required(false)
+                .longOpt("idle-timeout")
+                .hasArg()
+                .desc("Live mode: stop when the input file is unchanged for this number of milliseconds, defaults to 0 (never)")
+                .build());
+
         // Input charset option
         this.options.addOption(Option.builder("ic")
                 .required(false)
@@ -212,115 +230,590 @@ public class Convert {
             String outputCharset = line.getOptionValue("oc", "utf-8");
             boolean disableStrictMode = line.hasOption("disable-strict-mode");
 
-            // Build parser for input file
-            SubtitleParser subtitleParser = null;
+            if (inputFilePath != null && (line.hasOption("hls") || line.hasOption("dash"))) {
+                try {
+                    this.segment(inputFilePath, line, inputCharset, outputCharset, !disableStrictMode);
+                } catch (ConvertException e) {
+                    System.out.println(e.getMessage());
+                    System.exit(1);
+                }
 
-            try {
-                subtitleParser = this.buildParser(inputFilePath, inputCharset);
-            } catch(IOException e) {
-                System.out.println(String.format("Unable to build parser for file %s: %s", inputFilePath, e.getMessage()));
-                System.exit(1);
+                return;
             }
 
-            InputStream is = null;
+            if (inputFilePath != null && outputFilePath != null) {
+                try {
+                    this.convert(inputFilePath, outputFilePath, inputCharset, outputCharset, !disableStrictMode);
+                } catch (ConvertException e) {
+                    System.out.println(e.getMessage());
+                    System.exit(1);
+                }
 
-            // Open input file
-            try {
-                 is = new FileInputStream(inputFilePath);
-            } catch(IOException e) {
-                System.out.println(String.format("Input file %s does not exist: %s", inputFilePath, e.getMessage()));
+                return;
+            }
+
+            int threads = Runtime.getRuntime().availableProcessors();
+
+            if (line.hasOption("t")) {
+                try {
+                    threads = Integer.parseInt(line.getOptionValue("t"));
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+
+                if (threads < 1) {
+                    System.out.println(String.format("Invalid number of threads: %s", line.getOptionValue("t")));
+                    System.exit(1);
+                }
+            }
+
+            if (line.hasOption("s")) {
+                this.serve(line.getOptionValue("s"), threads);
+                return;
+            }
+
+            String inputDirPath = line.getOptionValue("id");
+            String manifestPath = line.getOptionValue("m");
+            String outputDirPath = line.getOptionValue("od");
+            String outputFormat = line.getOptionValue("of");
+
+            if ((inputDirPath == null && manifestPath == null) || outputDirPath == null || outputFormat == null) {
+                this.printHelp();
                 System.exit(1);
             }
 
-            // Parse input file
-            SubtitleObject inputSubtitle = null;
+            // List input files
+            List<Path> inputFiles = null;
 
             try {
-                inputSubtitle = subtitleParser.parse(is, !disableStrictMode);
+                if (inputDirPath != null) {
+                    inputFiles = this.listInputFiles(Paths.get(inputDirPath));
+                } else {
+                    inputFiles = this.readManifest(Paths.get(manifestPath));
+                }
             } catch (IOException e) {
-                System.out.println(String.format("Unable ro read input file %s: %s", inputFilePath, e.getMessage()));
+                System.out.println(String.format("Unable to list input files: %s", e.getMessage()));
                 System.exit(1);
-            } catch (SubtitleParsingException e) {
-                System.out.println(String.format("Unable to parse input file %s;: %s", inputFilePath, e.getMessage()));
+            }
+
+            if (!this.hasWriter(outputFormat)) {
+                System.out.println(String.format("Unsupported output format: %s", outputFormat));
+                System.exit(1);
+            }
+
+            int failures = this.convertBatch(inputFiles, Paths.get(outputDirPath), outputFormat,
+                    inputCharset, outputCharset, !disableStrictMode, threads);
+
+            if (failures > 0) {
                 System.exit(1);
             }
+        }
+        catch(ParseException exp) {
+            this.printHelp();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Start the conversion server, it runs until the JVM is stopped
+     */
+    private void serve(String portValue, int threads) {
+        int port = -1;
+
+        try {
+            port = Integer.parseInt(portValue);
+        } catch (NumberFormatException e) {
+            // Checked below
+        }
+
+        if (port < 0 || port > 65535) {
+            System.out.println(String.format("Invalid port: %s", portValue));
+            System.exit(1);
+        }
+
+        final ConvertServer server = new ConvertServer(this.registry);
+        server.setLog(System.out);
+
+        try {
+            server.start(port, threads);
+        } catch (IOException e) {
+            System.out.println(String.format("Unable to start server on port %d: %s", port, e.getMessage()));
+            System.exit(1);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.stop();
+            }
+        });
+
+        System.out.println(String.format("Listening on http://127.0.0.1:%d/convert", server.getPort()));
+    }
+
+    /**
+     * Write a file as HLS WebVTT segments or DASH TTML segments, or a file being written in live mode
+     */
+    private void segment(String inputFilePath, CommandLine line, String inputCharset,
+                         String outputCharset, boolean strict) throws ConvertException {
+        boolean dash = !line.hasOption("hls");
+        Path outputDir = Paths.get(line.getOptionValue(dash ? "dash" : "hls"));
+        long segmentDuration = this.getMillis(line, "sd", 6000);
+        SubtitleParser subtitleParser;
+
+        try {
+            subtitleParser = this.buildParser(inputFilePath, inputCharset);
+        } catch(IOException e) {
+            throw new ConvertException(String.format("Unable to build parser for file %s: %s", inputFilePath, e.getMessage()));
+        }
+
+        if (line.hasOption("live")) {
+            if (dash) {
+                throw new ConvertException("Live mode is only supported with HLS");
+            }
+
+            if (!(subtitleParser instanceof SubtitleStreamParser)) {
+                throw new ConvertException(String.format("Live mode is not supported for file %s", inputFilePath));
+            }
+
+            this.segmentLive((SubtitleStreamParser) subtitleParser, inputFilePath, outputDir, segmentDuration,
+                    this.getMillis(line, "pd", 0), this.getMillis(line, "it", 0), outputCharset, strict);
+            return;
+        }
+
+        SubtitleObject inputSubtitle;
+
+        try (InputStream is = new FileInputStream(inputFilePath)) {
+            inputSubtitle = subtitleParser.parse(is, strict);
+        } catch (IOException e) {
+            throw new ConvertException(String.format("Unable to read input file %s: %s", inputFilePath, e.getMessage()));
+        } catch (SubtitleParsingException e) {
+            throw new ConvertException(String.format("Unable to parse input file %s: %s", inputFilePath, e.getMessage()));
+        }
+
+        if (dash) {
+            this.segmentDash(inputSubtitle, outputDir, segmentDuration);
+            return;
+        }
+
+        VttSegmenter segmenter;
+
+        try {
+            segmenter = new VttSegmenter(outputDir, segmentDuration);
+        } catch (IllegalArgumentException e) {
+            throw new ConvertException(e.getMessage());
+        }
+
+        segmenter.setCharset(outputCharset);
+
+        try {
+            segmenter.segment(inputSubtitle);
+        } catch (IOException e) {
+            throw new ConvertException(String.format("Unable to write segments to %s: %s", outputDir, e.getMessage()));
+        }
+
+        System.out.println(String.format("%d segments written to %s",
+                segmenter.getPlaylist().getSegments().size(), outputDir));
+    }
+
+    /**
+     * Write a subtitle object as IMSC1 TTML segments in fragmented MP4, after an init segment
+     */
+    private void segmentDash(SubtitleObject inputSubtitle, Path outputDir, long segmentDuration) throws ConvertException {
+        TtmlSegmenter segmenter;
+
+        try {
+            segmenter = new TtmlSegmenter(outputDir, segmentDuration);
+        } catch (IllegalArgumentException e) {
+            throw new ConvertException(e.getMessage());
+        }
+
+        segmenter.setMp4(true);
+
+        try {
+            segmenter.segment(inputSubtitle);
+        } catch (IOException e) {
+            throw new ConvertException(String.format("Unable to write segments to %s: %s", outputDir, e.getMessage()));
+        }
+
+        System.out.println(String.format("%d segments written to %s", segmenter.getSegmentCount(), outputDir));
+    }
+
+    /**
+     * Read the input file while it is written until the JVM is stopped or the file is idle,
+     * then print the latencies of the cues
+     */
+    private void segmentLive(SubtitleStreamParser parser, String inputFilePath, Path outputDir, long segmentDuration,
+                             long partDuration, long idleTimeout, String outputCharset, boolean strict)
+            throws ConvertException {
+        final TailInputStream is;
+
+        try {
+            is = new TailInputStream(Paths.get(inputFilePath));
+        } catch (IOException e) {
+            throw new ConvertException(String.format("Input file %s does not exist: %s", inputFilePath, e.getMessage()));
+        }
+
+        is.setIdleTimeoutMillis(idleTimeout);
+        LiveVttSegmenter segmenter;
+
+        try {
+            segmenter = new LiveVttSegmenter(outputDir, segmentDuration, partDuration);
+        } catch (IllegalArgumentException e) {
+            throw new ConvertException(e.getMessage());
+        }
+
+        segmenter.setCharset(outputCharset);
+
+        // On stop, read the rest of the input and end the playlist before the JVM exits
+        final Thread mainThread = Thread.currentThread();
+        Thread shutdownHook = new Thread() {
+            @Override
+            public void run() {
+                is.finish();
+
+                try {
+                    mainThread.join(10000);
+                } catch (InterruptedException e) {
+                    // Exit anyway
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        try {
+            segmenter.run(parser.read(is, strict));
+        } catch (IOException e) {
+            throw new ConvertException(String.format("Unable to write segments of %s to %s: %s",
+                    inputFilePath, outputDir, e.getMessage()));
+        } catch (SubtitleParsingException e) {
+            throw new ConvertException(String.format("Unable to parse input file %s: %s", inputFilePath, e.getMessage()));
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // Input is fully read
+            }
+
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM is stopping
+            }
+        }
+
+        System.out.println(String.format("Live input %s ended: %s, %d late cues dropped",
+                inputFilePath, segmenter.getLatencies(), segmenter.getDroppedCues()));
+    }
+
+    /**
+     * @return Duration in milliseconds of an option
+     */
+    private long getMillis(CommandLine line, String option, long defaultValue) throws ConvertException {
+        if (!line.hasOption(option)) {
+            return defaultValue;
+        }
+
+        try {
+            long millis = Long.parseLong(line.getOptionValue(option));
+
+            if (millis >= 0) {
+                return millis;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+
+        throw new ConvertException(String.format("Invalid duration: %s", line.getOptionValue(option)));
+    }
+
+    /**
+     * Convert a single file, no output file is left when the conversion fails
+     */
+    void convert(String inputFilePath, String outputFilePath, String inputCharset,
+                         String outputCharset, boolean strict) throws ConvertException {
+        // Build parser for input file
+        SubtitleParser subtitleParser;
+
+        try {
+            subtitleParser = this.buildParser(inputFilePath, inputCharset);
+        } catch(IOException e) {
+            throw new ConvertException(String.format("Unable to build parser for file %s: %s", inputFilePath, e.getMessage()));
+        }
+
+        // Open input file
+        InputStream is;
+
+        try {
+             is = new FileInputStream(inputFilePath);
+        } catch(IOException e) {
+            throw new ConvertException(String.format("Input file %s does not exist: %s", inputFilePath, e.getMessage()));
+        }
 
+        try {
             // Build writer for the output file
-            SubtitleWriter writer = null;
+            SubtitleWriter writer;
 
             try {
                 writer = this.buildWriter(outputFilePath, outputCharset);
             } catch(IOException e) {
-                System.out.println(String.format("Unable to build writer for file %s: %s", outputFilePath, e.getMessage()));
-                System.exit(1);
+                throw new ConvertException(String.format("Unable to build writer for file %s: %s", outputFilePath, e.getMessage()));
             }
 
-            // Create output file
-            OutputStream os = null;
-
+            this.convert(subtitleParser, is, inputFilePath, writer, outputFilePath, strict);
+        } finally {
             try {
-                os = new FileOutputStream(outputFilePath);
-            } catch(IOException e) {
-                System.out.println(String.format("Unable to create output file %s: %s", outputFilePath, e.getMessage()));
-                System.exit(1);
+                is.close();
+            } catch (IOException e) {
+                // Input is fully read
             }
+        }
+    }
+
+    private void convert(SubtitleParser subtitleParser, InputStream is, String inputFilePath,
+                         SubtitleWriter writer, String outputFilePath, boolean strict) throws ConvertException {
+        // Cues can be written as soon as they are read
+        // when both parser and writer support it
+        boolean streaming = (subtitleParser instanceof SubtitleStreamParser) &&
+                (writer instanceof SubtitleStreamWriter);
 
-            // Write output file
+        // Parse input file
+        SubtitleObject inputSubtitle = null;
+
+        if (!streaming) {
             try {
-                writer.write(inputSubtitle, os);
+                inputSubtitle = subtitleParser.parse(is, strict);
             } catch (IOException e) {
-                System.out.println(String.format("Unable to write output file %s: %s", outputFilePath, e.getMessage()));
-                System.exit(1);
+                throw new ConvertException(String.format("Unable to read input file %s: %s", inputFilePath, e.getMessage()));
+            } catch (SubtitleParsingException e) {
+                throw new ConvertException(String.format("Unable to parse input file %s: %s", inputFilePath, e.getMessage()));
             }
         }
-        catch(ParseException exp) {
-            this.printHelp();
-            System.exit(1);
+
+        // Create output file
+        OutputStream os;
+
+        try {
+            os = new FileOutputStream(outputFilePath);
+        } catch(IOException e) {
+            throw new ConvertException(String.format("Unable to create output file %s: %s", outputFilePath, e.getMessage()));
         }
-    }
 
-    private SubtitleParser buildParser(String filePath, String charset) throws IOException {
-        String ext = this.getFileExtension(filePath);
+        // Write output file
+        boolean written = false;
+
+        try {
+            try {
+                if (streaming) {
+                    pipe((SubtitleStreamParser) subtitleParser, is, strict,
+                            (SubtitleStreamWriter) writer, os);
+                } else {
+                    writer.write(inputSubtitle, os);
+                }
+            } finally {
+                os.close();
+            }
+
+            written = true;
+        } catch (IOException e) {
+            throw new ConvertException(String.format("Unable to write output file %s: %s", outputFilePath, e.getMessage()));
+        } catch (SubtitleParsingException e) {
+            throw new ConvertException(String.format("Unable to parse input file %s: %s", inputFilePath, e.getMessage()));
+        } finally {
+            if (!written) {
+                // When streaming, the input may fail once part of the output is written:
+                // no truncated output is left
+                try {
+                    Files.deleteIfExists(Paths.get(outputFilePath));
+                } catch (IOException e) {
+                    // Conversion failure is reported
+                }
+            }
+        }
+    }
 
-        // Get subtitle parser class
-        ConvertFormat convertFormat = ConvertFormat.getEnum(ext);
-        ConvertParser convertParser = ConvertParser.getEnum(convertFormat);
+    /**
+     * Convert files on a pool of threads, a failure does not stop the conversion of other files
+     * A line is printed per file, in the order of the input files, followed by a summary
+     *
+     * @return Number of files that could not be converted
+     */
+    private int convertBatch(List<Path> inputFiles, Path outputDir, String outputFormat, final String inputCharset,
+                             final String outputCharset, final boolean strict, int threads) {
+        long start = System.currentTimeMillis();
 
-        // Instantiate parser class
         try {
-            Class<?> parserClass = Class.forName(convertParser.getClassName());
+            Files.createDirectories(outputDir);
+        } catch (IOException e) {
+            System.out.println(String.format("Unable to create output directory %s: %s", outputDir, e.getMessage()));
+            return inputFiles.size();
+        }
 
-            if (convertParser.hasCharsetConstructor()) {
-                return (SubtitleParser) parserClass.getConstructor(String.class).newInstance(charset);
-            } else {
-                return (SubtitleParser) parserClass.getConstructor().newInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> results = new ArrayList<>();
+        Map<Path, Path> outputFiles = new HashMap<>();
+
+        for (Path inputFile : inputFiles) {
+            final String inputFilePath = inputFile.toString();
+            final String outputFilePath = outputDir.resolve(
+                    this.getBaseName(inputFile) + "." + outputFormat).toString();
+
+            // Two input files having the same base name would be written to the same output file
+            final Path firstInputFile = outputFiles.get(Paths.get(outputFilePath));
+
+            if (firstInputFile == null) {
+                outputFiles.put(Paths.get(outputFilePath), inputFile);
+            }
+
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws ConvertException {
+                    if (firstInputFile != null) {
+                        throw new ConvertException(String.format("Output file %s is already written from %s",
+                                outputFilePath, firstInputFile));
+                    }
+
+                    convert(inputFilePath, outputFilePath, inputCharset, outputCharset, strict);
+                    return outputFilePath;
+                }
+            }));
+        }
+
+        executor.shutdown();
+        int failures = 0;
+
+        for (int i = 0; i < inputFiles.size(); i++) {
+            try {
+                String outputFilePath = results.get(i).get();
+                System.out.println(String.format("Converted %s to %s", inputFiles.get(i), outputFilePath));
+            } catch (ExecutionException e) {
+                failures++;
+
+                if (e.getCause() instanceof ConvertException) {
+                    System.out.println(String.format("Failed: %s", e.getCause().getMessage()));
+                } else {
+                    System.out.println(String.format("Failed: Unable to convert file %s: %s", inputFiles.get(i), e.getCause()));
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                failures += inputFiles.size() - i;
+                break;
             }
-        } catch (Exception e) {
-            throw new IOException(String.format("Unable to instantiate class %s", convertParser.getClassName()));
         }
+
+        System.out.println(String.format("%d files converted, %d failed, in %d ms",
+                inputFiles.size() - failures, failures, System.currentTimeMillis() - start));
+        return failures;
     }
 
-    private SubtitleWriter buildWriter(String filePath, String charset) throws IOException {
-        String ext = this.getFileExtension(filePath);
+    /**
+     * @return Files of the directory having an extension supported by a parser, sorted by name
+     */
+    private List<Path> listInputFiles(Path inputDir) throws IOException {
+        List<Path> inputFiles = new ArrayList<>();
 
-        // Get subtitle writer class
-        ConvertFormat convertFormat = ConvertFormat.getEnum(ext);
-        ConvertWriter convertWriter = ConvertWriter.getEnum(convertFormat);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(inputDir)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path) && this.hasParser(path.toString())) {
+                    inputFiles.add(path);
+                }
+            }
+        }
+
+        Collections.sort(inputFiles);
+        return inputFiles;
+    }
+
+    /**
+     * Read input files from a manifest: one path per line, relative to the manifest directory
+     * Empty lines and lines starting with # are ignored
+     */
+    private List<Path> readManifest(Path manifest) throws IOException {
+        List<Path> inputFiles = new ArrayList<>();
+        Path baseDir = manifest.toAbsolutePath().getParent();
+
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            inputFiles.add(baseDir.resolve(line));
+        }
+
+        return inputFiles;
+    }
+
+    /**
+     * Write cues to the output as soon as they are read from the input
+     * The reader is always closed, the writer is aborted if the conversion fails
+     */
+    static void pipe(SubtitleStreamParser parser, InputStream is, boolean strict,
+                     SubtitleStreamWriter writer, OutputStream os) throws IOException, SubtitleParsingException {
+        SubtitleCueReader reader = parser.read(is, strict);
+        SubtitleCueWriter cueWriter = null;
+        boolean ended = false;
 
-        // Instantiate writer class
         try {
-            Class<?> writerClass = Class.forName(convertWriter.getClassName());
+            cueWriter = writer.open(os);
 
-            if (convertWriter.hasCharsetConstructor()) {
-                return (SubtitleWriter) writerClass.getConstructor(String.class).newInstance(charset);
-            } else {
-                return (SubtitleWriter) writerClass.getConstructor().newInstance();
+            // Read until the first cue, so that properties defined in the input header are known
+            reader.hasNext();
+            cueWriter.begin(reader.getProperties());
+
+            while (reader.hasNext()) {
+                cueWriter.write(reader.next());
+            }
+
+            cueWriter.end();
+            ended = true;
+        } finally {
+            if (!ended && cueWriter != null) {
+                cueWriter.abort();
             }
-        } catch (Exception e) {
-            throw new IOException(String.format("Unable to instantiate class %s", convertWriter.getClassName()));
+
+            reader.close();
         }
     }
 
+    private SubtitleParser buildParser(String filePath, String charset) throws IOException {
+        String ext = this.getFileExtension(filePath);
+
+        try {
+            return this.registry.createParser(ext, charset);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private SubtitleWriter buildWriter(String filePath, String charset) throws IOException {
+        String ext = this.getFileExtension(filePath);
+
+        try {
+            return this.registry.createWriter(ext, charset);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private boolean hasParser(String filePath) {
+        SubtitleFormat format = this.registry.getFormatForFile(filePath);
+        return format != null && format.canParse();
+    }
+
+    private boolean hasWriter(String extension) {
+        SubtitleFormat format = this.registry.getFormat(extension);
+        return format != null && format.canWrite();
+    }
+
+    private String getBaseName(Path filePath) {
+        String fileName = filePath.getFileName().toString();
+        int i = fileName.lastIndexOf('.');
+        return (i > 0) ? fileName.substring(0, i) : fileName;
+    }
+
     private String getFileExtension(String filePath) throws IOException {
         String ext = null;
 
@@ -0,0 +1,435 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import fr.noop.subtitle.model.SubtitleFormatRegistry;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleStreamParser;
+import fr.noop.subtitle.model.SubtitleStreamWriter;
+import fr.noop.subtitle.model.SubtitleWriter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP server converting subtitles, listening on the loopback interface
+ *
+ * POST /convert?input-format=srt&amp;output-format=vtt converts the request body
+ * and returns the converted file. Optional parameters are input-charset, output-charset
+ * (both default to utf-8) and disable-strict-mode.
+ * GET /metrics returns the number of requests, bytes and conversion times since start.
+ *
+ * Parsers and writers are created once per worker thread, format and charset.
+ * The output is sent as soon as its first 64 KB are written: an error occurring later
+ * closes the connection before the end of the response.
+ */
+public class ConvertServer {
+    private final static int BUFFER_SIZE = 65536;
+
+    private SubtitleFormatRegistry registry;
+    private HttpServer server;
+    private ExecutorService executor;
+    private PrintStream log; // A line per request, null to log nothing
+
+    // Metrics
+    private AtomicLong requests = new AtomicLong();
+    private AtomicLong failures = new AtomicLong();
+    private AtomicLong bytesIn = new AtomicLong();
+    private AtomicLong bytesOut = new AtomicLong();
+    private AtomicLong totalTime = new AtomicLong();
+    private AtomicLong maxTime = new AtomicLong();
+
+    // Parsers and writers of the current worker thread, by extension and charset
+    private ThreadLocal<Map<String, SubtitleParser>> parsers = new ThreadLocal<Map<String, SubtitleParser>>() {
+        @Override
+        protected Map<String, SubtitleParser> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private ThreadLocal<Map<String, SubtitleWriter>> writers = new ThreadLocal<Map<String, SubtitleWriter>>() {
+        @Override
+        protected Map<String, SubtitleWriter> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    public ConvertServer(SubtitleFormatRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @param log Stream printed a line per request: method, formats, status, sizes and time,
+     *            null (the default) to log nothing
+     */
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Start listening
+     *
+     * @param port Port of the loopback interface, 0 to pick a free one
+     * @param threads Number of requests handled at the same time
+     */
+    public void start(int port, int threads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/convert", new ConvertHandler());
+        this.server.createContext("/metrics", new MetricsHandler());
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * @return Port the server listens to
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stop listening, and wait at most one second for running requests
+     */
+    public void stop() {
+        this.server.stop(1);
+        this.executor.shutdown();
+    }
+
+    private SubtitleParser getParser(String extension, String charset) {
+        String key = extension + "|" + charset;
+        SubtitleParser parser = this.parsers.get().get(key);
+
+        if (parser == null) {
+            parser = this.registry.createParser(extension, charset);
+            this.parsers.get().put(key, parser);
+        }
+
+        return parser;
+    }
+
+    private SubtitleWriter getWriter(String extension, String charset) {
+        String key = extension + "|" + charset;
+        SubtitleWriter writer = this.writers.get().get(key);
+
+        if (writer == null) {
+            writer = this.registry.createWriter(extension, charset);
+            this.writers.get().put(key, writer);
+        }
+
+        return writer;
+    }
+
+    private void updateMetrics(boolean failed, long in, long out, long time) {
+        this.requests.incrementAndGet();
+
+        if (failed) {
+            this.failures.incrementAndGet();
+        }
+
+        this.bytesIn.addAndGet(in);
+        this.bytesOut.addAndGet(out);
+        this.totalTime.addAndGet(time);
+
+        long max = this.maxTime.get();
+
+        while (time > max && !this.maxTime.compareAndSet(max, time)) {
+            max = this.maxTime.get();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String parameter : query.split("&")) {
+            int i = parameter.indexOf('=');
+
+            if (i < 0) {
+                parameters.put(URLDecoder.decode(parameter, "utf-8"), "");
+            } else {
+                parameters.put(URLDecoder.decode(parameter.substring(0, i), "utf-8"),
+                        URLDecoder.decode(parameter.substring(i + 1), "utf-8"));
+            }
+        }
+
+        return parameters;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private class ConvertHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            CountingInputStream is = new CountingInputStream(exchange.getRequestBody());
+            ResponseOutputStream os = new ResponseOutputStream(exchange);
+            String inputFormat = null;
+            String outputFormat = null;
+            int status = 200;
+            String error = null;
+
+            try {
+                Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                inputFormat = parameters.get("input-format");
+                outputFormat = parameters.get("output-format");
+
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    status = 405;
+                    error = String.format("Unsupported method: %s", exchange.getRequestMethod());
+                } else if (inputFormat == null || outputFormat == null) {
+                    status = 400;
+                    error = "Parameters input-format and output-format are required";
+                } else {
+                    SubtitleParser parser = getParser(inputFormat, getCharset(parameters, "input-charset"));
+                    SubtitleWriter writer = getWriter(outputFormat, getCharset(parameters, "output-charset"));
+                    convert(parser, is, !parameters.containsKey("disable-strict-mode"), writer, os);
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                error = e.getMessage();
+            } catch (UnsupportedEncodingException e) {
+                status = 400;
+                error = String.format("Unsupported charset: %s", e.getMessage());
+            } catch (SubtitleParsingException e) {
+                status = 400;
+                error = String.format("Unable to parse input: %s", e.getMessage());
+            } catch (IOException e) {
+                status = 500;
+                error = String.format("Unable to convert input: %s", e.getMessage());
+            } catch (RuntimeException e) {
+                // Unexpected failure of a parser or a writer, the worker thread keeps serving requests
+                status = 500;
+                error = String.format("Unable to convert input: %s", e);
+            }
+
+            // Metrics are up to date once the response is received
+            long time = (System.nanoTime() - start) / 1000000;
+            updateMetrics(error != null, is.getCount(), os.getCount(), time);
+            if (log != null) {
+                log.println(String.format("%s %s %s -> %s %d, %d bytes in, %d bytes out, %d ms",
+                        exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                        inputFormat, outputFormat, status, is.getCount(), os.getCount(), time));
+            }
+
+            if (error == null) {
+                os.close();
+            } else if (os.isCommitted()) {
+                // Too late for an error status: the server closes the connection
+                // without ending the response
+                throw new IOException(error);
+            } else {
+                sendText(exchange, status, error);
+            }
+
+            exchange.close();
+        }
+
+        private String getOrDefault(Map<String, String> parameters, String name, String defaultValue) {
+            String value = parameters.get(name);
+            return (value == null || value.isEmpty()) ? defaultValue : value;
+        }
+
+        /**
+         * @return Charset of the parameter, utf-8 by default
+         * @throws IllegalArgumentException if the charset is unknown or unsupported
+         */
+        private String getCharset(Map<String, String> parameters, String name) {
+            String charset = this.getOrDefault(parameters, name, "utf-8");
+
+            try {
+                if (Charset.isSupported(charset)) {
+                    return charset;
+                }
+            } catch (IllegalCharsetNameException e) {
+                // Unsupported too
+            }
+
+            throw new IllegalArgumentException(String.format("Unsupported %s: %s", name, charset));
+        }
+
+        private void convert(SubtitleParser parser, InputStream is, boolean strict,
+                             SubtitleWriter writer, OutputStream os) throws IOException, SubtitleParsingException {
+            if (!(parser instanceof SubtitleStreamParser) || !(writer instanceof SubtitleStreamWriter)) {
+                SubtitleObject subtitleObject = parser.parse(is, strict);
+                writer.write(subtitleObject, os);
+                return;
+            }
+
+            // Write cues as soon as they are read
+            Convert.pipe((SubtitleStreamParser) parser, is, strict, (SubtitleStreamWriter) writer, os);
+        }
+    }
+
+    private class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long count = requests.get();
+            StringBuilder sb = new StringBuilder();
+            sb.append("requests ").append(count).append('\n');
+            sb.append("failures ").append(failures.get()).append('\n');
+            sb.append("bytes_in ").append(bytesIn.get()).append('\n');
+            sb.append("bytes_out ").append(bytesOut.get()).append('\n');
+            sb.append("time_ms_total ").append(totalTime.get()).append('\n');
+            sb.append("time_ms_average ").append(count > 0 ? totalTime.get() / count : 0).append('\n');
+            sb.append("time_ms_max ").append(maxTime.get()).append('\n');
+            sendText(exchange, 200, sb.toString());
+        }
+    }
+
+    /**
+     * Count bytes read from the request body
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream is) {
+            super(is);
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b >= 0) {
+                this.count++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+
+            if (read > 0) {
+                this.count += read;
+            }
+
+            return read;
+        }
+    }
+
+    /**
+     * Response body, headers are sent when the buffer is full or the output closed
+     * Until then, an error status can still be returned instead
+     */
+    private static class ResponseOutputStream extends OutputStream {
+        private HttpExchange exchange;
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int length = 0;
+        private long count = 0;
+        private OutputStream os; // Response body, once headers are sent
+
+        ResponseOutputStream(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        public boolean isCommitted() {
+            return this.os != null;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        private void commit(long contentLength) throws IOException {
+            this.exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            this.exchange.sendResponseHeaders(200, contentLength);
+            this.os = this.exchange.getResponseBody();
+            this.os.write(this.buffer, 0, this.length);
+            this.length = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.length == this.buffer.length) {
+                this.flushBuffer();
+            }
+
+            this.buffer[this.length++] = (byte) b;
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (this.length + len > this.buffer.length) {
+                this.flushBuffer();
+            }
+
+            if (len > this.buffer.length) {
+                this.os.write(b, off, len);
+            } else {
+                System.arraycopy(b, off, this.buffer, this.length, len);
+                this.length += len;
+            }
+
+            this.count += len;
+        }
+
+        private void flushBuffer() throws IOException {
+            if (this.os == null) {
+                // Length is unknown: chunked response
+                this.commit(0);
+            } else {
+                this.os.write(this.buffer, 0, this.length);
+                this.length = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.os == null) {
+                // Whole output is in the buffer
+                this.commit(this.length == 0 ? -1 : this.length);
+            } else {
+                this.flushBuffer();
+            }
+
+            this.os.close();
+        }
+    }
+}
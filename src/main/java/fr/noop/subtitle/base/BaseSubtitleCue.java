@@ -24,14 +24,16 @@ import java.util.List;
 
 public abstract class BaseSubtitleCue implements SubtitleCue {
     private String id; // Id of cue. 1 or c1
-    private SubtitleTimeCode startTime; // Start displaying the cue at this time code
-    private SubtitleTimeCode endTime; // Stop displaying the cue at this time code
+    private long startMillis; // Start displaying the cue at this time in milliseconds
+    private long endMillis; // Stop displaying the cue at this time in milliseconds
     private List<SubtitleLine> lines; // Lines composed of texts
+    private String text; // Lines joined with a line break, computed on demand
+    private String[] lineTexts; // Texts of the lines joined in text
 
     protected BaseSubtitleCue(SubtitleCue cue) {
         this.id = cue.getId();
-        this.startTime = cue.getStartTime();
-        this.endTime = cue.getEndTime();
+        this.startMillis = cue.getStartMillis();
+        this.endMillis = cue.getEndMillis();
         this.lines = new ArrayList<>(cue.getLines());
     }
 
@@ -40,14 +42,20 @@ public abstract class BaseSubtitleCue implements SubtitleCue {
     }
 
     protected BaseSubtitleCue(SubtitleTimeCode startTime, SubtitleTimeCode endTime) {
-        this.lines = new ArrayList<>();
-        this.startTime = startTime;
-        this.endTime = endTime;
+        this(startTime.getTime(), endTime.getTime());
     }
 
     protected BaseSubtitleCue(SubtitleTimeCode startTime, SubtitleTimeCode endTime, List<SubtitleLine> lines) {
-        this.startTime = startTime;
-        this.endTime = endTime;
+        this(startTime.getTime(), endTime.getTime(), lines);
+    }
+
+    protected BaseSubtitleCue(long startMillis, long endMillis) {
+        this(startMillis, endMillis, new ArrayList<SubtitleLine>());
+    }
+
+    protected BaseSubtitleCue(long startMillis, long endMillis, List<SubtitleLine> lines) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
         this.lines = lines;
     }
 
@@ -59,20 +67,44 @@ public abstract class BaseSubtitleCue implements SubtitleCue {
         this.id = id;
     }
 
+    public long getStartMillis() {
+        return this.startMillis;
+    }
+
+    public void setStartMillis(long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    public long getEndMillis() {
+        return this.endMillis;
+    }
+
+    public void setEndMillis(long endMillis) {
+        this.endMillis = endMillis;
+    }
+
+    /**
+     * @return a new time code built from the start time,
+     * changing it does not change the cue
+     */
     public SubtitleTimeCode getStartTime() {
-        return this.startTime;
+        return new SubtitleTimeCode(this.startMillis);
     }
 
     public void setStartTime(SubtitleTimeCode startTime) {
-        this.startTime = startTime;
+        this.startMillis = startTime.getTime();
     }
 
+    /**
+     * @return a new time code built from the end time,
+     * changing it does not change the cue
+     */
     public SubtitleTimeCode getEndTime() {
-        return this.endTime;
+        return new SubtitleTimeCode(this.endMillis);
     }
 
     public void setEndTime(SubtitleTimeCode endTime) {
-        this.endTime = endTime;
+        this.endMillis = endTime.getTime();
     }
 
     public List<SubtitleLine> getLines() {
@@ -81,25 +113,65 @@ public abstract class BaseSubtitleCue implements SubtitleCue {
 
     public void setLines(List<SubtitleLine> lines) {
         this.lines = lines;
+        this.text = null;
     }
 
     public void addLine(SubtitleLine line) {
         this.lines.add(line);
+        this.text = null;
     }
 
     public void subtractTime(SubtitleTimeCode toSubtract) {
-        this.setStartTime(this.getStartTime().subtract(toSubtract));
-        this.setEndTime(this.getEndTime().subtract(toSubtract));
+        this.subtractTime(toSubtract.getTime());
+    }
+
+    /**
+     * @param toSubtract Milliseconds to subtract to start and end times
+     */
+    public void subtractTime(long toSubtract) {
+        this.startMillis -= toSubtract;
+        this.endMillis -= toSubtract;
+    }
+
+    /**
+     * @return true if this cue and the given one are displayed at the same time
+     */
+    public boolean overlaps(SubtitleCue cue) {
+        return this.startMillis < cue.getEndMillis() && cue.getStartMillis() < this.endMillis;
     }
 
+    /**
+     * @return lines joined with a line break
+     *
+     * The text is joined once: it is returned again while the lines return the same strings,
+     * which is the case of SubtitleTextLine until a text is added to it.
+     */
     public String getText() {
-        String[] texts = new String[this.lines.size()];
+        List<SubtitleLine> lines = this.getLines();
+        int size = lines.size();
+
+        if (this.text != null && this.lineTexts.length == size) {
+            boolean changed = false;
+
+            for (int i = 0; i < size && !changed; i++) {
+                // Same instance, the line has not changed
+                changed = lines.get(i).toString() != this.lineTexts[i];
+            }
+
+            if (!changed) {
+                return this.text;
+            }
+        }
+
+        String[] lineTexts = new String[size];
 
-        for (int i=0; i<texts.length; i++) {
-            texts[i] = this.lines.get(i).toString();
+        for (int i = 0; i < size; i++) {
+            lineTexts[i] = lines.get(i).toString();
         }
 
-        return String.join("\n", texts);
+        this.text = (size == 1) ? lineTexts[0] : String.join("\n", lineTexts);
+        this.lineTexts = lineTexts;
+        return this.text;
     }
 
     @Override
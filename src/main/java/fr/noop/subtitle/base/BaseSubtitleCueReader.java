@@ -0,0 +1,67 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.base;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject.Property;
+import fr.noop.subtitle.model.SubtitleParsingException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Cue reader reading one cue ahead
+ */
+public abstract class BaseSubtitleCueReader implements SubtitleCueReader {
+    private Map<Property, Object> properties = new HashMap<>();
+    private SubtitleCue nextCue; // Cue read by hasNext but not yet returned by next
+    private boolean finished = false; // True when there is no more cue to read
+
+    /**
+     * Read input until the next cue is complete
+     *
+     * @return the cue or null if the end of the input is reached
+     */
+    protected abstract SubtitleCue readCue() throws IOException, SubtitleParsingException;
+
+    @Override
+    public boolean hasNext() throws IOException, SubtitleParsingException {
+        if (this.nextCue == null && !this.finished) {
+            this.nextCue = this.readCue();
+            this.finished = (this.nextCue == null);
+        }
+
+        return this.nextCue != null;
+    }
+
+    @Override
+    public SubtitleCue next() throws IOException, SubtitleParsingException {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        SubtitleCue cue = this.nextCue;
+        this.nextCue = null;
+        return cue;
+    }
+
+    @Override
+    public Map<Property, Object> getProperties() {
+        return this.properties;
+    }
+
+    public void setProperty(Property property, Object value) {
+        this.properties.put(property, value);
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.base;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleRegionCue;
+import fr.noop.subtitle.model.SubtitleStyled;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.util.SubtitleTimeCode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Subtitle object storing its cues in columns, for tracks of hundreds of thousands of cues
+ *
+ * Cue times are stored in long arrays, ids and texts in a single array of chars,
+ * lines and texts as int indices in these arrays.
+ * Chars are stored as bytes until a char does not fit in ISO-8859-1.
+ * Styles and regions are stored once, cues and texts refer to them by index.
+ * Cues are copied when they are added, so the added cue graphs can be garbage collected.
+ *
+ * Returned cues are read only views built on demand: lines and texts are created when they are requested,
+ * getText returns the cue text without joining lines.
+ * Only ids, times, lines, texts, styles and regions are kept: format specific data
+ * (VTT voices, STL blocks...) is not.
+ * Styles are interned and regions are shared between cues, they must not be modified.
+ */
+public class CompactSubtitleObject implements SubtitleObject {
+    private final static int INITIAL_CAPACITY = 16;
+
+    private Map<Property, Object> properties = new HashMap<>();
+    private List<SubtitleCue> cues = new CueList();
+
+    // Cue columns, indexed by cue
+    // The chars of a cue are its id followed by its texts, separated by line breaks
+    private int cueCount = 0;
+    private long[] startMillis = new long[INITIAL_CAPACITY];
+    private long[] endMillis = new long[INITIAL_CAPACITY];
+    private int[] cueStarts = new int[INITIAL_CAPACITY + 1]; // Index of the first char, next cue gives the end
+    private int[] textStarts = new int[INITIAL_CAPACITY]; // Index of the text, -1 - index if the cue has no id
+    private int[] firstLines = new int[INITIAL_CAPACITY + 1]; // Index of the first line, next cue gives the end
+    private int[] regions; // Index of the region, -1 if the cue has no region. Null until a cue has a region
+
+    // Line column, indexed by line
+    private int lineCount = 0;
+    private int[] firstRuns = new int[INITIAL_CAPACITY + 1]; // Index of the first text, next line gives the end
+
+    // Text columns, indexed by text
+    private int runCount = 0;
+    private int[] runStarts = new int[INITIAL_CAPACITY]; // Index of the first char of the text
+    private int[] runEnds = new int[INITIAL_CAPACITY];
+    private int[] runStyles; // Index of the style, -1 for a plain text. Null until a text has a style
+
+    // Chars of the cues
+    private byte[] latin1Chars = new byte[INITIAL_CAPACITY * 32]; // Chars while they all fit in ISO-8859-1
+    private char[] chars; // Chars once one does not fit in ISO-8859-1
+    private int charCount = 0;
+
+    private List<SubtitleStyle> styles = new ArrayList<>();
+    private Map<SubtitleStyle, Integer> styleIndexes = new IdentityHashMap<>(); // Interned style to index
+    private List<SubtitleRegion> regionTable = new ArrayList<>();
+    private Map<SubtitleRegion, Integer> regionIndexes = new HashMap<>();
+
+    public CompactSubtitleObject() {
+    }
+
+    /**
+     * Copy properties and cues of a subtitle object
+     */
+    public CompactSubtitleObject(SubtitleObject subtitleObject) {
+        this.properties.putAll(subtitleObject.getProperties());
+
+        for (SubtitleCue cue : subtitleObject.getCues()) {
+            this.addCue(cue);
+        }
+    }
+
+    /**
+     * Copy a cue at the end of the columns
+     */
+    public void addCue(SubtitleCue cue) {
+        this.ensureCueCapacity(this.cueCount + 1);
+        int index = this.cueCount;
+        this.startMillis[index] = cue.getStartMillis();
+        this.endMillis[index] = cue.getEndMillis();
+
+        // Id
+        String id = cue.getId();
+
+        if (id != null) {
+            this.appendChars(id);
+        }
+
+        this.textStarts[index] = (id == null) ? -1 - this.charCount : this.charCount;
+
+        // Region
+        SubtitleRegion region = (cue instanceof SubtitleRegionCue) ? ((SubtitleRegionCue) cue).getRegion() : null;
+
+        if (region != null && this.regions == null) {
+            this.regions = new int[this.startMillis.length];
+            Arrays.fill(this.regions, -1);
+        }
+
+        if (this.regions != null) {
+            this.regions[index] = (region == null) ? -1 : this.indexOfRegion(region);
+        }
+
+        // Lines and texts
+        boolean firstText = true;
+
+        for (SubtitleLine line : cue.getLines()) {
+            this.ensureLineCapacity(this.lineCount + 1);
+            this.firstRuns[this.lineCount] = this.runCount;
+            List<SubtitleText> texts = line.getTexts();
+
+            if (texts.isEmpty() && !firstText) {
+                // An empty line is an empty string between two line breaks
+                this.appendChar('\n');
+            }
+
+            for (SubtitleText text : texts) {
+                if (!firstText) {
+                    this.appendChar('\n');
+                }
+
+                this.ensureRunCapacity(this.runCount + 1);
+                this.runStarts[this.runCount] = this.charCount;
+                this.appendChars(text.toString());
+                this.runEnds[this.runCount] = this.charCount;
+                this.setRunStyle(this.runCount, (text instanceof SubtitleStyled) ? ((SubtitleStyled) text).getStyle() : null);
+                this.runCount++;
+                firstText = false;
+            }
+
+            firstText = false;
+            this.lineCount++;
+        }
+
+        this.firstRuns[this.lineCount] = this.runCount;
+        this.cueCount++;
+        this.firstLines[this.cueCount] = this.lineCount;
+        this.cueStarts[this.cueCount] = this.charCount;
+    }
+
+    /**
+     * Reduce arrays to their content, once every cue has been added
+     */
+    public void trimToSize() {
+        int cues = this.cueCount;
+        this.startMillis = Arrays.copyOf(this.startMillis, cues);
+        this.endMillis = Arrays.copyOf(this.endMillis, cues);
+        this.cueStarts = Arrays.copyOf(this.cueStarts, cues + 1);
+        this.textStarts = Arrays.copyOf(this.textStarts, cues);
+        this.firstLines = Arrays.copyOf(this.firstLines, cues + 1);
+        this.firstRuns = Arrays.copyOf(this.firstRuns, this.lineCount + 1);
+        this.runStarts = Arrays.copyOf(this.runStarts, this.runCount);
+        this.runEnds = Arrays.copyOf(this.runEnds, this.runCount);
+
+        if (this.regions != null) {
+            this.regions = Arrays.copyOf(this.regions, cues);
+        }
+
+        if (this.runStyles != null) {
+            this.runStyles = Arrays.copyOf(this.runStyles, this.runCount);
+        }
+
+        if (this.chars == null) {
+            this.latin1Chars = Arrays.copyOf(this.latin1Chars, this.charCount);
+        } else {
+            this.chars = Arrays.copyOf(this.chars, this.charCount);
+        }
+    }
+
+    @Override
+    public boolean hasProperty(Property property) {
+        return (this.getProperty(property) != null);
+    }
+
+    @Override
+    public Object getProperty(Property property) {
+        return this.properties.get(property);
+    }
+
+    @Override
+    public Map<Property, Object> getProperties() {
+        return this.properties;
+    }
+
+    public void setProperty(Property property, Object value) {
+        this.properties.put(property, value);
+    }
+
+    /**
+     * @return read only list of cue views
+     */
+    @Override
+    public List<SubtitleCue> getCues() {
+        return this.cues;
+    }
+
+    private int indexOfStyle(SubtitleStyle style) {
+        SubtitleStyle interned = style.intern();
+        Integer index = this.styleIndexes.get(interned);
+
+        if (index == null) {
+            index = this.styles.size();
+            this.styles.add(interned);
+            this.styleIndexes.put(interned, index);
+        }
+
+        return index;
+    }
+
+    private int indexOfRegion(SubtitleRegion region) {
+        Integer index = this.regionIndexes.get(region);
+
+        if (index == null) {
+            // Copy the region, the cue region may be modified afterwards
+            SubtitleRegion copy = new SubtitleRegion(region);
+            index = this.regionTable.size();
+            this.regionTable.add(copy);
+            this.regionIndexes.put(copy, index);
+        }
+
+        return index;
+    }
+
+    private void setRunStyle(int run, SubtitleStyle style) {
+        if (style != null && this.runStyles == null) {
+            this.runStyles = new int[this.runStarts.length];
+            Arrays.fill(this.runStyles, -1);
+        }
+
+        if (this.runStyles != null) {
+            this.runStyles[run] = (style == null) ? -1 : this.indexOfStyle(style);
+        }
+    }
+
+    private void appendChar(char c) {
+        this.ensureCharCapacity(this.charCount + 1);
+
+        if (this.chars == null && c > 0xff) {
+            this.inflate();
+        }
+
+        if (this.chars == null) {
+            this.latin1Chars[this.charCount++] = (byte) c;
+        } else {
+            this.chars[this.charCount++] = c;
+        }
+    }
+
+    private void appendChars(String s) {
+        int length = s.length();
+        this.ensureCharCapacity(this.charCount + length);
+
+        if (this.chars == null) {
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+
+                if (c > 0xff) {
+                    // Copy the rest of the string as chars
+                    this.inflate();
+                    s.getChars(i, length, this.chars, this.charCount);
+                    this.charCount += length - i;
+                    return;
+                }
+
+                this.latin1Chars[this.charCount++] = (byte) c;
+            }
+
+            return;
+        }
+
+        s.getChars(0, length, this.chars, this.charCount);
+        this.charCount += length;
+    }
+
+    /**
+     * Switch from ISO-8859-1 bytes to chars
+     */
+    private void inflate() {
+        this.chars = new char[this.latin1Chars.length];
+
+        for (int i = 0; i < this.charCount; i++) {
+            this.chars[i] = (char) (this.latin1Chars[i] & 0xff);
+        }
+
+        this.latin1Chars = null;
+    }
+
+    private String newString(int start, int end) {
+        if (this.chars == null) {
+            return new String(this.latin1Chars, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        return new String(this.chars, start, end - start);
+    }
+
+    private void ensureCharCapacity(int capacity) {
+        int length = (this.chars == null) ? this.latin1Chars.length : this.chars.length;
+
+        if (capacity <= length) {
+            return;
+        }
+
+        length = Math.max(capacity, length * 2);
+
+        if (this.chars == null) {
+            this.latin1Chars = Arrays.copyOf(this.latin1Chars, length);
+        } else {
+            this.chars = Arrays.copyOf(this.chars, length);
+        }
+    }
+
+    private void ensureCueCapacity(int capacity) {
+        if (capacity <= this.startMillis.length) {
+            return;
+        }
+
+        int length = Math.max(capacity, this.startMillis.length * 2);
+        this.startMillis = Arrays.copyOf(this.startMillis, length);
+        this.endMillis = Arrays.copyOf(this.endMillis, length);
+        this.cueStarts = Arrays.copyOf(this.cueStarts, length + 1);
+        this.textStarts = Arrays.copyOf(this.textStarts, length);
+        this.firstLines = Arrays.copyOf(this.firstLines, length + 1);
+
+        if (this.regions != null) {
+            int previous = this.regions.length;
+            this.regions = Arrays.copyOf(this.regions, length);
+            Arrays.fill(this.regions, previous, length, -1);
+        }
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (capacity + 1 > this.firstRuns.length) {
+            this.firstRuns = Arrays.copyOf(this.firstRuns, Math.max(capacity + 1, this.firstRuns.length * 2));
+        }
+    }
+
+    private void ensureRunCapacity(int capacity) {
+        if (capacity <= this.runStarts.length) {
+            return;
+        }
+
+        int length = Math.max(capacity, this.runStarts.length * 2);
+        this.runStarts = Arrays.copyOf(this.runStarts, length);
+        this.runEnds = Arrays.copyOf(this.runEnds, length);
+
+        if (this.runStyles != null) {
+            int previous = this.runStyles.length;
+            this.runStyles = Arrays.copyOf(this.runStyles, length);
+            Arrays.fill(this.runStyles, previous, length, -1);
+        }
+    }
+
+    /**
+     * Cues of the columns, a view is created by get
+     */
+    private class CueList extends AbstractList<SubtitleCue> {
+        @Override
+        public SubtitleCue get(int index) {
+            if (index < 0 || index >= cueCount) {
+                throw new IndexOutOfBoundsException(String.format("Cue index: %d, cues: %d", index, cueCount));
+            }
+
+            return new CompactCue(index);
+        }
+
+        @Override
+        public int size() {
+            return cueCount;
+        }
+    }
+
+    /**
+     * View of a cue of the columns
+     */
+    private class CompactCue implements SubtitleCue, SubtitleRegionCue {
+        private final int index;
+
+        CompactCue(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getId() {
+            int textStart = textStarts[this.index];
+            return (textStart < 0) ? null : newString(cueStarts[this.index], textStart);
+        }
+
+        @Override
+        public SubtitleTimeCode getStartTime() {
+            return new SubtitleTimeCode(startMillis[this.index]);
+        }
+
+        @Override
+        public SubtitleTimeCode getEndTime() {
+            return new SubtitleTimeCode(endMillis[this.index]);
+        }
+
+        @Override
+        public long getStartMillis() {
+            return startMillis[this.index];
+        }
+
+        @Override
+        public long getEndMillis() {
+            return endMillis[this.index];
+        }
+
+        @Override
+        public List<SubtitleLine> getLines() {
+            final int firstLine = firstLines[this.index];
+            final int lineEnd = firstLines[this.index + 1];
+
+            return new AbstractList<SubtitleLine>() {
+                @Override
+                public SubtitleLine get(int index) {
+                    if (index < 0 || firstLine + index >= lineEnd) {
+                        throw new IndexOutOfBoundsException(String.format("Line index: %d", index));
+                    }
+
+                    return new SubtitleTextLine(new RunList(firstLine + index));
+                }
+
+                @Override
+                public int size() {
+                    return lineEnd - firstLine;
+                }
+            };
+        }
+
+        @Override
+        public String getText() {
+            int textStart = textStarts[this.index];
+            return newString((textStart < 0) ? -1 - textStart : textStart, cueStarts[this.index + 1]);
+        }
+
+        @Override
+        public SubtitleRegion getRegion() {
+            int region = (regions == null) ? -1 : regions[this.index];
+            return (region < 0) ? null : regionTable.get(region);
+        }
+
+        @Override
+        public String toString() {
+            return this.getText();
+        }
+    }
+
+    /**
+     * Texts of a line, created by get
+     */
+    private class RunList extends AbstractList<SubtitleText> {
+        private final int firstRun;
+        private final int runEnd;
+
+        RunList(int line) {
+            this.firstRun = firstRuns[line];
+            this.runEnd = firstRuns[line + 1];
+        }
+
+        @Override
+        public SubtitleText get(int index) {
+            int run = this.firstRun + index;
+
+            if (index < 0 || run >= this.runEnd) {
+                throw new IndexOutOfBoundsException(String.format("Text index: %d", index));
+            }
+
+            String text = newString(runStarts[run], runEnds[run]);
+            int style = (runStyles == null) ? -1 : runStyles[run];
+            return (style < 0) ? new SubtitlePlainText(text) : new SubtitleStyledText(text, styles.get(style));
+        }
+
+        @Override
+        public int size() {
+            return this.runEnd - this.firstRun;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.hls;
+
+import fr.noop.subtitle.util.TextEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HLS media playlist listing subtitle segments
+ *
+ * For low latency HLS, segments are made of partial segments, listed before the segment is complete.
+ * Partial segments are only listed for the last segments.
+ */
+public class HlsPlaylist {
+    public enum Type {
+        VOD,
+        EVENT;
+    }
+
+    private final static int PART_SEGMENTS = 2; // Number of complete segments listed with their partial segments
+
+    /**
+     * Partial segment of the playlist
+     */
+    public static class Part {
+        private String uri;
+        private long durationMillis;
+
+        public Part(String uri, long durationMillis) {
+            this.uri = uri;
+            this.durationMillis = durationMillis;
+        }
+
+        public String getUri() {
+            return this.uri;
+        }
+
+        public long getDurationMillis() {
+            return this.durationMillis;
+        }
+    }
+
+    /**
+     * Segment of the playlist
+     */
+    public static class Segment {
+        private String uri;
+        private long durationMillis;
+        private List<Part> parts;
+
+        public Segment(String uri, long durationMillis, List<Part> parts) {
+            this.uri = uri;
+            this.durationMillis = durationMillis;
+            this.parts = parts;
+        }
+
+        public String getUri() {
+            return this.uri;
+        }
+
+        public long getDurationMillis() {
+            return this.durationMillis;
+        }
+
+        public List<Part> getParts() {
+            return Collections.unmodifiableList(this.parts);
+        }
+    }
+
+    private long targetDurationMillis;
+    private long partTargetMillis = 0; // 0 if segments have no partial segments
+    private Type type; // Null if segments can be removed from the playlist
+    private long mediaSequence = 0; // Sequence number of the first segment
+    private List<Segment> segments = new ArrayList<>();
+    private boolean ended = false; // No segment will be added
+    private List<Part> openParts = new ArrayList<>(); // Partial segments of the next segment
+    private String preloadHintUri; // Next partial segment, null if it is not announced
+
+    public HlsPlaylist(long targetDurationMillis, Type type) {
+        this.targetDurationMillis = targetDurationMillis;
+        this.type = type;
+    }
+
+    public long getTargetDurationMillis() {
+        return this.targetDurationMillis;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public long getPartTargetMillis() {
+        return this.partTargetMillis;
+    }
+
+    /**
+     * @param partTargetMillis Max duration of partial segments, 0 if segments have no partial segments
+     */
+    public void setPartTargetMillis(long partTargetMillis) {
+        this.partTargetMillis = partTargetMillis;
+    }
+
+    public long getMediaSequence() {
+        return this.mediaSequence;
+    }
+
+    public void setMediaSequence(long mediaSequence) {
+        this.mediaSequence = mediaSequence;
+    }
+
+    public List<Segment> getSegments() {
+        return Collections.unmodifiableList(this.segments);
+    }
+
+    /**
+     * Add a segment, made of the partial segments added since the previous segment
+     */
+    public void addSegment(String uri, long durationMillis) {
+        this.segments.add(new Segment(uri, durationMillis, this.openParts));
+        this.openParts = new ArrayList<>();
+    }
+
+    /**
+     * Add a partial segment of the next segment
+     */
+    public void addPart(String uri, long durationMillis) {
+        this.openParts.add(new Part(uri, durationMillis));
+    }
+
+    /**
+     * @param preloadHintUri Next partial segment, announced before it is written, null to announce none
+     */
+    public void setPreloadHintUri(String preloadHintUri) {
+        this.preloadHintUri = preloadHintUri;
+    }
+
+    /**
+     * Remove the first segment, the media sequence is increased
+     */
+    public Segment removeFirstSegment() {
+        this.mediaSequence++;
+        return this.segments.remove(0);
+    }
+
+    public boolean isEnded() {
+        return this.ended;
+    }
+
+    public void setEnded(boolean ended) {
+        this.ended = ended;
+    }
+
+    public void write(OutputStream os) throws IOException {
+        TextEncoder encoder = TextEncoder.open(os, "utf-8");
+        boolean lowLatency = this.partTargetMillis > 0;
+        encoder.write("#EXTM3U\n");
+        encoder.write(lowLatency ? "#EXT-X-VERSION:6\n" : "#EXT-X-VERSION:3\n");
+
+        // Target duration is a number of seconds, no segment may last longer
+        encoder.write("#EXT-X-TARGETDURATION:").write((this.targetDurationMillis + 999) / 1000).write('\n');
+
+        if (lowLatency) {
+            // Players stay at least 3 partial segments behind the end of the playlist
+            encoder.write("#EXT-X-SERVER-CONTROL:PART-HOLD-BACK=");
+            writeSeconds(encoder, 3 * this.partTargetMillis);
+            encoder.write("\n#EXT-X-PART-INF:PART-TARGET=");
+            writeSeconds(encoder, this.partTargetMillis);
+            encoder.write('\n');
+        }
+
+        encoder.write("#EXT-X-MEDIA-SEQUENCE:").write(this.mediaSequence).write('\n');
+
+        if (this.type != null) {
+            encoder.write("#EXT-X-PLAYLIST-TYPE:").write(this.type.name()).write('\n');
+        }
+
+        for (int i = 0; i < this.segments.size(); i++) {
+            Segment segment = this.segments.get(i);
+
+            if (i >= this.segments.size() - PART_SEGMENTS) {
+                writeParts(encoder, segment.parts);
+            }
+
+            encoder.write("#EXTINF:");
+            writeSeconds(encoder, segment.getDurationMillis());
+            encoder.write(",\n").write(segment.getUri()).write('\n');
+        }
+
+        writeParts(encoder, this.openParts);
+
+        if (this.preloadHintUri != null && !this.ended) {
+            encoder.write("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"").write(this.preloadHintUri).write("\"\n");
+        }
+
+        if (this.ended) {
+            encoder.write("#EXT-X-ENDLIST\n");
+        }
+
+        encoder.end();
+    }
+
+    private static void writeParts(TextEncoder encoder, List<Part> parts) throws IOException {
+        for (Part part : parts) {
+            encoder.write("#EXT-X-PART:DURATION=");
+            writeSeconds(encoder, part.getDurationMillis());
+            encoder.write(",URI=\"").write(part.getUri()).write("\"\n");
+        }
+    }
+
+    /**
+     * Write a duration in seconds with 3 decimals: 6.000
+     */
+    static void writeSeconds(TextEncoder encoder, long millis) throws IOException {
+        encoder.write(millis / 1000).write('.');
+        long decimals = millis % 1000;
+
+        if (decimals < 100) {
+            encoder.write('0');
+        }
+
+        if (decimals < 10) {
+            encoder.write('0');
+        }
+
+        encoder.write(decimals);
+    }
+}
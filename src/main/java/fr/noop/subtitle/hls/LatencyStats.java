@@ -0,0 +1,70 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.hls;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latencies from the arrival of cues to the writing of the first file containing them
+ * Percentiles are computed on the last latencies.
+ */
+public class LatencyStats {
+    private final static int WINDOW_SIZE = 1024;
+
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+    private long[] window = new long[WINDOW_SIZE]; // Last latencies, in a ring
+
+    public synchronized void record(long nanos) {
+        this.window[(int) (this.count % WINDOW_SIZE)] = nanos;
+        this.count++;
+        this.totalNanos += nanos;
+        this.maxNanos = Math.max(this.maxNanos, nanos);
+    }
+
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    public synchronized long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    public synchronized long getMeanNanos() {
+        return (this.count == 0) ? 0 : this.totalNanos / this.count;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100
+     * @return Percentile of the last 1024 latencies
+     */
+    public synchronized long getPercentileNanos(double percentile) {
+        int size = (int) Math.min(this.count, WINDOW_SIZE);
+
+        if (size == 0) {
+            return 0;
+        }
+
+        long[] latencies = Arrays.copyOf(this.window, size);
+        Arrays.sort(latencies);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return latencies[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d cues, mean %.1f ms, p99 %.1f ms, max %.1f ms",
+                this.getCount(), this.getMeanNanos() / 1e6, this.getPercentileNanos(99) / 1e6,
+                this.getMaxNanos() / 1e6);
+    }
+}
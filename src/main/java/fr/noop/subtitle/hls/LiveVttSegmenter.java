@@ -0,0 +1,405 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.hls;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write cues of a live feed as rolling WebVTT segments of an HLS stream, optionally low latency HLS
+ *
+ * Segment n covers the media times from n * target duration to (n + 1) * target duration,
+ * cue times are media times. With a part duration, segments are split into partial segments
+ * which are written and listed in the playlist as soon as they are closed.
+ *
+ * Cues arrive in start time order. Parts and segments are closed by a watermark, the max of:
+ * - the start of the last cue, no later cue can start before it
+ * - the media time estimated from the wall clock, minus the max cue delay
+ * The media time is estimated from the cue which arrived the soonest after its start,
+ * or counted from begin until a cue arrives.
+ * A cue arriving after the part containing its start is closed is written in the next part,
+ * it is dropped if it ended before.
+ *
+ * The latency from the arrival of each cue to the writing of the first file containing it is recorded.
+ * For cues arriving in order, it is bounded by the part duration (or the segment duration)
+ * plus the max cue delay.
+ */
+public class LiveVttSegmenter implements SubtitleCueWriter {
+    private final static Object END_OF_FEED = new Object();
+
+    private Path directory;
+    private long targetDurationMillis;
+    private long partDurationMillis; // 0 if segments have no partial segments
+    private String charset = "utf-8";
+    private String segmentNamePattern = "segment%d.vtt";
+    private String partNamePattern = "segment%d.%d.vtt"; // Formatted with the segment and part indexes
+    private String playlistName = "playlist.m3u8";
+    private long mpegTs = 0; // MPEG-2 timestamp of the cue time 0
+    private int windowSize = 0; // Number of segments listed in the playlist, 0 to list every segment
+    private long maxCueDelayMillis = 500;
+
+    private HlsPlaylist playlist;
+    private long beginMillis; // Wall clock at begin
+    private long offsetMillis; // Wall clock minus media time, Long.MAX_VALUE until a cue arrives
+    private long lastStartMillis; // Start time of the last cue
+    private long maxEndMillis; // End time of the cues written so far
+    private long closedMillis; // End of the last closed part or segment
+    private int segmentIndex; // Index of the segment being built
+    private int partIndex; // Index of the next part of the segment being built
+    private int droppedCues;
+    private List<SubtitleCue> openCues = new ArrayList<>(); // Cues which may belong to the segment being built or next ones
+    private Map<SubtitleCue, Long> arrivalNanos = new IdentityHashMap<>(); // Arrival of the cues not written yet
+    private LatencyStats latencies = new LatencyStats();
+
+    /**
+     * @param partDurationMillis Duration of partial segments, 0 to only write complete segments
+     */
+    public LiveVttSegmenter(Path directory, long targetDurationMillis, long partDurationMillis) {
+        if (targetDurationMillis <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid target duration: %d ms", targetDurationMillis));
+        }
+
+        if (partDurationMillis < 0 || partDurationMillis > targetDurationMillis) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid part duration: %d ms", partDurationMillis));
+        }
+
+        this.directory = directory;
+        this.targetDurationMillis = targetDurationMillis;
+        this.partDurationMillis = partDurationMillis;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * @param segmentNamePattern File name of a segment, formatted with the segment index, ie: segment%d.vtt
+     */
+    public void setSegmentNamePattern(String segmentNamePattern) {
+        this.segmentNamePattern = segmentNamePattern;
+    }
+
+    /**
+     * @param partNamePattern File name of a part, formatted with the segment and part indexes, ie: segment%d.%d.vtt
+     */
+    public void setPartNamePattern(String partNamePattern) {
+        this.partNamePattern = partNamePattern;
+    }
+
+    public void setPlaylistName(String playlistName) {
+        this.playlistName = playlistName;
+    }
+
+    /**
+     * @param mpegTs MPEG-2 timestamp of the video matching the cue time 0, in 90 kHz units
+     */
+    public void setMpegTs(long mpegTs) {
+        this.mpegTs = mpegTs;
+    }
+
+    /**
+     * @param windowSize Number of segments listed in the playlist, 0 to list every segment
+     *                   Files of the segments removed from the playlist are kept
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @param maxCueDelayMillis Time a cue may arrive later than the other cues, relative to its start
+     */
+    public void setMaxCueDelayMillis(long maxCueDelayMillis) {
+        this.maxCueDelayMillis = maxCueDelayMillis;
+    }
+
+    public HlsPlaylist getPlaylist() {
+        return this.playlist;
+    }
+
+    public LatencyStats getLatencies() {
+        return this.latencies;
+    }
+
+    /**
+     * @return Number of cues which arrived after the end of their last segment or part was written
+     */
+    public int getDroppedCues() {
+        return this.droppedCues;
+    }
+
+    /**
+     * Write the cues of a reader until its end, closing segments while waiting for cues
+     * Cues are read on another thread
+     */
+    public void run(final SubtitleCueReader reader) throws IOException, SubtitleParsingException {
+        this.begin(reader.getProperties());
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        Thread readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (reader.hasNext()) {
+                        queue.add(reader.next());
+                    }
+
+                    queue.add(END_OF_FEED);
+                } catch (Exception e) {
+                    queue.add(e);
+                }
+            }
+        }, "subtitle-live-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        long tickMillis = Math.max(10, ((this.partDurationMillis > 0) ?
+                this.partDurationMillis : this.targetDurationMillis) / 10);
+
+        try {
+            while (true) {
+                Object item = queue.poll(tickMillis, TimeUnit.MILLISECONDS);
+
+                if (item == null) {
+                    this.advance();
+                } else if (item == END_OF_FEED) {
+                    break;
+                } else if (item instanceof IOException) {
+                    throw (IOException) item;
+                } else if (item instanceof SubtitleParsingException) {
+                    throw (SubtitleParsingException) item;
+                } else if (item instanceof Exception) {
+                    throw new IOException(String.format("Unable to read cues: %s", item), (Exception) item);
+                } else {
+                    this.write((SubtitleCue) item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for cues");
+        }
+
+        this.end();
+    }
+
+    @Override
+    public void begin(Map<SubtitleObject.Property, Object> properties) throws IOException {
+        Files.createDirectories(this.directory);
+        this.playlist = new HlsPlaylist(this.targetDurationMillis,
+                (this.windowSize > 0) ? null : HlsPlaylist.Type.EVENT);
+        this.playlist.setPartTargetMillis(this.partDurationMillis);
+        this.beginMillis = this.currentTimeMillis();
+        this.offsetMillis = Long.MAX_VALUE;
+        this.lastStartMillis = Long.MIN_VALUE;
+        this.maxEndMillis = 0;
+        this.closedMillis = 0;
+        this.segmentIndex = 0;
+        this.partIndex = 0;
+        this.droppedCues = 0;
+        this.openCues.clear();
+        this.arrivalNanos.clear();
+        this.updatePreloadHint();
+        this.writePlaylist();
+    }
+
+    /**
+     * Add a cue, then close the parts and segments ending before the watermark
+     */
+    @Override
+    public void write(SubtitleCue cue) throws IOException {
+        long now = this.currentTimeMillis();
+        long startMillis = cue.getStartMillis();
+        long endMillis = cue.getEndMillis();
+        this.offsetMillis = Math.min(this.offsetMillis, now - startMillis);
+        this.lastStartMillis = Math.max(this.lastStartMillis, startMillis);
+
+        if (endMillis <= this.closedMillis && startMillis < this.closedMillis) {
+            // Every file the cue belongs to is written
+            this.droppedCues++;
+        } else {
+            this.openCues.add(cue);
+            this.arrivalNanos.put(cue, System.nanoTime());
+            this.maxEndMillis = Math.max(this.maxEndMillis, endMillis);
+        }
+
+        this.advance(now);
+    }
+
+    /**
+     * Close the parts and segments ending before the watermark of the wall clock
+     */
+    public void advance() throws IOException {
+        this.advance(this.currentTimeMillis());
+    }
+
+    private void advance(long now) throws IOException {
+        long offsetMillis = (this.offsetMillis == Long.MAX_VALUE) ? this.beginMillis : this.offsetMillis;
+        long watermark = Math.max(this.lastStartMillis, now - offsetMillis - this.maxCueDelayMillis);
+        boolean closed = false;
+
+        while (this.getNextClosedMillis() <= watermark) {
+            this.closeNext();
+            closed = true;
+        }
+
+        if (closed) {
+            this.writePlaylist();
+        }
+    }
+
+    /**
+     * Close the parts until the end of the last cue and of its segment, and end the playlist
+     */
+    @Override
+    public void end() throws IOException {
+        // There is at least one segment
+        while (this.closedMillis < this.maxEndMillis || this.partIndex > 0 || this.segmentIndex == 0) {
+            this.closeNext();
+        }
+
+        this.playlist.setEnded(true);
+        this.writePlaylist();
+    }
+
+    /**
+     * Closed parts and segments are already written, the playlist is not ended
+     */
+    @Override
+    public void abort() {
+    }
+
+    /**
+     * Files are written when they are closed
+     */
+    @Override
+    public void flush() throws IOException {
+    }
+
+    /**
+     * @return Wall clock in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private long getSegmentEndMillis() {
+        return (this.segmentIndex + 1) * this.targetDurationMillis;
+    }
+
+    /**
+     * @return End of the next part, or of the segment if there are no parts
+     */
+    private long getNextClosedMillis() {
+        if (this.partDurationMillis == 0) {
+            return this.getSegmentEndMillis();
+        }
+
+        return Math.min(this.closedMillis + this.partDurationMillis, this.getSegmentEndMillis());
+    }
+
+    /**
+     * Write the next part, and the segment if it is complete
+     */
+    private void closeNext() throws IOException {
+        long startMillis = this.closedMillis;
+        long endMillis = this.getNextClosedMillis();
+        long segmentEndMillis = this.getSegmentEndMillis();
+
+        if (this.partDurationMillis > 0) {
+            String name = String.format(this.partNamePattern, this.segmentIndex, this.partIndex);
+            this.writeFile(name, startMillis, endMillis);
+            this.playlist.addPart(name, endMillis - startMillis);
+            this.partIndex++;
+        }
+
+        this.closedMillis = endMillis;
+
+        if (endMillis == segmentEndMillis) {
+            String name = String.format(this.segmentNamePattern, this.segmentIndex);
+            this.writeFile(name, segmentEndMillis - this.targetDurationMillis, segmentEndMillis);
+            this.playlist.addSegment(name, this.targetDurationMillis);
+
+            // Remove cues ending in the segment
+            Iterator<SubtitleCue> iterator = this.openCues.iterator();
+
+            while (iterator.hasNext()) {
+                SubtitleCue cue = iterator.next();
+
+                if (cue.getEndMillis() <= segmentEndMillis && cue.getStartMillis() < segmentEndMillis) {
+                    iterator.remove();
+                }
+            }
+
+            if (this.windowSize > 0 && this.playlist.getSegments().size() > this.windowSize) {
+                this.playlist.removeFirstSegment();
+            }
+
+            this.segmentIndex++;
+            this.partIndex = 0;
+        }
+
+        this.updatePreloadHint();
+    }
+
+    /**
+     * Write the cues overlapping the times from startMillis to endMillis
+     */
+    private void writeFile(String name, long startMillis, long endMillis) throws IOException {
+        List<SubtitleCue> cues = new ArrayList<>();
+
+        for (SubtitleCue cue : this.openCues) {
+            long cueStartMillis = cue.getStartMillis();
+            long cueEndMillis = cue.getEndMillis();
+
+            // A cue without duration belongs to the file it starts in
+            if (cueStartMillis < endMillis && (cueEndMillis > startMillis || cueStartMillis >= startMillis)) {
+                cues.add(cue);
+            }
+        }
+
+        VttSegmenter.writeSegment(this.directory.resolve(name), cues, this.charset, this.mpegTs);
+        long now = System.nanoTime();
+
+        for (SubtitleCue cue : cues) {
+            Long arrival = this.arrivalNanos.remove(cue);
+
+            if (arrival != null) {
+                this.latencies.record(now - arrival);
+            }
+        }
+    }
+
+    private void updatePreloadHint() {
+        if (this.partDurationMillis > 0) {
+            this.playlist.setPreloadHintUri(String.format(this.partNamePattern, this.segmentIndex, this.partIndex));
+        }
+    }
+
+    private void writePlaylist() throws IOException {
+        VttSegmenter.writePlaylist(this.directory.resolve(this.playlistName), this.playlist);
+    }
+}
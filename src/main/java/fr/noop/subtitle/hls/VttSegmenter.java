@@ -0,0 +1,341 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.hls;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.util.SubtitleCueIndex;
+import fr.noop.subtitle.vtt.VttCueWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Split cues into numbered WebVTT segments of an HLS stream, and write their media playlist
+ *
+ * Segment n covers the times from n * target duration to (n + 1) * target duration.
+ * A cue is written in every segment it overlaps, with its own times:
+ * cues spanning a segment boundary are duplicated, players merge identical cues.
+ * Segments start with an X-TIMESTAMP-MAP header mapping the cue time 0 to an MPEG-2 timestamp.
+ *
+ * Cues are given in start time order, in a single pass. A segment is built once a cue starts after its end,
+ * then written on a pool of threads while the following cues are read.
+ * Segments and playlist are written to a temporary file which is then renamed.
+ */
+public class VttSegmenter implements SubtitleCueWriter {
+    private final static int MAX_PENDING_SEGMENTS = 64; // Segments built but not written yet
+
+    private Path directory;
+    private long targetDurationMillis;
+    private String charset = "utf-8";
+    private String segmentNamePattern = "segment%d.vtt";
+    private String playlistName = "playlist.m3u8";
+    private long mpegTs = 0; // MPEG-2 timestamp of the cue time 0
+    private ExecutorService executor;
+    private boolean ownExecutor = false; // Executor created by the segmenter, shut down at the end
+
+    private HlsPlaylist playlist;
+    private int segmentIndex; // Index of the first segment not built yet
+    private long lastStartMillis; // Start time of the last written cue
+    private long maxEndMillis; // End time of the cues written so far
+    private List<SubtitleCue> openCues = new ArrayList<>(); // Cues which may belong to the next segments
+    private Deque<Future<Void>> pendingSegments = new ArrayDeque<>();
+
+    public VttSegmenter(Path directory, long targetDurationMillis) {
+        if (targetDurationMillis <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid target duration: %d ms", targetDurationMillis));
+        }
+
+        this.directory = directory;
+        this.targetDurationMillis = targetDurationMillis;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * @param segmentNamePattern File name of a segment, formatted with the segment index, ie: segment%d.vtt
+     */
+    public void setSegmentNamePattern(String segmentNamePattern) {
+        this.segmentNamePattern = segmentNamePattern;
+    }
+
+    public void setPlaylistName(String playlistName) {
+        this.playlistName = playlistName;
+    }
+
+    /**
+     * @param mpegTs MPEG-2 timestamp of the video matching the cue time 0, in 90 kHz units
+     */
+    public void setMpegTs(long mpegTs) {
+        this.mpegTs = mpegTs;
+    }
+
+    /**
+     * @param executor Threads writing the segments, by default a pool of one thread per processor
+     *                 is created and shut down at the end
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return Playlist of the segments built so far
+     */
+    public HlsPlaylist getPlaylist() {
+        return this.playlist;
+    }
+
+    /**
+     * Write the segments and the playlist of a subtitle object, its cues are sorted by start time
+     */
+    public void segment(SubtitleObject subtitleObject) throws IOException {
+        SubtitleCueIndex index = new SubtitleCueIndex(subtitleObject);
+        boolean ended = false;
+        this.begin(subtitleObject.getProperties());
+
+        try {
+            for (int i = 0; i < index.size(); i++) {
+                this.write(index.getCue(i));
+            }
+
+            this.end();
+            ended = true;
+        } finally {
+            if (!ended) {
+                // Cancel the pending segments, shut down the executor if it was created by begin
+                this.abort();
+            }
+        }
+    }
+
+    @Override
+    public void begin(Map<SubtitleObject.Property, Object> properties) throws IOException {
+        Files.createDirectories(this.directory);
+        this.playlist = new HlsPlaylist(this.targetDurationMillis, HlsPlaylist.Type.VOD);
+        this.segmentIndex = 0;
+        this.lastStartMillis = Long.MIN_VALUE;
+        this.maxEndMillis = 0;
+        this.openCues.clear();
+
+        if (this.executor == null) {
+            this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            this.ownExecutor = true;
+        }
+    }
+
+    /**
+     * Add a cue, cues must be added in start time order
+     * Segments ending before the start of the cue are built
+     */
+    @Override
+    public void write(SubtitleCue cue) throws IOException {
+        long startMillis = cue.getStartMillis();
+
+        if (startMillis < this.lastStartMillis) {
+            throw new IOException(String.format(
+                    "Cue %s starting at %d ms is not sorted, previous cue starts at %d ms",
+                    cue.getId(), startMillis, this.lastStartMillis));
+        }
+
+        this.lastStartMillis = startMillis;
+
+        while (this.getSegmentEndMillis() <= startMillis) {
+            this.buildSegment(this.targetDurationMillis);
+        }
+
+        this.openCues.add(cue);
+        this.maxEndMillis = Math.max(this.maxEndMillis, cue.getEndMillis());
+    }
+
+    /**
+     * Build the remaining segments, wait for all segments to be written, then write the playlist
+     */
+    @Override
+    public void end() throws IOException {
+        try {
+            // Last segment ends with the last cue, there is at least one segment
+            do {
+                long startMillis = this.segmentIndex * this.targetDurationMillis;
+                long durationMillis = this.maxEndMillis - startMillis;
+                this.buildSegment((durationMillis > 0 && durationMillis < this.targetDurationMillis) ?
+                        durationMillis : this.targetDurationMillis);
+            } while (this.segmentIndex * this.targetDurationMillis < this.maxEndMillis);
+
+            this.waitPendingSegments(0);
+            this.playlist.setEnded(true);
+            writePlaylist(this.directory.resolve(this.playlistName), this.playlist);
+        } finally {
+            if (this.ownExecutor) {
+                this.executor.shutdownNow();
+                this.executor = null;
+                this.ownExecutor = false;
+            }
+        }
+    }
+
+    /**
+     * Cancel the segments not written yet, the playlist is not written
+     */
+    @Override
+    public void abort() {
+        for (Future<Void> pendingSegment : this.pendingSegments) {
+            pendingSegment.cancel(true);
+        }
+
+        this.pendingSegments.clear();
+
+        if (this.ownExecutor) {
+            this.executor.shutdownNow();
+            this.executor = null;
+            this.ownExecutor = false;
+        }
+    }
+
+    /**
+     * Wait for the segments built so far to be written
+     */
+    @Override
+    public void flush() throws IOException {
+        this.waitPendingSegments(0);
+    }
+
+    private long getSegmentEndMillis() {
+        return (this.segmentIndex + 1) * this.targetDurationMillis;
+    }
+
+    /**
+     * Collect the cues of the next segment and submit its writing
+     *
+     * @param durationMillis Duration of the segment in the playlist
+     */
+    private void buildSegment(long durationMillis) throws IOException {
+        long startMillis = this.segmentIndex * this.targetDurationMillis;
+        long endMillis = startMillis + this.targetDurationMillis;
+        List<SubtitleCue> cues = new ArrayList<>();
+        Iterator<SubtitleCue> iterator = this.openCues.iterator();
+
+        while (iterator.hasNext()) {
+            SubtitleCue cue = iterator.next();
+
+            // A cue without duration belongs to the segment it starts in
+            if (cue.getEndMillis() > startMillis || cue.getStartMillis() >= startMillis) {
+                cues.add(cue);
+            }
+
+            if (cue.getEndMillis() <= endMillis) {
+                iterator.remove();
+            }
+        }
+
+        String name = String.format(this.segmentNamePattern, this.segmentIndex);
+        this.playlist.addSegment(name, durationMillis);
+        this.segmentIndex++;
+        this.submit(this.directory.resolve(name), cues);
+    }
+
+    private void submit(final Path path, final List<SubtitleCue> cues) throws IOException {
+        this.waitPendingSegments(MAX_PENDING_SEGMENTS - 1);
+        this.pendingSegments.add(this.executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                writeSegment(path, cues, charset, mpegTs);
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * Write a segment with an X-TIMESTAMP-MAP header mapping the cue time 0 to mpegTs
+     */
+    static void writeSegment(Path path, List<SubtitleCue> cues, String charset, long mpegTs) throws IOException {
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmpPath))) {
+            VttCueWriter cueWriter = new VttCueWriter(os, charset);
+            cueWriter.setTimestampMap(mpegTs, 0);
+            cueWriter.begin(Collections.<SubtitleObject.Property, Object>emptyMap());
+
+            for (SubtitleCue cue : cues) {
+                cueWriter.write(cue);
+            }
+
+            cueWriter.end();
+        }
+
+        publish(tmpPath, path);
+    }
+
+    static void writePlaylist(Path path, HlsPlaylist playlist) throws IOException {
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmpPath))) {
+            playlist.write(os);
+        }
+
+        publish(tmpPath, path);
+    }
+
+    /**
+     * Wait until no more than this number of segments remain to be written
+     */
+    private void waitPendingSegments(int count) throws IOException {
+        while (this.pendingSegments.size() > count) {
+            try {
+                this.pendingSegments.peek().get();
+                this.pendingSegments.poll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing segments");
+            } catch (ExecutionException e) {
+                this.pendingSegments.poll();
+
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+
+                throw new IOException(String.format("Unable to write segment: %s", e.getCause()), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Replace the target file, readers never see a partially written file
+     */
+    static void publish(Path tmpPath, Path path) throws IOException {
+        try {
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -22,6 +22,17 @@ public interface SubtitleCue {
     public String getId();
     public SubtitleTimeCode getStartTime();
     public SubtitleTimeCode getEndTime();
+
+    /**
+     * @return Start time in milliseconds, without building a time code
+     */
+    public long getStartMillis();
+
+    /**
+     * @return End time in milliseconds, without building a time code
+     */
+    public long getEndMillis();
+
     public List<SubtitleLine> getLines();
     public String getText();
 }
@@ -0,0 +1,42 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull reader returning cues one by one while the input is read
+ *
+ * Only the cue being read is kept in memory: a cue is returned as soon as
+ * the end of the cue has been read from the input.
+ */
+public interface SubtitleCueReader extends Closeable {
+    /**
+     * @return properties of the subtitle known so far (title, frame rate...)
+     */
+    public Map<SubtitleObject.Property, Object> getProperties();
+
+    /**
+     * Read input until the next cue is complete
+     *
+     * @return true if there is another cue
+     */
+    public boolean hasNext() throws IOException, SubtitleParsingException;
+
+    /**
+     * @return the next cue
+     * @throws NoSuchElementException if there is no more cue
+     */
+    public SubtitleCue next() throws IOException, SubtitleParsingException;
+}
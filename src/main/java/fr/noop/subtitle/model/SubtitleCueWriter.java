@@ -0,0 +1,44 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.model;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writer encoding cues one by one
+ *
+ * Usage: begin, then write each cue, then end, or abort if reading the cues failed.
+ * Cues are not kept once written, call flush to push written cues to the output.
+ */
+public interface SubtitleCueWriter extends Flushable {
+    /**
+     * Write the header of the subtitle
+     *
+     * @param properties Subtitle properties (title, frame rate...)
+     */
+    public void begin(Map<SubtitleObject.Property, Object> properties) throws IOException;
+
+    public void write(SubtitleCue cue) throws IOException;
+
+    /**
+     * Write the end of the subtitle and flush the output
+     * The output stream is not closed
+     */
+    public void end() throws IOException;
+
+    /**
+     * Stop writing without ending the subtitle, and release the resources of the writer (temporary files, threads)
+     * The output is left incomplete and is not closed
+     */
+    public void abort();
+}
@@ -0,0 +1,48 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.model;
+
+import java.util.List;
+
+/**
+ * Subtitle format, creating the parsers and writers of its files
+ *
+ * Formats are discovered by {@link SubtitleFormatRegistry} with a ServiceLoader:
+ * implementations are listed in META-INF/services/fr.noop.subtitle.model.SubtitleFormat
+ * and must have a public constructor without arguments.
+ */
+public interface SubtitleFormat {
+    /**
+     * @return Name of the format, ie: srt
+     */
+    public String getName();
+
+    /**
+     * @return Extensions of the files of this format, without dot
+     */
+    public List<String> getExtensions();
+
+    public boolean canParse();
+
+    public boolean canWrite();
+
+    /**
+     * @param charset Charset of the input, ignored by formats defining their own
+     * @return A new parser, or null if the format can not be parsed
+     */
+    public SubtitleParser createParser(String charset);
+
+    /**
+     * @param charset Charset of the output, ignored by formats defining their own
+     * @return A new writer, or null if the format can not be written
+     */
+    public SubtitleWriter createWriter(String charset);
+}
@@ -0,0 +1,119 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Subtitle formats by file extension
+ *
+ * The registry is immutable once built, so it can be shared between threads.
+ * Parsers and writers are created by their format, without reflection.
+ */
+public class SubtitleFormatRegistry {
+    private List<SubtitleFormat> formats;
+    private Map<String, SubtitleFormat> formatsByExtension = new HashMap<>();
+
+    // Formats of the class path, loaded on first use
+    private static class DefaultRegistry {
+        private final static SubtitleFormatRegistry INSTANCE =
+                load(SubtitleFormatRegistry.class.getClassLoader());
+    }
+
+    /**
+     * @param formats Formats to register, the first one declaring an extension gets it
+     */
+    public SubtitleFormatRegistry(Iterable<? extends SubtitleFormat> formats) {
+        List<SubtitleFormat> formatList = new ArrayList<>();
+
+        for (SubtitleFormat format : formats) {
+            formatList.add(format);
+
+            for (String extension : format.getExtensions()) {
+                if (!this.formatsByExtension.containsKey(extension)) {
+                    this.formatsByExtension.put(extension, format);
+                }
+            }
+        }
+
+        this.formats = Collections.unmodifiableList(formatList);
+    }
+
+    /**
+     * @return Registry of the formats provided by this library and any other jar of the class path
+     */
+    public static SubtitleFormatRegistry getDefault() {
+        return DefaultRegistry.INSTANCE;
+    }
+
+    /**
+     * @return Registry of the formats found by a ServiceLoader in this class loader
+     */
+    public static SubtitleFormatRegistry load(ClassLoader classLoader) {
+        return new SubtitleFormatRegistry(ServiceLoader.load(SubtitleFormat.class, classLoader));
+    }
+
+    public List<SubtitleFormat> getFormats() {
+        return this.formats;
+    }
+
+    /**
+     * @param extension File extension, without dot
+     * @return the format, or null if no format has this extension
+     */
+    public SubtitleFormat getFormat(String extension) {
+        return this.formatsByExtension.get(extension);
+    }
+
+    /**
+     * @return the format of the file, or null if no format has its extension
+     */
+    public SubtitleFormat getFormatForFile(String filePath) {
+        int i = filePath.lastIndexOf('.');
+
+        if (i <= 0 || i == filePath.length() - 1) {
+            return null;
+        }
+
+        return this.getFormat(filePath.substring(i + 1));
+    }
+
+    /**
+     * @throws IllegalArgumentException if no format with this extension can be parsed
+     */
+    public SubtitleParser createParser(String extension, String charset) {
+        SubtitleFormat format = this.getFormat(extension);
+
+        if (format == null || !format.canParse()) {
+            throw new IllegalArgumentException(String.format("No parser for extension %s", extension));
+        }
+
+        return format.createParser(charset);
+    }
+
+    /**
+     * @throws IllegalArgumentException if no format with this extension can be written
+     */
+    public SubtitleWriter createWriter(String extension, String charset) {
+        SubtitleFormat format = this.getFormat(extension);
+
+        if (format == null || !format.canWrite()) {
+            throw new IllegalArgumentException(String.format("No writer for extension %s", extension));
+        }
+
+        return format.createWriter(charset);
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parser able to read cues one by one instead of building the whole subtitle object
+ */
+public interface SubtitleStreamParser extends SubtitleParser {
+    public SubtitleCueReader read(InputStream is) throws IOException;
+    public SubtitleCueReader read(InputStream is, boolean strict) throws IOException;
+}
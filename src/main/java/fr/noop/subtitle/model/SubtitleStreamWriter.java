@@ -0,0 +1,21 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writer able to write cues one by one instead of a whole subtitle object
+ */
+public interface SubtitleStreamWriter extends SubtitleWriter {
+    public SubtitleCueWriter open(OutputStream os) throws IOException;
+}
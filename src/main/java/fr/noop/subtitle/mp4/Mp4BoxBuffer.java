@@ -0,0 +1,160 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.mp4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Byte buffer receiving ISO BMFF boxes, reused from one fragment to the next
+ *
+ * Boxes are opened and closed like elements: the size of a box is patched when it is closed,
+ * open boxes are kept as offsets in an int stack. The buffer grows when it is full.
+ */
+class Mp4BoxBuffer {
+    private ByteBuffer buffer;
+    private int[] openBoxes = new int[16]; // Offsets of the open boxes
+    private int depth = 0;
+
+    Mp4BoxBuffer(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * @return Box type of 4 ascii chars, ie: moof
+     */
+    static int type(String fourcc) {
+        return (fourcc.charAt(0) << 24) | (fourcc.charAt(1) << 16) | (fourcc.charAt(2) << 8) | fourcc.charAt(3);
+    }
+
+    void clear() {
+        this.buffer.clear();
+        this.depth = 0;
+    }
+
+    int position() {
+        return this.buffer.position();
+    }
+
+    void startBox(int type) {
+        if (this.depth == this.openBoxes.length) {
+            this.openBoxes = Arrays.copyOf(this.openBoxes, this.depth * 2);
+        }
+
+        this.openBoxes[this.depth++] = this.buffer.position();
+        this.putInt(0); // Size, patched by endBox
+        this.putInt(type);
+    }
+
+    void startFullBox(int type, int version, int flags) {
+        this.startBox(type);
+        this.putInt((version << 24) | (flags & 0xffffff));
+    }
+
+    void endBox() {
+        int offset = this.openBoxes[--this.depth];
+        this.buffer.putInt(offset, this.buffer.position() - offset);
+    }
+
+    /**
+     * Write a box without content
+     */
+    void emptyBox(int type) {
+        this.putInt(8);
+        this.putInt(type);
+    }
+
+    void putByte(int value) {
+        this.ensureRemaining(1);
+        this.buffer.put((byte) value);
+    }
+
+    void putShort(int value) {
+        this.ensureRemaining(2);
+        this.buffer.putShort((short) value);
+    }
+
+    void putInt(int value) {
+        this.ensureRemaining(4);
+        this.buffer.putInt(value);
+    }
+
+    void putInt(int offset, int value) {
+        this.buffer.putInt(offset, value);
+    }
+
+    void putLong(long value) {
+        this.ensureRemaining(8);
+        this.buffer.putLong(value);
+    }
+
+    void putZeros(int count) {
+        this.ensureRemaining(count);
+
+        for (int i = 0; i < count; i++) {
+            this.buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Write chars encoded in UTF-8, malformed surrogates are replaced by ?
+     */
+    void putUtf8(CharSequence cs) {
+        int length = cs.length();
+        this.ensureRemaining(length * 3);
+
+        for (int i = 0; i < length; i++) {
+            char c = cs.charAt(i);
+
+            if (c < 0x80) {
+                this.buffer.put((byte) c);
+            } else if (c < 0x800) {
+                this.buffer.put((byte) (0xc0 | (c >> 6)));
+                this.buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                int codePoint = (Character.isHighSurrogate(c) && i + 1 < length &&
+                        Character.isLowSurrogate(cs.charAt(i + 1))) ?
+                        Character.toCodePoint(c, cs.charAt(++i)) : -1;
+
+                if (codePoint < 0) {
+                    this.buffer.put((byte) '?');
+                    continue;
+                }
+
+                this.buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                this.buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                this.buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                this.buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else {
+                this.buffer.put((byte) (0xe0 | (c >> 12)));
+                this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                this.buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    void writeTo(OutputStream os) throws IOException {
+        os.write(this.buffer.array(), 0, this.buffer.position());
+    }
+
+    private void ensureRemaining(int count) {
+        if (this.buffer.remaining() >= count) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + count));
+        this.buffer.flip();
+        buffer.put(this.buffer);
+        this.buffer = buffer;
+    }
+}
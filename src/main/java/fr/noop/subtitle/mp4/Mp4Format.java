@@ -0,0 +1,54 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.mp4;
+
+import fr.noop.subtitle.model.SubtitleFormat;
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleWriter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fragmented MP4 WebVTT track, .mp4 and .cmft (CMAF text track) files
+ * This format can only be written
+ */
+public class Mp4Format implements SubtitleFormat {
+    @Override
+    public String getName() {
+        return "mp4";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Arrays.asList("mp4", "cmft");
+    }
+
+    @Override
+    public boolean canParse() {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite() {
+        return true;
+    }
+
+    @Override
+    public SubtitleParser createParser(String charset) {
+        return null;
+    }
+
+    @Override
+    public SubtitleWriter createWriter(String charset) {
+        return new Mp4VttWriter();
+    }
+}
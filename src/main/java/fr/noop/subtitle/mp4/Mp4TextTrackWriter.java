@@ -0,0 +1,288 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.mp4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Boxes shared by the fragmented MP4 text tracks: init segment and fragment headers
+ *
+ * The init segment (ftyp, moov) declares a single track with a millisecond timescale,
+ * its sample entry is written by the subclass. A fragment is a moof box followed by an mdat box,
+ * whose samples are written by the subclass after the header of the fragment.
+ */
+abstract class Mp4TextTrackWriter {
+    private final static int TIMESCALE = 1000; // Times are in milliseconds
+    private final static int TRACK_ID = 1;
+
+    private final static int FTYP = Mp4BoxBuffer.type("ftyp");
+    private final static int STYP = Mp4BoxBuffer.type("styp");
+    private final static int MOOV = Mp4BoxBuffer.type("moov");
+    private final static int MVHD = Mp4BoxBuffer.type("mvhd");
+    private final static int TRAK = Mp4BoxBuffer.type("trak");
+    private final static int TKHD = Mp4BoxBuffer.type("tkhd");
+    private final static int MDIA = Mp4BoxBuffer.type("mdia");
+    private final static int MDHD = Mp4BoxBuffer.type("mdhd");
+    private final static int HDLR = Mp4BoxBuffer.type("hdlr");
+    private final static int MINF = Mp4BoxBuffer.type("minf");
+    private final static int DINF = Mp4BoxBuffer.type("dinf");
+    private final static int DREF = Mp4BoxBuffer.type("dref");
+    private final static int URL = Mp4BoxBuffer.type("url ");
+    private final static int STBL = Mp4BoxBuffer.type("stbl");
+    private final static int STSD = Mp4BoxBuffer.type("stsd");
+    private final static int STTS = Mp4BoxBuffer.type("stts");
+    private final static int STSC = Mp4BoxBuffer.type("stsc");
+    private final static int STSZ = Mp4BoxBuffer.type("stsz");
+    private final static int STCO = Mp4BoxBuffer.type("stco");
+    private final static int MVEX = Mp4BoxBuffer.type("mvex");
+    private final static int TREX = Mp4BoxBuffer.type("trex");
+    private final static int MOOF = Mp4BoxBuffer.type("moof");
+    private final static int MFHD = Mp4BoxBuffer.type("mfhd");
+    private final static int TRAF = Mp4BoxBuffer.type("traf");
+    private final static int TFHD = Mp4BoxBuffer.type("tfhd");
+    private final static int TFDT = Mp4BoxBuffer.type("tfdt");
+    private final static int TRUN = Mp4BoxBuffer.type("trun");
+    private final static int MDAT = Mp4BoxBuffer.type("mdat");
+
+    private final static int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    private final static int TRUN_DATA_OFFSET = 0x000001;
+    private final static int TRUN_SAMPLE_DURATION = 0x000100;
+    private final static int TRUN_SAMPLE_SIZE = 0x000200;
+
+    private Mp4BoxBuffer header; // Init segment, or styp, moof and mdat header of a fragment
+    int[] sampleDurations = new int[64];
+    int[] sampleSizes = new int[64];
+
+    Mp4TextTrackWriter(int headerCapacity) {
+        this.header = new Mp4BoxBuffer(headerCapacity);
+    }
+
+    /**
+     * @return CMAF brand of the track, ie: cwvt
+     */
+    abstract int getBrand();
+
+    /**
+     * @return Handler type of the track, ie: text
+     */
+    abstract int getHandlerType();
+
+    abstract String getHandlerName();
+
+    /**
+     * Write the media header box of minf
+     */
+    abstract void writeMediaHeader(Mp4BoxBuffer b);
+
+    /**
+     * Write the sample entry box of stsd
+     */
+    abstract void writeSampleEntry(Mp4BoxBuffer b);
+
+    /**
+     * Write the init segment: ftyp and moov boxes
+     */
+    public void writeInitSegment(OutputStream os) throws IOException {
+        Mp4BoxBuffer b = this.header;
+        b.clear();
+
+        b.startBox(FTYP);
+        b.putInt(Mp4BoxBuffer.type("iso6")); // Major brand
+        b.putInt(0); // Minor version
+        b.putInt(Mp4BoxBuffer.type("iso6"));
+        b.putInt(Mp4BoxBuffer.type("cmfc"));
+        b.putInt(this.getBrand());
+        b.putInt(Mp4BoxBuffer.type("dash"));
+        b.endBox();
+
+        b.startBox(MOOV);
+        b.startFullBox(MVHD, 0, 0);
+        b.putInt(0); // Creation time
+        b.putInt(0); // Modification time
+        b.putInt(TIMESCALE);
+        b.putInt(0); // Duration, given by the fragments
+        b.putInt(0x00010000); // Rate 1.0
+        b.putShort(0x0100); // Volume 1.0
+        b.putZeros(10); // Reserved
+        putMatrix(b);
+        b.putZeros(24); // Pre defined
+        b.putInt(TRACK_ID + 1); // Next track id
+        b.endBox();
+
+        b.startBox(TRAK);
+        b.startFullBox(TKHD, 0, 0x000003); // Track enabled and in movie
+        b.putInt(0); // Creation time
+        b.putInt(0); // Modification time
+        b.putInt(TRACK_ID);
+        b.putInt(0); // Reserved
+        b.putInt(0); // Duration
+        b.putZeros(8); // Reserved
+        b.putShort(0); // Layer
+        b.putShort(0); // Alternate group
+        b.putShort(0); // Volume
+        b.putShort(0); // Reserved
+        putMatrix(b);
+        b.putInt(0); // Width
+        b.putInt(0); // Height
+        b.endBox();
+
+        b.startBox(MDIA);
+        b.startFullBox(MDHD, 0, 0);
+        b.putInt(0); // Creation time
+        b.putInt(0); // Modification time
+        b.putInt(TIMESCALE);
+        b.putInt(0); // Duration
+        b.putShort(0x55c4); // Language: und
+        b.putShort(0); // Pre defined
+        b.endBox();
+
+        b.startFullBox(HDLR, 0, 0);
+        b.putInt(0); // Pre defined
+        b.putInt(this.getHandlerType());
+        b.putZeros(12); // Reserved
+        b.putUtf8(this.getHandlerName());
+        b.putByte(0);
+        b.endBox();
+
+        b.startBox(MINF);
+        this.writeMediaHeader(b);
+        b.startBox(DINF);
+        b.startFullBox(DREF, 0, 0);
+        b.putInt(1); // Entry count
+        b.startFullBox(URL, 0, 0x000001); // Media data in the same file
+        b.endBox();
+        b.endBox();
+        b.endBox();
+
+        b.startBox(STBL);
+        b.startFullBox(STSD, 0, 0);
+        b.putInt(1); // Entry count
+        this.writeSampleEntry(b);
+        b.endBox();
+
+        // Samples are described by the fragments
+        b.startFullBox(STTS, 0, 0);
+        b.putInt(0);
+        b.endBox();
+        b.startFullBox(STSC, 0, 0);
+        b.putInt(0);
+        b.endBox();
+        b.startFullBox(STSZ, 0, 0);
+        b.putInt(0); // Sample size
+        b.putInt(0); // Sample count
+        b.endBox();
+        b.startFullBox(STCO, 0, 0);
+        b.putInt(0);
+        b.endBox();
+        b.endBox(); // stbl
+        b.endBox(); // minf
+        b.endBox(); // mdia
+        b.endBox(); // trak
+
+        b.startBox(MVEX);
+        b.startFullBox(TREX, 0, 0);
+        b.putInt(TRACK_ID);
+        b.putInt(1); // Default sample description index
+        b.putInt(0); // Default sample duration
+        b.putInt(0); // Default sample size
+        b.putInt(0); // Default sample flags
+        b.endBox();
+        b.endBox();
+        b.endBox(); // moov
+
+        b.writeTo(os);
+    }
+
+    /**
+     * Write a fragment until the mdat header, the samples must follow
+     * Sample durations and sizes are read from sampleDurations and sampleSizes
+     *
+     * @param segment True to start with a styp box, for a fragment written as a media segment
+     */
+    void writeFragmentHeader(OutputStream os, int sequenceNumber, long startMillis, int sampleCount,
+                             boolean segment) throws IOException {
+        Mp4BoxBuffer b = this.header;
+        b.clear();
+
+        if (segment) {
+            b.startBox(STYP);
+            b.putInt(Mp4BoxBuffer.type("msdh")); // Major brand
+            b.putInt(0); // Minor version
+            b.putInt(Mp4BoxBuffer.type("msdh"));
+            b.putInt(Mp4BoxBuffer.type("msix"));
+            b.putInt(Mp4BoxBuffer.type("cmfs"));
+            b.endBox();
+        }
+
+        int moofOffset = b.position();
+        b.startBox(MOOF);
+        b.startFullBox(MFHD, 0, 0);
+        b.putInt(sequenceNumber);
+        b.endBox();
+
+        b.startBox(TRAF);
+        b.startFullBox(TFHD, 0, TFHD_DEFAULT_BASE_IS_MOOF);
+        b.putInt(TRACK_ID);
+        b.endBox();
+        b.startFullBox(TFDT, 1, 0);
+        b.putLong(startMillis); // Base media decode time
+        b.endBox();
+        b.startFullBox(TRUN, 0, TRUN_DATA_OFFSET | TRUN_SAMPLE_DURATION | TRUN_SAMPLE_SIZE);
+        b.putInt(sampleCount);
+        int dataOffsetPosition = b.position();
+        b.putInt(0); // Data offset, patched once the moof size is known
+
+        for (int i = 0; i < sampleCount; i++) {
+            b.putInt(this.sampleDurations[i]);
+            b.putInt(this.sampleSizes[i]);
+        }
+
+        b.endBox(); // trun
+        b.endBox(); // traf
+        b.endBox(); // moof
+
+        // Samples follow the 8 bytes mdat header, the offset is relative to the moof
+        int dataSize = 0;
+
+        for (int i = 0; i < sampleCount; i++) {
+            dataSize += this.sampleSizes[i];
+        }
+
+        b.putInt(dataOffsetPosition, b.position() - moofOffset + 8);
+        b.putInt(8 + dataSize);
+        b.putInt(MDAT);
+        b.writeTo(os);
+    }
+
+    void ensureSampleCapacity(int sampleCount) {
+        if (sampleCount > this.sampleSizes.length) {
+            int capacity = Math.max(sampleCount, this.sampleSizes.length * 2);
+            this.sampleDurations = new int[capacity];
+            this.sampleSizes = new int[capacity];
+        }
+    }
+
+    /**
+     * Unity matrix of mvhd and tkhd
+     */
+    private static void putMatrix(Mp4BoxBuffer b) {
+        b.putInt(0x00010000);
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(0x00010000);
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(0);
+        b.putInt(0x40000000);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.mp4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Wrap TTML documents into a fragmented MP4 subtitle track (ISO/IEC 14496-30 stpp), for DASH and CMAF
+ *
+ * The init segment declares an IMSC1 text track with a millisecond timescale.
+ * Each media segment holds a single sample: the TTML document covering the segment.
+ * A writer must not be used by several threads at the same time.
+ */
+public class Mp4TtmlWriter extends Mp4TextTrackWriter {
+    private final static int BUFFER_SIZE = 1024;
+    private final static String NS_TT = "http://www.w3.org/ns/ttml";
+
+    private final static int STHD = Mp4BoxBuffer.type("sthd");
+    private final static int STPP = Mp4BoxBuffer.type("stpp");
+
+    public Mp4TtmlWriter() {
+        super(BUFFER_SIZE);
+    }
+
+    /**
+     * Write a media segment: styp, moof and mdat boxes
+     *
+     * @param sequenceNumber Sequence number of the fragment, starting at 1
+     * @param document TTML document of the segment, encoded in utf-8
+     */
+    public void writeSegment(OutputStream os, int sequenceNumber, long startMillis, long durationMillis,
+                             byte[] document, int offset, int length) throws IOException {
+        this.sampleDurations[0] = (int) durationMillis;
+        this.sampleSizes[0] = length;
+        this.writeFragmentHeader(os, sequenceNumber, startMillis, 1, true);
+        os.write(document, offset, length);
+    }
+
+    @Override
+    int getBrand() {
+        return Mp4BoxBuffer.type("im1t");
+    }
+
+    @Override
+    int getHandlerType() {
+        return Mp4BoxBuffer.type("subt");
+    }
+
+    @Override
+    String getHandlerName() {
+        return "IMSC1";
+    }
+
+    @Override
+    void writeMediaHeader(Mp4BoxBuffer b) {
+        b.startFullBox(STHD, 0, 0);
+        b.endBox();
+    }
+
+    @Override
+    void writeSampleEntry(Mp4BoxBuffer b) {
+        b.startBox(STPP);
+        b.putZeros(6); // Reserved
+        b.putShort(1); // Data reference index
+        b.putUtf8(NS_TT); // Namespace
+        b.putByte(0);
+        b.putByte(0); // No schema location
+        b.putByte(0); // No auxiliary mime types
+        b.endBox();
+    }
+}
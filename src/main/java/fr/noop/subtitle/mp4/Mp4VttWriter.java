@@ -0,0 +1,292 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.mp4;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleRegionCue;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.util.SubtitleCueIndex;
+import fr.noop.subtitle.util.SubtitleRegion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Write cues as a fragmented MP4 WebVTT track (ISO/IEC 14496-30 wvtt), for DASH and CMAF
+ *
+ * The init segment (ftyp, moov) declares a single text track with a millisecond timescale.
+ * Each fragment (moof, mdat) covers a fixed duration of the timeline, cut into samples
+ * at every cue start and end: a sample holds a vttc box per active cue (iden, sttg, payl),
+ * or a single vtte box when no cue is active. Cues spanning fragments are repeated in each of them.
+ *
+ * Boxes are written into byte buffers reused from one fragment to the next,
+ * sample sizes and durations into reused arrays.
+ * A writer must not be used by several threads at the same time.
+ */
+public class Mp4VttWriter extends Mp4TextTrackWriter implements SubtitleWriter {
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    private final static int NMHD = Mp4BoxBuffer.type("nmhd");
+    private final static int WVTT = Mp4BoxBuffer.type("wvtt");
+    private final static int VTTC_CONFIG = Mp4BoxBuffer.type("vttC");
+    private final static int VTTC = Mp4BoxBuffer.type("vttc");
+    private final static int VTTE = Mp4BoxBuffer.type("vtte");
+    private final static int IDEN = Mp4BoxBuffer.type("iden");
+    private final static int STTG = Mp4BoxBuffer.type("sttg");
+    private final static int PAYL = Mp4BoxBuffer.type("payl");
+
+    private long fragmentDurationMillis;
+    private Mp4BoxBuffer samples = new Mp4BoxBuffer(BUFFER_SIZE); // Samples of the mdat of a fragment
+    private long[] boundaries = new long[64]; // Sample boundaries of a fragment
+    private List<SubtitleCue> cues = new ArrayList<>(); // Cues of a fragment
+
+    /**
+     * Fragments of 2 seconds
+     */
+    public Mp4VttWriter() {
+        this(2000);
+    }
+
+    public Mp4VttWriter(long fragmentDurationMillis) {
+        super(BUFFER_SIZE);
+
+        if (fragmentDurationMillis <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid fragment duration: %d ms", fragmentDurationMillis));
+        }
+
+        this.fragmentDurationMillis = fragmentDurationMillis;
+    }
+
+    /**
+     * Write the init segment followed by every fragment, as a single CMAF track file
+     */
+    @Override
+    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+        List<SubtitleCue> sortedCues = subtitleObject.getCues();
+        long endMillis = 0;
+        long previousStartMillis = Long.MIN_VALUE;
+        boolean sorted = true;
+
+        for (SubtitleCue cue : sortedCues) {
+            endMillis = Math.max(endMillis, cue.getEndMillis());
+            sorted &= (cue.getStartMillis() >= previousStartMillis);
+            previousStartMillis = cue.getStartMillis();
+        }
+
+        if (!sorted) {
+            SubtitleCueIndex index = new SubtitleCueIndex(sortedCues);
+            sortedCues = new ArrayList<>(index.size());
+
+            for (int i = 0; i < index.size(); i++) {
+                sortedCues.add(index.getCue(i));
+            }
+        }
+
+        this.writeInitSegment(os);
+        int sequenceNumber = 1;
+        int nextCue = 0;
+        this.cues.clear();
+
+        // Single pass over the cues, there is at least one fragment
+        for (long startMillis = 0; startMillis == 0 || startMillis < endMillis; startMillis += this.fragmentDurationMillis) {
+            long fragmentEndMillis = startMillis + this.fragmentDurationMillis;
+            int count = 0;
+
+            // Keep cues ending after the fragment start
+            for (int i = 0; i < this.cues.size(); i++) {
+                SubtitleCue cue = this.cues.get(i);
+
+                if (cue.getEndMillis() > startMillis) {
+                    this.cues.set(count++, cue);
+                }
+            }
+
+            while (this.cues.size() > count) {
+                this.cues.remove(this.cues.size() - 1);
+            }
+
+            // Add cues starting before the fragment end
+            while (nextCue < sortedCues.size() && sortedCues.get(nextCue).getStartMillis() < fragmentEndMillis) {
+                SubtitleCue cue = sortedCues.get(nextCue++);
+
+                if (cue.getEndMillis() > startMillis) {
+                    this.cues.add(cue);
+                }
+            }
+
+            this.writeFragment(os, sequenceNumber++, startMillis, fragmentEndMillis, this.cues, false);
+        }
+
+        this.cues.clear();
+        os.flush();
+    }
+
+    @Override
+    int getBrand() {
+        return Mp4BoxBuffer.type("cwvt");
+    }
+
+    @Override
+    int getHandlerType() {
+        return Mp4BoxBuffer.type("text");
+    }
+
+    @Override
+    String getHandlerName() {
+        return "WebVTT";
+    }
+
+    @Override
+    void writeMediaHeader(Mp4BoxBuffer b) {
+        b.startFullBox(NMHD, 0, 0);
+        b.endBox();
+    }
+
+    @Override
+    void writeSampleEntry(Mp4BoxBuffer b) {
+        b.startBox(WVTT);
+        b.putZeros(6); // Reserved
+        b.putShort(1); // Data reference index
+        b.startBox(VTTC_CONFIG);
+        b.putUtf8("WEBVTT");
+        b.endBox();
+        b.endBox();
+    }
+
+    /**
+     * Write a media segment: a styp box followed by a fragment
+     *
+     * @param sequenceNumber Sequence number of the fragment, starting at 1
+     * @param cues Cues overlapping the times from startMillis to endMillis, in start time order
+     */
+    public void writeSegment(OutputStream os, int sequenceNumber, long startMillis, long endMillis,
+                             List<SubtitleCue> cues) throws IOException {
+        this.writeFragment(os, sequenceNumber, startMillis, endMillis, cues, true);
+    }
+
+    private void writeFragment(OutputStream os, int sequenceNumber, long startMillis, long endMillis,
+                               List<SubtitleCue> cues, boolean segment) throws IOException {
+        int sampleCount = this.writeSamples(startMillis, endMillis, cues);
+        this.writeFragmentHeader(os, sequenceNumber, startMillis, sampleCount, segment);
+        this.samples.writeTo(os);
+    }
+
+    /**
+     * Cut the fragment into samples at every cue start and end, and write them
+     *
+     * @return Number of samples
+     */
+    private int writeSamples(long startMillis, long endMillis, List<SubtitleCue> cues) {
+        // Sorted distinct boundaries, from the fragment start to its end
+        this.ensureCapacity(2 * cues.size() + 2);
+        int count = 0;
+        this.boundaries[count++] = startMillis;
+        this.boundaries[count++] = endMillis;
+
+        for (SubtitleCue cue : cues) {
+            long cueStartMillis = cue.getStartMillis();
+            long cueEndMillis = cue.getEndMillis();
+
+            if (cueStartMillis > startMillis && cueStartMillis < endMillis) {
+                this.boundaries[count++] = cueStartMillis;
+            }
+
+            if (cueEndMillis > startMillis && cueEndMillis < endMillis) {
+                this.boundaries[count++] = cueEndMillis;
+            }
+        }
+
+        Arrays.sort(this.boundaries, 0, count);
+        int distinct = 1;
+
+        for (int i = 1; i < count; i++) {
+            if (this.boundaries[i] != this.boundaries[distinct - 1]) {
+                this.boundaries[distinct++] = this.boundaries[i];
+            }
+        }
+
+        // A sample per interval between two boundaries
+        int sampleCount = distinct - 1;
+        Mp4BoxBuffer b = this.samples;
+        b.clear();
+
+        for (int i = 0; i < sampleCount; i++) {
+            long sampleStartMillis = this.boundaries[i];
+            long sampleEndMillis = this.boundaries[i + 1];
+            this.sampleDurations[i] = (int) (sampleEndMillis - sampleStartMillis);
+            int sampleOffset = b.position();
+
+            for (SubtitleCue cue : cues) {
+                // Cues active in the interval cover all of it
+                if (cue.getStartMillis() < sampleEndMillis && cue.getEndMillis() > sampleStartMillis) {
+                    this.writeCue(cue);
+                }
+            }
+
+            if (b.position() == sampleOffset) {
+                b.emptyBox(VTTE);
+            }
+
+            this.sampleSizes[i] = b.position() - sampleOffset;
+        }
+
+        return sampleCount;
+    }
+
+    private void writeCue(SubtitleCue cue) {
+        Mp4BoxBuffer b = this.samples;
+        b.startBox(VTTC);
+
+        if (cue.getId() != null) {
+            b.startBox(IDEN);
+            b.putUtf8(cue.getId());
+            b.endBox();
+        }
+
+        SubtitleRegion region = (cue instanceof SubtitleRegionCue) ? ((SubtitleRegionCue) cue).getRegion() : null;
+
+        if (region != null) {
+            b.startBox(STTG);
+            b.putUtf8(getSettings(region));
+            b.endBox();
+        }
+
+        b.startBox(PAYL);
+        b.putUtf8(cue.getText());
+        b.endBox();
+        b.endBox();
+    }
+
+    /**
+     * @return WebVTT cue settings placing the cue in the region: line:10.00% or line:90.00%,end
+     */
+    private static String getSettings(SubtitleRegion region) {
+        if (region.getVerticalAlign() == SubtitleRegion.VerticalAlign.BOTTOM) {
+            return String.format(Locale.US, "line:%.2f%%,end", region.getY() + region.getHeight());
+        }
+
+        return String.format(Locale.US, "line:%.2f%%", region.getY());
+    }
+
+    private void ensureCapacity(int boundaries) {
+        if (boundaries > this.boundaries.length) {
+            this.boundaries = new long[Math.max(boundaries, this.boundaries.length * 2)];
+        }
+
+        this.ensureSampleCapacity(boundaries);
+    }
+}
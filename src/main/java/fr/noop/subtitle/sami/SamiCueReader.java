@@ -0,0 +1,161 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.sami;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import fr.noop.subtitle.base.BaseSubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+
+/**
+ * Read SAMI cues one by one
+ *
+ * SAMI cues have no end time: a cue ends when the next one starts.
+ * So a cue is returned when the next sync element (or the end of the input) is read.
+ */
+public class SamiCueReader extends BaseSubtitleCueReader {
+    private enum CursorStatus {
+        NONE,
+        BODY_START,
+        BODY_END,
+        CUE_TIMECODE,
+        CUE_TEXT;
+    }
+
+    private BufferedReader br;
+    private CursorStatus cursorStatus = CursorStatus.NONE;
+    private SamiCue cue = null; // Cue being read
+
+    public SamiCueReader(InputStream is, String charset) throws IOException {
+        this.br = new BufferedReader(new InputStreamReader(is, charset));
+    }
+
+    @Override
+    protected SamiCue readCue() throws IOException, SubtitleParsingException {
+        String textLine = "";
+
+        while ((textLine = this.br.readLine()) != null) {
+            textLine = textLine.trim();
+            // Lower case text line
+            String lcTextLine = textLine.toLowerCase();
+
+            if (lcTextLine.startsWith("</body>") || this.cursorStatus == CursorStatus.BODY_END) {
+                this.cursorStatus = CursorStatus.BODY_END;
+                continue;
+            }
+
+            if (this.cursorStatus == CursorStatus.NONE) {
+                if (!lcTextLine.startsWith("<body>")) {
+                    continue;
+                }
+
+                this.cursorStatus = CursorStatus.BODY_START;
+                continue;
+            }
+
+            if (this.cursorStatus == CursorStatus.BODY_START) {
+                if (textLine.isEmpty()) {
+                    continue;
+                }
+
+                // The next element after the body element is always the sync element
+                if (!lcTextLine.startsWith("<sync")) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unexpected time code: %s", textLine));
+                }
+            }
+
+            if ((this.cursorStatus == CursorStatus.BODY_START) ||
+                    (this.cursorStatus == CursorStatus.CUE_TEXT) && lcTextLine.startsWith("<sync")) {
+                // Get start time
+                String text = textLine.substring(5).trim();
+
+                if (!text.toLowerCase().startsWith("start=")) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unexpected time code: %s", textLine));
+                }
+
+                // Make sure this is an integer
+                String startTime = text.substring(6, text.length() - 1).trim();
+                long time;
+
+                try {
+                    time = Long.valueOf(startTime);
+                } catch (NumberFormatException e) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unable to parse start time: %s",
+                            textLine));
+                }
+
+                // New cue
+                SamiCue previousCue = this.cue;
+                this.cue = new SamiCue();
+                this.cue.setStartMillis(time);
+                this.cursorStatus = CursorStatus.CUE_TIMECODE;
+
+                if (previousCue != null) {
+                    // Previous cue ends when this one starts
+                    previousCue.setEndMillis(time);
+                    return previousCue;
+                }
+
+                continue;
+            }
+
+            if (this.cursorStatus == CursorStatus.CUE_TIMECODE || this.cursorStatus == CursorStatus.CUE_TEXT) {
+                // Remove <P> and </P> information
+                String text = textLine;
+
+                // Remove p start tag
+                if (lcTextLine.startsWith("<p")) {
+                    text = text.substring(text.indexOf(">")+1);
+                }
+
+                // Remove p end tag
+                if (lcTextLine.endsWith("</p>")) {
+                    text = text.substring(0, text.length()-4);
+                }
+
+                // Add new text line
+                SubtitleTextLine line = new SubtitleTextLine();
+                line.addText(new SubtitlePlainText(text));
+                this.cue.addLine(line);
+                this.cursorStatus = CursorStatus.CUE_TEXT;
+                continue;
+            }
+
+            throw new SubtitleParsingException(String.format(
+                    "Unexpected line: %s", textLine));
+        }
+
+        // This is the end
+        // Set end time for the last cue
+        SamiCue lastCue = this.cue;
+        this.cue = null;
+
+        if (lastCue != null) {
+            // Last cue duration is 2s
+            lastCue.setEndMillis(lastCue.getStartMillis() + 2000);
+        }
+
+        return lastCue;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.br.close();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.sami;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.util.TextEncoder;
+
+/**
+ * Write SAMI cues one by one
+ */
+public class SamiCueWriter implements SubtitleCueWriter {
+    private OutputStream os;
+    private String charset; // Charset used to encode file
+    private TextEncoder encoder; // Opened on the first write
+
+    public SamiCueWriter(OutputStream os, String charset) {
+        this.os = os;
+        this.charset = charset;
+    }
+
+    @Override
+    public void begin(Map<SubtitleObject.Property, Object> properties) throws IOException {
+        TextEncoder encoder = this.getEncoder();
+
+        // Start SAMI
+        encoder.write("<SAMI>\n");
+
+        // Write header
+
+        // Start BODY
+        encoder.write("<Body>\n");
+    }
+
+    @Override
+    public void write(SubtitleCue cue) throws IOException {
+        TextEncoder encoder = this.getEncoder();
+
+        // Write Start time
+        encoder.write("  <SYNC Start=").write(cue.getStartMillis()).write(">\n");
+
+        // Write text
+        encoder.write("    <P>").write(cue.getText()).write('\n');
+    }
+
+    @Override
+    public void end() throws IOException {
+        TextEncoder encoder = this.getEncoder();
+
+        // End BODY
+        encoder.write("</Body>\n");
+
+        // End SAMI
+        encoder.write("</SAMI>\n");
+
+        encoder.end();
+        this.encoder = null;
+    }
+
+    /**
+     * Pending encoded text, not written to the output stream yet, is dropped
+     */
+    @Override
+    public void abort() {
+        if (this.encoder != null) {
+            this.encoder.discard();
+            this.encoder = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.encoder == null) {
+            this.os.flush();
+            return;
+        }
+
+        this.encoder.flush();
+    }
+
+    private TextEncoder getEncoder() throws IOException {
+        if (this.encoder == null) {
+            this.encoder = TextEncoder.open(this.os, this.charset);
+        }
+
+        return this.encoder;
+    }
+}
@@ -10,18 +10,18 @@
 
 package fr.noop.subtitle.sami;
 
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
-
 import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
 import fr.noop.subtitle.model.SubtitleObject;
-import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.model.SubtitleStreamWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Created by clebeaupin on 11/10/15.
  */
-public class SamiWriter implements SubtitleWriter {
+public class SamiWriter implements SubtitleStreamWriter {
     private String charset; // Charset used to encode file
 
     public SamiWriter(String charset) {
@@ -30,51 +30,18 @@ public class SamiWriter implements SubtitleWriter {
 
     @Override
     public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
-        try {
-            // Start SAMI
-            os.write(new String("<SAMI>\n").getBytes(this.charset));
-
-            // Write header
-
-            // Write cues
-            this.writeCues(subtitleObject, os);
-
-            // End SAMI
-            os.write(new String("</SAMI>\n").getBytes(this.charset));
-        } catch (UnsupportedEncodingException e) {
-            throw new IOException("Encoding error in input subtitle");
-        }
-    }
-
-    private void writeHeader(SubtitleObject subtitleObject, OutputStream os) throws IOException {
-        // Start HEAD
-        os.write(new String("<Head>\n").getBytes(this.charset));
+        SubtitleCueWriter cueWriter = this.open(os);
+        cueWriter.begin(subtitleObject.getProperties());
 
-        if (subtitleObject.hasProperty(SubtitleObject.Property.TITLE)) {
-            // Write title
-            os.write(String.format("  <Title>%s</Title>\n",
-                    subtitleObject.getProperty(SubtitleObject.Property.TITLE)
-            ).getBytes(this.charset));
+        for (SubtitleCue cue : subtitleObject.getCues()) {
+            cueWriter.write(cue);
         }
 
-        // End HEAD
-        os.write(new String("</Head>\n").getBytes(this.charset));
+        cueWriter.end();
     }
 
-    private void writeCues(SubtitleObject subtitleObject, OutputStream os) throws IOException {
-        // Start BODY
-        os.write(new String("<Body>\n").getBytes(this.charset));
-
-        for (SubtitleCue cue : subtitleObject.getCues()) {
-            // Write Start time
-
-            os.write(String.format("  <SYNC Start=%d>\n", cue.getStartTime().getTime()).getBytes(this.charset));
-
-            // Write text
-            os.write(String.format("    <P>%s\n", cue.getText()).getBytes(this.charset));
-        }
-
-        // End BODY
-        os.write(new String("</Body>\n").getBytes(this.charset));
+    @Override
+    public SamiCueWriter open(OutputStream os) {
+        return new SamiCueWriter(os, this.charset);
     }
 }
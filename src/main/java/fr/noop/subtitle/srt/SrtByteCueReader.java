@@ -0,0 +1,314 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.srt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import fr.noop.subtitle.base.BaseSubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.util.TimeCodeCodec;
+
+/**
+ * Read SRT cues one by one, scanning the bytes of an ascii compatible input
+ *
+ * Lines, cue numbers and time codes are read from the bytes,
+ * only the cue ids and texts are decoded into strings.
+ * Cues are the same as the ones read by SrtCueReader: lines end with \n, \r or \r\n
+ * and are trimmed, malformed chars are replaced.
+ */
+public class SrtByteCueReader extends BaseSubtitleCueReader {
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    private enum CursorStatus {
+        NONE,
+        CUE_ID,
+        CUE_TIMECODE,
+        CUE_TEXT;
+    }
+
+    private InputStream is;
+    private Charset charset;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0; // Index of the next byte to scan
+    private int limit = 0; // Index following the last read byte
+    private boolean eof = false;
+    private boolean skipLf = false; // Previous line ended with \r, a following \n belongs to it
+    private int lineStart; // Index of the first byte of the trimmed line
+    private int lineEnd; // Index following the last byte of the trimmed line
+
+    /**
+     * @param charset UTF-8, US-ASCII or ISO-8859-1
+     */
+    public SrtByteCueReader(InputStream is, Charset charset) {
+        this.is = is;
+        this.charset = charset;
+    }
+
+    /**
+     * @return true if the input of this charset can be scanned byte by byte
+     */
+    public static boolean supports(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) ||
+                charset.equals(StandardCharsets.US_ASCII) ||
+                charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    protected SrtCue readCue() throws IOException, SubtitleParsingException {
+        CursorStatus cursorStatus = CursorStatus.NONE;
+        SrtCue cue = null;
+
+        while (this.nextLine()) {
+            boolean empty = this.lineStart == this.lineEnd;
+
+            if (cursorStatus == CursorStatus.NONE) {
+                if (empty) {
+                    continue;
+                }
+
+                // New cue, most cues have one or two lines of one text
+                cue = new SrtCue();
+                cue.setLines(new ArrayList<SubtitleLine>(2));
+
+                // First line is the cue number
+                String id = this.decodeLine();
+
+                if (!this.isNumber()) {
+                    try {
+                        Integer.parseInt(id);
+                    } catch (NumberFormatException e) {
+                        throw new SubtitleParsingException(String.format(
+                                "Unable to parse cue number: %s",
+                                id));
+                    }
+                }
+
+                cue.setId(id);
+                cursorStatus = CursorStatus.CUE_ID;
+                continue;
+            }
+
+            // Second line defines the start and end time codes
+            // 00:01:21,456 --> 00:01:23,417
+            if (cursorStatus == CursorStatus.CUE_ID) {
+                this.parseTimeCodes(cue);
+                cursorStatus = CursorStatus.CUE_TIMECODE;
+                continue;
+            }
+
+            // Following lines are the cue lines
+            if (!empty && (
+                    cursorStatus == CursorStatus.CUE_TIMECODE ||
+                    cursorStatus ==  CursorStatus.CUE_TEXT)) {
+                SubtitleTextLine line = new SubtitleTextLine(new ArrayList<SubtitleText>(1));
+                line.addText(new SubtitlePlainText(this.decodeLine()));
+                cue.addLine(line);
+                cursorStatus = CursorStatus.CUE_TEXT;
+                continue;
+            }
+
+            if (cursorStatus == CursorStatus.CUE_TEXT && empty) {
+                // End of cue
+                return cue;
+            }
+
+            throw new SubtitleParsingException(String.format(
+                    "Unexpected line: %s", this.decodeLine()));
+        }
+
+        // Last cue is not followed by an empty line
+        return cue;
+    }
+
+    /**
+     * Find the next line and trim it
+     *
+     * @return false if the end of the input is reached
+     */
+    private boolean nextLine() throws IOException {
+        if (this.skipLf) {
+            if (this.position == this.limit) {
+                this.fill();
+            }
+
+            if (this.position < this.limit && this.buffer[this.position] == '\n') {
+                this.position++;
+            }
+
+            this.skipLf = false;
+        }
+
+        int index = this.position;
+
+        while (true) {
+            while (index < this.limit) {
+                byte b = this.buffer[index];
+
+                if (b == '\n' || b == '\r') {
+                    this.setLine(this.position, index);
+                    this.position = index + 1;
+                    this.skipLf = (b == '\r');
+                    return true;
+                }
+
+                index++;
+            }
+
+            if (this.eof) {
+                break;
+            }
+
+            // Line continues after the read bytes
+            int scanned = index - this.position;
+            this.fill();
+            index = this.position + scanned;
+        }
+
+        if (this.position == this.limit) {
+            return false;
+        }
+
+        // Last line is not followed by a line break
+        this.setLine(this.position, this.limit);
+        this.position = this.limit;
+        return true;
+    }
+
+    /**
+     * Read more bytes, keeping the bytes of the current line
+     * At the end of the input, eof is set
+     */
+    private void fill() throws IOException {
+        int pending = this.limit - this.position;
+
+        if (this.position > 0) {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, pending);
+        } else if (pending == this.buffer.length) {
+            // Line is longer than the buffer
+            byte[] buffer = new byte[this.buffer.length * 2];
+            System.arraycopy(this.buffer, 0, buffer, 0, pending);
+            this.buffer = buffer;
+        }
+
+        this.position = 0;
+        this.limit = pending;
+        int count = this.is.read(this.buffer, this.limit, this.buffer.length - this.limit);
+
+        if (count < 0) {
+            this.eof = true;
+        } else {
+            this.limit += count;
+        }
+    }
+
+    /**
+     * Set the line bounds, without leading and trailing spaces and control chars like String.trim
+     */
+    private void setLine(int start, int end) {
+        while (start < end && (this.buffer[start] & 0xff) <= ' ') {
+            start++;
+        }
+
+        while (end > start && (this.buffer[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+
+        this.lineStart = start;
+        this.lineEnd = end;
+    }
+
+    private String decodeLine() {
+        return new String(this.buffer, this.lineStart, this.lineEnd - this.lineStart, this.charset);
+    }
+
+    /**
+     * @return true if the line is a number of less than 10 digits, so it can be parsed as an int
+     */
+    private boolean isNumber() {
+        int length = this.lineEnd - this.lineStart;
+
+        if (length > 9) {
+            return false;
+        }
+
+        for (int i = this.lineStart; i < this.lineEnd; i++) {
+            if (this.buffer[i] < '0' || this.buffer[i] > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Set cue start and end times from a time codes line: 00:01:21,456 --> 00:01:23,417
+     * Lines which are not ascii time codes are parsed as strings, to fail with the same message as SrtCueReader
+     */
+    private void parseTimeCodes(SrtCue cue) throws SubtitleParsingException {
+        int arrowIndex = this.indexOfArrow();
+        long startTime = -1;
+        long endTime = -1;
+
+        if (arrowIndex >= 0) {
+            int endOffset = arrowIndex + 3;
+
+            while (endOffset < this.lineEnd && isWhitespace(this.buffer[endOffset])) {
+                endOffset++;
+            }
+
+            if (endOffset == this.lineEnd || this.buffer[endOffset] >= 0) {
+                startTime = TimeCodeCodec.parse(this.buffer, this.lineStart, this.lineEnd);
+                endTime = TimeCodeCodec.parse(this.buffer, endOffset, this.lineEnd);
+            }
+        }
+
+        if (startTime < 0 || endTime < 0) {
+            SrtCueReader.parseTimeCodes(this.decodeLine(), cue);
+            return;
+        }
+
+        cue.setStartMillis(startTime);
+        cue.setEndMillis(endTime);
+    }
+
+    /**
+     * @return index of the first "-->" of the line, or -1
+     */
+    private int indexOfArrow() {
+        for (int i = this.lineStart; i < this.lineEnd - 2; i++) {
+            if (this.buffer[i] == '-' && this.buffer[i + 1] == '-' && this.buffer[i + 2] == '>') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return true if the ascii byte is a whitespace according to Character.isWhitespace
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= 0x09 && b <= 0x0d) || (b >= 0x1c && b <= 0x1f);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.is.close();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.srt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import fr.noop.subtitle.base.BaseSubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.util.TimeCodeCodec;
+
+/**
+ * Read SRT cues one by one
+ *
+ * A cue is returned when the empty line ending it (or the end of the input) is read.
+ */
+public class SrtCueReader extends BaseSubtitleCueReader {
+    private enum CursorStatus {
+        NONE,
+        CUE_ID,
+        CUE_TIMECODE,
+        CUE_TEXT;
+    }
+
+    private BufferedReader br;
+
+    public SrtCueReader(InputStream is, String charset) throws IOException {
+        this.br = new BufferedReader(new InputStreamReader(is, charset));
+    }
+
+    @Override
+    protected SrtCue readCue() throws IOException, SubtitleParsingException {
+        String textLine = "";
+        CursorStatus cursorStatus = CursorStatus.NONE;
+        SrtCue cue = null;
+
+        while ((textLine = this.br.readLine()) != null) {
+            textLine = textLine.trim();
+
+            if (cursorStatus == CursorStatus.NONE) {
+                if (textLine.isEmpty()) {
+                    continue;
+                }
+
+                // New cue
+                cue = new SrtCue();
+
+                // First textLine is the cue number
+                try {
+                    Integer.parseInt(textLine);
+                } catch (NumberFormatException e) {
+                    throw new SubtitleParsingException(String.format(
+                            "Unable to parse cue number: %s",
+                            textLine));
+                }
+
+                cue.setId(textLine);
+                cursorStatus = CursorStatus.CUE_ID;
+                continue;
+            }
+
+            // Second textLine defines the start and end time codes
+            // 00:01:21,456 --> 00:01:23,417
+            if (cursorStatus == CursorStatus.CUE_ID) {
+                parseTimeCodes(textLine, cue);
+                cursorStatus = CursorStatus.CUE_TIMECODE;
+                continue;
+            }
+
+            // Following lines are the cue lines
+            if (!textLine.isEmpty() && (
+                    cursorStatus == CursorStatus.CUE_TIMECODE ||
+                    cursorStatus ==  CursorStatus.CUE_TEXT)) {
+                SubtitleTextLine line = new SubtitleTextLine();
+                line.addText(new SubtitlePlainText(textLine));
+                cue.addLine(line);
+                cursorStatus = CursorStatus.CUE_TEXT;
+                continue;
+            }
+
+            if (cursorStatus == CursorStatus.CUE_TEXT && textLine.isEmpty()) {
+                // End of cue
+                return cue;
+            }
+
+            throw new SubtitleParsingException(String.format(
+                    "Unexpected line: %s", textLine));
+        }
+
+        // Last cue is not followed by an empty line
+        return cue;
+    }
+
+    /**
+     * Set cue start and end times from a time codes line: 00:01:21,456 --> 00:01:23,417
+     */
+    static void parseTimeCodes(String textLine, SrtCue cue) throws SubtitleParsingException {
+        int arrowIndex = textLine.indexOf("-->");
+
+        if (arrowIndex < 0) {
+            throw new SubtitleParsingException(String.format(
+                    "Timecode textLine is badly formated: %s", textLine));
+        }
+
+        int endOffset = arrowIndex + 3;
+
+        while (endOffset < textLine.length() && Character.isWhitespace(textLine.charAt(endOffset))) {
+            endOffset++;
+        }
+
+        long startTime = TimeCodeCodec.parse(textLine, 0);
+        long endTime = TimeCodeCodec.parse(textLine, endOffset);
+
+        if (startTime < 0 || endTime < 0) {
+            throw new SubtitleParsingException(String.format(
+                    "Unable to parse time code: %s", textLine));
+        }
+
+        cue.setStartMillis(startTime);
+        cue.setEndMillis(endTime);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.br.close();
+    }
+}
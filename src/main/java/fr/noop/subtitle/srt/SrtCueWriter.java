@@ -0,0 +1,99 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.srt;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.util.TextEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Write SRT cues one by one
+ */
+public class SrtCueWriter implements SubtitleCueWriter {
+    private OutputStream os;
+    private String charset; // Charset used to encode file
+    private TextEncoder encoder; // Opened on the first write
+    private int subtitleIndex = 0;
+
+    public SrtCueWriter(OutputStream os, String charset) {
+        this.os = os;
+        this.charset = charset;
+    }
+
+    @Override
+    public void begin(Map<SubtitleObject.Property, Object> properties) {
+        // SRT has no header
+    }
+
+    @Override
+    public void write(SubtitleCue cue) throws IOException {
+        TextEncoder encoder = this.getEncoder();
+        this.subtitleIndex++;
+
+        // Write number of subtitle
+        encoder.write(this.subtitleIndex).write('\n');
+
+        // Write Start time and end time
+        encoder.writeTimeCode(cue.getStartMillis(), ',').write(" --> ");
+        encoder.writeTimeCode(cue.getEndMillis(), ',').write(" \n");
+
+        // Write text
+        encoder.write(cue.getText()).write('\n');
+
+        // Write emptyline
+        encoder.write('\n');
+    }
+
+    @Override
+    public void end() throws IOException {
+        if (this.encoder == null) {
+            this.os.flush();
+            return;
+        }
+
+        this.encoder.end();
+        this.encoder = null;
+    }
+
+    /**
+     * Pending encoded text, not written to the output stream yet, is dropped
+     */
+    @Override
+    public void abort() {
+        if (this.encoder != null) {
+            this.encoder.discard();
+            this.encoder = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.encoder == null) {
+            this.os.flush();
+            return;
+        }
+
+        this.encoder.flush();
+    }
+
+    private TextEncoder getEncoder() throws IOException {
+        if (this.encoder == null) {
+            this.encoder = TextEncoder.open(this.os, this.charset);
+        }
+
+        return this.encoder;
+    }
+}
@@ -10,28 +10,18 @@
 
 package fr.noop.subtitle.srt;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 
-import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleCueReader;
 import fr.noop.subtitle.model.SubtitleParsingException;
-import fr.noop.subtitle.util.SubtitlePlainText;
-import fr.noop.subtitle.util.SubtitleTextLine;
-import fr.noop.subtitle.util.SubtitleTimeCode;
+import fr.noop.subtitle.model.SubtitleStreamParser;
 
 /**
  * Created by clebeaupin on 21/09/15.
  */
-public class SrtParser implements SubtitleParser {
-    private enum CursorStatus {
-        NONE,
-        CUE_ID,
-        CUE_TIMECODE,
-        CUE_TEXT;
-    }
-
+public class SrtParser implements SubtitleStreamParser {
     private String charset; // Charset of the input files
 
     public SrtParser(String charset) {
@@ -47,92 +37,38 @@ public class SrtParser implements SubtitleParser {
     public SrtObject parse(InputStream is, boolean strict) throws IOException, SubtitleParsingException {
         // Create srt object
         SrtObject srtObject = new SrtObject();
+        SubtitleCueReader reader = this.read(is, strict);
 
-        // Read each lines
-        BufferedReader br = new BufferedReader(new InputStreamReader(is, this.charset));
-        String textLine = "";
-        CursorStatus cursorStatus = CursorStatus.NONE;
-        SrtCue cue = null;
-
-        while ((textLine = br.readLine()) != null) {
-            textLine = textLine.trim();
-
-            if (cursorStatus == CursorStatus.NONE) {
-                if (textLine.isEmpty()) {
-                    continue;
-                }
-
-                // New cue
-                cue = new SrtCue();
-
-                // First textLine is the cue number
-                try {
-                    Integer.parseInt(textLine);
-                } catch (NumberFormatException e) {
-                    throw new SubtitleParsingException(String.format(
-                            "Unable to parse cue number: %s",
-                            textLine));
-                }
-
-                cue.setId(textLine);
-                cursorStatus = CursorStatus.CUE_ID;
-                continue;
-            }
-
-            // Second textLine defines the start and end time codes
-            // 00:01:21,456 --> 00:01:23,417
-            if (cursorStatus == CursorStatus.CUE_ID) {
-                if (!textLine.substring(13, 16).equals("-->")) {
-                    throw new SubtitleParsingException(String.format(
-                            "Timecode textLine is badly formated: %s", textLine));
-                }
+        while (reader.hasNext()) {
+            srtObject.addCue(reader.next());
+        }
 
-                cue.setStartTime(this.parseTimeCode(textLine.substring(0, 12)));
-                cue.setEndTime(this.parseTimeCode(textLine.substring(17)));
-                cursorStatus = CursorStatus.CUE_TIMECODE;
-                continue;
-            }
+        return srtObject;
+    }
 
-            // Following lines are the cue lines
-            if (!textLine.isEmpty() && (
-                    cursorStatus == CursorStatus.CUE_TIMECODE ||
-                    cursorStatus ==  CursorStatus.CUE_TEXT)) {
-                SubtitleTextLine line = new SubtitleTextLine();
-                line.addText(new SubtitlePlainText(textLine));
-                cue.addLine(line);
-                cursorStatus = CursorStatus.CUE_TEXT;
-                continue;
-            }
+    @Override
+    public SubtitleCueReader read(InputStream is) throws IOException {
+        return this.read(is, true);
+    }
 
-            if (cursorStatus == CursorStatus.CUE_TEXT && textLine.isEmpty()) {
-                // End of cue
-                srtObject.addCue(cue);
-                cue = null;
-                cursorStatus = CursorStatus.NONE;
-                continue;
-            }
+    /**
+     * UTF-8, US-ASCII and ISO-8859-1 inputs are scanned byte by byte,
+     * other inputs are decoded by a reader
+     */
+    @Override
+    public SubtitleCueReader read(InputStream is, boolean strict) throws IOException {
+        Charset charset = null;
 
-            throw new SubtitleParsingException(String.format(
-                    "Unexpected line: %s", textLine));
+        try {
+            charset = Charset.forName(this.charset);
+        } catch (IllegalArgumentException e) {
+            // Unsupported charset, reported by the reader
         }
 
-        if (cue != null) {
-            srtObject.addCue(cue);
+        if (charset != null && SrtByteCueReader.supports(charset)) {
+            return new SrtByteCueReader(is, charset);
         }
 
-        return srtObject;
-    }
-
-    private SubtitleTimeCode parseTimeCode(String timeCodeString) throws SubtitleParsingException {
-        try {
-            int hour = Integer.parseInt(timeCodeString.substring(0, 2));
-            int minute = Integer.parseInt(timeCodeString.substring(3, 5));
-            int second = Integer.parseInt(timeCodeString.substring(6, 8));
-            int millisecond = Integer.parseInt(timeCodeString.substring(9, 12));
-            return new SubtitleTimeCode(hour, minute, second, millisecond);
-        } catch (NumberFormatException e) {
-            throw new SubtitleParsingException(String.format(
-                    "Unable to parse time code: %s", timeCodeString));
-        }
+        return new SrtCueReader(is, this.charset);
     }
 }
@@ -10,20 +10,18 @@
 
 package fr.noop.subtitle.srt;
 
-import fr.noop.subtitle.base.BaseSubtitleObject;
 import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
 import fr.noop.subtitle.model.SubtitleObject;
-import fr.noop.subtitle.model.SubtitleWriter;
-import fr.noop.subtitle.util.SubtitleTimeCode;
+import fr.noop.subtitle.model.SubtitleStreamWriter;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 
 /**
  * Created by clebeaupin on 02/10/15.
  */
-public class SrtWriter implements SubtitleWriter {
+public class SrtWriter implements SubtitleStreamWriter {
     private String charset; // Charset used to encode file
 
     public SrtWriter(String charset) {
@@ -32,39 +30,18 @@ public class SrtWriter implements SubtitleWriter {
 
     @Override
     public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
-        try {
-            int subtitleIndex = 0;
+        SubtitleCueWriter cueWriter = this.open(os);
+        cueWriter.begin(subtitleObject.getProperties());
 
-            for (SubtitleCue cue : subtitleObject.getCues()) {
-                subtitleIndex++;
-
-                // Write number of subtitle
-                String number = String.format("%d\n", subtitleIndex);
-                os.write(number.getBytes(this.charset));
-
-                // Write Start time and end time
-                String startToEnd = String.format("%s --> %s \n",
-                        this.formatTimeCode(cue.getStartTime()),
-                        this.formatTimeCode(cue.getEndTime()));
-                os.write(startToEnd.getBytes(this.charset));
-
-                // Write text
-                String text = String.format("%s\n", cue.getText());
-                os.write(text.getBytes(this.charset));
-
-                // Write emptyline
-                os.write("\n".getBytes(this.charset));
-            }
-        } catch (UnsupportedEncodingException e) {
-            throw new IOException("Encoding error in input subtitle");
+        for (SubtitleCue cue : subtitleObject.getCues()) {
+            cueWriter.write(cue);
         }
+
+        cueWriter.end();
     }
 
-    private String formatTimeCode(SubtitleTimeCode timeCode) {
-        return String.format("%02d:%02d:%02d,%03d",
-                timeCode.getHour(),
-                timeCode.getMinute(),
-                timeCode.getSecond(),
-                timeCode.getMillisecond());
+    @Override
+    public SrtCueWriter open(OutputStream os) {
+        return new SrtCueWriter(os, this.charset);
     }
 }
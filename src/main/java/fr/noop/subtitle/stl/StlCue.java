@@ -11,6 +11,7 @@
 package fr.noop.subtitle.stl;
 
 import fr.noop.subtitle.base.BaseSubtitleCue;
+import fr.noop.subtitle.model.SubtitleLine;
 import fr.noop.subtitle.model.SubtitleRegionCue;
 import fr.noop.subtitle.util.*;
 
@@ -34,8 +35,12 @@ public class StlCue extends BaseSubtitleCue implements SubtitleRegionCue {
     // height and y values vary depending on TTI vp value and cue number of lines
     SubtitleRegion region;
 
+    // Lines are decoded from the TTI text fields when they are requested
+    private boolean decoded = false;
+    private int lineCount = 0;
+
     public StlCue(StlTti tti) {
-        super(tti.getTci(), tti.getTco());
+        super(tti.getTciMillis(), tti.getTcoMillis());
         this.addTti(tti);
     }
 
@@ -45,107 +50,158 @@ public class StlCue extends BaseSubtitleCue implements SubtitleRegionCue {
 
     public void addTti(StlTti tti) {
         this.ttis.add(tti);
-        this.addText(tti);
+        this.lineCount += this.readText(tti, this.decoded);
+    }
+
+    @Override
+    public List<SubtitleLine> getLines() {
+        if (!this.decoded) {
+            this.decoded = true;
+
+            for (StlTti tti: this.ttis) {
+                this.readText(tti, true);
+            }
+        }
+
+        return super.getLines();
+    }
+
+    @Override
+    public void setLines(List<SubtitleLine> lines) {
+        this.decoded = true;
+        this.lineCount = lines.size();
+        super.setLines(lines);
+    }
+
+    @Override
+    public void addLine(SubtitleLine line) {
+        this.getLines();
+        this.lineCount++;
+        super.addLine(line);
+    }
+
+    /**
+     * @return Number of lines, without decoding them
+     */
+    public int getLineCount() {
+        return this.lineCount;
     }
 
     /**
-     * Build cue text from tti text field
+     * Read cue lines from tti text field
+     * Control codes are interpreted on bytes, only texts are decoded with the tti charset
+     *
+     * @param tti TTI block
+     * @param addLines False to only count lines, true to also decode them and add them to the cue
+     * @return the number of lines of the text field
      */
-    private void addText(StlTti tti) {
-        String tf = tti.getTf();
-
-        for (String tfPart: tf.split("\u008a")) {
-            SubtitleTextLine line = new SubtitleTextLine();
-            SubtitleStyle textStyle = null;
-            String text = null;
-            boolean startText = false; // Set to true to start ingesting text
-            int cIndex = 0; // Char index
-
-            while (cIndex < tfPart.length()) {
-                // Current char and current byte
-                char cc = tfPart.charAt(cIndex);
-                int cByte = (cc & 0xff);
-                cIndex++;
-
-                // If not defined, create new text with new style
-                if (text == null) {
-                    text = new String();
-                    textStyle = new SubtitleStyle();
-
-                    if (tti.getJc() == StlTti.Jc.NONE) {
-                        // Start ingesting text before start box directive (0x0b)
-                        startText = true;
-                    } else {
-                        startText = false;
+    private int readText(StlTti tti, boolean addLines) {
+        byte[] textBytes = addLines ? new byte[StlTti.TF_LENGTH] : null;
+        int tfLength = tti.getTfLength();
+        int lines = 0;
+        SubtitleTextLine line = addLines ? new SubtitleTextLine() : null;
+        boolean emptyLine = true;
+        StlTti.TextColor textColor = null;
+        boolean inText = false; // Set to true when a text has been started
+        int textLength = 0;
+        boolean startText = false; // Set to true to start ingesting text
+
+        // Rows are separated by 0x8a
+        for (int bIndex = 0; bIndex <= tfLength; bIndex++) {
+            int cByte = (bIndex < tfLength) ? tti.getTfByte(bIndex) : 0x8a;
+
+            // End of row
+            if (cByte == 0x8a) {
+                if (!emptyLine) {
+                    lines++;
+
+                    if (addLines) {
+                        super.addLine(line);
+                        line = new SubtitleTextLine();
                     }
                 }
 
-                // Start box directive
-                if (cByte == 0x0b) {
-                    startText = true;
-                }
+                emptyLine = true;
+                inText = false;
+                continue;
+            }
 
-                // Do not process these values
-                if ((cByte >= 0x08 && cByte <= 0x09) ||
-                        (cByte >= 0x0b && cByte <= 0x0f) ||
-                        (cByte >= 0x18 && cByte <= 0x1f) ||
-                        (cByte >= 0x86 && cByte <= 0x8f)) {
-                    continue;
-                }
+            // If not defined, create new text with new style
+            if (!inText) {
+                inText = true;
+                textLength = 0;
+                textColor = null;
 
-                // FIXME: Process text decoration
-                if (cByte == 0x80 || cByte == 0x82 || cByte == 0x84) {
-                    continue;
-                }
+                // Start ingesting text before start box directive (0x0b)
+                startText = (tti.getJc() == StlTti.Jc.NONE);
+            }
 
-                // Color information
-                if ((cByte >= 0x00 && cByte <= 0x07) ||
-                        (cByte >= 0x10 && cByte <= 0x17)) {
-                    textStyle.setColor(StlTti.TextColor.getEnum(cByte).getColor());
-                    continue;
-                }
+            // Start box directive
+            if (cByte == 0x0b) {
+                startText = true;
+            }
+
+            // Do not process these values
+            if ((cByte >= 0x08 && cByte <= 0x09) ||
+                    (cByte >= 0x0b && cByte <= 0x0f) ||
+                    (cByte >= 0x18 && cByte <= 0x1f) ||
+                    (cByte >= 0x86 && cByte <= 0x8f)) {
+                continue;
+            }
 
-                // Text has not been initialized
-                if (text == null) {
-                    continue;
+            // FIXME: Process text decoration
+            if (cByte == 0x80 || cByte == 0x82 || cByte == 0x84) {
+                continue;
+            }
+
+            // Color information
+            if ((cByte >= 0x00 && cByte <= 0x07) ||
+                    (cByte >= 0x10 && cByte <= 0x17)) {
+                if (addLines) {
+                    textColor = StlTti.TextColor.getEnum(cByte);
                 }
 
-                // Text content is closed
-                if (cByte == 0x0a || cByte == 0x81 || cByte == 0x83 || cByte == 0x85) {
-                    if (!textStyle.hasProperties()) {
-                        // Style override any properties
-                        // So do not register it
-                        textStyle = null;
-                    }
+                continue;
+            }
 
-                    if (text != null && !text.isEmpty()) {
-                        if (textStyle == null) {
-                            line.addText(new SubtitlePlainText(text));
+            // Text content is closed
+            if (cByte == 0x0a || cByte == 0x81 || cByte == 0x83 || cByte == 0x85) {
+                if (textLength > 0) {
+                    emptyLine = false;
+
+                    if (addLines) {
+                        String text = tti.decode(textBytes, textLength);
+
+                        if (textColor != null) {
+                            // Texts of the same color share their style
+                            line.addText(new SubtitleStyledText(text, textColor.getStyle()));
                         } else {
-                            line.addText(new SubtitleStyledText(text, textStyle));
+                            // Style override any properties
+                            // So do not register it
+                            line.addText(new SubtitlePlainText(text));
                         }
                     }
-
-                    text = null;
-                    textStyle = null;
-                    continue;
                 }
 
-                // Readable char
-                if (startText) {
-                    text += cc;
-                }
+                inText = false;
+                continue;
             }
 
-            // Add text row
-            if (!line.isEmpty()) {
-                this.addLine(line);
+            // Readable char
+            if (startText) {
+                if (addLines) {
+                    textBytes[textLength] = (byte) cByte;
+                }
+
+                textLength++;
             }
         }
+
+        return lines;
     }
 
     public boolean isEmpty() {
-        return this.getText().isEmpty();
+        return this.lineCount == 0;
     }
 
     public SubtitleRegion getRegion() {
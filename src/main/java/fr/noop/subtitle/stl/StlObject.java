@@ -23,6 +23,11 @@ public class StlObject extends BaseSubtitleObject {
     private StlGsi gsi;
     List<StlTti> ttis = new ArrayList<>();
 
+    // Cue of the last block chain, while its last block has not been added
+    private StlCue openCue;
+    private int openCueSn;
+    private boolean openCueIgnoreTcf;
+
     public StlObject(StlGsi gsi) {
         this.setProperty(Property.TITLE, gsi.getOpt());
         this.setProperty(Property.FRAME_RATE, gsi.getDfc().getFrameRate());
@@ -45,11 +50,50 @@ public class StlObject extends BaseSubtitleObject {
         this.ttis = ttis;
     }
 
+    /**
+     * Add a TTI block and create its cue
+     *
+     * Extension blocks are merged: a block following a block of the same subtitle number
+     * whose extension block number is lower than 0xf0 continues the same cue.
+     * The cue of a block chain is added when its last block (0xff) is added,
+     * call {@link #closeTtis()} once all blocks are added to add an unterminated chain.
+     */
     public void addTti(StlTti tti, boolean ignoreTcf) {
+        this.addTti(tti, null, ignoreTcf);
+    }
+
+    /**
+     * @param cue Cue already created from the tti, used if the tti starts a new cue, can be null
+     */
+    void addTti(StlTti tti, StlCue cue, boolean ignoreTcf) {
         this.ttis.add(tti);
 
-        // Create cue from tti
-        StlCue cue = new StlCue(tti);
+        if (this.openCue != null && this.openCueSn == tti.getSn()) {
+            // Extension block: continue the text of the open cue
+            this.openCue.addTti(tti);
+        } else {
+            this.closeTtis();
+            this.openCue = (cue != null) ? cue : new StlCue(tti);
+            this.openCueSn = tti.getSn();
+            this.openCueIgnoreTcf = ignoreTcf;
+        }
+
+        if (!StlTti.isExtension(tti.getEbn())) {
+            this.closeTtis();
+        }
+    }
+
+    /**
+     * Add the cue of the last block chain, if its last block is missing
+     */
+    public void closeTtis() {
+        StlCue cue = this.openCue;
+
+        if (cue == null) {
+            return;
+        }
+
+        this.openCue = null;
 
         // Do not create cue if tti text field is empty
         if (cue.isEmpty()) {
@@ -57,18 +101,18 @@ public class StlObject extends BaseSubtitleObject {
         }
 
         // Adjust start and end time depending on GSI Tcf
-        if(!ignoreTcf) {
+        if(!this.openCueIgnoreTcf) {
             cue.subtractTime(this.gsi.getTcf());
         }
 
         // Create cue region
-        // Use tti vertical position
+        // Use vertical position of the first tti
         // and gsi maximum number of rows information
         // to build the region
         float rowHeight = 100.0f/((float) gsi.getMnr());
 
         // Adjust vp to align cues having 1, 2 or 3 rows
-        int newVp = tti.getVp()+(2*(cue.getLines().size()-1));
+        int newVp = cue.getTtis().get(0).getVp()+(2*(cue.getLineCount()-1));
 
         // Consider that all regions are rows taking 100% of the width
         SubtitleRegion region = new SubtitleRegion(0, 100.0f-((gsi.getMnr()-newVp)*rowHeight));
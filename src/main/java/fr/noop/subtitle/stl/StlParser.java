@@ -10,15 +10,23 @@
 
 package fr.noop.subtitle.stl;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.CoderMalfunctionError;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -28,58 +36,156 @@ import fr.noop.subtitle.util.SubtitleTimeCode;
 
 /**
  * Created by clebeaupin on 21/09/15.
+ *
+ * GSI and TTI blocks have a fixed size, so they are decoded from a buffer by offset.
+ * TTI text fields are not copied: they are decoded when cue lines are requested,
+ * so the buffer must not be modified once parsed.
+ *
+ * Given a fork/join pool, TTI blocks are decoded in parallel by ranges, texts included,
+ * then added to the STL object in file order, so the result is the same as a sequential parse.
  */
 public class StlParser implements SubtitleParser {
+    private final static int GSI_LENGTH = 1024;
+    private final static int TTI_LENGTH = 128;
+    private final static int TTI_BATCH_SIZE = 1024; // Number of TTI blocks decoded by a single task
+
+    private ForkJoinPool pool;
+
     public StlParser() {
     }
+
+    /**
+     * @param pool Pool decoding the TTI blocks of large files in parallel
+     */
+    public StlParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
     
-    public StlObject parse(InputStream is) throws SubtitleParsingException {
+    public StlObject parse(InputStream is) throws IOException, SubtitleParsingException {
     	return parse(is, true, false, false);
     }
 
     public StlObject parse(InputStream is,
-                           boolean strict) throws SubtitleParsingException {
+                           boolean strict) throws IOException, SubtitleParsingException {
         return parse(is, strict, false, false);
     }
 
     public StlObject parse(InputStream is,
+                           boolean strict,
+                           boolean skipUserdataTf,
+                           boolean ignoreTcf) throws IOException, SubtitleParsingException {
+        return this.parse(this.readFully(is), strict, skipUserdataTf, ignoreTcf);
+    }
+
+    /**
+     * Memory map a STL file and parse it
+     */
+    public StlObject parse(Path path) throws IOException, SubtitleParsingException {
+        return this.parse(path, true, false, false);
+    }
+
+    public StlObject parse(Path path,
+                           boolean strict,
+                           boolean skipUserdataTf,
+                           boolean ignoreTcf) throws IOException, SubtitleParsingException {
+        // The mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return this.parse(buffer, strict, skipUserdataTf, ignoreTcf);
+        }
+    }
+
+    /**
+     * Parse STL from the buffer position to its limit
+     * The buffer position is not changed
+     */
+    public StlObject parse(ByteBuffer buffer) throws SubtitleParsingException {
+        return this.parse(buffer, true, false, false);
+    }
+
+    public StlObject parse(ByteBuffer buffer,
                            boolean strict,
                            boolean skipUserdataTf,
                            boolean ignoreTcf) throws SubtitleParsingException {
-        BufferedInputStream bis = new BufferedInputStream(is);
-        DataInputStream dis = new DataInputStream(bis);
+        // Offsets are relative to the STL start, numbers are little endian
+        ByteBuffer stlBuffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
 
         // Create STL subtitle
         StlObject stl;
 
         try {
             // Read GSI block
-            StlGsi gsi = this.readGsi(dis);
+            StlGsi gsi = this.readGsi(stlBuffer);
             stl = new StlObject(gsi);
         } catch (IOException e) {
             throw new SubtitleParsingException("Unable to parse Gsi block");
         }
 
+        Charset charset;
+
+        try {
+            charset = Charset.forName(stl.getGsi().getCct().getCharset());
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new SubtitleParsingException(String.format(
+                    "Unsupported charset: %s", stl.getGsi().getCct().getCharset()));
+        }
+
         // Iterate over all TTI blocks and parse them
-        int subtitleIndex = 0;
+        int frameRate = stl.getGsi().getDfc().getFrameRate();
+        int tnb = stl.getGsi().getTnb();
 
-        while (subtitleIndex++ < stl.getGsi().getTnb()) {
-            StlTti tti;
+        if (GSI_LENGTH + (long) tnb * TTI_LENGTH > stlBuffer.limit()) {
+            throw new SubtitleParsingException("Unable to parse tti block");
+        }
 
-            try {
-                tti = this.readTti(dis, stl.getGsi());
-            } catch (IOException e) {
-                throw new SubtitleParsingException("Unable to parse tti block");
-            }
+        if (this.pool != null && tnb > TTI_BATCH_SIZE) {
+            // Decode blocks in parallel, then add them in order
+            StlTti[] ttis = new StlTti[tnb];
+            StlCue[] cues = new StlCue[tnb];
+            this.pool.invoke(new TtiDecoder(stlBuffer, frameRate, charset, skipUserdataTf, ttis, cues, 0, tnb));
 
-            if (!skipUserdataTf || tti.getEbn() != 254) {
-                stl.addTti(tti, ignoreTcf);
+            for (int subtitleIndex = 0; subtitleIndex < tnb; subtitleIndex++) {
+                if (!skipUserdataTf || ttis[subtitleIndex].getEbn() != StlTti.EBN_USER_DATA) {
+                    stl.addTti(ttis[subtitleIndex], cues[subtitleIndex], ignoreTcf);
+                }
+            }
+        } else {
+            for (int subtitleIndex = 0; subtitleIndex < tnb; subtitleIndex++) {
+                int offset = GSI_LENGTH + subtitleIndex * TTI_LENGTH;
+                StlTti tti = this.readTti(stlBuffer, offset, frameRate, charset);
+
+                if (!skipUserdataTf || tti.getEbn() != StlTti.EBN_USER_DATA) {
+                    stl.addTti(tti, ignoreTcf);
+                }
             }
         }
 
+        // Last block chain may be unterminated
+        stl.closeTtis();
+
         return stl;
     }
 
+    /**
+     * Read the stream until its end, the bytes are wrapped without copy
+     */
+    private ByteBuffer readFully(InputStream is) throws IOException {
+        // One more byte than available, so that the end of a file is read without growing
+        byte[] bytes = new byte[Math.max(is.available(), 8191) + 1];
+        int length = 0;
+        int read;
+
+        while ((read = is.read(bytes, length, bytes.length - length)) != -1) {
+            length += read;
+
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
     private Date readDate(String dateString) throws IOException {
         DateFormat df = new SimpleDateFormat("yyMMdd");
 
@@ -90,11 +196,12 @@ public class StlParser implements SubtitleParser {
         }
     }
 
-    private SubtitleTimeCode readTimeCode(String timeCodeString, int frameRate) throws IOException {
-        int hour = Integer.parseInt(timeCodeString.substring(0, 2));
-        int minute = Integer.parseInt(timeCodeString.substring(2, 4));
-        int second = Integer.parseInt(timeCodeString.substring(4, 6));
-        int frame = Integer.parseInt(timeCodeString.substring(6, 8));
+    private SubtitleTimeCode readGsiTimeCode(ByteBuffer bb, int offset, int frameRate) throws IOException {
+        // HHMMSSFF
+        int hour = this.readNumber(bb, offset, 2);
+        int minute = this.readNumber(bb, offset + 2, 2);
+        int second = this.readNumber(bb, offset + 4, 2);
+        int frame = this.readNumber(bb, offset + 6, 2);
 
         // Frame duration in milliseconds
         int frameDuration = (1000/frameRate);
@@ -103,189 +210,267 @@ public class StlParser implements SubtitleParser {
         return new SubtitleTimeCode(hour, minute, second, frame*frameDuration);
     }
 
-    private SubtitleTimeCode readTimeCode(DataInputStream dis, int frameRate) throws IOException {
-        int hour = dis.readUnsignedByte();
-        int minute = dis.readUnsignedByte();
-        int second = dis.readUnsignedByte();
-        int frame = dis.readUnsignedByte();
-
-        // Frame duration in milliseconds
-        int frameDuration = (1000/frameRate);
+    private long readTimeCode(ByteBuffer bb, int offset, int frameDuration) {
+        int hour = bb.get(offset) & 0xff;
+        int minute = bb.get(offset + 1) & 0xff;
+        int second = bb.get(offset + 2) & 0xff;
+        int frame = bb.get(offset + 3) & 0xff;
 
-        // Build time code
-        return new SubtitleTimeCode(hour, minute, second, frame*frameDuration);
+        return hour * 3600000L + minute * 60000L + second * 1000L + frame * frameDuration;
     }
 
-    private String readString(DataInputStream dis, int length, String charset) throws IOException {
+    private String readString(ByteBuffer bb, int offset, int length) {
         byte [] bytes = new byte[length];
-        dis.readFully(bytes, 0, length);
+        ByteBuffer source = bb.duplicate();
+        source.position(offset);
+        source.get(bytes, 0, length);
 
         // Remove spaces at start and end of the string
-        return StringUtils.strip(new String(bytes, charset));
+        return StringUtils.strip(new String(bytes));
     }
 
-    private String readString(DataInputStream dis, int length) throws IOException {
-        byte [] bytes = new byte[length];
-        dis.readFully(bytes, 0, length);
+    /**
+     * Read a decimal number written with ascii digits, surrounded by spaces or not
+     */
+    private int readNumber(ByteBuffer bb, int offset, int length) throws IOException {
+        int end = offset + length;
 
-        // Remove spaces at start and end of the string
-        return StringUtils.strip(new String(bytes));
+        // Remove spaces at start and end of the number
+        while (offset < end && bb.get(offset) == ' ') {
+            offset++;
+        }
+
+        while (end > offset && bb.get(end - 1) == ' ') {
+            end--;
+        }
+
+        if (offset == end) {
+            throw new IOException("Unable to parse number");
+        }
+
+        int number = 0;
+
+        for (int i = offset; i < end; i++) {
+            int digit = bb.get(i) - '0';
+
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Unable to parse number");
+            }
+
+            number = number * 10 + digit;
+        }
+
+        return number;
     }
 
-    private StlGsi readGsi(DataInputStream dis) throws IOException {
+    private StlGsi readGsi(ByteBuffer bb) throws IOException {
         // Read and extract metadata from GSI block
         // GSI block is 1024 bytes long
+        if (bb.limit() < GSI_LENGTH) {
+            throw new IOException("Gsi block is too short");
+        }
+
         StlGsi gsi = new StlGsi();
 
         // Read Code Page Number (CPN)
-        byte [] cpnBytes = new byte[3];
-        dis.readFully(cpnBytes, 0, 3);
-        int cpn = cpnBytes[0] << 16 | cpnBytes[1] << 8 | cpnBytes[2];
+        int cpn = bb.get(0) << 16 | bb.get(1) << 8 | bb.get(2);
         gsi.setCpn(StlGsi.Cpn.getEnum(cpn));
 
         // Read Disk Format Code (DFC)
-        gsi.setDfc(StlGsi.Dfc.getEnum(this.readString(dis, 8)));
+        gsi.setDfc(StlGsi.Dfc.getEnum(this.readString(bb, 3, 8)));
 
         // Read Display Standard Code (DSC)
-        gsi.setDsc(StlGsi.Dsc.getEnum(dis.readUnsignedByte()));
+        gsi.setDsc(StlGsi.Dsc.getEnum(bb.get(11) & 0xff));
 
         // Read Character Code Table number (CCT)
-        gsi.setCct(StlGsi.Cct.getEnum(Short.reverseBytes(dis.readShort())));
+        gsi.setCct(StlGsi.Cct.getEnum(bb.getShort(12)));
 
         // Read Character Language Code (LC)
-        gsi.setLc(Short.reverseBytes(dis.readShort()));
+        gsi.setLc(bb.getShort(14));
 
         // Read Original Programme Title (OPT)
-        gsi.setOpt(this.readString(dis, 32));
+        gsi.setOpt(this.readString(bb, 16, 32));
 
         // Read Original Programme Title (OET)
-        gsi.setOet(this.readString(dis, 32));
+        gsi.setOet(this.readString(bb, 48, 32));
 
         // Read Translated Programme Title (TPT)
-        gsi.setTpt(this.readString(dis, 32));
+        gsi.setTpt(this.readString(bb, 80, 32));
 
         // Read translated Episode Title (TET)
-        gsi.setTet(this.readString(dis, 32));
+        gsi.setTet(this.readString(bb, 112, 32));
 
         // Read Translator's Name (TN)
-        gsi.setTn(this.readString(dis, 32));
+        gsi.setTn(this.readString(bb, 144, 32));
 
         // Read Translator's Contact Details (TCD)
-        gsi.setTcd(this.readString(dis, 32));
+        gsi.setTcd(this.readString(bb, 176, 32));
 
         // Read Subtitle List Reference Code (SLR)
-        gsi.setSlr(this.readString(dis, 16));
+        gsi.setSlr(this.readString(bb, 208, 16));
 
         // Read Creation Date (CD)
-        gsi.setCd(this.readDate(this.readString(dis, 6)));
+        gsi.setCd(this.readDate(this.readString(bb, 224, 6)));
 
         // Read Revision Date (RD)
-        gsi.setRd(this.readDate(this.readString(dis, 6)));
+        gsi.setRd(this.readDate(this.readString(bb, 230, 6)));
 
         // Read Revision number RN
-        gsi.setRn(Short.reverseBytes(dis.readShort()));
+        gsi.setRn(bb.getShort(236));
 
         // Read Total Number of Text and Timing Information (TTI) blocks (TNB)
-        gsi.setTnb(Integer.parseInt(this.readString(dis, 5)));
+        gsi.setTnb(this.readNumber(bb, 238, 5));
 
         // Read Total Number of Subtitles (TNS)
-        gsi.setTns(Integer.parseInt(this.readString(dis, 5)));
+        gsi.setTns(this.readNumber(bb, 243, 5));
 
-        // Read Total Number of Subtitle Groups (TNG)
-        dis.skipBytes(3);
+        // Total Number of Subtitle Groups (TNG) is not read: offset 248
 
         // Read Maximum Number of Displayable Characters in any text row (MNC)
-        gsi.setMnc(Integer.parseInt(this.readString(dis, 2)));
+        gsi.setMnc(this.readNumber(bb, 251, 2));
 
         // Read Maximum Number of Displayable Rows (MNR)
-        gsi.setMnr(Integer.parseInt(this.readString(dis, 2)));
+        gsi.setMnr(this.readNumber(bb, 253, 2));
 
         // Read Time Code: Status (TCS)
-        gsi.setTcs((short) dis.readUnsignedByte());
+        gsi.setTcs((short) (bb.get(255) & 0xff));
 
         // Read Time Code: Start-of-Programme (TCP)
-        gsi.setTcp(this.readTimeCode(this.readString(dis, 8), gsi.getDfc().getFrameRate()));
+        gsi.setTcp(this.readGsiTimeCode(bb, 256, gsi.getDfc().getFrameRate()));
 
         // Read Time Code: First In-Cue (TCF)
-        gsi.setTcf(this.readTimeCode(this.readString(dis, 8), gsi.getDfc().getFrameRate()));
+        gsi.setTcf(this.readGsiTimeCode(bb, 264, gsi.getDfc().getFrameRate()));
 
         // Read Total Number of Disks (TND)
-        gsi.setTnd((short) dis.readUnsignedByte());
+        gsi.setTnd((short) (bb.get(272) & 0xff));
 
         // Read Disk Sequence Number (DSN)
-        gsi.setDsn((short) dis.readUnsignedByte());
+        gsi.setDsn((short) (bb.get(273) & 0xff));
 
         // Read Country of Origin (CO)
-        gsi.setCo(this.readString(dis, 3));
+        gsi.setCo(this.readString(bb, 274, 3));
 
         // Read Publisher (PUB)
-        gsi.setPub(this.readString(dis, 32));
+        gsi.setPub(this.readString(bb, 277, 32));
 
         // Read Editor's Name (EN)
-        gsi.setEn(this.readString(dis, 32));
+        gsi.setEn(this.readString(bb, 309, 32));
 
         // Read Editor's Contact Details (ECD)
-        gsi.setEcd(this.readString(dis, 32));
+        gsi.setEcd(this.readString(bb, 341, 32));
 
-        // Spare Bytes
-        dis.skipBytes(75);
+        // Spare Bytes: offset 373
 
         // Read User-Defined Area (UDA)
-        gsi.setUda(this.readString(dis, 576));
+        gsi.setUda(this.readString(bb, 448, 576));
 
         return gsi;
     }
 
-    private StlTti readTti(DataInputStream dis, StlGsi gsi) throws IOException {
-        // Get charset from gsi
-        String charset = gsi.getCct().getCharset();
-
-        // Get frame rate from gsi
-        int frameRate = gsi.getDfc().getFrameRate();
+    private StlTti readTti(ByteBuffer bb, int offset, int frameRate, Charset charset) {
+        // Frame duration in milliseconds
+        int frameDuration = (1000/frameRate);
 
         // Read and extract metadata from TTI block
         // Each TTI block is 128 bytes long
         StlTti tti = new StlTti();
 
         // Read Subtitle Group Number (SGN)
-        tti.setSgn((short) dis.readUnsignedByte());
+        tti.setSgn((short) (bb.get(offset) & 0xff));
 
         // Read Subtitle Number (SN)
-        tti.setSn(Short.reverseBytes(dis.readShort()));
+        tti.setSn(bb.getShort(offset + 1));
 
         // Read Extension Block Number (EBN)
-        tti.setEbn((short) dis.readUnsignedByte());
+        tti.setEbn((short) (bb.get(offset + 3) & 0xff));
 
         // Read Cumulative Status (CS)
-        tti.setCs((short) dis.readUnsignedByte());
+        tti.setCs((short) (bb.get(offset + 4) & 0xff));
 
         // Read Time Code In (TCI)
-        tti.setTci(this.readTimeCode(dis, frameRate));
+        tti.setTciMillis(this.readTimeCode(bb, offset + 5, frameDuration));
 
         // Read Time Code Out (TCO)
-        tti.setTco(this.readTimeCode(dis, frameRate));
+        tti.setTcoMillis(this.readTimeCode(bb, offset + 9, frameDuration));
 
         // Read Vertical Position (VP)
-        tti.setVp((short) dis.readUnsignedByte());
+        tti.setVp((short) (bb.get(offset + 13) & 0xff));
 
         // Read Justification Code (JC)
-        tti.setJc(StlTti.Jc.getEnum(dis.readUnsignedByte()));
+        tti.setJc(StlTti.Jc.getEnum(bb.get(offset + 14) & 0xff));
 
         // Read Comment Flag (CF)
-        tti.setCf((short) dis.readUnsignedByte());
+        tti.setCf((short) (bb.get(offset + 15) & 0xff));
 
-        // Read TextField (TF)
-        byte [] tfBytes = new byte[112];
-        dis.readFully(tfBytes, 0, 112);
-        try {
-            tti.setTf(new String(tfBytes, charset));
-        } catch (CoderMalfunctionError e) {
-            // There exist some STL files in the wild, which contain userdata not parsable using the gsi charset
-            // this is the case for some kinds of software, which carry meta information in EBN-254 text fields
-            tti.setTf(new String(tfBytes));
-        }
+        // Text Field (TF) is decoded on demand
+        tti.setTf(bb, offset + 16, charset);
 
         // TTI is fully parsed
         return tti;
     }
+
+    /**
+     * Decode a range of TTI blocks, and the cues they start
+     *
+     * Blocks are read by absolute offset, so tasks share the same buffer.
+     * Cues of extension blocks are not created, they are merged
+     * in the cue of their first block when blocks are added to the STL object.
+     */
+    private class TtiDecoder extends RecursiveAction {
+        private ByteBuffer bb;
+        private int frameRate;
+        private Charset charset;
+        private boolean skipUserdataTf;
+        private StlTti[] ttis;
+        private StlCue[] cues;
+        private int from;
+        private int to;
+
+        TtiDecoder(ByteBuffer bb, int frameRate, Charset charset, boolean skipUserdataTf,
+                   StlTti[] ttis, StlCue[] cues, int from, int to) {
+            this.bb = bb;
+            this.frameRate = frameRate;
+            this.charset = charset;
+            this.skipUserdataTf = skipUserdataTf;
+            this.ttis = ttis;
+            this.cues = cues;
+            this.from = from;
+            this.to = to;
+        }
+
+        private TtiDecoder subTask(int from, int to) {
+            return new TtiDecoder(this.bb, this.frameRate, this.charset, this.skipUserdataTf,
+                    this.ttis, this.cues, from, to);
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > TTI_BATCH_SIZE) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(this.subTask(this.from, middle), this.subTask(middle, this.to));
+                return;
+            }
+
+            for (int subtitleIndex = this.from; subtitleIndex < this.to; subtitleIndex++) {
+                int offset = GSI_LENGTH + subtitleIndex * TTI_LENGTH;
+                StlTti tti = readTti(this.bb, offset, this.frameRate, this.charset);
+                this.ttis[subtitleIndex] = tti;
+
+                if (this.skipUserdataTf && tti.getEbn() == StlTti.EBN_USER_DATA) {
+                    continue;
+                }
+
+                // The previous block announces that this one continues its subtitle
+                if (subtitleIndex > 0 &&
+                        StlTti.isExtension(this.bb.get(offset - TTI_LENGTH + 3) & 0xff) &&
+                        this.bb.getShort(offset - TTI_LENGTH + 1) == this.bb.getShort(offset + 1)) {
+                    continue;
+                }
+
+                StlCue cue = new StlCue(tti);
+                cue.getLines();
+                this.cues[subtitleIndex] = cue;
+            }
+        }
+    }
 }
@@ -10,22 +10,35 @@
 
 package fr.noop.subtitle.stl;
 
+import fr.noop.subtitle.util.SubtitleStyle;
 import fr.noop.subtitle.util.SubtitleTimeCode;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CoderMalfunctionError;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Created by clebeaupin on 21/09/15.
  */
 public class StlTti {
+    public final static int TF_LENGTH = 112; // Text Field length in bytes
+    public final static short EBN_USER_DATA = 0xfe; // Extension Block Number of user data blocks
+    public final static short EBN_LAST = 0xff; // Extension Block Number of the last block of a subtitle
+
     private short sgn; // Subtitle Group Number
     private int sn; // Subtitle Number
     private short ebn; // Extension Block Number
     private short cs; // Cumulative Status
-    private SubtitleTimeCode tci; // Time Code In
-    private SubtitleTimeCode tco; // Time Code Out
+    private long tci; // Time Code In in milliseconds
+    private long tco; // Time Code Out in milliseconds
     private short vp; // Vertical Position
     private Jc jc; // Justification Code
     private short cf; // Comment Flag
-    private String tf; // Text Field
+    private ByteBuffer tfBuffer; // Buffer containing the Text Field bytes
+    private int tfOffset; // Index of the Text Field in the buffer
+    private Charset tfCharset; // Charset of the Text Field
+    private String tf; // Text Field, decoded on demand
 
     // List of colors defined in STL EBU
     public enum TextColor {
@@ -48,10 +61,15 @@ public class StlTti {
 
         private int value;
         private String color;
+        private SubtitleStyle style; // Interned style of this color
 
         TextColor(int value, String color) {
             this.value = value;
             this.color = color;
+
+            SubtitleStyle style = new SubtitleStyle();
+            style.setColor(color);
+            this.style = style.intern();
         }
 
         public int getValue() {
@@ -62,6 +80,13 @@ public class StlTti {
             return this.color;
         }
 
+        /**
+         * @return the interned style of this color, shared by texts
+         */
+        public SubtitleStyle getStyle() {
+            return this.style;
+        }
+
         public static boolean hasEnum(int value) {
             for(TextColor v : values())
                 if(v.getValue() == value) return true;
@@ -73,6 +98,105 @@ public class StlTti {
                 if(v.getValue() == value) return v;
             throw new IllegalArgumentException();
         }
+
+        /**
+         * Map a color to the nearest alphanumeric color
+         *
+         * Accepted colors are teletext and css color names, #rrggbb, #rrggbbaa, rgb() and rgba() expressions.
+         * Each red, green and blue component is on when it is greater than or equal to 128,
+         * so components are the 3 bits of the alphanumeric color code.
+         *
+         * @return the alphanumeric color, or null if the color is unknown
+         */
+        public static TextColor getAlphaEnum(String color) {
+            if (color == null) {
+                return null;
+            }
+
+            String value = color.trim().toLowerCase();
+
+            for (TextColor v : values()) {
+                if (v.getValue() <= ALPHA_WHITE.getValue() && v.getColor().equals(value)) {
+                    return v;
+                }
+            }
+
+            int[] components;
+
+            switch (value) {
+                case "silver":
+                case "gray":
+                case "grey":
+                    return ALPHA_WHITE;
+                case "maroon":
+                    return ALPHA_READ;
+                case "lime":
+                    return ALPHA_GREEN;
+                case "olive":
+                    return ALPHA_YELLOW;
+                case "navy":
+                    return ALPHA_BLUE;
+                case "purple":
+                case "fuchsia":
+                    return ALPHA_MAGENTA;
+                case "teal":
+                case "aqua":
+                    return ALPHA_CYAN;
+                default:
+                    components = parseComponents(value);
+            }
+
+            if (components == null) {
+                return null;
+            }
+
+            int code = 0;
+
+            for (int i = 0; i < 3; i++) {
+                if (components[i] >= 128) {
+                    code |= 1 << i;
+                }
+            }
+
+            return getEnum(code);
+        }
+
+        /**
+         * @return red, green and blue components between 0 and 255, or null if the color can not be parsed
+         */
+        private static int[] parseComponents(String value) {
+            int[] components = new int[3];
+
+            try {
+                if (value.startsWith("#") && (value.length() == 7 || value.length() == 9)) {
+                    for (int i = 0; i < 3; i++) {
+                        components[i] = Integer.parseInt(value.substring(1 + 2 * i, 3 + 2 * i), 16);
+                    }
+
+                    return components;
+                }
+
+                int start = value.indexOf('(');
+
+                if ((value.startsWith("rgb(") || value.startsWith("rgba(")) && value.endsWith(")")) {
+                    String[] parts = value.substring(start + 1, value.length() - 1).split(",");
+
+                    if (parts.length < 3) {
+                        return null;
+                    }
+
+                    for (int i = 0; i < 3; i++) {
+                        components[i] = Integer.parseInt(parts[i].trim());
+                    }
+
+                    return components;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            return null;
+        }
     }
 
     // List of text styles
@@ -157,6 +281,14 @@ public class StlTti {
         this.ebn = ebn;
     }
 
+    /**
+     * @return true if the Extension Block Number announces a following block
+     * containing the rest of the same subtitle, ie: from 0x00 to 0xef
+     */
+    public static boolean isExtension(int ebn) {
+        return ebn >= 0 && ebn < 0xf0;
+    }
+
     public short getCs() {
         return this.cs;
     }
@@ -166,18 +298,34 @@ public class StlTti {
     }
 
     public SubtitleTimeCode getTci() {
-        return this.tci;
+        return new SubtitleTimeCode(this.tci);
     }
 
     public void setTci(SubtitleTimeCode tci) {
+        this.tci = tci.getTime();
+    }
+
+    public long getTciMillis() {
+        return this.tci;
+    }
+
+    public void setTciMillis(long tci) {
         this.tci = tci;
     }
 
     public SubtitleTimeCode getTco() {
-        return this.tco;
+        return new SubtitleTimeCode(this.tco);
     }
 
     public void setTco(SubtitleTimeCode tco) {
+        this.tco = tco.getTime();
+    }
+
+    public long getTcoMillis() {
+        return this.tco;
+    }
+
+    public void setTcoMillis(long tco) {
         this.tco = tco;
     }
 
@@ -206,10 +354,76 @@ public class StlTti {
     }
 
     public String getTf() {
+        if (this.tf == null && this.tfBuffer != null) {
+            byte[] bytes = new byte[this.getTfLength()];
+
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) this.getTfByte(i);
+            }
+
+            this.tf = this.decode(bytes, bytes.length);
+        }
+
         return this.tf;
     }
 
+    /**
+     * Each char of the text field is stored as a byte, keeping its 8 lower bits
+     */
     public void setTf(String tf) {
+        byte[] bytes = new byte[tf.length()];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) tf.charAt(i);
+        }
+
+        this.setTf(ByteBuffer.wrap(bytes), 0, StandardCharsets.ISO_8859_1);
         this.tf = tf;
     }
+
+    /**
+     * Set the text field without decoding it
+     * The buffer is not copied, it must not be modified afterwards
+     *
+     * @param buffer Buffer containing the text field
+     * @param offset Index of the text field in the buffer
+     * @param charset Charset used to decode the text field
+     */
+    public void setTf(ByteBuffer buffer, int offset, Charset charset) {
+        this.tfBuffer = buffer;
+        this.tfOffset = offset;
+        this.tfCharset = charset;
+        this.tf = null;
+    }
+
+    /**
+     * @return Number of bytes of the text field
+     */
+    int getTfLength() {
+        if (this.tfBuffer == null) {
+            return 0;
+        }
+
+        return Math.min(TF_LENGTH, this.tfBuffer.limit() - this.tfOffset);
+    }
+
+    /**
+     * @return Unsigned byte of the text field at this index
+     */
+    int getTfByte(int index) {
+        return this.tfBuffer.get(this.tfOffset + index) & 0xff;
+    }
+
+    /**
+     * Decode bytes of the text field with the text field charset
+     */
+    String decode(byte[] bytes, int length) {
+        try {
+            return new String(bytes, 0, length, this.tfCharset);
+        } catch (CoderMalfunctionError e) {
+            // There exist some STL files in the wild, which contain userdata not parsable using the gsi charset
+            // this is the case for some kinds of software, which carry meta information in EBN-254 text fields
+            return new String(bytes, 0, length);
+        }
+    }
 }
@@ -0,0 +1,749 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.stl;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleRegionCue;
+import fr.noop.subtitle.model.SubtitleStyled;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Write EBU STL files
+ *
+ * GSI and TTI blocks are encoded into buffers allocated once per writer,
+ * TTI blocks are written by batches, so the output gets large sequential writes.
+ * The GSI block needs the number of TTI blocks: on a seekable channel it is written
+ * once TTI blocks are written, otherwise (and on a file stream opened for append)
+ * TTI blocks are counted before being written.
+ *
+ * Each line is written on double height teletext rows, wrapped on word boundaries
+ * at the row length (40 chars by default), and rows of a cue are spread
+ * on extension blocks when they do not fit in a single text field.
+ * Cue times are written as they are: start-of-programme and first in-cue time codes are zero.
+ *
+ * A writer is not thread safe.
+ */
+public class StlWriter implements SubtitleWriter {
+    private final static int GSI_LENGTH = 1024;
+    private final static int TTI_LENGTH = 128;
+    private final static int TTI_BATCH_SIZE = 512; // Number of TTI blocks written at once
+    private final static int MAX_EXTENSION_BLOCKS = 0xf0; // Number of extension block numbers
+    private final static int DEFAULT_MNC = 40; // Teletext row length
+    private final static int DEFAULT_MNR = 23; // Teletext subtitle rows
+
+    // Control codes
+    private final static byte DOUBLE_HEIGHT = 0x0d;
+    private final static byte START_BOX = 0x0b;
+    private final static byte END_BOX = 0x0a;
+    private final static byte CR_LF = (byte) 0x8a;
+    private final static byte UNUSED = (byte) 0x8f;
+
+    private StlGsi.Cct cct; // Character code table, null to use the one of the source STL
+
+    // Buffers reused from a file to another
+    private ByteBuffer gsiBuffer = ByteBuffer.allocate(GSI_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer ttiBuffer = ByteBuffer.allocate(TTI_LENGTH * TTI_BATCH_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer tfBuffer = ByteBuffer.allocate(StlTti.TF_LENGTH); // Text field of the current block
+    private ByteBuffer rowBuffer = ByteBuffer.allocate(StlTti.TF_LENGTH); // Current row
+    private CharBuffer charBuffer = CharBuffer.allocate(256); // Chars of the current text run
+    private int rowLength = DEFAULT_MNC; // Maximum number of displayable chars in a row
+
+    // State of the file being written
+    private WritableByteChannel channel; // Null when blocks are only counted
+    private CharsetEncoder encoder;
+    private int frameRate;
+    private int mnr;
+    private int tnb; // Number of TTI blocks
+    private int tns; // Number of subtitles
+    private int mnc; // Maximum number of chars in a row
+    private int blockCount; // Number of blocks of the current cue
+    private int rowCount; // Number of rows of the current cue
+    private int rowChars; // Number of chars of the current row
+    private TtiHeader header = new TtiHeader();
+
+    public StlWriter() {
+    }
+
+    /**
+     * @param charset Charset of a character code table, another charset selects the latin table
+     */
+    public StlWriter(String charset) {
+        for (StlGsi.Cct v : StlGsi.Cct.values()) {
+            if (v.getCharset().equalsIgnoreCase(charset)) {
+                this.cct = v;
+            }
+        }
+    }
+
+    public StlWriter(StlGsi.Cct cct) {
+        this.cct = cct;
+    }
+
+    /**
+     * @param rowLength Maximum number of displayable chars in a row, reported as MNC,
+     *                  defaults to the 40 columns of a teletext row
+     */
+    public void setRowLength(int rowLength) {
+        if (rowLength < 1 || rowLength > 99) {
+            throw new IllegalArgumentException(String.format("Invalid row length: %d", rowLength));
+        }
+
+        this.rowLength = rowLength;
+    }
+
+    /**
+     * Write to a file output stream through its channel, to any other stream through a channel adapter
+     * The stream is not closed
+     */
+    @Override
+    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
+        if (os instanceof FileOutputStream) {
+            // Blocks of a stream opened for append are counted before being written
+            FileChannel fileChannel = ((FileOutputStream) os).getChannel();
+            this.write(subtitleObject, fileChannel, !isAppending(fileChannel));
+        } else {
+            this.write(subtitleObject, Channels.newChannel(os), false);
+        }
+    }
+
+    public void write(SubtitleObject subtitleObject, Path path) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            this.write(subtitleObject, fileChannel);
+        }
+    }
+
+    /**
+     * Write STL from the channel position
+     * The channel is not closed
+     */
+    public void write(SubtitleObject subtitleObject, WritableByteChannel channel) throws IOException {
+        this.write(subtitleObject, channel, channel instanceof SeekableByteChannel);
+    }
+
+    /**
+     * @param seek True to write the GSI block once TTI blocks are written, the channel must be seekable
+     */
+    private void write(SubtitleObject subtitleObject, WritableByteChannel channel, boolean seek) throws IOException {
+        StlGsi gsi = this.buildGsi(subtitleObject);
+        this.frameRate = gsi.getDfc().getFrameRate();
+        this.mnr = gsi.getMnr();
+        this.encoder = Charset.forName(gsi.getCct().getCharset()).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        try {
+            if (seek) {
+                // Skip GSI block, and write it once blocks are counted
+                SeekableByteChannel seekableChannel = (SeekableByteChannel) channel;
+                long start = seekableChannel.position();
+                seekableChannel.position(start + GSI_LENGTH);
+                this.writeTtis(subtitleObject, channel);
+                long end = seekableChannel.position();
+                seekableChannel.position(start);
+                this.writeGsi(gsi, channel);
+                seekableChannel.position(end);
+            } else {
+                this.writeTtis(subtitleObject, null);
+                this.writeGsi(gsi, channel);
+                this.writeTtis(subtitleObject, channel);
+            }
+        } finally {
+            this.channel = null;
+            this.encoder = null;
+        }
+    }
+
+    /**
+     * @return True if the channel writes at the end of the file whatever its position,
+     * as the channel of a stream opened for append
+     */
+    private static boolean isAppending(FileChannel channel) throws IOException {
+        // The position of an appending channel is always the end of the file
+        long position = channel.position();
+        long size = channel.size();
+
+        if (position != size) {
+            return false;
+        }
+
+        // Moving beyond the end does not change the file
+        channel.position(size + 1);
+        boolean appending = (channel.position() != size + 1);
+        channel.position(position);
+        return appending;
+    }
+
+    /**
+     * Build GSI values from the GSI of the source STL, or from defaults
+     * Counts are set once TTI blocks are counted
+     */
+    private StlGsi buildGsi(SubtitleObject subtitleObject) {
+        StlGsi gsi = new StlGsi();
+        StlGsi source = (subtitleObject instanceof StlObject) ? ((StlObject) subtitleObject).getGsi() : null;
+
+        if (source != null) {
+            gsi.setCpn(source.getCpn());
+            gsi.setDfc(source.getDfc());
+            gsi.setDsc(source.getDsc());
+            gsi.setCct(source.getCct());
+            gsi.setLc(source.getLc());
+            gsi.setOpt(source.getOpt());
+            gsi.setOet(source.getOet());
+            gsi.setTpt(source.getTpt());
+            gsi.setTet(source.getTet());
+            gsi.setTn(source.getTn());
+            gsi.setTcd(source.getTcd());
+            gsi.setSlr(source.getSlr());
+            gsi.setCd(source.getCd());
+            gsi.setRn(source.getRn());
+            gsi.setMnr(source.getMnr());
+            gsi.setTnd(source.getTnd());
+            gsi.setDsn(source.getDsn());
+            gsi.setCo(source.getCo());
+            gsi.setPub(source.getPub());
+            gsi.setEn(source.getEn());
+            gsi.setEcd(source.getEcd());
+            gsi.setUda(source.getUda());
+        } else {
+            Object frameRate = subtitleObject.getProperty(SubtitleObject.Property.FRAME_RATE);
+            Object title = subtitleObject.getProperty(SubtitleObject.Property.TITLE);
+
+            gsi.setCpn(StlGsi.Cpn.MULTILINGUAL);
+            gsi.setDfc(Integer.valueOf(30).equals(frameRate) ? StlGsi.Dfc.STL30 : StlGsi.Dfc.STL25);
+            gsi.setDsc(StlGsi.Dsc.DSC_TELETEXT_LEVEL_1);
+            gsi.setCct(StlGsi.Cct.LATIN);
+            gsi.setLc(0x3030); // "00": unknown
+            gsi.setOpt(title != null ? title.toString() : "");
+            gsi.setCd(new Date());
+            gsi.setRn(0x3030); // "00"
+            gsi.setMnr(DEFAULT_MNR);
+            gsi.setTnd((short) '1');
+            gsi.setDsn((short) '1');
+        }
+
+        if (this.cct != null) {
+            gsi.setCct(this.cct);
+        }
+
+        gsi.setRd(new Date());
+
+        return gsi;
+    }
+
+    private void writeGsi(StlGsi gsi, WritableByteChannel channel) throws IOException {
+        ByteBuffer bb = this.gsiBuffer;
+        bb.clear();
+
+        // Fields not written are spaces
+        while (bb.hasRemaining()) {
+            bb.put((byte) ' ');
+        }
+
+        SimpleDateFormat df = new SimpleDateFormat("yyMMdd");
+
+        // Code Page Number (CPN)
+        int cpn = gsi.getCpn().getValue();
+        bb.put(0, (byte) (cpn >> 16));
+        bb.put(1, (byte) (cpn >> 8));
+        bb.put(2, (byte) cpn);
+
+        // Disk Format Code (DFC)
+        this.putString(bb, 3, 8, gsi.getDfc().getValue());
+
+        // Display Standard Code (DSC)
+        bb.put(11, (byte) gsi.getDsc().getValue());
+
+        // Character Code Table number (CCT): two ascii digits
+        int cct = gsi.getCct().getValue();
+        bb.put(12, (byte) (cct >> 8));
+        bb.put(13, (byte) cct);
+
+        // Language Code (LC), read as a little endian number by the parser
+        bb.putShort(14, (short) gsi.getLc());
+
+        // Titles, names and references
+        this.putString(bb, 16, 32, gsi.getOpt());
+        this.putString(bb, 48, 32, gsi.getOet());
+        this.putString(bb, 80, 32, gsi.getTpt());
+        this.putString(bb, 112, 32, gsi.getTet());
+        this.putString(bb, 144, 32, gsi.getTn());
+        this.putString(bb, 176, 32, gsi.getTcd());
+        this.putString(bb, 208, 16, gsi.getSlr());
+
+        // Creation Date (CD) and Revision Date (RD)
+        this.putString(bb, 224, 6, (gsi.getCd() != null) ? df.format(gsi.getCd()) : "");
+        this.putString(bb, 230, 6, df.format(gsi.getRd()));
+
+        // Revision number (RN), read as a little endian number by the parser
+        bb.putShort(236, (short) gsi.getRn());
+
+        // Total Number of TTI blocks (TNB), of Subtitles (TNS) and of Subtitle Groups (TNG)
+        this.putNumber(bb, 238, 5, this.tnb);
+        this.putNumber(bb, 243, 5, this.tns);
+        this.putNumber(bb, 248, 3, 1);
+
+        // Maximum Number of Displayable Characters in any text row (MNC) and of Rows (MNR)
+        this.putNumber(bb, 251, 2, Math.min(this.rowLength, Math.max(DEFAULT_MNC, this.mnc)));
+        this.putNumber(bb, 253, 2, gsi.getMnr());
+
+        // Time Code Status (TCS): intended for use
+        bb.put(255, (byte) '1');
+
+        // Time Code: Start-of-Programme (TCP) and First In-Cue (TCF)
+        this.putString(bb, 256, 8, "00000000");
+        this.putString(bb, 264, 8, "00000000");
+
+        // Total Number of Disks (TND) and Disk Sequence Number (DSN)
+        bb.put(272, (byte) gsi.getTnd());
+        bb.put(273, (byte) gsi.getDsn());
+
+        // Country of Origin (CO), Publisher (PUB), Editor's Name (EN) and Contact Details (ECD)
+        this.putString(bb, 274, 3, gsi.getCo());
+        this.putString(bb, 277, 32, gsi.getPub());
+        this.putString(bb, 309, 32, gsi.getEn());
+        this.putString(bb, 341, 32, gsi.getEcd());
+
+        // User-Defined Area (UDA)
+        this.putString(bb, 448, 576, gsi.getUda());
+
+        bb.clear();
+        this.writeFully(bb, channel);
+    }
+
+    /**
+     * Put an ascii string, truncated or padded with spaces
+     */
+    private void putString(ByteBuffer bb, int offset, int length, String value) {
+        int valueLength = (value == null) ? 0 : Math.min(length, value.length());
+
+        for (int i = 0; i < length; i++) {
+            char c = (i < valueLength) ? value.charAt(i) : ' ';
+            bb.put(offset + i, (c < 0x20 || c > 0x7e) ? (byte) ' ' : (byte) c);
+        }
+    }
+
+    /**
+     * Put a decimal number with leading zeros
+     */
+    private void putNumber(ByteBuffer bb, int offset, int length, int value) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            bb.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+    }
+
+    /**
+     * Encode cues into TTI blocks
+     *
+     * @param channel Channel where blocks are written, null to only count them
+     */
+    private void writeTtis(SubtitleObject subtitleObject, WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.tnb = 0;
+        this.tns = 0;
+        this.mnc = 0;
+        this.ttiBuffer.clear();
+
+        for (SubtitleCue cue : subtitleObject.getCues()) {
+            this.writeCue(cue);
+        }
+
+        if (channel != null) {
+            this.flushTtis();
+        }
+    }
+
+    private void writeCue(SubtitleCue cue) throws IOException {
+        int rowCount = 0;
+
+        for (SubtitleLine line : cue.getLines()) {
+            if (!line.isEmpty()) {
+                rowCount += this.countRows(line);
+            }
+        }
+
+        if (rowCount == 0) {
+            // Nothing to display
+            return;
+        }
+
+        // Header shared by all blocks of the cue
+        this.header.sn = (this.tns + 1) & 0xffff;
+        this.header.vp = this.getVerticalPosition(cue, rowCount);
+        this.header.tci = cue.getStartMillis();
+        this.header.tco = cue.getEndMillis();
+
+        this.blockCount = 0;
+        this.rowCount = 0;
+        this.tfBuffer.clear();
+
+        for (SubtitleLine line : cue.getLines()) {
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            this.startRow();
+            int color = StlTti.TextColor.ALPHA_WHITE.getValue(); // Color of a row start
+
+            for (SubtitleText text : line.getTexts()) {
+                if (text.isEmpty()) {
+                    continue;
+                }
+
+                SubtitleStyle style = (text instanceof SubtitleStyled) ? ((SubtitleStyled) text).getStyle() : null;
+                StlTti.TextColor textColor = (style != null) ? StlTti.TextColor.getAlphaEnum(style.getColor()) : null;
+                int runColor = (textColor != null) ? textColor.getValue() : StlTti.TextColor.ALPHA_WHITE.getValue();
+                boolean italic = (style != null && style.getFontStyle() == SubtitleStyle.FontStyle.ITALIC);
+                boolean underline = (style != null &&
+                        style.getTextDecoration() == SubtitleStyle.TextDecoration.UNDERLINE);
+
+                // Unset colors are white, but a run following a colored run needs a color code
+                boolean colorCode = (textColor != null || runColor != color);
+                this.writeRun(text.toString(), colorCode ? runColor : -1, italic, underline);
+                color = runColor;
+            }
+
+            this.endRow();
+        }
+
+        if (this.rowCount > 0) {
+            this.writeBlock(StlTti.EBN_LAST);
+            this.tns++;
+        }
+    }
+
+    /**
+     * Number of rows of a line once wrapped at the row length
+     */
+    private int countRows(SubtitleLine line) {
+        int rowCount = 1;
+        this.rowChars = 0;
+
+        for (SubtitleText text : line.getTexts()) {
+            CharBuffer in = this.getChars(text.toString());
+
+            while (in.hasRemaining()) {
+                int length = this.getChunkLength(in);
+
+                if (length == 0) {
+                    rowCount++;
+                    this.rowChars = 0;
+                    skipSpaces(in);
+                } else {
+                    in.position(in.position() + length);
+                    this.rowChars += length;
+                }
+            }
+        }
+
+        return rowCount;
+    }
+
+    /**
+     * Vertical position of the first row
+     * Cues are bottom aligned, except when their region tells another position
+     */
+    private int getVerticalPosition(SubtitleCue cue, int rowCount) {
+        int lastVp = this.mnr - 1;
+
+        if (cue instanceof SubtitleRegionCue) {
+            SubtitleRegion region = ((SubtitleRegionCue) cue).getRegion();
+
+            // Region of a parsed cue ends at the bottom of its last row
+            if (region != null && region.getY() == 0 &&
+                    region.getVerticalAlign() == SubtitleRegion.VerticalAlign.BOTTOM) {
+                lastVp = Math.round(region.getHeight() * this.mnr / 100.0f);
+            }
+        }
+
+        // Rows are double height
+        return Math.max(1, Math.min(this.mnr, lastVp) - 2 * (rowCount - 1));
+    }
+
+    /**
+     * Write a text run into the current row, it is continued on new rows if it does not fit
+     *
+     * @param color Alphanumeric color code, -1 for none
+     */
+    private void writeRun(String text, int color, boolean italic, boolean underline) throws IOException {
+        CharBuffer in = this.getChars(text);
+
+        // Control codes before the text: color, italic, underline and start box twice
+        int prefixLength = (color >= 0 ? 1 : 0) + (italic ? 1 : 0) + (underline ? 1 : 0) + 2;
+
+        // Control codes after the text: underline, italic and end box twice
+        int suffixLength = (italic ? 1 : 0) + (underline ? 1 : 0) + 2;
+
+        while (in.hasRemaining()) {
+            int length = this.getChunkLength(in);
+
+            if (length == 0) {
+                // Next word goes beyond the row length: continue on a new row
+                this.endRow();
+                this.startRow();
+                skipSpaces(in);
+                continue;
+            }
+
+            if (this.rowBuffer.remaining() < prefixLength + suffixLength + 2 && this.rowBuffer.position() > 1) {
+                // Too long for the text field of the row: continue on a new one
+                this.endRow();
+                this.startRow();
+            }
+
+            if (color >= 0) {
+                this.rowBuffer.put((byte) color);
+            }
+
+            if (italic) {
+                this.rowBuffer.put((byte) StlTti.TextStyle.ITALIC_ON.getValue());
+            }
+
+            if (underline) {
+                this.rowBuffer.put((byte) StlTti.TextStyle.UNDERLINE_ON.getValue());
+            }
+
+            this.rowBuffer.put(START_BOX).put(START_BOX);
+
+            // Encode as many chars as the row can hold
+            ByteBuffer out = this.rowBuffer.slice();
+            out.limit(out.remaining() - suffixLength);
+            int start = in.position();
+            int limit = in.limit();
+            in.limit(start + length);
+            this.encoder.reset();
+
+            if (this.encoder.encode(in, out, true).isUnderflow()) {
+                this.encoder.flush(out);
+            }
+
+            in.limit(limit);
+
+            // Chars encoded out of the text ranges are spaces
+            for (int i = 0; i < out.position(); i++) {
+                int b = out.get(i) & 0xff;
+
+                if (b < 0x20 || (b >= 0x80 && b < 0xa0)) {
+                    out.put(i, (byte) ' ');
+                }
+            }
+
+            this.rowBuffer.position(this.rowBuffer.position() + out.position());
+            this.rowChars += in.position() - start;
+
+            if (underline) {
+                this.rowBuffer.put((byte) StlTti.TextStyle.UNDERLINE_OFF.getValue());
+            }
+
+            if (italic) {
+                this.rowBuffer.put((byte) StlTti.TextStyle.ITALIC_OFF.getValue());
+            }
+
+            this.rowBuffer.put(END_BOX).put(END_BOX);
+
+            if (in.position() == start) {
+                // Not even a char fits in an empty row
+                break;
+            }
+        }
+    }
+
+    /**
+     * Copy the chars of a text run, control chars are not written as they are in the text
+     */
+    private CharBuffer getChars(String text) {
+        int length = text.length();
+
+        if (length > this.charBuffer.capacity()) {
+            this.charBuffer = CharBuffer.allocate(Math.max(length, this.charBuffer.capacity() * 2));
+        }
+
+        CharBuffer chars = this.charBuffer;
+        chars.clear();
+        text.getChars(0, length, chars.array(), 0);
+
+        for (int i = 0; i < length; i++) {
+            char c = chars.get(i);
+
+            if (c < 0x20 || (c >= 0x7f && c < 0xa0)) {
+                chars.put(i, ' ');
+            }
+        }
+
+        chars.limit(length);
+        return chars;
+    }
+
+    /**
+     * Number of chars of the text written in the current row: the text up to the row length,
+     * cut before the last word that does not fit
+     *
+     * @return 0 if the next word must start a new row
+     */
+    private int getChunkLength(CharBuffer in) {
+        int available = this.rowLength - this.rowChars;
+
+        if (in.remaining() <= available) {
+            return in.remaining();
+        }
+
+        // Last space which leaves the word before it in the row
+        for (int i = available; i > 0; i--) {
+            if (in.get(in.position() + i) == ' ') {
+                return i;
+            }
+        }
+
+        // A word longer than a row is cut
+        return (this.rowChars > 0) ? 0 : available;
+    }
+
+    private static void skipSpaces(CharBuffer in) {
+        while (in.hasRemaining() && in.get(in.position()) == ' ') {
+            in.position(in.position() + 1);
+        }
+    }
+
+    private void startRow() {
+        this.rowBuffer.clear();
+        this.rowBuffer.put(DOUBLE_HEIGHT);
+        this.rowChars = 0;
+    }
+
+    /**
+     * Add the current row to the current block, the block is written first if the row does not fit
+     */
+    private void endRow() throws IOException {
+        this.mnc = Math.max(this.mnc, this.rowChars);
+        this.rowBuffer.flip();
+
+        if (this.tfBuffer.position() > 0 && this.tfBuffer.remaining() < this.rowBuffer.remaining() + 2) {
+            if (this.blockCount + 1 >= MAX_EXTENSION_BLOCKS) {
+                // No more extension block available, drop the row
+                return;
+            }
+
+            this.writeBlock(this.blockCount);
+        }
+
+        if (this.tfBuffer.position() > 0) {
+            // Double height rows are separated by an empty row
+            this.tfBuffer.put(CR_LF).put(CR_LF);
+        }
+
+        this.tfBuffer.put(this.rowBuffer);
+        this.rowCount++;
+    }
+
+    /**
+     * Write a TTI block made of the current cue header and text field
+     */
+    private void writeBlock(int ebn) throws IOException {
+        this.blockCount++;
+        this.tnb++;
+
+        if (this.channel != null) {
+            if (!this.ttiBuffer.hasRemaining()) {
+                this.flushTtis();
+            }
+
+            ByteBuffer bb = this.ttiBuffer;
+
+            // Subtitle Group Number (SGN)
+            bb.put((byte) 0);
+
+            // Subtitle Number (SN) and Extension Block Number (EBN)
+            bb.putShort((short) this.header.sn);
+            bb.put((byte) ebn);
+
+            // Cumulative Status (CS): not part of a cumulative set
+            bb.put((byte) 0);
+
+            // Time Code In (TCI) and Out (TCO)
+            this.putTimeCode(bb, this.header.tci);
+            this.putTimeCode(bb, this.header.tco);
+
+            // Vertical Position (VP), Justification Code (JC) and Comment Flag (CF)
+            bb.put((byte) this.header.vp);
+            bb.put((byte) StlTti.Jc.CENTER.getValue());
+            bb.put((byte) 0);
+
+            // Text Field (TF), unused bytes are 0x8f
+            this.tfBuffer.flip();
+            bb.put(this.tfBuffer);
+
+            for (int i = this.tfBuffer.limit(); i < StlTti.TF_LENGTH; i++) {
+                bb.put(UNUSED);
+            }
+        }
+
+        this.tfBuffer.clear();
+    }
+
+    /**
+     * Put a time code as binary hours, minutes, seconds and frames
+     */
+    private void putTimeCode(ByteBuffer bb, long time) {
+        int frameDuration = 1000 / this.frameRate;
+        int frame = Math.min(this.frameRate - 1, (int) (time % 1000) / frameDuration);
+
+        bb.put((byte) Math.min(0xff, time / 3600000));
+        bb.put((byte) ((time / 60000) % 60));
+        bb.put((byte) ((time / 1000) % 60));
+        bb.put((byte) frame);
+    }
+
+    private void flushTtis() throws IOException {
+        this.ttiBuffer.flip();
+        this.writeFully(this.ttiBuffer, this.channel);
+        this.ttiBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bb, WritableByteChannel channel) throws IOException {
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+    }
+
+    /**
+     * Header fields of the blocks of a cue
+     */
+    private static class TtiHeader {
+        int sn;
+        int vp;
+        long tci;
+        long tco;
+    }
+}
@@ -20,17 +20,31 @@ import fr.noop.subtitle.util.SubtitleRegion;
  */
 public class TtmlCue extends BaseSubtitleCue implements SubtitleRegionCue {
     private SubtitleRegion region;
+    private String regionId; // Id of the region once registered in a ttml object
+
+    public TtmlCue() {
+        super();
+    }
 
     public TtmlCue(SubtitleCue cue) {
         super(cue);
 
-        if (cue instanceof SubtitleRegionCue) {
+        if (cue instanceof SubtitleRegionCue && ((SubtitleRegionCue) cue).getRegion() != null) {
             this.setRegion(new SubtitleRegion(((SubtitleRegionCue) cue).getRegion()));
         }
     }
 
     public void setRegion(SubtitleRegion region) {
         this.region = region;
+        this.regionId = null;
+    }
+
+    public String getRegionId() {
+        return this.regionId;
+    }
+
+    public void setRegionId(String regionId) {
+        this.regionId = regionId;
     }
 
     @Override
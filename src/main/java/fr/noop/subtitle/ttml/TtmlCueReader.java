@@ -0,0 +1,656 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.base.BaseSubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read TTML cues one by one with a StAX reader
+ *
+ * Styles and regions of the head are indexed by id when the first cue is requested.
+ * A cue is returned when the end of its p element is read, so only the current p
+ * and the chain of its body and div elements are kept in memory.
+ *
+ * Times of p elements are relative to the begin of their body and div ancestors.
+ * Whitespace sequences are collapsed to a single space, unless xml:space is preserve,
+ * and spaces at the start and the end of a line are removed.
+ */
+public class TtmlCueReader extends BaseSubtitleCueReader {
+    private final static String NS_TTM_SUFFIX = "#metadata";
+    private final static String NS_TTP_SUFFIX = "#parameter";
+    private final static String NS_TTS_SUFFIX = "#styling";
+
+    // Body or div element containing the cues
+    private static class Container {
+        private long begin; // Begin time in milliseconds
+        private SubtitleStyle style;
+        private String regionId;
+        private boolean preserveSpace;
+
+        Container(long begin, SubtitleStyle style, String regionId, boolean preserveSpace) {
+            this.begin = begin;
+            this.style = style;
+            this.regionId = regionId;
+            this.preserveSpace = preserveSpace;
+        }
+    }
+
+    private InputStream is;
+    private XMLStreamReader xsr;
+    private boolean strict;
+    private TtmlTime time = new TtmlTime(30, 1, 1);
+    private float[] rootExtent; // Width and height in pixels, to convert regions defined in pixels
+    private int[] cellResolution = {32, 15}; // Number of columns and rows, to convert regions defined in cells
+    private Map<String, SubtitleStyle> styles = new LinkedHashMap<>();
+    private Map<String, SubtitleRegion> regions = new LinkedHashMap<>();
+    private Deque<Container> containers = new ArrayDeque<>();
+    private SubtitleStyle emptyStyle = new SubtitleStyle().intern();
+
+    public TtmlCueReader(InputStream is, XMLInputFactory inputFactory, boolean strict) throws IOException {
+        this.is = is;
+        this.strict = strict;
+
+        try {
+            this.xsr = inputFactory.createXMLStreamReader(is);
+        } catch (XMLStreamException e) {
+            throw new IOException(String.format("Unable to read ttml: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * @return Styles defined in the head, by id
+     */
+    public Map<String, SubtitleStyle> getStyles() {
+        return this.styles;
+    }
+
+    /**
+     * @return Regions defined in the head, by id
+     */
+    public Map<String, SubtitleRegion> getRegions() {
+        return this.regions;
+    }
+
+    @Override
+    protected TtmlCue readCue() throws IOException, SubtitleParsingException {
+        try {
+            while (this.xsr.hasNext()) {
+                int event = this.xsr.next();
+
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = this.xsr.getLocalName();
+
+                    if (name.equals("body") || name.equals("div")) {
+                        this.containers.pop();
+                    }
+
+                    continue;
+                }
+
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                switch (this.xsr.getLocalName()) {
+                    case "tt":
+                        this.readTt();
+                        break;
+                    case "head":
+                        this.readHead();
+                        break;
+                    case "body":
+                    case "div":
+                        this.readContainer();
+                        break;
+                    case "p":
+                        TtmlCue cue = this.readP();
+
+                        if (cue != null) {
+                            return cue;
+                        }
+
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new SubtitleParsingException(String.format("Unable to parse ttml: %s", e.getMessage()));
+        }
+
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.xsr.close();
+        } catch (XMLStreamException e) {
+            // Input is closed below
+        }
+
+        this.is.close();
+    }
+
+    /**
+     * Read timing and size parameters of the tt element
+     */
+    private void readTt() throws SubtitleParsingException {
+        String frameRate = this.getAttribute(NS_TTP_SUFFIX, "frameRate");
+        String frameRateMultiplier = this.getAttribute(NS_TTP_SUFFIX, "frameRateMultiplier");
+        String subFrameRate = this.getAttribute(NS_TTP_SUFFIX, "subFrameRate");
+        String tickRate = this.getAttribute(NS_TTP_SUFFIX, "tickRate");
+        String cellResolution = this.getAttribute(NS_TTP_SUFFIX, "cellResolution");
+        String extent = this.getAttribute(NS_TTS_SUFFIX, "extent");
+
+        try {
+            int nominalFrameRate = (frameRate != null) ? Integer.parseInt(frameRate.trim()) : 30;
+            double effectiveFrameRate = nominalFrameRate;
+
+            if (frameRateMultiplier != null) {
+                String[] multiplier = frameRateMultiplier.trim().split("\\s+");
+                effectiveFrameRate = nominalFrameRate * Double.parseDouble(multiplier[0]) / Double.parseDouble(multiplier[1]);
+            }
+
+            int subFrames = (subFrameRate != null) ? Integer.parseInt(subFrameRate.trim()) : 1;
+
+            // Without tick rate, ticks are sub frames if the frame rate is defined, seconds otherwise
+            double ticks = (tickRate != null) ? Double.parseDouble(tickRate.trim()) :
+                    (frameRate != null) ? nominalFrameRate * subFrames : 1;
+
+            if (nominalFrameRate <= 0 || subFrames <= 0 || ticks <= 0) {
+                throw new NumberFormatException();
+            }
+
+            this.time = new TtmlTime(effectiveFrameRate, subFrames, ticks);
+
+            if (frameRate != null) {
+                this.setProperty(SubtitleObject.Property.FRAME_RATE, nominalFrameRate);
+            }
+
+            if (cellResolution != null) {
+                String[] resolution = cellResolution.trim().split("\\s+");
+                this.cellResolution = new int[] {Integer.parseInt(resolution[0]), Integer.parseInt(resolution[1])};
+            }
+
+            if (extent != null && extent.trim().endsWith("px")) {
+                String[] size = extent.trim().split("\\s+");
+                this.rootExtent = new float[] {parsePixels(size[0]), parsePixels(size[1])};
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new SubtitleParsingException(String.format(
+                    "Unable to parse tt parameters: frameRate=%s frameRateMultiplier=%s subFrameRate=%s tickRate=%s",
+                    frameRate, frameRateMultiplier, subFrameRate, tickRate));
+        }
+    }
+
+    /**
+     * Read title, styles and regions until the end of the head element
+     */
+    private void readHead() throws XMLStreamException, SubtitleParsingException {
+        while (this.xsr.hasNext()) {
+            int event = this.xsr.next();
+
+            if (event == XMLStreamConstants.END_ELEMENT && this.xsr.getLocalName().equals("head")) {
+                break;
+            }
+
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            String name = this.xsr.getLocalName();
+            String id = this.xsr.getAttributeValue(XMLConstants.XML_NS_URI, "id");
+
+            if (name.equals("title") && hasNamespaceSuffix(this.xsr.getNamespaceURI(), NS_TTM_SUFFIX)) {
+                String title = this.xsr.getElementText().trim();
+
+                if (!title.isEmpty()) {
+                    this.setProperty(SubtitleObject.Property.TITLE, title);
+                }
+            } else if (name.equals("style") && id != null) {
+                // Referenced styles are applied first, then the style own attributes
+                this.styles.put(id, this.readStyle(this.emptyStyle));
+            } else if (name.equals("region") && id != null) {
+                this.regions.put(id, this.readRegion());
+            }
+        }
+    }
+
+    private void readContainer() throws SubtitleParsingException {
+        Container parent = this.containers.peek();
+
+        if (parent == null) {
+            parent = new Container(0, this.emptyStyle, null, false);
+        }
+
+        String region = this.xsr.getAttributeValue(null, "region");
+        String begin = this.xsr.getAttributeValue(null, "begin");
+        long beginMillis = parent.begin;
+
+        if (begin != null) {
+            beginMillis += this.parseTime(begin);
+        }
+
+        this.containers.push(new Container(
+                beginMillis,
+                this.readStyle(parent.style),
+                (region != null) ? region : parent.regionId,
+                this.isSpacePreserved(parent.preserveSpace)));
+    }
+
+    /**
+     * Read a p element until its end
+     *
+     * @return the cue, or null if it has no text or can not be timed in non strict mode
+     */
+    private TtmlCue readP() throws XMLStreamException, SubtitleParsingException {
+        Container parent = this.containers.peek();
+
+        if (parent == null) {
+            parent = new Container(0, this.emptyStyle, null, false);
+        }
+
+        // Timing
+        TtmlCue cue = new TtmlCue();
+        cue.setId(this.xsr.getAttributeValue(XMLConstants.XML_NS_URI, "id"));
+        String begin = this.xsr.getAttributeValue(null, "begin");
+        String end = this.xsr.getAttributeValue(null, "end");
+        String dur = this.xsr.getAttributeValue(null, "dur");
+        boolean timed = (end != null || dur != null);
+
+        if (timed) {
+            long startMillis = parent.begin + ((begin != null) ? this.parseTime(begin) : 0);
+            cue.setStartMillis(startMillis);
+            cue.setEndMillis((end != null) ? parent.begin + this.parseTime(end) : startMillis + this.parseTime(dur));
+        } else if (this.strict) {
+            throw new SubtitleParsingException(String.format("Cue %s has no end time", cue.getId()));
+        }
+
+        // Region
+        String regionId = this.xsr.getAttributeValue(null, "region");
+
+        if (regionId == null) {
+            regionId = parent.regionId;
+        }
+
+        if (regionId != null) {
+            SubtitleRegion region = this.regions.get(regionId);
+
+            if (region == null && this.strict) {
+                throw new SubtitleParsingException(String.format("Unknown region: %s", regionId));
+            }
+
+            cue.setRegion(region);
+        }
+
+        // Texts, with the style of their span element
+        Deque<SubtitleStyle> styleStack = new ArrayDeque<>();
+        Deque<Boolean> spaceStack = new ArrayDeque<>();
+        styleStack.push(this.readStyle(parent.style));
+        spaceStack.push(this.isSpacePreserved(parent.preserveSpace));
+        TextBuilder textBuilder = new TextBuilder(cue);
+
+        while (this.xsr.hasNext()) {
+            int event = this.xsr.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = this.xsr.getLocalName();
+
+                if (name.equals("br")) {
+                    textBuilder.endLine();
+                } else if (name.equals("span")) {
+                    styleStack.push(this.readStyle(styleStack.peek()));
+                    spaceStack.push(this.isSpacePreserved(spaceStack.peek()));
+                } else {
+                    // Metadata and animations do not contain displayed text
+                    this.skipElement();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (this.xsr.getLocalName().equals("span")) {
+                    styleStack.pop();
+                    spaceStack.pop();
+                } else if (this.xsr.getLocalName().equals("p")) {
+                    break;
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS ||
+                    event == XMLStreamConstants.CDATA ||
+                    event == XMLStreamConstants.SPACE) {
+                textBuilder.addText(this.xsr.getText(), styleStack.peek(), spaceStack.peek());
+            }
+        }
+
+        textBuilder.endLine();
+
+        if (!timed || cue.getLines().isEmpty()) {
+            return null;
+        }
+
+        return cue;
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0 && this.xsr.hasNext()) {
+            int event = this.xsr.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Resolve the style of the current element: parent style, then referenced styles,
+     * then the element own styling attributes
+     *
+     * @return the parent style if the element does not define any style, an interned style otherwise
+     */
+    private SubtitleStyle readStyle(SubtitleStyle parentStyle) throws SubtitleParsingException {
+        String references = this.xsr.getAttributeValue(null, "style");
+        SubtitleStyle style = null;
+
+        if (references != null) {
+            for (String reference : references.trim().split("\\s+")) {
+                SubtitleStyle referencedStyle = this.styles.get(reference);
+
+                if (referencedStyle == null) {
+                    if (this.strict && !reference.isEmpty()) {
+                        throw new SubtitleParsingException(String.format("Unknown style: %s", reference));
+                    }
+
+                    continue;
+                }
+
+                if (style == null) {
+                    style = new SubtitleStyle(parentStyle);
+                }
+
+                style.getProperties().putAll(referencedStyle.getProperties());
+            }
+        }
+
+        for (int i = 0; i < this.xsr.getAttributeCount(); i++) {
+            if (!hasNamespaceSuffix(this.xsr.getAttributeNamespace(i), NS_TTS_SUFFIX)) {
+                continue;
+            }
+
+            String value = this.xsr.getAttributeValue(i).trim();
+            SubtitleStyle.Property property = null;
+            Object propertyValue = null;
+
+            switch (this.xsr.getAttributeLocalName(i)) {
+                case "color":
+                    property = SubtitleStyle.Property.COLOR;
+                    propertyValue = value;
+                    break;
+                case "textAlign":
+                    property = SubtitleStyle.Property.TEXT_ALIGN;
+                    propertyValue = value.equals("left") || value.equals("start") ? SubtitleStyle.TextAlign.LEFT :
+                            value.equals("right") || value.equals("end") ? SubtitleStyle.TextAlign.RIGHT :
+                            value.equals("center") ? SubtitleStyle.TextAlign.CENTER : null;
+                    break;
+                case "direction":
+                    property = SubtitleStyle.Property.DIRECTION;
+                    propertyValue = value.equals("rtl") ? SubtitleStyle.Direction.RTL :
+                            value.equals("ltr") ? SubtitleStyle.Direction.LTR : null;
+                    break;
+                case "fontStyle":
+                    property = SubtitleStyle.Property.FONT_STYLE;
+                    propertyValue = value.equals("italic") ? SubtitleStyle.FontStyle.ITALIC :
+                            value.equals("oblique") ? SubtitleStyle.FontStyle.OBLIQUE :
+                            value.equals("normal") ? SubtitleStyle.FontStyle.NORMAL : null;
+                    break;
+                case "fontWeight":
+                    property = SubtitleStyle.Property.FONT_WEIGHT;
+                    propertyValue = value.equals("bold") ? SubtitleStyle.FontWeight.BOLD :
+                            value.equals("normal") ? SubtitleStyle.FontWeight.NORMAL : null;
+                    break;
+                case "textDecoration":
+                    property = SubtitleStyle.Property.TEXT_DECORATION;
+                    propertyValue = value.equals("underline") ? SubtitleStyle.TextDecoration.UNDERLINE :
+                            value.equals("overline") ? SubtitleStyle.TextDecoration.OVERLINE :
+                            value.equals("lineThrough") ? SubtitleStyle.TextDecoration.LINE_THROUGH :
+                            value.equals("none") ? SubtitleStyle.TextDecoration.NONE : null;
+                    break;
+                default:
+                    break;
+            }
+
+            if (propertyValue == null) {
+                // Not supported by subtitle styles
+                continue;
+            }
+
+            if (style == null) {
+                style = new SubtitleStyle(parentStyle);
+            }
+
+            style.setProperty(property, propertyValue);
+        }
+
+        // Equal styles of spans and cues are shared
+        return (style != null) ? style.intern() : parentStyle;
+    }
+
+    /**
+     * Read a region from its origin, extent and display align attributes
+     * Lengths in percents, pixels and cells are converted to percents
+     */
+    private SubtitleRegion readRegion() throws SubtitleParsingException {
+        String origin = this.getAttribute(NS_TTS_SUFFIX, "origin");
+        String extent = this.getAttribute(NS_TTS_SUFFIX, "extent");
+        String displayAlign = this.getAttribute(NS_TTS_SUFFIX, "displayAlign");
+
+        float[] position = (origin != null) ? this.parseLengths(origin) : new float[] {0, 0};
+        float[] size = (extent != null) ? this.parseLengths(extent) : new float[] {100, 100};
+        SubtitleRegion.VerticalAlign verticalAlign = "before".equals(displayAlign) ?
+                SubtitleRegion.VerticalAlign.TOP : SubtitleRegion.VerticalAlign.BOTTOM;
+
+        return new SubtitleRegion(position[0], position[1], size[0], size[1], verticalAlign);
+    }
+
+    /**
+     * @return Horizontal and vertical lengths in percents
+     */
+    private float[] parseLengths(String value) throws SubtitleParsingException {
+        String[] lengths = value.trim().split("\\s+");
+
+        if (lengths.length != 2) {
+            throw new SubtitleParsingException(String.format("Unable to parse lengths: %s", value));
+        }
+
+        float[] percents = new float[2];
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                String length = lengths[i];
+
+                if (length.endsWith("%")) {
+                    percents[i] = Float.parseFloat(length.substring(0, length.length() - 1));
+                } else if (length.endsWith("px") && this.rootExtent != null) {
+                    percents[i] = parsePixels(length) * 100 / this.rootExtent[i];
+                } else if (length.endsWith("c")) {
+                    percents[i] = Float.parseFloat(length.substring(0, length.length() - 1)) * 100 / this.cellResolution[i];
+                } else {
+                    throw new NumberFormatException();
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new SubtitleParsingException(String.format("Unable to parse lengths: %s", value));
+        }
+
+        return percents;
+    }
+
+    private static float parsePixels(String length) {
+        if (!length.endsWith("px")) {
+            throw new NumberFormatException();
+        }
+
+        return Float.parseFloat(length.substring(0, length.length() - 2));
+    }
+
+    private long parseTime(String expression) throws SubtitleParsingException {
+        long millis = this.time.parse(expression);
+
+        if (millis < 0) {
+            throw new SubtitleParsingException(String.format("Unable to parse time expression: %s", expression));
+        }
+
+        return millis;
+    }
+
+    private boolean isSpacePreserved(boolean parentPreserveSpace) {
+        String space = this.xsr.getAttributeValue(XMLConstants.XML_NS_URI, "space");
+        return (space != null) ? space.equals("preserve") : parentPreserveSpace;
+    }
+
+    /**
+     * @return value of the attribute whose namespace ends with the suffix, ie: #styling
+     * so that TTML and former DFXP namespaces are both supported
+     */
+    private String getAttribute(String namespaceSuffix, String localName) {
+        for (int i = 0; i < this.xsr.getAttributeCount(); i++) {
+            if (this.xsr.getAttributeLocalName(i).equals(localName) &&
+                    hasNamespaceSuffix(this.xsr.getAttributeNamespace(i), namespaceSuffix)) {
+                return this.xsr.getAttributeValue(i);
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean hasNamespaceSuffix(String namespace, String suffix) {
+        return namespace != null && namespace.endsWith(suffix);
+    }
+
+    /**
+     * Build the lines of a cue from texts and line breaks
+     * Consecutive texts of the same style are merged
+     */
+    private static class TextBuilder {
+        private TtmlCue cue;
+        private SubtitleTextLine line = new SubtitleTextLine();
+        private StringBuilder text = new StringBuilder();
+        private SubtitleStyle textStyle;
+        private boolean preserveSpace; // True if the last text preserves its spaces
+        private boolean spaceEnded = true; // True at the start of a line, or after a collapsed space
+
+        TextBuilder(TtmlCue cue) {
+            this.cue = cue;
+        }
+
+        void addText(String value, SubtitleStyle style, boolean preserveSpace) {
+            if (!preserveSpace) {
+                // Indentation between elements is a space too, ie: between two spans on separate lines
+                value = collapseSpaces(value);
+
+                // No space at the start of a line, nor after another space
+                if (value.startsWith(" ") && this.spaceEnded) {
+                    value = value.substring(1);
+                }
+            }
+
+            if (value.isEmpty()) {
+                return;
+            }
+
+            this.preserveSpace = preserveSpace;
+            this.spaceEnded = !preserveSpace && value.endsWith(" ");
+
+            if (style != this.textStyle) {
+                this.endText();
+                this.textStyle = style;
+            }
+
+            this.text.append(value);
+        }
+
+        void endLine() {
+            // No space at the end of a line
+            int length = this.text.length();
+
+            if (length > 0 && !this.preserveSpace && this.text.charAt(length - 1) == ' ') {
+                this.text.setLength(length - 1);
+            }
+
+            this.endText();
+
+            if (!this.line.getTexts().isEmpty()) {
+                this.cue.addLine(this.line);
+                this.line = new SubtitleTextLine();
+            }
+
+            this.spaceEnded = true;
+        }
+
+        private void endText() {
+            if (this.text.length() == 0) {
+                return;
+            }
+
+            if (this.textStyle != null && this.textStyle.hasProperties()) {
+                this.line.addText(new SubtitleStyledText(this.text.toString(), this.textStyle));
+            } else {
+                this.line.addText(new SubtitlePlainText(this.text.toString()));
+            }
+
+            this.text.setLength(0);
+        }
+
+        private static String collapseSpaces(String value) {
+            StringBuilder sb = null;
+            boolean space = false;
+
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                boolean isSpace = (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+
+                if (isSpace && (space || c != ' ') && sb == null) {
+                    // First change to the value
+                    sb = new StringBuilder(value.length());
+                    sb.append(value, 0, i);
+                }
+
+                if (sb != null && (!isSpace || !space)) {
+                    sb.append(isSpace ? ' ' : c);
+                }
+
+                space = isSpace;
+            }
+
+            return (sb != null) ? sb.toString() : value;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.util.IndentingXMLStreamWriter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Write TTML cues one by one
+ *
+ * Styles and regions are declared in the head of the document, before the cues,
+ * but they are only known once all cues have been read.
+ * So cues are written to a temporary body file while their styles and regions
+ * are registered. At the end, the head is written from the registry
+ * and followed by the content of the body file.
+ * Memory usage depends on the number of distinct styles and regions, not on the number of cues.
+ */
+public class TtmlCueWriter implements SubtitleCueWriter {
+    private TtmlWriter writer;
+    private OutputStream os;
+    private TtmlObject registry; // Registered styles and regions, without cues
+    private int cueIndex = 0;
+    private File bodyFile; // Temporary file containing the p elements
+    private OutputStream bodyStream;
+    private XMLStreamWriter bodyWriter;
+
+    public TtmlCueWriter(TtmlWriter writer, OutputStream os) {
+        this.writer = writer;
+        this.os = os;
+    }
+
+    @Override
+    public void begin(Map<SubtitleObject.Property, Object> properties) throws IOException {
+        this.registry = new TtmlObject();
+
+        for (Map.Entry<SubtitleObject.Property, Object> entry : properties.entrySet()) {
+            this.registry.setProperty(entry.getKey(), entry.getValue());
+        }
+
+        this.bodyFile = File.createTempFile("subtitle-ttml-body", ".xml");
+        this.bodyStream = new BufferedOutputStream(new FileOutputStream(this.bodyFile));
+
+        try {
+            // Cues are written in tt/body/div
+            this.bodyWriter = this.writer.createXMLStreamWriter(this.bodyStream, 3);
+            this.writer.setPrefixes(this.bodyWriter);
+        } catch (XMLStreamException e) {
+            this.deleteBody();
+            throw new IOException(String.format("Unable to create ttml body: %s", e.getMessage()));
+        }
+    }
+
+    @Override
+    public void write(SubtitleCue cue) throws IOException {
+        this.cueIndex++;
+        TtmlCue ttmlCue = this.registry.registerCue(cue);
+        ttmlCue.setId("cue-" + this.cueIndex);
+
+        try {
+            this.writer.writeCue(this.registry, ttmlCue, this.bodyWriter);
+        } catch (XMLStreamException e) {
+            this.deleteBody();
+            throw new IOException(String.format("Unable to write ttml cue: %s", e.getMessage()));
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        try {
+            this.bodyWriter.close();
+            this.bodyStream.close();
+
+            IndentingXMLStreamWriter xsw = this.writer.createXMLStreamWriter(this.os, 0);
+            xsw.writeStartDocument("utf-8", "1.0");
+
+            // Write tt element and header with all registered styles and regions
+            this.writer.writeStart(this.registry, xsw);
+
+            // Start of cues
+            xsw.writeStartElement("body");
+            xsw.writeStartElement("div");
+
+            // Close div start tag before copying cues
+            xsw.writeCharacters("");
+            xsw.flush();
+            this.copyBody();
+
+            if (this.cueIndex > 0) {
+                xsw.setHasChildElements();
+            }
+
+            // End of cues
+            xsw.writeEndElement();
+            xsw.writeEndElement();
+
+            // End of tt
+            xsw.writeEndElement();
+            xsw.writeEndDocument();
+            xsw.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(String.format("Unable to write ttml: %s", e.getMessage()));
+        } finally {
+            this.deleteBody();
+        }
+
+        this.flush();
+    }
+
+    /**
+     * Delete the temporary body file
+     */
+    @Override
+    public void abort() {
+        this.deleteBody();
+    }
+
+    /**
+     * Cues are written to a temporary file until the end of the document
+     * so flush only pushes them to this file
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.bodyWriter != null) {
+            try {
+                this.bodyWriter.flush();
+            } catch (XMLStreamException e) {
+                throw new IOException(String.format("Unable to flush ttml body: %s", e.getMessage()));
+            }
+        }
+
+        this.os.flush();
+    }
+
+    private void copyBody() throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+
+        try (InputStream is = new FileInputStream(this.bodyFile)) {
+            while ((read = is.read(buffer)) != -1) {
+                this.os.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private void deleteBody() {
+        if (this.bodyFile != null) {
+            try {
+                this.bodyStream.close();
+            } catch (IOException e) {
+                // Body is not needed anymore
+            }
+
+            this.bodyFile.delete();
+            this.bodyFile = null;
+            this.bodyWriter = null;
+        }
+    }
+}
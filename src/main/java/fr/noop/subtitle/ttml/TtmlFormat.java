@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleFormat;
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleWriter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TTML format, .xml files
+ */
+public class TtmlFormat implements SubtitleFormat {
+    @Override
+    public String getName() {
+        return "ttml";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList("xml");
+    }
+
+    @Override
+    public boolean canParse() {
+        return true;
+    }
+
+    @Override
+    public boolean canWrite() {
+        return true;
+    }
+
+    @Override
+    public SubtitleParser createParser(String charset) {
+        return new TtmlParser();
+    }
+
+    @Override
+    public SubtitleWriter createWriter(String charset) {
+        return new TtmlWriter();
+    }
+}
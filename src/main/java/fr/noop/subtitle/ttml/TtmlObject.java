@@ -22,6 +22,7 @@ import fr.noop.subtitle.util.SubtitleStyledText;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,14 +30,14 @@ import java.util.Map;
  * Created by clebeaupin on 11/10/15.
  */
 public class TtmlObject  extends BaseSubtitleObject {
-    // Style signature => style id
-    private Map<String, String> styleMapping = new HashMap<>();
+    // Interned style => style id
+    private Map<SubtitleStyle, String> styleMapping = new IdentityHashMap<>();
 
     // Style id => style object
     private Map<String, SubtitleStyle> styles = new HashMap<>();
 
-    // Region signature => region Id
-    private Map<String, String> regionMapping = new HashMap<>();
+    // Region key => region Id
+    private Map<RegionKey, String> regionMapping = new HashMap<>();
 
     // Regions id => region object
     private Map<String, SubtitleRegion> regions = new HashMap<>();
@@ -54,82 +55,78 @@ public class TtmlObject  extends BaseSubtitleObject {
 
         for (int cueIndex=0; cueIndex<subtitleObject.getCues().size(); cueIndex++) {
             SubtitleCue cue = subtitleObject.getCues().get(cueIndex);
-            TtmlCue ttmlCue = new TtmlCue(cue);
+            TtmlCue ttmlCue = this.registerCue(cue);
 
-            // Register cue region
-            SubtitleRegion region = ttmlCue.getRegion();
+            // Set cue id
+            ttmlCue.setId("cue-" + (cueIndex+1));
+            this.addCue(ttmlCue);
+        }
+    }
+
+    /**
+     * Register region and styles of a cue
+     * The cue is not added to the cues of this object
+     * The id of its region is set on the returned cue, so writers do not look it up again
+     *
+     * @param cue Cue to register
+     * @return ttml copy of the cue
+     */
+    public TtmlCue registerCue(SubtitleCue cue) {
+        TtmlCue ttmlCue = new TtmlCue(cue);
+
+        // Register cue region
+        SubtitleRegion region = ttmlCue.getRegion();
+
+        if (region != null) {
+            // Region could be null
+            RegionKey regionKey = new RegionKey(region);
+            String regionId = this.regionMapping.get(regionKey);
+
+            if (regionId == null) {
+                // Region is not registered
+                // Build a new region id
+                regionId = "region-" + (this.regions.size() + 1);
+                this.regionMapping.put(regionKey, regionId);
+                this.regions.put(regionId, new SubtitleRegion(region));
+            }
 
-            if (region != null) {
-                // Region could be null
-                String regionSignature = this.buildRegionSignature(region);
+            ttmlCue.setRegionId(regionId);
+        }
 
-                if (!this.regionMapping.containsKey(regionSignature)) {
-                    // Region is not registered
-                    // Build a new region id
-                    String regionId = String.format("region-%d", this.regions.size() + 1);
-                    this.regionMapping.put(regionSignature, regionId);
-                    this.regions.put(regionId, new SubtitleRegion(region));
+        // Register cue styles
+        for (SubtitleLine line : ttmlCue.getLines()) {
+            for (SubtitleText text : line.getTexts()) {
+                if (!(text instanceof SubtitleStyledText)) {
+                    // No style applied on this text
+                    continue;
                 }
-            }
 
-            // Register cue styles
-            for (SubtitleLine line : ttmlCue.getLines()) {
-                for (SubtitleText text : line.getTexts()) {
-                    if (!(text instanceof SubtitleStyledText)) {
-                        // No style applied on this text
-                        continue;
-                    }
-
-                    // Register text style
-                    SubtitleStyle style = ((SubtitleStyledText) text).getStyle();
-                    String styleSignature = this.buildStyleSignature(style);
-
-                    if (this.styleMapping.containsKey(styleSignature)) {
-                        // Style already registered
-                        continue;
-                    }
-
-                    // Style is not registered
-                    // Build a new style id
-                    String styleId = String.format("style-%d", this.styles.size()+1);
-                    this.styleMapping.put(styleSignature, styleId);
-                    this.styles.put(styleId, new SubtitleStyle(style));
+                // Register text style
+                // Styles of parsed texts are already interned
+                SubtitleStyle style = ((SubtitleStyledText) text).getStyle().intern();
+
+                if (this.styleMapping.containsKey(style)) {
+                    // Style already registered
+                    continue;
                 }
-            }
 
-            // Set cue id
-            ttmlCue.setId(String.format("cue-%d", cueIndex+1));
-            this.addCue(ttmlCue);
+                // Style is not registered
+                // Build a new style id
+                String styleId = "style-" + (this.styles.size()+1);
+                this.styleMapping.put(style, styleId);
+                this.styles.put(styleId, style);
+            }
         }
-    }
-
-    private String buildRegionSignature(SubtitleRegion region) {
-        return String.format("%d-%d-%d-%d-%s",
-                (int) (region.getX()*100),
-                (int) (region.getY()*100),
-                (int) (region.getWidth()*100),
-                (int) (region.getHeight()*100),
-                region.getVerticalAlign());
-    }
 
-    private String buildStyleSignature(SubtitleStyle style) {
-        return String.format("%s-%s-%s-%s-%s",
-                style.getProperty(SubtitleStyle.Property.DIRECTION),
-                style.getProperty(SubtitleStyle.Property.TEXT_ALIGN),
-                style.getProperty(SubtitleStyle.Property.COLOR),
-                style.getProperty(SubtitleStyle.Property.FONT_STYLE),
-                style.getProperty(SubtitleStyle.Property.FONT_WEIGHT),
-                style.getProperty(SubtitleStyle.Property.TEXT_DECORATION));
+        return ttmlCue;
     }
 
     public String getStyleId(SubtitleStyle style) {
-        String styleSignature = this.buildStyleSignature(style);
-        return this.styleMapping.getOrDefault(styleSignature, null);
+        return this.styleMapping.get(style.intern());
     }
 
     public String getRegionId(SubtitleRegion region) {
-        String regionSignature = this.buildRegionSignature(region);
-        return this.regionMapping.getOrDefault(regionSignature, null);
+        return this.regionMapping.get(new RegionKey(region));
     }
 
     public Map<String, SubtitleStyle> getStyles() {
@@ -144,7 +141,7 @@ public class TtmlObject  extends BaseSubtitleObject {
      * @param style New added style
      */
     public void setStyle(String styleId, SubtitleStyle style) {
-        this.styleMapping.put(this.buildStyleSignature(style), styleId);
+        this.styleMapping.put(style.intern(), styleId);
         this.styles.put(styleId, style);
     }
 
@@ -159,7 +156,53 @@ public class TtmlObject  extends BaseSubtitleObject {
      * @param region New added region
      */
     public void setRegion(String regionId, SubtitleRegion region) {
-        this.regionMapping.put(this.buildRegionSignature(region), regionId);
+        this.regionMapping.put(new RegionKey(region), regionId);
         this.regions.put(regionId, region);
     }
+
+    /**
+     * Regions are the same when their coordinates are equal to a hundredth of percent
+     */
+    private static final class RegionKey {
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final SubtitleRegion.VerticalAlign verticalAlign;
+        private final int hash;
+
+        RegionKey(SubtitleRegion region) {
+            this.x = (int) (region.getX()*100);
+            this.y = (int) (region.getY()*100);
+            this.width = (int) (region.getWidth()*100);
+            this.height = (int) (region.getHeight()*100);
+            this.verticalAlign = region.getVerticalAlign();
+
+            int hash = this.x;
+            hash = 31 * hash + this.y;
+            hash = 31 * hash + this.width;
+            hash = 31 * hash + this.height;
+            this.hash = 31 * hash + (this.verticalAlign != null ? this.verticalAlign.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof RegionKey)) {
+                return false;
+            }
+
+            RegionKey key = (RegionKey) o;
+            return this.x == key.x && this.y == key.y && this.width == key.width &&
+                    this.height == key.height && this.verticalAlign == key.verticalAlign;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
 }
@@ -10,8 +10,69 @@
 
 package fr.noop.subtitle.ttml;
 
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleStreamParser;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+
+import javax.xml.stream.XMLInputFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
 /**
  * Created by clebeaupin on 11/10/15.
+ *
+ * The charset is read from the xml declaration.
+ * DTDs and external entities are not supported.
  */
-public class TtmlParser {
+public class TtmlParser implements SubtitleStreamParser {
+    private XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+
+    public TtmlParser() {
+        this.inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public TtmlObject parse(InputStream is) throws IOException, SubtitleParsingException {
+        return this.parse(is, true);
+    }
+
+    @Override
+    public TtmlObject parse(InputStream is, boolean strict) throws IOException, SubtitleParsingException {
+        TtmlObject ttmlObject = new TtmlObject();
+        TtmlCueReader reader = this.read(is, strict);
+
+        while (reader.hasNext()) {
+            ttmlObject.addCue(reader.next());
+        }
+
+        for (Map.Entry<SubtitleObject.Property, Object> entry : reader.getProperties().entrySet()) {
+            ttmlObject.setProperty(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, SubtitleStyle> entry : reader.getStyles().entrySet()) {
+            ttmlObject.setStyle(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, SubtitleRegion> entry : reader.getRegions().entrySet()) {
+            ttmlObject.setRegion(entry.getKey(), entry.getValue());
+        }
+
+        return ttmlObject;
+    }
+
+    @Override
+    public TtmlCueReader read(InputStream is) throws IOException {
+        return this.read(is, true);
+    }
+
+    @Override
+    public TtmlCueReader read(InputStream is, boolean strict) throws IOException {
+        return new TtmlCueReader(is, this.inputFactory, strict);
+    }
 }
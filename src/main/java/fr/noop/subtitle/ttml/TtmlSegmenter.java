@@ -0,0 +1,364 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.mp4.Mp4TtmlWriter;
+import fr.noop.subtitle.util.IndentingXMLStreamWriter;
+import fr.noop.subtitle.util.SubtitleCueIndex;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Split cues into numbered IMSC1 TTML documents, the segments of a DASH subtitle track
+ *
+ * Segment n covers the times from (n - 1) * segment duration to n * segment duration,
+ * numbers start at 1 like the $Number$ of a DASH segment template.
+ * A cue is written in every segment it overlaps, with its own times.
+ * Segments are written as plain TTML documents, or wrapped in fragmented MP4 (stpp) after an init segment.
+ *
+ * Styles and regions of all cues are registered once, in a registry shared by the segments:
+ * the head of the documents is serialized once and copied at the start of every segment.
+ * Segments are then written on a pool of threads, each thread reusing its document buffer and xml writer,
+ * to a temporary file which is then renamed.
+ */
+public class TtmlSegmenter {
+    private final static int MAX_PENDING_SEGMENTS = 64; // Segments submitted but not written yet
+    private final static String IMSC1_TEXT_PROFILE = "http://www.w3.org/ns/ttml/profile/imsc1/text";
+
+    private Path directory;
+    private long segmentDurationMillis;
+    private boolean mp4 = false;
+    private String segmentNamePattern;
+    private String initSegmentName = "init.mp4";
+    private ExecutorService executor;
+
+    private TtmlWriter writer = new TtmlWriter();
+    private TtmlObject registry; // Styles and regions of all cues
+    private byte[] documentStart; // Document until the div start tag
+    private byte[] documentEnd; // Document after the div content
+    private int segmentCount;
+    private Deque<Future<Void>> pendingSegments = new ArrayDeque<>();
+    private ThreadLocal<SegmentWriter> segmentWriters = new ThreadLocal<>();
+
+    public TtmlSegmenter(Path directory, long segmentDurationMillis) {
+        if (segmentDurationMillis <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid segment duration: %d ms", segmentDurationMillis));
+        }
+
+        this.directory = directory;
+        this.segmentDurationMillis = segmentDurationMillis;
+    }
+
+    /**
+     * @param mp4 True to wrap segments in fragmented MP4, after an init segment
+     */
+    public void setMp4(boolean mp4) {
+        this.mp4 = mp4;
+    }
+
+    /**
+     * @param segmentNamePattern File name of a segment, formatted with the segment number,
+     *                           defaults to segment%d.ttml, or segment%d.m4s with MP4
+     */
+    public void setSegmentNamePattern(String segmentNamePattern) {
+        this.segmentNamePattern = segmentNamePattern;
+    }
+
+    public void setInitSegmentName(String initSegmentName) {
+        this.initSegmentName = initSegmentName;
+    }
+
+    /**
+     * @param executor Threads writing the segments, by default a pool of one thread per processor
+     *                 is created and shut down at the end
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return Number of segments written by the last call to segment
+     */
+    public int getSegmentCount() {
+        return this.segmentCount;
+    }
+
+    /**
+     * Write the segments of a subtitle object, its cues are sorted by start time
+     */
+    public void segment(SubtitleObject subtitleObject) throws IOException {
+        SubtitleCueIndex index = new SubtitleCueIndex(subtitleObject);
+        this.registry = new TtmlObject();
+
+        for (Map.Entry<SubtitleObject.Property, Object> entry : subtitleObject.getProperties().entrySet()) {
+            this.registry.setProperty(entry.getKey(), entry.getValue());
+        }
+
+        // Register styles and regions of all cues before writing the shared head
+        TtmlCue[] cues = new TtmlCue[index.size()];
+        long maxEndMillis = 0;
+
+        for (int i = 0; i < cues.length; i++) {
+            cues[i] = this.registry.registerCue(index.getCue(i));
+            cues[i].setId("cue-" + (i + 1));
+            maxEndMillis = Math.max(maxEndMillis, cues[i].getEndMillis());
+        }
+
+        this.writeDocumentEnvelope();
+        Files.createDirectories(this.directory);
+
+        if (this.mp4) {
+            Path path = this.directory.resolve(this.initSegmentName);
+            Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmpPath))) {
+                new Mp4TtmlWriter().writeInitSegment(os);
+            }
+
+            publish(tmpPath, path);
+        }
+
+        ExecutorService executor = this.executor;
+
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+
+        try {
+            this.segmentCount = 0;
+            this.pendingSegments.clear();
+            List<TtmlCue> openCues = new ArrayList<>(); // Cues which may belong to the next segments
+            int nextCue = 0;
+
+            // Single pass over the cues, there is at least one segment
+            for (long startMillis = 0; startMillis == 0 || startMillis < maxEndMillis; startMillis += this.segmentDurationMillis) {
+                long endMillis = startMillis + this.segmentDurationMillis;
+
+                while (nextCue < cues.length && cues[nextCue].getStartMillis() < endMillis) {
+                    openCues.add(cues[nextCue++]);
+                }
+
+                List<TtmlCue> segmentCues = new ArrayList<>();
+                int count = 0;
+
+                for (int i = 0; i < openCues.size(); i++) {
+                    TtmlCue cue = openCues.get(i);
+
+                    // A cue without duration belongs to the segment it starts in
+                    if (cue.getEndMillis() > startMillis || cue.getStartMillis() >= startMillis) {
+                        segmentCues.add(cue);
+                    }
+
+                    // Keep cues ending after the segment
+                    if (cue.getEndMillis() > endMillis) {
+                        openCues.set(count++, cue);
+                    }
+                }
+
+                while (openCues.size() > count) {
+                    openCues.remove(openCues.size() - 1);
+                }
+
+                this.segmentCount++;
+                this.submit(executor, this.segmentCount, startMillis, segmentCues);
+            }
+
+            this.waitPendingSegments(0);
+        } finally {
+            if (executor != this.executor) {
+                executor.shutdownNow();
+            }
+
+            this.pendingSegments.clear();
+        }
+    }
+
+    /**
+     * Serialize the document around the cues once: xml declaration, tt element, head, body and div
+     */
+    private void writeDocumentEnvelope() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try {
+            IndentingXMLStreamWriter xsw = this.writer.createXMLStreamWriter(os, 0);
+            xsw.writeStartDocument("utf-8", "1.0");
+            this.writer.writeStart(this.registry, xsw, IMSC1_TEXT_PROFILE);
+            xsw.writeStartElement("body");
+            xsw.writeStartElement("div");
+
+            // Close div start tag, cues follow it
+            xsw.writeCharacters("");
+            xsw.flush();
+            int startLength = os.size();
+
+            xsw.setHasChildElements();
+            xsw.writeEndElement();
+            xsw.writeEndElement();
+            xsw.writeEndElement();
+            xsw.writeEndDocument();
+            xsw.flush();
+
+            byte[] document = os.toByteArray();
+            this.documentStart = Arrays.copyOf(document, startLength);
+            this.documentEnd = Arrays.copyOfRange(document, startLength, document.length);
+        } catch (XMLStreamException e) {
+            throw new IOException(String.format("Unable to write ttml head: %s", e.getMessage()));
+        }
+    }
+
+    private void submit(ExecutorService executor, final int number, final long startMillis,
+                        final List<TtmlCue> cues) throws IOException {
+        this.waitPendingSegments(MAX_PENDING_SEGMENTS - 1);
+        this.pendingSegments.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                writeSegment(number, startMillis, cues);
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * Write a segment, the registry and the document envelope are only read
+     */
+    private void writeSegment(int number, long startMillis, List<TtmlCue> cues) throws IOException {
+        SegmentWriter segmentWriter = this.segmentWriters.get();
+        DocumentBuffer document;
+
+        try {
+            if (segmentWriter == null) {
+                segmentWriter = new SegmentWriter();
+                this.segmentWriters.set(segmentWriter);
+            }
+
+            document = segmentWriter.document;
+            document.reset();
+            document.write(this.documentStart);
+
+            for (TtmlCue cue : cues) {
+                this.writer.writeCue(this.registry, cue, segmentWriter.xsw);
+            }
+
+            segmentWriter.xsw.flush();
+        } catch (XMLStreamException e) {
+            // The state of the xml writer is unknown
+            this.segmentWriters.remove();
+            throw new IOException(String.format("Unable to write ttml segment %d: %s", number, e.getMessage()));
+        }
+
+        document.write(this.documentEnd);
+
+        String pattern = (this.segmentNamePattern != null) ? this.segmentNamePattern :
+                (this.mp4 ? "segment%d.m4s" : "segment%d.ttml");
+        Path path = this.directory.resolve(String.format(pattern, number));
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        // The document is written at once, without buffer
+        try (OutputStream os = Files.newOutputStream(tmpPath)) {
+            if (this.mp4) {
+                segmentWriter.mp4Writer.writeSegment(os, number, startMillis, this.segmentDurationMillis,
+                        document.getBuffer(), 0, document.size());
+            } else {
+                document.writeTo(os);
+            }
+        }
+
+        publish(tmpPath, path);
+    }
+
+    /**
+     * Wait until no more than this number of segments remain to be written
+     */
+    private void waitPendingSegments(int count) throws IOException {
+        while (this.pendingSegments.size() > count) {
+            try {
+                this.pendingSegments.peek().get();
+                this.pendingSegments.poll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing segments");
+            } catch (ExecutionException e) {
+                this.pendingSegments.poll();
+
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+
+                throw new IOException(String.format("Unable to write segment: %s", e.getCause()), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Replace the target file, readers never see a partially written file
+     */
+    private static void publish(Path tmpPath, Path path) throws IOException {
+        try {
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Buffers of a thread writing segments, reused from one segment to the next
+     */
+    private class SegmentWriter {
+        private DocumentBuffer document = new DocumentBuffer();
+        private XMLStreamWriter xsw; // Writes cues in tt/body/div of the document
+        private Mp4TtmlWriter mp4Writer = new Mp4TtmlWriter();
+
+        SegmentWriter() throws XMLStreamException {
+            // Xml output factories are not thread safe
+            synchronized (writer) {
+                this.xsw = writer.createXMLStreamWriter(this.document, 3);
+            }
+
+            writer.setPrefixes(this.xsw);
+        }
+    }
+
+    /**
+     * Document bytes, handed to the MP4 writer without copy
+     */
+    private static class DocumentBuffer extends ByteArrayOutputStream {
+        DocumentBuffer() {
+            super(8192);
+        }
+
+        byte[] getBuffer() {
+            return this.buf;
+        }
+    }
+}
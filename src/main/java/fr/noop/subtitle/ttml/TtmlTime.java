@@ -0,0 +1,153 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+/**
+ * TTML time expressions
+ *
+ * Clock times: HH:MM:SS, HH:MM:SS.fraction, HH:MM:SS:frames and HH:MM:SS:frames.subframes
+ * Offset times: a number followed by a metric: h, m, s, ms, f (frames) or t (ticks)
+ */
+class TtmlTime {
+    private double frameRate; // Effective frame rate: ttp:frameRate * ttp:frameRateMultiplier
+    private int subFrameRate; // ttp:subFrameRate
+    private double tickRate; // ttp:tickRate
+
+    TtmlTime(double frameRate, int subFrameRate, double tickRate) {
+        this.frameRate = frameRate;
+        this.subFrameRate = subFrameRate;
+        this.tickRate = tickRate;
+    }
+
+    double getFrameRate() {
+        return this.frameRate;
+    }
+
+    /**
+     * @param expression Time expression, surrounding spaces are ignored
+     * @return Time in milliseconds, or -1 if the expression is not valid
+     */
+    long parse(String expression) {
+        String value = expression.trim();
+
+        if (value.indexOf(':') >= 0) {
+            return this.parseClockTime(value);
+        }
+
+        return this.parseOffsetTime(value);
+    }
+
+    private long parseClockTime(String value) {
+        String[] parts = value.split(":", -1);
+
+        if (parts.length != 3 && parts.length != 4) {
+            return -1;
+        }
+
+        double hours = parseNumber(parts[0], false);
+        double minutes = parseNumber(parts[1], false);
+        double seconds = parseNumber(parts[2], parts.length == 3);
+
+        if (hours < 0 || minutes < 0 || minutes > 59 || seconds < 0 || seconds >= 61 || parts[1].length() != 2) {
+            return -1;
+        }
+
+        double millis = hours * 3600000 + minutes * 60000 + seconds * 1000;
+
+        if (parts.length == 4) {
+            // Frames, and sub frames after a dot
+            String frames = parts[3];
+            int dotIndex = frames.indexOf('.');
+            double subFrames = 0;
+
+            if (dotIndex >= 0) {
+                subFrames = parseNumber(frames.substring(dotIndex + 1), false);
+                frames = frames.substring(0, dotIndex);
+            }
+
+            double frameCount = parseNumber(frames, false);
+
+            if (frameCount < 0 || subFrames < 0) {
+                return -1;
+            }
+
+            millis += (frameCount + subFrames / this.subFrameRate) * 1000 / this.frameRate;
+        }
+
+        return Math.round(millis);
+    }
+
+    private long parseOffsetTime(String value) {
+        // Metric is made of the letters at the end
+        int metricIndex = value.length();
+
+        while (metricIndex > 0 && Character.isLetter(value.charAt(metricIndex - 1))) {
+            metricIndex--;
+        }
+
+        double count = parseNumber(value.substring(0, metricIndex), true);
+
+        if (count < 0) {
+            return -1;
+        }
+
+        double millis;
+
+        switch (value.substring(metricIndex)) {
+            case "h":
+                millis = count * 3600000;
+                break;
+            case "m":
+                millis = count * 60000;
+                break;
+            case "s":
+                millis = count * 1000;
+                break;
+            case "ms":
+                millis = count;
+                break;
+            case "f":
+                millis = count * 1000 / this.frameRate;
+                break;
+            case "t":
+                millis = count * 1000 / this.tickRate;
+                break;
+            default:
+                return -1;
+        }
+
+        return Math.round(millis);
+    }
+
+    /**
+     * @param fraction True if a fraction is allowed after a dot
+     * @return the number, or -1 if it is not made of digits
+     */
+    private static double parseNumber(String value, boolean fraction) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+
+        boolean dot = false;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '.' && fraction && !dot && i > 0 && i < value.length() - 1) {
+                dot = true;
+            } else if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+
+        return Double.parseDouble(value);
+    }
+}
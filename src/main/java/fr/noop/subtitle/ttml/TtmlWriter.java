@@ -16,10 +16,8 @@ import fr.noop.subtitle.util.*;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
-import javax.xml.transform.*;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.*;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
@@ -27,84 +25,108 @@ import java.util.TreeMap;
 /**
  * Created by clebeaupin on 02/10/15.
  */
-public class TtmlWriter implements SubtitleWriter {
+public class TtmlWriter implements SubtitleStreamWriter {
     private final static String NS_TT = "http://www.w3.org/ns/ttml";
     private final static String NS_TTP = "http://www.w3.org/ns/ttml#parameter";
     private final static String NS_TTM = "http://www.w3.org/ns/ttml#metadata";
     private final static String NS_TTS = "http://www.w3.org/ns/ttml#styling";
     private final static String NS_XML = "http://www.w3.org/XML/1998/namespace";
 
+    private XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+
     @Override
-    public void write(SubtitleObject subtitleObject, OutputStream os) {
+    public void write(SubtitleObject subtitleObject, OutputStream os) throws IOException {
         TtmlObject ttmlObject = new TtmlObject(subtitleObject);
-        
-        // Prepare XML
-        XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
 
         try {
-            StringWriter sw = new StringWriter();
-            XMLStreamWriter xsw = outputFactory.createXMLStreamWriter(sw);
+            // Indent elements while writing them to the output stream
+            XMLStreamWriter xsw = this.createXMLStreamWriter(os, 0);
             xsw.writeStartDocument("utf-8", "1.0");
-            xsw.setPrefix("tt", NS_TT);
-            xsw.setPrefix("ttp", NS_TTP);
-            xsw.setPrefix("tts", NS_TTS);
-            xsw.setPrefix("ttm", NS_TTM);
-            xsw.setPrefix("xml", NS_XML);
-            xsw.writeStartElement("tt");
-            xsw.writeDefaultNamespace(NS_TT);
-            xsw.writeNamespace("tt", NS_TT);
-            xsw.writeNamespace("ttp", NS_TTP);
-            xsw.writeNamespace("tts", NS_TTS);
-            xsw.writeNamespace("ttm", NS_TTM);
-            xsw.writeNamespace("xml", NS_XML);
-
-            if (ttmlObject.hasProperty(SubtitleObject.Property.FRAME_RATE)) {
-                xsw.writeAttribute(
-                        NS_TTP,
-                        "frameRate",
-                        String.valueOf(ttmlObject.getProperty(SubtitleObject.Property.FRAME_RATE)));
-            }
-
-            // Write header
-            xsw.writeStartElement("head");
-
-            // Write metadata
-            this.writeMetadata(ttmlObject, xsw);
-
-            // Write styles
-            this.writeStyles(ttmlObject, xsw);
 
-            // Write regions
-            this.writeRegions(ttmlObject, xsw);
-
-            // End of head
-            xsw.writeEndElement();
+            // Write tt element and header
+            this.writeStart(ttmlObject, xsw);
 
             // Write cues
             this.writeCues(ttmlObject, xsw);
 
             // End of tt
             xsw.writeEndElement();
-
-            byte[] bytes = sw.toString().getBytes();
-            InputStream is = new ByteArrayInputStream(bytes);
-            StreamSource ss = new StreamSource(is);
-            StreamResult sr = new StreamResult(os);
-
-            // Create pretty xml
-            try {
-                Transformer transformer = TransformerFactory.newInstance().newTransformer();
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-                transformer.transform(ss, sr);
-            } catch (TransformerConfigurationException e) {
-
-            } catch (TransformerException e) {
-                e.printStackTrace();
-            }
+            xsw.writeEndDocument();
+            xsw.flush();
         } catch (XMLStreamException e) {
+            throw new IOException(String.format("Unable to write ttml: %s", e.getMessage()));
+        }
+    }
+
+    @Override
+    public TtmlCueWriter open(OutputStream os) {
+        return new TtmlCueWriter(this, os);
+    }
+
+    /**
+     * Write the tt element start and the head element
+     * Styles and regions of the ttml object must be all registered
+     */
+    void writeStart(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
+        this.writeStart(ttmlObject, xsw, null);
+    }
 
+    /**
+     * @param profile Profile designator of the document, ie: the IMSC1 text profile, or null
+     */
+    void writeStart(TtmlObject ttmlObject, XMLStreamWriter xsw, String profile) throws XMLStreamException {
+        this.setPrefixes(xsw);
+        xsw.writeStartElement("tt");
+        xsw.writeDefaultNamespace(NS_TT);
+        xsw.writeNamespace("tt", NS_TT);
+        xsw.writeNamespace("ttp", NS_TTP);
+        xsw.writeNamespace("tts", NS_TTS);
+        xsw.writeNamespace("ttm", NS_TTM);
+        xsw.writeNamespace("xml", NS_XML);
+
+        if (ttmlObject.hasProperty(SubtitleObject.Property.FRAME_RATE)) {
+            xsw.writeAttribute(
+                    NS_TTP,
+                    "frameRate",
+                    String.valueOf(ttmlObject.getProperty(SubtitleObject.Property.FRAME_RATE)));
         }
+
+        if (profile != null) {
+            xsw.writeAttribute(NS_TTP, "profile", profile);
+        }
+
+        // Write header
+        xsw.writeStartElement("head");
+
+        // Write metadata
+        this.writeMetadata(ttmlObject, xsw);
+
+        // Write styles
+        this.writeStyles(ttmlObject, xsw);
+
+        // Write regions
+        this.writeRegions(ttmlObject, xsw);
+
+        // End of head
+        xsw.writeEndElement();
+    }
+
+    /**
+     * Create an utf-8 xml writer indenting elements with 2 spaces
+     *
+     * @param depth Depth of the first written element
+     */
+    IndentingXMLStreamWriter createXMLStreamWriter(OutputStream os, int depth) throws XMLStreamException {
+        XMLStreamWriter xsw = this.outputFactory.createXMLStreamWriter(os, "utf-8");
+        return new IndentingXMLStreamWriter(xsw, 2, depth);
+    }
+
+    void setPrefixes(XMLStreamWriter xsw) throws XMLStreamException {
+        xsw.setPrefix("tt", NS_TT);
+        xsw.setPrefix("ttp", NS_TTP);
+        xsw.setPrefix("tts", NS_TTS);
+        xsw.setPrefix("ttm", NS_TTM);
+        xsw.setPrefix("xml", NS_XML);
     }
 
     private void writeMetadata(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
@@ -112,16 +134,27 @@ public class TtmlWriter implements SubtitleWriter {
         xsw.writeStartElement("metadata");
 
         // Write title
-        xsw.writeStartElement(NS_TTM, "title");
-        xsw.writeCharacters((String) ttmlObject.getProperty(SubtitleObject.Property.TITLE));
-        xsw.writeEndElement();
+        String title = (String) ttmlObject.getProperty(SubtitleObject.Property.TITLE);
+
+        if (title == null) {
+            xsw.writeEmptyElement(NS_TTM, "title");
+        } else {
+            xsw.writeStartElement(NS_TTM, "title");
+            xsw.writeCharacters(title);
+            xsw.writeEndElement();
+        }
 
         // End of metadata
         xsw.writeEndElement();
     }
 
     private void writeStyles(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
-        // Start layout that contains all regions
+        if (ttmlObject.getStyles().isEmpty()) {
+            xsw.writeEmptyElement("styling");
+            return;
+        }
+
+        // Start styling that contains all styles
         xsw.writeStartElement("styling");
 
         for (Map.Entry<String, SubtitleStyle> entry: ttmlObject.getStyles().entrySet()) {
@@ -129,7 +162,7 @@ public class TtmlWriter implements SubtitleWriter {
             String styleId = entry.getKey();
 
             // Writer style
-            xsw.writeStartElement("style");
+            xsw.writeEmptyElement("style");
             xsw.writeAttribute(NS_XML, "id", styleId);
 
 
@@ -161,14 +194,42 @@ public class TtmlWriter implements SubtitleWriter {
                 xsw.writeAttribute(NS_TTS, "direction", direction);
             }
 
-            xsw.writeEndElement();
+            // Font style
+            if (style.getFontStyle() != null) {
+                xsw.writeAttribute(NS_TTS, "fontStyle", style.getFontStyle().name().toLowerCase(Locale.US));
+            }
+
+            // Font weight
+            if (style.getFontWeight() != null) {
+                xsw.writeAttribute(NS_TTS, "fontWeight", style.getFontWeight().name().toLowerCase(Locale.US));
+            }
+
+            // Text decoration
+            if (style.getTextDecoration() != null) {
+                String textDecoration = "none";
+
+                if (style.getTextDecoration() == SubtitleStyle.TextDecoration.UNDERLINE) {
+                    textDecoration = "underline";
+                } else if (style.getTextDecoration() == SubtitleStyle.TextDecoration.OVERLINE) {
+                    textDecoration = "overline";
+                } else if (style.getTextDecoration() == SubtitleStyle.TextDecoration.LINE_THROUGH) {
+                    textDecoration = "lineThrough";
+                }
+
+                xsw.writeAttribute(NS_TTS, "textDecoration", textDecoration);
+            }
         }
 
-        // End of layout
+        // End of styling
         xsw.writeEndElement();
     }
 
     private void writeRegions(TtmlObject ttmlObject, XMLStreamWriter xsw) throws XMLStreamException {
+        if (ttmlObject.getRegions().isEmpty()) {
+            xsw.writeEmptyElement("layout");
+            return;
+        }
+
         // Start layout that contains all regions
         xsw.writeStartElement("layout");
 
@@ -177,7 +238,7 @@ public class TtmlWriter implements SubtitleWriter {
             String regionId = entry.getKey();
 
             // Write region
-            xsw.writeStartElement("region");
+            xsw.writeEmptyElement("region");
             xsw.writeAttribute(NS_XML, "id", regionId);
 
             // With US locale to format number with dot instead of comma
@@ -186,9 +247,6 @@ public class TtmlWriter implements SubtitleWriter {
 
             // Vertical align to bottom
             xsw.writeAttribute(NS_TTS, "displayAlign", "after");
-
-            // End of region
-            xsw.writeEndElement();
         }
 
         // End of layout
@@ -201,61 +259,61 @@ public class TtmlWriter implements SubtitleWriter {
         xsw.writeStartElement("div");
 
         for (SubtitleCue cue : ttmlObject.getCues()) {
-            TtmlCue ttmlCue = (TtmlCue) cue;
-
-            // Start ttmlCue
-            xsw.writeStartElement("p");
-
-            xsw.writeAttribute(NS_XML, "id", ttmlCue.getId());
+            this.writeCue(ttmlObject, (TtmlCue) cue, xsw);
+        }
 
-            // Write region
-            if (ttmlCue.getRegion() != null) {
-                xsw.writeAttribute("region", ttmlObject.getRegionId(ttmlCue.getRegion()));
-            }
+        // End of cues
+        xsw.writeEndElement();
+        xsw.writeEndElement();
+    }
 
-            // Write start and end time codes
-            xsw.writeAttribute("begin", this.formatTimeCode(ttmlCue.getStartTime()));
-            xsw.writeAttribute("end", this.formatTimeCode(ttmlCue.getEndTime()));
+    /**
+     * Write a p element
+     * Region and styles of the cue must be registered in the ttml object
+     */
+    void writeCue(TtmlObject ttmlObject, TtmlCue ttmlCue, XMLStreamWriter xsw) throws XMLStreamException {
+        // Start ttmlCue
+        xsw.writeStartElement("p");
+
+        xsw.writeAttribute(NS_XML, "id", ttmlCue.getId());
+
+        // Write region
+        if (ttmlCue.getRegion() != null) {
+            // Registered cues know the id of their region
+            String regionId = ttmlCue.getRegionId();
+            xsw.writeAttribute("region", (regionId != null) ? regionId : ttmlObject.getRegionId(ttmlCue.getRegion()));
+        }
 
-            // Write ttmlCue text
-            int lineIndex = 0;
+        // Write start and end time codes
+        xsw.writeAttribute("begin", TimeCodeCodec.format(ttmlCue.getStartMillis(), '.'));
+        xsw.writeAttribute("end", TimeCodeCodec.format(ttmlCue.getEndMillis(), '.'));
 
-            for (SubtitleLine line: ttmlCue.getLines()) {
-                lineIndex++;
+        // Write ttmlCue text
+        int lineIndex = 0;
 
-                for (SubtitleText text: line.getTexts()) {
-                    xsw.writeStartElement("span");
+        for (SubtitleLine line: ttmlCue.getLines()) {
+            lineIndex++;
 
-                    if (text instanceof SubtitleStyledText) {
-                        // Apply a style on this text
-                        xsw.writeAttribute("style", ttmlObject.getStyleId(((SubtitleStyledText) text).getStyle()));
-                    }
+            for (SubtitleText text: line.getTexts()) {
+                xsw.writeStartElement("span");
 
-                    xsw.writeCharacters(text.toString());
-                    xsw.writeEndElement();
+                if (text instanceof SubtitleStyledText) {
+                    // Apply a style on this text
+                    // Styles are registered by interned instance: an identity lookup
+                    xsw.writeAttribute("style", ttmlObject.getStyleId(((SubtitleStyledText) text).getStyle()));
                 }
 
-                // Add line break between rows
-                if (lineIndex < ttmlCue.getLines().size()) {
-                    xsw.writeStartElement("br");
-                    xsw.writeEndElement();
-                }
+                xsw.writeCharacters(text.toString());
+                xsw.writeEndElement();
             }
 
-            // End of ttmlCue
-            xsw.writeEndElement();
+            // Add line break between rows
+            if (lineIndex < ttmlCue.getLines().size()) {
+                xsw.writeEmptyElement("br");
+            }
         }
 
-        // End of cues
-        xsw.writeEndElement();
+        // End of ttmlCue
         xsw.writeEndElement();
     }
-
-    private String formatTimeCode(SubtitleTimeCode timeCode) {
-        return String.format("%02d:%02d:%02d.%03d",
-                timeCode.getHour(),
-                timeCode.getMinute(),
-                timeCode.getSecond(),
-                timeCode.getMillisecond());
-    }
 }
@@ -0,0 +1,285 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.Arrays;
+
+/**
+ * XMLStreamWriter decorator that indents elements while they are written
+ *
+ * Each element starts on a new line, indented according to its depth.
+ * An element that only contains text is kept on a single line,
+ * so indentation never adds whitespace to text content.
+ */
+public class IndentingXMLStreamWriter implements XMLStreamWriter {
+    private final static String NEW_LINE = "\n";
+
+    private XMLStreamWriter writer;
+    private String indent;
+    private String[] indents = new String[0]; // New line followed by the indentation, per depth
+    private int depth; // Number of open elements
+    private boolean[] hasChildElements = new boolean[16]; // Per depth, true if the open element has child elements
+
+    public IndentingXMLStreamWriter(XMLStreamWriter writer) {
+        this(writer, 2, 0);
+    }
+
+    /**
+     * @param writer Writer to decorate
+     * @param indentSize Number of spaces for each level
+     * @param depth Depth of the first written element, to write a fragment of a bigger document
+     */
+    public IndentingXMLStreamWriter(XMLStreamWriter writer, int indentSize, int depth) {
+        this.writer = writer;
+        char[] spaces = new char[indentSize];
+        Arrays.fill(spaces, ' ');
+        this.indent = new String(spaces);
+        this.depth = depth;
+        this.ensureDepth(depth);
+    }
+
+    /**
+     * Declare that the current element has child elements that were written
+     * without this writer, so that its end tag goes on its own line
+     */
+    public void setHasChildElements() {
+        this.hasChildElements[this.depth] = true;
+    }
+
+    private void ensureDepth(int depth) {
+        if (depth >= this.hasChildElements.length) {
+            this.hasChildElements = Arrays.copyOf(this.hasChildElements, Math.max(depth + 1, this.hasChildElements.length * 2));
+        }
+    }
+
+    private void writeIndent(int depth) throws XMLStreamException {
+        if (depth >= this.indents.length) {
+            this.indents = Arrays.copyOf(this.indents, depth + 1);
+        }
+
+        if (this.indents[depth] == null) {
+            StringBuilder sb = new StringBuilder(NEW_LINE);
+
+            for (int i = 0; i < depth; i++) {
+                sb.append(this.indent);
+            }
+
+            this.indents[depth] = sb.toString();
+        }
+
+        this.writer.writeCharacters(this.indents[depth]);
+    }
+
+    private void beforeElement() throws XMLStreamException {
+        // Nothing to indent before the root element of a fragment
+        if (this.depth > 0 || this.hasChildElements[0]) {
+            this.writeIndent(this.depth);
+        }
+
+        this.hasChildElements[this.depth] = true;
+    }
+
+    private void beforeStartElement() throws XMLStreamException {
+        this.beforeElement();
+        this.depth++;
+        this.ensureDepth(this.depth);
+        this.hasChildElements[this.depth] = false;
+    }
+
+    private void beforeEndElement() throws XMLStreamException {
+        if (this.hasChildElements[this.depth]) {
+            this.writeIndent(this.depth - 1);
+        }
+
+        this.depth--;
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        this.beforeStartElement();
+        this.writer.writeStartElement(localName);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        this.beforeStartElement();
+        this.writer.writeStartElement(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        this.beforeStartElement();
+        this.writer.writeStartElement(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+        this.beforeElement();
+        this.writer.writeEmptyElement(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        this.beforeElement();
+        this.writer.writeEmptyElement(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        this.beforeElement();
+        this.writer.writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        this.beforeEndElement();
+        this.writer.writeEndElement();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        while (this.depth > 0) {
+            this.writeEndElement();
+        }
+
+        this.writer.writeEndDocument();
+        this.writer.writeCharacters(NEW_LINE);
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        this.writer.close();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        this.writer.flush();
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        this.writer.writeAttribute(localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+        this.writer.writeAttribute(prefix, namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+        this.writer.writeAttribute(namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        this.writer.writeNamespace(prefix, namespaceURI);
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        this.writer.writeDefaultNamespace(namespaceURI);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        this.beforeElement();
+        this.writer.writeComment(data);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        this.beforeElement();
+        this.writer.writeProcessingInstruction(target);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+        this.beforeElement();
+        this.writer.writeProcessingInstruction(target, data);
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        this.writer.writeCData(data);
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        this.writer.writeDTD(dtd);
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        this.writer.writeEntityRef(name);
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        this.writer.writeStartDocument();
+        this.hasChildElements[0] = true;
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        this.writer.writeStartDocument(version);
+        this.hasChildElements[0] = true;
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+        this.writer.writeStartDocument(encoding, version);
+        this.hasChildElements[0] = true;
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        this.writer.writeCharacters(text);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        this.writer.writeCharacters(text, start, len);
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        return this.writer.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        this.writer.setPrefix(prefix, uri);
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        this.writer.setDefaultNamespace(uri);
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+        this.writer.setNamespaceContext(context);
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return this.writer.getNamespaceContext();
+    }
+
+    @Override
+    public Object getProperty(String name) throws IllegalArgumentException {
+        return this.writer.getProperty(name);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable time index of the cues of a subtitle object
+ *
+ * Cues are sorted by start time, cues starting at the same time keep their order.
+ * Start and end times are copied into arrays, read as an implicit balanced tree:
+ * the root of a range of cues is its middle cue, and each cue stores the max end time of its subtree.
+ * A query only visits the subtrees containing a matching cue, in O(log n + k) for k matching cues.
+ *
+ * A cue is active from its start time (included) to its end time (excluded).
+ * The index does not follow later changes of the cues or of the subtitle object.
+ */
+public class SubtitleCueIndex {
+    private final static Comparator<SubtitleCue> START_ORDER = new Comparator<SubtitleCue>() {
+        @Override
+        public int compare(SubtitleCue cue1, SubtitleCue cue2) {
+            return Long.compare(cue1.getStartMillis(), cue2.getStartMillis());
+        }
+    };
+
+    private final SubtitleCue[] cues;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds; // Max end time of the subtree rooted at each cue
+
+    public SubtitleCueIndex(SubtitleObject subtitleObject) {
+        this(subtitleObject.getCues());
+    }
+
+    public SubtitleCueIndex(List<? extends SubtitleCue> cues) {
+        this.cues = cues.toArray(new SubtitleCue[cues.size()]);
+        int count = this.cues.length;
+        this.starts = new long[count];
+        this.ends = new long[count];
+        this.maxEnds = new long[count];
+        boolean sorted = true;
+
+        for (int i = 0; i < count; i++) {
+            this.starts[i] = this.cues[i].getStartMillis();
+            sorted &= (i == 0 || this.starts[i - 1] <= this.starts[i]);
+        }
+
+        if (!sorted) {
+            // Stable sort, then read start times again in the new order
+            Arrays.sort(this.cues, START_ORDER);
+
+            for (int i = 0; i < count; i++) {
+                this.starts[i] = this.cues[i].getStartMillis();
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            this.ends[i] = this.cues[i].getEndMillis();
+        }
+
+        this.computeMaxEnds(0, count);
+    }
+
+    /**
+     * Compute max end times of the subtree of cues between low (included) and high (excluded)
+     *
+     * @return Max end time of the subtree, Long.MIN_VALUE if it is empty
+     */
+    private long computeMaxEnds(int low, int high) {
+        if (low >= high) {
+            return Long.MIN_VALUE;
+        }
+
+        int middle = (low + high) >>> 1;
+        long maxEnd = Math.max(this.ends[middle], Math.max(
+                this.computeMaxEnds(low, middle),
+                this.computeMaxEnds(middle + 1, high)));
+        this.maxEnds[middle] = maxEnd;
+        return maxEnd;
+    }
+
+    /**
+     * @return Number of indexed cues
+     */
+    public int size() {
+        return this.cues.length;
+    }
+
+    /**
+     * @return Cue at this position, in start time order
+     */
+    public SubtitleCue getCue(int index) {
+        return this.cues[index];
+    }
+
+    /**
+     * @return Cues active at this time, in start time order
+     */
+    public List<SubtitleCue> getCues(long millis) {
+        return this.getCues(millis, millis + 1);
+    }
+
+    /**
+     * @return Cues active during the range from startMillis (included) to endMillis (excluded),
+     * in start time order
+     */
+    public List<SubtitleCue> getCues(long startMillis, long endMillis) {
+        return this.getCues(startMillis, endMillis, new ArrayList<SubtitleCue>());
+    }
+
+    /**
+     * Add the cues active during the range from startMillis (included) to endMillis (excluded)
+     * Queries can reuse the same list, to avoid allocations
+     *
+     * @return The list of cues
+     */
+    public List<SubtitleCue> getCues(long startMillis, long endMillis, List<SubtitleCue> cues) {
+        if (startMillis < endMillis) {
+            this.collect(0, this.cues.length, startMillis, endMillis, cues);
+        }
+
+        return cues;
+    }
+
+    /**
+     * @return Number of cues active during the range from startMillis (included) to endMillis (excluded)
+     */
+    public int count(long startMillis, long endMillis) {
+        if (startMillis >= endMillis) {
+            return 0;
+        }
+
+        return this.collect(0, this.cues.length, startMillis, endMillis, null);
+    }
+
+    /**
+     * Visit the subtree of cues between low (included) and high (excluded)
+     *
+     * @param cues List receiving the active cues, or null to only count them
+     * @return Number of active cues of the subtree
+     */
+    private int collect(int low, int high, long startMillis, long endMillis, List<SubtitleCue> cues) {
+        int count = 0;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (this.maxEnds[middle] <= startMillis) {
+                // Every cue of the subtree ends before the range
+                break;
+            }
+
+            count += this.collect(low, middle, startMillis, endMillis, cues);
+
+            if (this.starts[middle] >= endMillis) {
+                // This cue and the following ones start after the range
+                break;
+            }
+
+            if (this.ends[middle] > startMillis) {
+                count++;
+
+                if (cues != null) {
+                    cues.add(this.cues[middle]);
+                }
+            }
+
+            // Continue with the right subtree
+            low = middle + 1;
+        }
+
+        return count;
+    }
+}
@@ -131,4 +131,14 @@ public class SubtitleRegion {
 
         return false;
     }
+
+    @Override
+    public int hashCode() {
+        // Adding 0 gives the same bits to 0 and -0, which are equal
+        int hash = Float.floatToIntBits(this.getX() + 0.0f);
+        hash = 31 * hash + Float.floatToIntBits(this.getY() + 0.0f);
+        hash = 31 * hash + Float.floatToIntBits(this.getWidth() + 0.0f);
+        hash = 31 * hash + Float.floatToIntBits(this.getHeight() + 0.0f);
+        return 31 * hash + (this.getVerticalAlign() == null ? 0 : this.getVerticalAlign().hashCode());
+    }
 }
@@ -12,11 +12,21 @@ package fr.noop.subtitle.util;
 
 import fr.noop.subtitle.model.SubtitleObject;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by clebeaupin on 05/10/15.
+ *
+ * Styles are compared by value. Files use a handful of distinct styles,
+ * so parsers share interned styles: see {@link #intern()}.
+ * Styles made of enum properties only are few, they are interned for good.
+ * Styles with a color come from the input, they are released once they are not used anymore.
  */
 public class SubtitleStyle {
     // Properties
@@ -63,8 +73,18 @@ public class SubtitleStyle {
         BOLD;
     }
 
+    // Interned styles without color, by value: a bounded number of enum combinations
+    private static final ConcurrentHashMap<SubtitleStyle, SubtitleStyle> pool = new ConcurrentHashMap<>();
+
+    // Interned styles with a color, by value, weakly referenced
+    private static final Map<SubtitleStyle, WeakReference<SubtitleStyle>> colorPool = new WeakHashMap<>();
+
     // Store all style properties
-    private Map<Property, Object> properties = new HashMap<>();
+    private Map<Property, Object> properties = new EnumMap<>(Property.class);
+
+    // Interned styles are immutable, their hash code is computed once
+    private boolean interned = false;
+    private int hash;
 
     public SubtitleStyle() {}
 
@@ -107,6 +127,14 @@ public class SubtitleStyle {
         this.setProperty(Property.FONT_STYLE, fontStyle);
     }
 
+    public FontWeight getFontWeight() {
+        return (FontWeight) this.getProperty(Property.FONT_WEIGHT);
+    }
+
+    public void setFontWeight(FontWeight fontWeight) {
+        this.setProperty(Property.FONT_WEIGHT, fontWeight);
+    }
+
     public TextDecoration getTextDecoration() {
         return (TextDecoration) this.getProperty(Property.TEXT_DECORATION);
     }
@@ -120,10 +148,13 @@ public class SubtitleStyle {
     }
 
     public void setProperties(HashMap<Property, Object> properties) {
-        this.properties = properties;
+        this.checkMutable();
+        this.properties.clear();
+        this.properties.putAll(properties);
     }
 
     public void setProperty(Property property, Object value) {
+        this.checkMutable();
         this.properties.put(property, value);
     }
 
@@ -141,4 +172,101 @@ public class SubtitleStyle {
     public String buildSignature() {
         return "none";
     }
+
+    /**
+     * Get the canonical instance of this style
+     * Interned styles are immutable and equal interned styles are the same instance,
+     * so they can be compared by identity.
+     *
+     * @return the interned style having the same properties
+     */
+    public SubtitleStyle intern() {
+        if (this.interned) {
+            return this;
+        }
+
+        if (this.properties.containsKey(Property.COLOR)) {
+            // Colors are free-form values: keep the style while it is used only
+            synchronized (colorPool) {
+                WeakReference<SubtitleStyle> reference = colorPool.get(this);
+                SubtitleStyle style = (reference != null) ? reference.get() : null;
+
+                if (style == null) {
+                    style = this.copyInterned();
+                    colorPool.put(style, new WeakReference<>(style));
+                }
+
+                return style;
+            }
+        }
+
+        SubtitleStyle style = pool.get(this);
+
+        if (style != null) {
+            return style;
+        }
+
+        style = this.copyInterned();
+        SubtitleStyle previous = pool.putIfAbsent(style, style);
+        return (previous != null) ? previous : style;
+    }
+
+    /**
+     * Intern a copy, this style stays mutable
+     */
+    private SubtitleStyle copyInterned() {
+        SubtitleStyle style = new SubtitleStyle(this);
+        style.properties = Collections.unmodifiableMap(style.properties);
+        style.hash = style.properties.hashCode();
+        style.interned = true;
+        return style;
+    }
+
+    /**
+     * @return true if the pools only keep a weak reference to this interned style
+     */
+    static boolean isWeaklyPooled(SubtitleStyle style) {
+        synchronized (colorPool) {
+            WeakReference<SubtitleStyle> reference = colorPool.get(style);
+            return reference != null && reference.get() == style && !pool.containsKey(style);
+        }
+    }
+
+    /**
+     * @return true if this style is an interned immutable style
+     */
+    public boolean isInterned() {
+        return this.interned;
+    }
+
+    private void checkMutable() {
+        if (this.interned) {
+            throw new UnsupportedOperationException("An interned style can not be modified");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof SubtitleStyle)) {
+            return false;
+        }
+
+        SubtitleStyle style = (SubtitleStyle) o;
+
+        if (this.interned && style.interned) {
+            // Interned styles are unique
+            return false;
+        }
+
+        return this.properties.equals(style.properties);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.interned ? this.hash : this.properties.hashCode();
+    }
 }
@@ -21,6 +21,8 @@ import java.util.List;
  */
 public class SubtitleTextLine implements SubtitleLine {
     List<SubtitleText> texts;
+    private String text; // Joined texts, computed on demand
+    private String[] joinedTexts; // Strings of the texts joined in text
 
     public SubtitleTextLine() {
         this.texts = new ArrayList<>();
@@ -36,20 +38,61 @@ public class SubtitleTextLine implements SubtitleLine {
 
     public void addText(SubtitleText text) {
         this.texts.add(text);
+        this.text = null;
     }
 
     public boolean isEmpty() {
-        return this.toString().isEmpty();
+        // Texts are joined with a line break, only a single empty text gives an empty line
+        int size = this.texts.size();
+        return size == 0 || (size == 1 && this.texts.get(0).isEmpty());
     }
 
+    /**
+     * @return texts joined with a line break
+     *
+     * The same string is returned while the texts return the same strings,
+     * so that the list of texts may be changed directly.
+     */
     @Override
     public String toString() {
-        String[] texts = new String[this.texts.size()];
+        int size = this.texts.size();
 
-        for (int i=0; i<texts.length; i++) {
-            texts[i] = this.texts.get(i).toString();
+        if (this.text != null && this.joinedTexts.length == size) {
+            boolean changed = false;
+
+            for (int i = 0; i < size && !changed; i++) {
+                // Same instance, the text has not changed
+                changed = this.texts.get(i).toString() != this.joinedTexts[i];
+            }
+
+            if (!changed) {
+                return this.text;
+            }
+        }
+
+        String[] joinedTexts = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            joinedTexts[i] = this.texts.get(i).toString();
+        }
+
+        if (size == 1) {
+            this.text = joinedTexts[0];
+        } else {
+            StringBuilder sb = new StringBuilder();
+
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    sb.append('\n');
+                }
+
+                sb.append(joinedTexts[i]);
+            }
+
+            this.text = sb.toString();
         }
 
-        return String.join("\n", texts);
+        this.joinedTexts = joinedTexts;
+        return this.text;
     }
 }
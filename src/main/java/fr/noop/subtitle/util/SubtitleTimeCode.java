@@ -17,9 +17,9 @@ import java.time.LocalTime;
  * Created by clebeaupin on 22/09/15.
  */
 public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
-    private final int MS_HOUR = 3600000;
-    private final int MS_MINUTE = 60000;
-    private final int MS_SECOND = 1000;
+    private final static long MS_HOUR = 3600000;
+    private final static long MS_MINUTE = 60000;
+    private final static long MS_SECOND = 1000;
     private int hour;
     private int minute;
     private int second;
@@ -108,18 +108,34 @@ public class SubtitleTimeCode implements Comparable<SubtitleTimeCode> {
         return this.hour*MS_HOUR+this.minute*MS_MINUTE+this.second*MS_SECOND+this.getMillisecond();
     }
 
-    public int compareTo(SubtitleTimeCode toCompare) {
-        final int BEFORE = -1;
-        final int EQUAL = 0;
-        final int AFTER = 1;
-
-        if (this.getTime() == toCompare.getTime()) {
-            return EQUAL;
-        } else if (this.getTime() > toCompare.getTime()) {
-            return AFTER;
-        } else {
-            return BEFORE;
+    /**
+     * Convert a time code to milliseconds without building a time code object
+     *
+     * @return Time in milliseconds
+     * @throws InvalidParameterException if a value is out of range
+     */
+    public static long toMillis(int hour, int minute, int second, int millisecond) {
+        if (hour < 0) {
+            throw new InvalidParameterException("Hour value must be greater or equal to 0");
+        }
+
+        if (minute < 0 || minute > 59) {
+            throw new InvalidParameterException("Minute value must be between 0 and 59");
         }
+
+        if (second < 0 || second > 59) {
+            throw new InvalidParameterException("A second value must be between 0 and 59");
+        }
+
+        if (millisecond < 0 || millisecond > 999) {
+            throw new InvalidParameterException("A Millisecond value must be between 0 and 999");
+        }
+
+        return hour*MS_HOUR+minute*MS_MINUTE+second*MS_SECOND+millisecond;
+    }
+
+    public int compareTo(SubtitleTimeCode toCompare) {
+        return Long.compare(this.getTime(), toCompare.getTime());
     }
 
     /**
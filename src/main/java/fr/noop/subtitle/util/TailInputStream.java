@@ -0,0 +1,106 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read a file which is still being written, like tail -f
+ *
+ * At the end of the written bytes, reads wait for more bytes instead of returning the end of the stream.
+ * The stream ends once finish is called and every written byte is read,
+ * or when the file has not grown for the idle timeout.
+ * available returns the number of written bytes not read yet, so readers only block when there are none.
+ */
+public class TailInputStream extends InputStream {
+    private FileChannel channel;
+    private long pollMillis = 10; // Delay between two checks of the file size
+    private long idleTimeoutMillis = 0; // 0 to wait until finish is called
+    private volatile boolean finished = false;
+    private byte[] single = new byte[1];
+
+    public TailInputStream(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    public void setPollMillis(long pollMillis) {
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * @param idleTimeoutMillis End the stream when the file has not grown for this time, 0 to never end it
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * End the stream once the bytes written so far are read
+     * Can be called from any thread
+     */
+    public void finish() {
+        this.finished = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int count = this.read(this.single, 0, 1);
+        return (count < 0) ? -1 : (this.single[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        long idleStart = System.currentTimeMillis();
+
+        while (true) {
+            // Check finished before reading, so that bytes written before finish are read
+            boolean finished = this.finished;
+            int count = this.channel.read(ByteBuffer.wrap(b, off, len));
+
+            if (count > 0) {
+                return count;
+            }
+
+            if (finished || (this.idleTimeoutMillis > 0 &&
+                    System.currentTimeMillis() - idleStart >= this.idleTimeoutMillis)) {
+                return -1;
+            }
+
+            try {
+                Thread.sleep(this.pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bytes");
+            }
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, this.channel.size() - this.channel.position()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.finished = true;
+        this.channel.close();
+    }
+}
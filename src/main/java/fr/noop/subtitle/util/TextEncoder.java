@@ -0,0 +1,294 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Encode text into a byte buffer written to an output stream in large blocks
+ *
+ * The buffer is borrowed from a pool and given back by end or discard.
+ * UTF-8 and US-ASCII are encoded inline, other charsets go through a single CharsetEncoder.
+ * Like String.getBytes, malformed and unmappable chars are replaced.
+ */
+public class TextEncoder {
+    public final static int BUFFER_SIZE = 64 * 1024;
+    private final static int CHUNK_SIZE = 1024; // Number of chars given at once to the charset encoder
+    private final static int POOL_SIZE = 16;
+    private final static BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private OutputStream os;
+    private Charset charset;
+    private boolean utf8; // Inline UTF-8 encoding
+    private boolean ascii; // Chars lower than 0x80 are written as they are
+    private CharsetEncoder encoder; // Created on the first char which is not encoded inline
+    private CharBuffer chars; // Chars given to the charset encoder, a pending high surrogate is kept
+    private ByteBuffer buffer;
+    private byte[] bytes; // Array of the buffer
+    private byte[] digits = new byte[20]; // Reused to write numbers and time codes
+
+    public TextEncoder(OutputStream os, Charset charset) {
+        this.os = os;
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.ascii = this.utf8 || charset.equals(StandardCharsets.US_ASCII);
+        this.buffer = pool.poll();
+
+        if (this.buffer == null) {
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        this.bytes = this.buffer.array();
+    }
+
+    /**
+     * @param charset Name of the charset
+     * @throws IOException if the charset is not supported
+     */
+    public static TextEncoder open(OutputStream os, String charset) throws IOException {
+        try {
+            return new TextEncoder(os, Charset.forName(charset));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Unsupported charset: %s", charset));
+        }
+    }
+
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    public TextEncoder write(CharSequence cs) throws IOException {
+        int length = cs.length();
+
+        if (!this.ascii) {
+            this.encode(cs, 0, length);
+            return this;
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = cs.charAt(i);
+
+            if (c < 0x80) {
+                if (!this.buffer.hasRemaining()) {
+                    this.drain();
+                }
+
+                this.buffer.put((byte) c);
+                continue;
+            }
+
+            if (this.buffer.remaining() < 4) {
+                this.drain();
+            }
+
+            if (!this.utf8) {
+                // Unmappable in US-ASCII, a surrogate pair is replaced once
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                    i++;
+                }
+
+                this.buffer.put((byte) '?');
+            } else if (c < 0x800) {
+                this.buffer.put((byte) (0xc0 | (c >> 6)));
+                this.buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (!Character.isSurrogate(c)) {
+                this.buffer.put((byte) (0xe0 | (c >> 12)));
+                this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                this.buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, cs.charAt(++i));
+                this.buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                this.buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                this.buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                this.buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else {
+                // Lone surrogate
+                this.buffer.put((byte) '?');
+            }
+        }
+
+        return this;
+    }
+
+    public TextEncoder write(char c) throws IOException {
+        if (this.ascii && c < 0x80) {
+            if (!this.buffer.hasRemaining()) {
+                this.drain();
+            }
+
+            this.buffer.put((byte) c);
+            return this;
+        }
+
+        return this.write(String.valueOf(c));
+    }
+
+    /**
+     * Write the decimal digits of a number
+     */
+    public TextEncoder write(long value) throws IOException {
+        int index = this.digits.length;
+        boolean negative = value < 0;
+
+        do {
+            this.digits[--index] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+
+        if (negative) {
+            this.digits[--index] = '-';
+        }
+
+        return this.writeAscii(this.digits, index, this.digits.length - index);
+    }
+
+    /**
+     * Write a time code: 00:01:21,456
+     *
+     * @param time Time in milliseconds
+     * @param separator Char between seconds and milliseconds
+     */
+    public TextEncoder writeTimeCode(long time, char separator) throws IOException {
+        int length = TimeCodeCodec.format(time, separator, this.digits, 0);
+        return this.writeAscii(this.digits, 0, length);
+    }
+
+    /**
+     * Write the buffered bytes and flush the output stream
+     */
+    public void flush() throws IOException {
+        this.drain();
+        this.os.flush();
+    }
+
+    /**
+     * Write the end of the encoded text, flush the output stream and give the buffer back to the pool
+     * The text encoder can not be used anymore
+     */
+    public void end() throws IOException {
+        if (this.encoder != null) {
+            // Write pending chars and state of stateful charsets
+            this.chars.flip();
+
+            while (this.encoder.encode(this.chars, this.buffer, true).isOverflow()) {
+                this.drain();
+            }
+
+            while (this.encoder.flush(this.buffer).isOverflow()) {
+                this.drain();
+            }
+        }
+
+        this.flush();
+        this.buffer.clear();
+        pool.offer(this.buffer);
+        this.buffer = null;
+        this.bytes = null;
+    }
+
+    /**
+     * Drop the text encoded but not written yet, and give the buffer back to the pool
+     * Nothing is written to the output stream, the text encoder can not be used anymore
+     */
+    public void discard() {
+        if (this.buffer == null) {
+            return;
+        }
+
+        this.buffer.clear();
+        pool.offer(this.buffer);
+        this.buffer = null;
+        this.bytes = null;
+        this.chars = null;
+        this.encoder = null;
+    }
+
+    /**
+     * @return Number of buffers in the pool
+     */
+    static int getPoolSize() {
+        return pool.size();
+    }
+
+    /**
+     * Write ascii bytes, they are encoded again by charsets which are not ascii compatible
+     */
+    private TextEncoder writeAscii(byte[] ascii, int offset, int length) throws IOException {
+        if (!this.ascii) {
+            this.encode(new String(ascii, offset, length, StandardCharsets.US_ASCII), 0, length);
+            return this;
+        }
+
+        if (this.buffer.remaining() < length) {
+            this.drain();
+        }
+
+        this.buffer.put(ascii, offset, length);
+        return this;
+    }
+
+    /**
+     * Encode chars with the charset encoder, a chunk at a time
+     */
+    private void encode(CharSequence cs, int start, int end) throws IOException {
+        if (this.encoder == null) {
+            this.encoder = this.charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.chars = CharBuffer.allocate(CHUNK_SIZE);
+        }
+
+        int index = start;
+
+        while (index < end) {
+            int count = Math.min(end - index, this.chars.remaining());
+            int position = this.chars.position();
+
+            if (cs instanceof String) {
+                ((String) cs).getChars(index, index + count, this.chars.array(), position);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    this.chars.array()[position + i] = cs.charAt(index + i);
+                }
+            }
+
+            this.chars.position(position + count);
+            index += count;
+            this.chars.flip();
+
+            while (this.encoder.encode(this.chars, this.buffer, false).isOverflow()) {
+                this.drain();
+            }
+
+            // Keep the chars which could not be encoded yet, ie: a high surrogate
+            this.chars.compact();
+        }
+    }
+
+    /**
+     * Write the buffered bytes to the output stream
+     */
+    private void drain() throws IOException {
+        if (this.buffer.position() > 0) {
+            this.os.write(this.bytes, 0, this.buffer.position());
+            this.buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+/**
+ * Parse and format SRT and WebVTT time codes without intermediate strings
+ *
+ * Supported forms are HH:MM:SS,mmm and HH:MM:SS.mmm, hours having one digit or more,
+ * and the WebVTT short form MM:SS.mmm without hours.
+ * Times are expressed in milliseconds.
+ */
+public final class TimeCodeCodec {
+    private final static long MS_HOUR = 3600000;
+    private final static int MS_MINUTE = 60000;
+    private final static int MS_SECOND = 1000;
+    private final static int SHORT_LENGTH = 9; // MM:SS.mmm
+    private final static int MAX_HOUR_DIGITS = 9;
+
+    private TimeCodeCodec() {
+    }
+
+    /**
+     * Parse the time code between offset and end
+     *
+     * @param cs Characters containing the time code
+     * @param offset Index of the first char of the time code
+     * @param end Index following the last char of the time code
+     * @return Time in milliseconds, or -1 if the chars are not a valid time code
+     */
+    public static long parse(CharSequence cs, int offset, int end) {
+        int length = end - offset;
+
+        if (length < SHORT_LENGTH) {
+            return -1;
+        }
+
+        // Read fields from the end, hours are optional
+        int millisecond = digits(cs, end - 3, 3);
+        char separator = cs.charAt(end - 4);
+        int second = digits(cs, end - 6, 2);
+        int minute = digits(cs, end - 9, 2);
+
+        if (millisecond < 0 || second < 0 || second > 59 || minute < 0 || minute > 59 ||
+                (separator != '.' && separator != ',') ||
+                cs.charAt(end - 7) != ':') {
+            return -1;
+        }
+
+        long time = minute * MS_MINUTE + second * MS_SECOND + millisecond;
+
+        if (length == SHORT_LENGTH) {
+            return time;
+        }
+
+        int hourDigits = length - SHORT_LENGTH - 1;
+
+        if (hourDigits < 1 || hourDigits > MAX_HOUR_DIGITS || cs.charAt(end - 10) != ':') {
+            return -1;
+        }
+
+        int hour = digits(cs, offset, hourDigits);
+
+        if (hour < 0) {
+            return -1;
+        }
+
+        return hour * MS_HOUR + time;
+    }
+
+    /**
+     * Parse the time code starting at offset
+     *
+     * @return Time in milliseconds, or -1 if there is no valid time code at offset
+     */
+    public static long parse(CharSequence cs, int offset) {
+        return parse(cs, offset, indexOfEnd(cs, offset));
+    }
+
+    /**
+     * Parse the ascii time code starting at offset
+     *
+     * @param bytes Bytes containing the time code
+     * @param offset Index of the first byte of the time code
+     * @param limit Index following the last byte that can be read
+     * @return Time in milliseconds, or -1 if there is no valid time code at offset
+     */
+    public static long parse(byte[] bytes, int offset, int limit) {
+        int end = offset;
+
+        while (end < limit) {
+            byte b = bytes[end];
+
+            if ((b < '0' || b > '9') && b != ':' && b != '.' && b != ',') {
+                break;
+            }
+
+            end++;
+        }
+
+        int length = end - offset;
+
+        if (length < SHORT_LENGTH) {
+            return -1;
+        }
+
+        // Read fields from the end, hours are optional
+        int millisecond = digits(bytes, end - 3, 3);
+        byte separator = bytes[end - 4];
+        int second = digits(bytes, end - 6, 2);
+        int minute = digits(bytes, end - 9, 2);
+
+        if (millisecond < 0 || second < 0 || second > 59 || minute < 0 || minute > 59 ||
+                (separator != '.' && separator != ',') ||
+                bytes[end - 7] != ':') {
+            return -1;
+        }
+
+        long time = minute * MS_MINUTE + second * MS_SECOND + millisecond;
+
+        if (length == SHORT_LENGTH) {
+            return time;
+        }
+
+        int hourDigits = length - SHORT_LENGTH - 1;
+
+        if (hourDigits < 1 || hourDigits > MAX_HOUR_DIGITS || bytes[end - 10] != ':') {
+            return -1;
+        }
+
+        int hour = digits(bytes, offset, hourDigits);
+
+        if (hour < 0) {
+            return -1;
+        }
+
+        return hour * MS_HOUR + time;
+    }
+
+    /**
+     * @return Index following the time code that starts at offset,
+     * ie: the index of the first char that can not be part of a time code
+     */
+    public static int indexOfEnd(CharSequence cs, int offset) {
+        int index = offset;
+
+        while (index < cs.length()) {
+            char c = cs.charAt(index);
+
+            if ((c < '0' || c > '9') && c != ':' && c != '.' && c != ',') {
+                break;
+            }
+
+            index++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Append a time code to a string builder
+     *
+     * @param time Time in milliseconds
+     * @param separator Char between seconds and milliseconds, ',' for SRT and '.' for WebVTT and TTML
+     * @param sb Where to append the time code
+     * @return the string builder
+     */
+    public static StringBuilder format(long time, char separator, StringBuilder sb) {
+        if (time < 0) {
+            sb.append('-');
+            time = -time;
+        }
+
+        long hour = time / MS_HOUR;
+        int rest = (int) (time - hour * MS_HOUR);
+
+        if (hour < 10) {
+            sb.append('0');
+        }
+
+        sb.append(hour);
+        sb.append(':');
+        appendDigits(sb, rest / MS_MINUTE, 2);
+        sb.append(':');
+        appendDigits(sb, (rest / MS_SECOND) % 60, 2);
+        sb.append(separator);
+        appendDigits(sb, rest % MS_SECOND, 3);
+        return sb;
+    }
+
+    /**
+     * @param time Time in milliseconds
+     * @param separator Char between seconds and milliseconds, ',' for SRT and '.' for WebVTT and TTML
+     * @return the time code
+     */
+    public static String format(long time, char separator) {
+        return format(time, separator, new StringBuilder(12)).toString();
+    }
+
+    /**
+     * Write an ascii time code to a byte array
+     *
+     * @param time Time in milliseconds
+     * @param separator Char between seconds and milliseconds, ',' for SRT and '.' for WebVTT and TTML
+     * @param bytes Where to write the time code, at least 12 bytes must be available
+     * @param offset Index of the first written byte
+     * @return Index following the last written byte
+     */
+    public static int format(long time, char separator, byte[] bytes, int offset) {
+        int index = offset;
+
+        if (time < 0) {
+            bytes[index++] = '-';
+            time = -time;
+        }
+
+        long hour = time / MS_HOUR;
+        int rest = (int) (time - hour * MS_HOUR);
+
+        if (hour < 100) {
+            index = writeDigits(bytes, index, (int) hour, 2);
+        } else {
+            index = writeDigits(bytes, index, hour);
+        }
+
+        bytes[index++] = ':';
+        index = writeDigits(bytes, index, rest / MS_MINUTE, 2);
+        bytes[index++] = ':';
+        index = writeDigits(bytes, index, (rest / MS_SECOND) % 60, 2);
+        bytes[index++] = (byte) separator;
+        return writeDigits(bytes, index, rest % MS_SECOND, 3);
+    }
+
+    private static int digits(CharSequence cs, int offset, int count) {
+        int value = 0;
+
+        for (int i = offset; i < offset + count; i++) {
+            int digit = cs.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private static int digits(byte[] bytes, int offset, int count) {
+        int value = 0;
+
+        for (int i = offset; i < offset + count; i++) {
+            int digit = bytes[i] - '0';
+
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private static void appendDigits(StringBuilder sb, int value, int count) {
+        if (count == 3) {
+            sb.append((char) ('0' + value / 100));
+            value %= 100;
+        }
+
+        sb.append((char) ('0' + value / 10));
+        sb.append((char) ('0' + value % 10));
+    }
+
+    private static int writeDigits(byte[] bytes, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return offset + count;
+    }
+
+    private static int writeDigits(byte[] bytes, int offset, long value) {
+        int count = 1;
+
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            count++;
+        }
+
+        for (int i = offset + count - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return offset + count;
+    }
+}
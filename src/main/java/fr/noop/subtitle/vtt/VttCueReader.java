@@ -0,0 +1,398 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.vtt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.noop.subtitle.base.BaseSubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.*;
+
+/**
+ * Read VTT cues one by one
+ *
+ * A cue is returned when the empty line ending it (or the end of the input) is read.
+ */
+public class VttCueReader extends BaseSubtitleCueReader {
+    private enum CursorStatus {
+        NONE,
+        SIGNATURE,
+        EMPTY_LINE,
+        CUE_ID,
+        CUE_TIMECODE,
+        CUE_TEXT;
+    }
+
+    // Styles of the b, i and u tags combinations, indexed by bits
+    private final static int BOLD = 1;
+    private final static int ITALIC = 2;
+    private final static int UNDERLINE = 4;
+    private final static SubtitleStyle[] STYLES = new SubtitleStyle[8];
+
+    static {
+        for (int styleIndex = 0; styleIndex < STYLES.length; styleIndex++) {
+            SubtitleStyle style = new SubtitleStyle();
+
+            if ((styleIndex & BOLD) != 0) {
+                style.setProperty(SubtitleStyle.Property.FONT_WEIGHT, SubtitleStyle.FontWeight.BOLD);
+            }
+
+            if ((styleIndex & ITALIC) != 0) {
+                style.setProperty(SubtitleStyle.Property.FONT_STYLE, SubtitleStyle.FontStyle.ITALIC);
+            }
+
+            if ((styleIndex & UNDERLINE) != 0) {
+                style.setProperty(SubtitleStyle.Property.TEXT_DECORATION, SubtitleStyle.TextDecoration.UNDERLINE);
+            }
+
+            STYLES[styleIndex] = style.intern();
+        }
+    }
+
+    private BufferedReader br;
+    private boolean strict;
+    private CursorStatus cursorStatus = CursorStatus.NONE;
+
+    public VttCueReader(InputStream is, String charset, boolean strict) throws IOException {
+        this.br = new BufferedReader(new InputStreamReader(is, charset));
+        this.strict = strict;
+    }
+
+    @Override
+    protected VttCue readCue() throws IOException, SubtitleParsingException {
+        String textLine = "";
+        VttCue cue = null;
+        StringBuilder cueText = new StringBuilder(); // Text of the cue
+
+        while ((textLine = this.br.readLine()) != null) {
+            textLine = textLine.trim();
+
+            // Remove BOM
+            if (this.cursorStatus == CursorStatus.NONE) {
+                textLine = StringUtils.removeBOM(textLine);
+            }
+
+            // All Vtt files start with WEBVTT
+            if (this.cursorStatus == CursorStatus.NONE && textLine.equals("WEBVTT")) {
+                this.cursorStatus = CursorStatus.SIGNATURE;
+                continue;
+            }
+
+            if (this.cursorStatus == CursorStatus.SIGNATURE ||
+                    this.cursorStatus == CursorStatus.EMPTY_LINE) {
+                if (textLine.isEmpty()) {
+                    continue;
+                }
+
+                // New cue
+                cue = new VttCue();
+                this.cursorStatus = CursorStatus.CUE_ID;
+
+                if (!textLine.contains("-->")) {
+                    // First textLine is the cue number
+                    // A cue identifier can not contain "-->"
+                    cue.setId(textLine);
+                    continue;
+                }
+
+                // There is no cue number
+            }
+
+
+            // Second textLine defines the start and end time codes
+            // 00:01:21.456 --> 00:01:23.417
+            if (this.cursorStatus == CursorStatus.CUE_ID) {
+                this.parseTimeCodes(textLine, cue);
+                this.cursorStatus = CursorStatus.CUE_TIMECODE;
+                continue;
+            }
+
+            if (this.cursorStatus == CursorStatus.CUE_TIMECODE &&
+                textLine.isEmpty() &&
+                this.strict
+            ) {
+                // Do not accept empty subtitle if strict
+                throw new SubtitleParsingException(String.format(
+                        "Empty subtitle is not allowed in WebVTT for cue at timecode: %s", cue.getStartTime()));
+            }
+
+            // Enf of cue
+            if (
+                (
+                    this.cursorStatus == CursorStatus.CUE_TIMECODE ||
+                    this.cursorStatus == CursorStatus.CUE_TEXT
+                ) &&
+                textLine.isEmpty()
+            ) {
+                // End of cue
+                // Process multilines text in one time
+                // A class or a style can be applied for more than one line
+                cue.setLines(parseCueText(cueText));
+                this.cursorStatus = CursorStatus.EMPTY_LINE;
+                return cue;
+            }
+
+            // Add new text to cue
+            if (this.cursorStatus == CursorStatus.CUE_TIMECODE ||
+                this.cursorStatus ==  CursorStatus.CUE_TEXT
+            ) {
+                // New line
+                if (cueText.length() > 0) {
+                    cueText.append('\n');
+                }
+
+                cueText.append(textLine);
+                this.cursorStatus = CursorStatus.CUE_TEXT;
+                continue;
+            }
+
+            throw new SubtitleParsingException(String.format(
+                    "Unexpected line: %s", textLine));
+        }
+
+        // Last cue is not followed by an empty line
+        if (this.cursorStatus == CursorStatus.CUE_TIMECODE && this.strict) {
+            // Do not accept empty subtitle if strict
+            throw new SubtitleParsingException(String.format(
+                    "Empty subtitle is not allowed in WebVTT for cue at timecode: %s", cue.getStartTime()));
+        }
+
+        if (this.cursorStatus == CursorStatus.CUE_TIMECODE || this.cursorStatus == CursorStatus.CUE_TEXT) {
+            cue.setLines(parseCueText(cueText));
+            this.cursorStatus = CursorStatus.EMPTY_LINE;
+            return cue;
+        }
+
+        return null;
+    }
+
+    /**
+     * Split cue text into lines and styled texts
+     *
+     * Single pass tokenizer: characters are copied once into a reusable buffer
+     * and each tag is read in place, so the work is linear in the cue length.
+     * Supported tags:
+     * - b, i, u: bold, italic and underline styles
+     * - c: classes (cannot be converted, only removed)
+     * - v: voice of the line
+     * - timestamps: karaoke timing (removed)
+     * Other tags are removed.
+     *
+     * @param cueText Text of the cue, lines are separated by \n
+     * @return lines of the cue
+     */
+    private List<SubtitleLine> parseCueText(CharSequence cueText) {
+        List<SubtitleLine> cueLines = new ArrayList<>();
+        int length = cueText.length();
+
+        if (length == 0) {
+            return cueLines;
+        }
+
+        StringBuilder text = new StringBuilder(); // Text not yet added to the line
+        StringBuilder tags = new StringBuilder(); // Stack of open tags, one char per tag
+        VttLine cueLine = new VttLine(); // Current cue line
+        int i = 0;
+
+        while (i < length) {
+            char c = cueText.charAt(i);
+
+            if (c == '\n') {
+                // Line is finished
+                this.addText(cueLine, text, tags);
+                cueLines.add(cueLine);
+                cueLine = new VttLine();
+                i++;
+                continue;
+            }
+
+            int tagEnd = (c == '<') ? this.findTagEnd(cueText, i + 1) : -1;
+
+            if (tagEnd == -1) {
+                // Readable char
+                text.append(c);
+                i++;
+                continue;
+            }
+
+            int tagStart = i + 1;
+            i = tagEnd + 1;
+
+            if (tagStart == tagEnd) {
+                // Empty tag: <>
+                continue;
+            }
+
+            char tag = cueText.charAt(tagStart);
+
+            if (tag == '/') {
+                // Close tag: </b>, </i>, </u>, </c>, </v>
+                // Text before this tag is styled by the tag
+                this.addText(cueLine, text, tags);
+
+                if (tagEnd - tagStart > 1) {
+                    int tagIndex = this.lastIndexOf(tags, cueText.charAt(tagStart + 1));
+
+                    if (tagIndex != -1) {
+                        tags.deleteCharAt(tagIndex);
+                    }
+                }
+
+                continue;
+            }
+
+            if (tag >= '0' && tag <= '9') {
+                // Timestamp tag: <00:00:01.000>
+                continue;
+            }
+
+            if (tagEnd - tagStart > 1 &&
+                    cueText.charAt(tagStart + 1) != '.' &&
+                    cueText.charAt(tagStart + 1) != ' ') {
+                // Not a single letter tag: <ruby>, <rt>, <lang en>...
+                continue;
+            }
+
+            if (tag == 'b' || tag == 'i' || tag == 'u' || tag == 'c') {
+                // Open tag
+                // Text before this tag is not styled by the tag
+                this.addText(cueLine, text, tags);
+                tags.append(tag);
+                continue;
+            }
+
+            if (tag == 'v') {
+                // Voice: <v Bob> or <v.loud Bob>
+                this.addText(cueLine, text, tags);
+                int voiceStart = tagStart + 1;
+
+                while (voiceStart < tagEnd && cueText.charAt(voiceStart) != ' ') {
+                    voiceStart++;
+                }
+
+                if (voiceStart < tagEnd) {
+                    cueLine.setVoice(cueText.subSequence(voiceStart + 1, tagEnd).toString());
+                }
+            }
+        }
+
+        // Last line is finished
+        this.addText(cueLine, text, tags);
+        cueLines.add(cueLine);
+
+        return cueLines;
+    }
+
+    /**
+     * @return index of the char closing the tag or -1 if the tag is not closed on this line
+     */
+    private int findTagEnd(CharSequence cueText, int from) {
+        for (int i = from; i < cueText.length(); i++) {
+            char c = cueText.charAt(i);
+
+            if (c == '>') {
+                return i;
+            }
+
+            if (c == '\n' || c == '<') {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private int lastIndexOf(CharSequence tags, char tag) {
+        for (int i = tags.length() - 1; i >= 0; i--) {
+            if (tags.charAt(i) == tag) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Create text, apply styles of the open tags and append it to the cue line
+     */
+    private void addText(VttLine cueLine, StringBuilder text, CharSequence tags) {
+        if (text.length() == 0) {
+            return;
+        }
+
+        int styleIndex = 0;
+
+        for (int i = 0; i < tags.length(); i++) {
+            char tag = tags.charAt(i);
+
+            if (tag == 'b') {
+                // Bold characters
+                styleIndex |= BOLD;
+            } else if (tag == 'i') {
+                // Italic characters
+                styleIndex |= ITALIC;
+            } else if (tag == 'u') {
+                // Underline characters
+                styleIndex |= UNDERLINE;
+            }
+
+            // Cannot convert class
+        }
+
+        if (styleIndex != 0) {
+            cueLine.addText(new SubtitleStyledText(text.toString(), STYLES[styleIndex]));
+        } else {
+            cueLine.addText(new SubtitlePlainText(text.toString()));
+        }
+
+        text.setLength(0);
+    }
+
+    /**
+     * Set cue start and end times from a time codes line: 00:01:21.456 --> 00:01:23.417
+     */
+    private void parseTimeCodes(String textLine, VttCue cue) throws SubtitleParsingException {
+        int arrowIndex = textLine.indexOf("-->");
+
+        if (arrowIndex < 0) {
+            throw new SubtitleParsingException(String.format(
+                    "Timecode textLine is badly formated: %s", textLine));
+        }
+
+        int endOffset = arrowIndex + 3;
+
+        while (endOffset < textLine.length() && Character.isWhitespace(textLine.charAt(endOffset))) {
+            endOffset++;
+        }
+
+        long startTime = TimeCodeCodec.parse(textLine, 0);
+        long endTime = TimeCodeCodec.parse(textLine, endOffset);
+
+        if (startTime < 0 || endTime < 0) {
+            throw new SubtitleParsingException(String.format(
+                    "Unable to parse time code: %s", textLine));
+        }
+
+        cue.setStartMillis(startTime);
+        cue.setEndMillis(endTime);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.br.close();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.vtt;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.util.TextEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Write VTT cues one by one
+ */
+public class VttCueWriter implements SubtitleCueWriter {
+    private OutputStream os;
+    private String charset; // Charset used to encode file
+    private TextEncoder encoder; // Opened on the first write
+    private long mpegTs = -1; // MPEG-2 timestamp of the X-TIMESTAMP-MAP header, -1 if there is no such header
+    private long localMillis;
+
+    public VttCueWriter(OutputStream os, String charset) {
+        this.os = os;
+        this.charset = charset;
+    }
+
+    /**
+     * Map cue times to the timestamps of an HLS stream, with an X-TIMESTAMP-MAP header
+     * Must be called before begin
+     *
+     * @param mpegTs MPEG-2 timestamp, in 90 kHz units
+     * @param localMillis Cue time matching this timestamp
+     */
+    public void setTimestampMap(long mpegTs, long localMillis) {
+        this.mpegTs = mpegTs;
+        this.localMillis = localMillis;
+    }
+
+    @Override
+    public void begin(Map<SubtitleObject.Property, Object> properties) throws IOException {
+        // Write header
+        TextEncoder encoder = this.getEncoder();
+        encoder.write("WEBVTT\n");
+
+        if (this.mpegTs >= 0) {
+            // X-TIMESTAMP-MAP=MPEGTS:900000,LOCAL:00:00:00.000
+            encoder.write("X-TIMESTAMP-MAP=MPEGTS:").write(this.mpegTs).write(",LOCAL:");
+            encoder.writeTimeCode(this.localMillis, '.').write('\n');
+        }
+
+        encoder.write('\n');
+    }
+
+    @Override
+    public void write(SubtitleCue cue) throws IOException {
+        TextEncoder encoder = this.getEncoder();
+
+        if (cue.getId() != null) {
+            // Write number of subtitle
+            encoder.write(cue.getId()).write('\n');
+        }
+
+        // Write Start time and end time
+        encoder.writeTimeCode(cue.getStartMillis(), '.').write(" --> ");
+        encoder.writeTimeCode(cue.getEndMillis(), '.').write(" \n");
+
+        // Write text
+        encoder.write(cue.getText()).write('\n');
+
+        // Write empty line
+        encoder.write('\n');
+    }
+
+    @Override
+    public void end() throws IOException {
+        if (this.encoder == null) {
+            this.os.flush();
+            return;
+        }
+
+        this.encoder.end();
+        this.encoder = null;
+    }
+
+    /**
+     * Pending encoded text, not written to the output stream yet, is dropped
+     */
+    @Override
+    public void abort() {
+        if (this.encoder != null) {
+            this.encoder.discard();
+            this.encoder = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.encoder == null) {
+            this.os.flush();
+            return;
+        }
+
+        this.encoder.flush();
+    }
+
+    private TextEncoder getEncoder() throws IOException {
+        if (this.encoder == null) {
+            this.encoder = TextEncoder.open(this.os, this.charset);
+        }
+
+        return this.encoder;
+    }
+}
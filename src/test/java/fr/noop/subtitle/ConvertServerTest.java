@@ -0,0 +1,154 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle;
+
+import fr.noop.subtitle.model.SubtitleFormatRegistry;
+import fr.noop.subtitle.vtt.VttParser;
+import fr.noop.subtitle.vtt.VttWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class ConvertServerTest {
+    private ConvertServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ConvertServer(SubtitleFormatRegistry.getDefault());
+        server.start(0, 2);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private HttpURLConnection post(String query, byte[] body) throws IOException {
+        URL url = new URL(String.format("http://127.0.0.1:%d/convert?%s", server.getPort(), query));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(body);
+        }
+
+        return connection;
+    }
+
+    private String read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] bytes = new byte[4096];
+        int read;
+
+        while ((read = is.read(bytes)) != -1) {
+            bos.write(bytes, 0, read);
+        }
+
+        is.close();
+        return bos.toString("utf-8");
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        byte[] input = Files.readAllBytes(Paths.get("src/test/resources/vtt/test.vtt"));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new VttWriter("utf-8").write(new VttParser("utf-8").parse(new FileInputStream("src/test/resources/vtt/test.vtt")), expected);
+
+        // Parser and writer are reused by the next requests of a worker thread
+        for (int i = 0; i < 3; i++) {
+            HttpURLConnection connection = post("input-format=vtt&output-format=vtt", input);
+            Assert.assertEquals(200, connection.getResponseCode());
+            Assert.assertEquals(expected.toString("utf-8"), read(connection.getInputStream()));
+        }
+    }
+
+    @Test
+    public void testConvertErrors() throws Exception {
+        HttpURLConnection connection = post("input-format=txt&output-format=vtt", new byte[0]);
+        Assert.assertEquals(400, connection.getResponseCode());
+        Assert.assertEquals("No parser for extension txt", read(connection.getErrorStream()));
+
+        connection = post("input-format=srt&output-format=vtt", "garbage\n".getBytes("utf-8"));
+        Assert.assertEquals(400, connection.getResponseCode());
+        Assert.assertTrue(read(connection.getErrorStream()).startsWith("Unable to parse input:"));
+
+        connection = post("output-format=vtt", new byte[0]);
+        Assert.assertEquals(400, connection.getResponseCode());
+
+        connection = post("input-format=srt&output-format=vtt&output-charset=unknown", new byte[0]);
+        Assert.assertEquals(400, connection.getResponseCode());
+        Assert.assertEquals("Unsupported output-charset: unknown", read(connection.getErrorStream()));
+
+        connection = post("input-format=srt&output-format=vtt&input-charset=bad%2Fname", new byte[0]);
+        Assert.assertEquals(400, connection.getResponseCode());
+        Assert.assertEquals("Unsupported input-charset: bad/name", read(connection.getErrorStream()));
+    }
+
+    private int countTtmlBodies() throws IOException {
+        int count = 0;
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(
+                Paths.get(System.getProperty("java.io.tmpdir")), "subtitle-ttml-body*")) {
+            for (Path path : paths) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Test
+    public void testConvertFailureCleanup() throws Exception {
+        int bodies = this.countTtmlBodies();
+        byte[] input = "1\n00:00:01,000 --> 00:00:02,000\nHello\n\n2\nbad time code\nWorld\n\n".getBytes("utf-8");
+
+        // The second cue fails once the ttml body file is created
+        HttpURLConnection connection = post("input-format=srt&output-format=xml", input);
+        Assert.assertEquals(400, connection.getResponseCode());
+        Assert.assertEquals(bodies, this.countTtmlBodies());
+    }
+
+    @Test
+    public void testLog() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        server.setLog(new PrintStream(log, true, "utf-8"));
+        Assert.assertEquals(400, post("input-format=txt&output-format=vtt", new byte[0]).getResponseCode());
+        Assert.assertTrue(log.toString("utf-8").startsWith("POST /convert txt -> vtt 400, "));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        byte[] input = Files.readAllBytes(Paths.get("src/test/resources/srt/no-eof-nl.srt"));
+        Assert.assertEquals(200, post("input-format=srt&output-format=xml", input).getResponseCode());
+        Assert.assertEquals(400, post("input-format=srt&output-format=txt", input).getResponseCode());
+
+        URL url = new URL(String.format("http://127.0.0.1:%d/metrics", server.getPort()));
+        String metrics = read(url.openStream());
+        Assert.assertTrue(metrics.startsWith("requests 2\nfailures 1\n"));
+        // The second request fails before its body is read
+        Assert.assertTrue(metrics.contains(String.format("bytes_in %d\n", input.length)));
+    }
+}
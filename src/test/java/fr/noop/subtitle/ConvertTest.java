@@ -0,0 +1,54 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ConvertTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testConvert() throws Exception {
+        Path input = this.folder.getRoot().toPath().resolve("input.srt");
+        Path output = this.folder.getRoot().toPath().resolve("output.vtt");
+        Files.write(input, "1\n00:00:01,000 --> 00:00:02,000\nHello\n\n".getBytes(StandardCharsets.UTF_8));
+
+        new Convert().convert(input.toString(), output.toString(), "utf-8", "utf-8", true);
+        Assert.assertTrue(new String(Files.readAllBytes(output), StandardCharsets.UTF_8).contains("Hello"));
+    }
+
+    @Test
+    public void testConvertMalformed() throws Exception {
+        Path input = this.folder.getRoot().toPath().resolve("input.srt");
+        Path output = this.folder.getRoot().toPath().resolve("output.vtt");
+
+        // Cues are streamed: the first cue is written before the second one fails
+        Files.write(input, ("1\n00:00:01,000 --> 00:00:02,000\nHello\n\n" +
+                "2\nbad time code\nWorld\n\n").getBytes(StandardCharsets.UTF_8));
+
+        try {
+            new Convert().convert(input.toString(), output.toString(), "utf-8", "utf-8", true);
+            Assert.fail();
+        } catch (Convert.ConvertException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Unable to parse input file"));
+        }
+
+        Assert.assertFalse(Files.exists(output));
+    }
+}
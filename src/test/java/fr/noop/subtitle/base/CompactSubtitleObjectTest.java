@@ -0,0 +1,138 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.base;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleRegionCue;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.srt.SrtCue;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.ttml.TtmlWriter;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.vtt.VttParser;
+import fr.noop.subtitle.vtt.VttWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+
+public class CompactSubtitleObjectTest {
+    private void assertSameCues(SubtitleObject expected, SubtitleObject actual) {
+        assertEquals(expected.getCues().size(), actual.getCues().size());
+
+        for (int i = 0; i < expected.getCues().size(); i++) {
+            SubtitleCue expectedCue = expected.getCues().get(i);
+            SubtitleCue cue = actual.getCues().get(i);
+            assertEquals(expectedCue.getId(), cue.getId());
+            assertEquals(expectedCue.getStartMillis(), cue.getStartMillis());
+            assertEquals(expectedCue.getEndMillis(), cue.getEndMillis());
+            assertEquals(expectedCue.getText(), cue.getText());
+            assertEquals(expectedCue.getLines().size(), cue.getLines().size());
+
+            if (expectedCue instanceof SubtitleRegionCue) {
+                assertEquals(((SubtitleRegionCue) expectedCue).getRegion(), ((SubtitleRegionCue) cue).getRegion());
+            }
+
+            for (int j = 0; j < expectedCue.getLines().size(); j++) {
+                SubtitleLine expectedLine = expectedCue.getLines().get(j);
+                SubtitleLine line = cue.getLines().get(j);
+                assertEquals(expectedLine.toString(), line.toString());
+                assertEquals(expectedLine.getTexts().size(), line.getTexts().size());
+
+                for (int k = 0; k < expectedLine.getTexts().size(); k++) {
+                    SubtitleText expectedText = expectedLine.getTexts().get(k);
+                    SubtitleText text = line.getTexts().get(k);
+                    assertEquals(expectedText.toString(), text.toString());
+
+                    if (expectedText instanceof SubtitleStyledText) {
+                        assertEquals(((SubtitleStyledText) expectedText).getStyle(), ((SubtitleStyledText) text).getStyle());
+                    }
+                }
+            }
+        }
+    }
+
+    private String write(SubtitleWriter writer, SubtitleObject subtitleObject) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer.write(subtitleObject, os);
+        return os.toString("utf-8");
+    }
+
+    @Test
+    public void testVtt() throws Exception {
+        SubtitleObject vttObject = new VttParser("utf-8").parse(new FileInputStream("src/test/resources/vtt/styled.vtt"), false);
+        CompactSubtitleObject compact = new CompactSubtitleObject(vttObject);
+        compact.trimToSize();
+
+        this.assertSameCues(vttObject, compact);
+        assertEquals(this.write(new VttWriter("utf-8"), vttObject), this.write(new VttWriter("utf-8"), compact));
+        assertEquals(this.write(new TtmlWriter(), vttObject), this.write(new TtmlWriter(), compact));
+    }
+
+    @Test
+    public void testStl() throws Exception {
+        SubtitleObject stlObject = new StlParser().parse(new FileInputStream("src/test/resources/stl/test.stl"));
+        CompactSubtitleObject compact = new CompactSubtitleObject(stlObject);
+
+        this.assertSameCues(stlObject, compact);
+        assertEquals(this.write(new TtmlWriter(), stlObject), this.write(new TtmlWriter(), compact));
+    }
+
+    @Test
+    public void testEmptyLines() throws Exception {
+        SrtCue cue = new SrtCue();
+        cue.addLine(new SubtitleTextLine());
+        SubtitleTextLine line = new SubtitleTextLine();
+        line.addText(new SubtitlePlainText("first"));
+        line.addText(new SubtitlePlainText("second"));
+        cue.addLine(line);
+        cue.addLine(new SubtitleTextLine());
+
+        CompactSubtitleObject compact = new CompactSubtitleObject();
+        compact.addCue(cue);
+        compact.addCue(new SrtCue());
+
+        assertEquals("\nfirst\nsecond\n", compact.getCues().get(0).getText());
+        assertEquals(3, compact.getCues().get(0).getLines().size());
+        assertEquals(0, compact.getCues().get(0).getLines().get(0).getTexts().size());
+        assertEquals("", compact.getCues().get(1).getText());
+        assertNull(compact.getCues().get(1).getId());
+        assertTrue(compact.getCues().get(1).getLines().isEmpty());
+    }
+
+    @Test
+    public void testWideChars() throws Exception {
+        CompactSubtitleObject compact = new CompactSubtitleObject();
+
+        for (String text : new String[] {"caf\u00e9", "\u65e5\u672c", "na\u00efve"}) {
+            SrtCue cue = new SrtCue();
+            cue.setId(text);
+            SubtitleTextLine line = new SubtitleTextLine();
+            line.addText(new SubtitlePlainText(text));
+            cue.addLine(line);
+            compact.addCue(cue);
+        }
+
+        compact.trimToSize();
+        assertEquals("caf\u00e9", compact.getCues().get(0).getText());
+        assertEquals("\u65e5\u672c", compact.getCues().get(1).getId());
+        assertEquals("\u65e5\u672c", compact.getCues().get(1).getText());
+        assertEquals("na\u00efve", compact.getCues().get(2).getLines().get(0).toString());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.hls;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import fr.noop.subtitle.srt.SrtCue;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.util.TailInputStream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class LiveVttSegmenterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Segmenter with a wall clock set by the test
+     */
+    private static class ClockedSegmenter extends LiveVttSegmenter {
+        private long now = 100000;
+
+        ClockedSegmenter(Path directory) {
+            super(directory, 6000, 2000);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return this.now;
+        }
+    }
+
+    private SrtCue createCue(String id, long startMillis, long endMillis) {
+        SrtCue cue = new SrtCue();
+        cue.setId(id);
+        cue.setStartMillis(startMillis);
+        cue.setEndMillis(endMillis);
+        SubtitleTextLine line = new SubtitleTextLine();
+        line.addText(new SubtitlePlainText("Cue " + id));
+        cue.addLine(line);
+        return cue;
+    }
+
+    private String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWatermarks() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        ClockedSegmenter segmenter = new ClockedSegmenter(directory);
+        segmenter.setMaxCueDelayMillis(0);
+        segmenter.begin(null);
+
+        // Media time 1000 arrives at wall clock 101000
+        segmenter.now = 101000;
+        segmenter.write(this.createCue("1", 1000, 3000));
+        assertFalse(Files.exists(directory.resolve("segment0.0.vtt")));
+
+        // Wall clock closes the first part
+        segmenter.now = 102000;
+        segmenter.advance();
+        assertTrue(this.read(directory.resolve("segment0.0.vtt")).endsWith("Cue 1\n\n"));
+        assertEquals(1, segmenter.getLatencies().getCount());
+        String playlist = this.read(directory.resolve("playlist.m3u8"));
+        assertTrue(playlist.contains("#EXT-X-PART-INF:PART-TARGET=2.000\n"));
+        assertTrue(playlist.contains("#EXT-X-PART:DURATION=2.000,URI=\"segment0.0.vtt\"\n"));
+        assertTrue(playlist.contains("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"segment0.1.vtt\"\n"));
+        assertFalse(playlist.contains("#EXTINF"));
+
+        // Next cue start closes the first segment
+        segmenter.write(this.createCue("2", 6500, 7000));
+        assertTrue(this.read(directory.resolve("segment0.1.vtt")).endsWith("Cue 1\n\n"));
+        assertTrue(this.read(directory.resolve("segment0.2.vtt")).endsWith("X-TIMESTAMP-MAP=MPEGTS:0,LOCAL:00:00:00.000\n\n"));
+        assertTrue(this.read(directory.resolve("segment0.vtt")).endsWith("Cue 1\n\n"));
+        assertTrue(this.read(directory.resolve("playlist.m3u8")).contains("#EXTINF:6.000,\nsegment0.vtt\n"));
+
+        // Late cues are written in the next part, or dropped if they ended
+        segmenter.write(this.createCue("3", 5000, 9000));
+        segmenter.write(this.createCue("4", 1000, 2000));
+        assertEquals(1, segmenter.getDroppedCues());
+
+        segmenter.end();
+        String part = this.read(directory.resolve("segment1.0.vtt"));
+        assertTrue(part.contains("Cue 2\n"));
+        assertTrue(part.contains("00:00:05.000 --> 00:00:09.000"));
+        assertTrue(this.read(directory.resolve("segment1.vtt")).contains("Cue 3\n"));
+        assertEquals(3, segmenter.getLatencies().getCount());
+        playlist = this.read(directory.resolve("playlist.m3u8"));
+        assertTrue(playlist.endsWith("#EXTINF:6.000,\nsegment1.vtt\n#EXT-X-ENDLIST\n"));
+        assertFalse(playlist.contains("PRELOAD-HINT"));
+    }
+
+    @Test
+    public void testTail() throws Exception {
+        Path input = this.folder.newFile("live.srt").toPath();
+        final Path directory = this.folder.getRoot().toPath().resolve("hls");
+        Files.write(input, "1\n00:00:00,100 --> 00:00:00,300\nFirst\n\n".getBytes(StandardCharsets.UTF_8));
+
+        final TailInputStream is = new TailInputStream(input);
+        final LiveVttSegmenter segmenter = new LiveVttSegmenter(directory, 1000, 200);
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    segmenter.run(new SrtParser("utf-8").read(is, false));
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        thread.start();
+
+        // Cue appended while the input is read
+        Thread.sleep(100);
+        Files.write(input, "2\n00:00:01,200 --> 00:00:01,500\nSecond\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        is.finish();
+        thread.join(10000);
+
+        assertNull(failure[0]);
+        assertTrue(this.read(directory.resolve("segment0.vtt")).endsWith("First\n\n"));
+        assertTrue(this.read(directory.resolve("segment1.vtt")).endsWith("Second\n\n"));
+        assertTrue(this.read(directory.resolve("playlist.m3u8")).endsWith("#EXT-X-ENDLIST\n"));
+        assertEquals(2, segmenter.getLatencies().getCount());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.hls;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import fr.noop.subtitle.srt.SrtCue;
+import fr.noop.subtitle.srt.SrtObject;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class VttSegmenterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SrtCue createCue(String id, long startMillis, long endMillis) {
+        SrtCue cue = new SrtCue();
+        cue.setId(id);
+        cue.setStartMillis(startMillis);
+        cue.setEndMillis(endMillis);
+        SubtitleTextLine line = new SubtitleTextLine();
+        line.addText(new SubtitlePlainText("Cue " + id));
+        cue.addLine(line);
+        return cue;
+    }
+
+    private String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSegment() throws Exception {
+        SrtObject srtObject = new SrtObject();
+        srtObject.addCue(this.createCue("2", 5000, 7000)); // Spans the first boundary
+        srtObject.addCue(this.createCue("1", 1000, 2000));
+        srtObject.addCue(this.createCue("3", 19000, 20500)); // After an empty segment
+
+        Path directory = this.folder.getRoot().toPath().resolve("hls");
+        VttSegmenter segmenter = new VttSegmenter(directory, 6000);
+        segmenter.setMpegTs(900000);
+        segmenter.segment(srtObject);
+
+        assertEquals(
+                "WEBVTT\n" +
+                "X-TIMESTAMP-MAP=MPEGTS:900000,LOCAL:00:00:00.000\n\n" +
+                "1\n00:00:01.000 --> 00:00:02.000 \nCue 1\n\n" +
+                "2\n00:00:05.000 --> 00:00:07.000 \nCue 2\n\n",
+                this.read(directory.resolve("segment0.vtt")));
+        assertEquals(
+                "WEBVTT\n" +
+                "X-TIMESTAMP-MAP=MPEGTS:900000,LOCAL:00:00:00.000\n\n" +
+                "2\n00:00:05.000 --> 00:00:07.000 \nCue 2\n\n",
+                this.read(directory.resolve("segment1.vtt")));
+        assertEquals(
+                "WEBVTT\n" +
+                "X-TIMESTAMP-MAP=MPEGTS:900000,LOCAL:00:00:00.000\n\n",
+                this.read(directory.resolve("segment2.vtt")));
+        assertTrue(this.read(directory.resolve("segment3.vtt")).endsWith("Cue 3\n\n"));
+        assertFalse(Files.exists(directory.resolve("segment4.vtt")));
+
+        assertEquals(
+                "#EXTM3U\n" +
+                "#EXT-X-VERSION:3\n" +
+                "#EXT-X-TARGETDURATION:6\n" +
+                "#EXT-X-MEDIA-SEQUENCE:0\n" +
+                "#EXT-X-PLAYLIST-TYPE:VOD\n" +
+                "#EXTINF:6.000,\nsegment0.vtt\n" +
+                "#EXTINF:6.000,\nsegment1.vtt\n" +
+                "#EXTINF:6.000,\nsegment2.vtt\n" +
+                "#EXTINF:2.500,\nsegment3.vtt\n" +
+                "#EXT-X-ENDLIST\n",
+                this.read(directory.resolve("playlist.m3u8")));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        new VttSegmenter(directory, 4000).segment(new SrtObject());
+
+        assertEquals("WEBVTT\nX-TIMESTAMP-MAP=MPEGTS:0,LOCAL:00:00:00.000\n\n",
+                this.read(directory.resolve("segment0.vtt")));
+        assertTrue(this.read(directory.resolve("playlist.m3u8")).contains("#EXTINF:4.000,\nsegment0.vtt\n"));
+    }
+
+    @Test
+    public void testFailureCancelsPendingSegments() throws Exception {
+        SrtObject srtObject = new SrtObject();
+        srtObject.addCue(this.createCue("1", 1000, 2000));
+        srtObject.addCue(this.createCue("2", 7000, 8000));
+        srtObject.addCue(this.createCue("3", 13000, 14000));
+        srtObject.addCue(this.createCue("4", 19000, 20000));
+
+        // The only thread is busy, and the queue holds two segments: the third one is rejected
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(2));
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        Path directory = this.folder.getRoot().toPath();
+        VttSegmenter segmenter = new VttSegmenter(directory, 6000);
+        segmenter.setExecutor(executor);
+
+        try {
+            segmenter.segment(srtObject);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Segments queued before the failure are cancelled
+        assertFalse(Files.exists(directory.resolve("segment0.vtt")));
+        assertFalse(Files.exists(directory.resolve("segment1.vtt")));
+        assertFalse(Files.exists(directory.resolve("playlist.m3u8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsorted() throws Exception {
+        VttSegmenter segmenter = new VttSegmenter(this.folder.getRoot().toPath(), 6000);
+        segmenter.begin(null);
+
+        try {
+            segmenter.write(this.createCue("1", 2000, 3000));
+            segmenter.write(this.createCue("2", 1000, 3000));
+        } finally {
+            segmenter.end();
+        }
+    }
+}
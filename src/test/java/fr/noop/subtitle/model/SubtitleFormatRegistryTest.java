@@ -0,0 +1,73 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.model;
+
+import fr.noop.subtitle.mp4.Mp4VttWriter;
+import fr.noop.subtitle.srt.SrtFormat;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.stl.StlWriter;
+import fr.noop.subtitle.ttml.TtmlWriter;
+import fr.noop.subtitle.vtt.VttFormat;
+import fr.noop.subtitle.vtt.VttWriter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SubtitleFormatRegistryTest {
+    private SubtitleFormatRegistry tested = SubtitleFormatRegistry.getDefault();
+
+    @Test
+    public void testDefaultFormats() throws Exception {
+        assertEquals(6, tested.getFormats().size());
+        assertEquals("srt", tested.getFormat("srt").getName());
+        assertEquals("sami", tested.getFormat("smi").getName());
+        assertEquals("ttml", tested.getFormatForFile("/tmp/test.xml").getName());
+        assertNull(tested.getFormat("txt"));
+        assertNull(tested.getFormatForFile("/tmp/test"));
+    }
+
+    @Test
+    public void testCreateParserAndWriter() throws Exception {
+        assertTrue(tested.createParser("srt", "utf-8") instanceof SrtParser);
+        assertTrue(tested.createParser("stl", "utf-8") instanceof StlParser);
+        assertTrue(tested.createWriter("vtt", "utf-8") instanceof VttWriter);
+        assertTrue(tested.createWriter("xml", "utf-8") instanceof TtmlWriter);
+        assertTrue(tested.createWriter("stl", "utf-8") instanceof StlWriter);
+        assertTrue(tested.createWriter("cmft", "utf-8") instanceof Mp4VttWriter);
+
+        // A new instance is created for each call
+        assertNotSame(tested.createParser("srt", "utf-8"), tested.createParser("srt", "utf-8"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateWriterUnsupported() throws Exception {
+        tested.createWriter("txt", "utf-8");
+    }
+
+    @Test
+    public void testFirstFormatWins() throws Exception {
+        SubtitleFormat other = new VttFormat() {
+            @Override
+            public List<String> getExtensions() {
+                return Collections.singletonList("srt");
+            }
+        };
+        SubtitleFormatRegistry registry = new SubtitleFormatRegistry(Arrays.asList(new SrtFormat(), other));
+
+        assertEquals(2, registry.getFormats().size());
+        assertEquals("srt", registry.getFormat("srt").getName());
+    }
+}
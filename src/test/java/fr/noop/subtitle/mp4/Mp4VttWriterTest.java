@@ -0,0 +1,181 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.mp4;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.srt.SrtCue;
+import fr.noop.subtitle.srt.SrtObject;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import fr.noop.subtitle.vtt.VttParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Mp4VttWriterTest {
+    private SrtCue createCue(String id, long startMillis, long endMillis, String text) {
+        SrtCue cue = new SrtCue();
+        cue.setId(id);
+        cue.setStartMillis(startMillis);
+        cue.setEndMillis(endMillis);
+        SubtitleTextLine line = new SubtitleTextLine();
+        line.addText(new SubtitlePlainText(text));
+        cue.addLine(line);
+        return cue;
+    }
+
+    private ByteBuffer write(SubtitleObject subtitleObject, long fragmentDurationMillis) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new Mp4VttWriter(fragmentDurationMillis).write(subtitleObject, os);
+        return ByteBuffer.wrap(os.toByteArray());
+    }
+
+    /**
+     * @return Types of the boxes between offset and end
+     */
+    private List<String> types(ByteBuffer buffer, int offset, int end) {
+        List<String> types = new ArrayList<>();
+
+        while (offset < end) {
+            types.add(type(buffer, offset));
+            int size = buffer.getInt(offset);
+            assertTrue(size >= 8);
+            offset += size;
+        }
+
+        assertEquals(end, offset);
+        return types;
+    }
+
+    private static String type(ByteBuffer buffer, int offset) {
+        return new String(buffer.array(), offset + 4, 4, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return Offset of the first box of this type between offset and end
+     */
+    private int find(ByteBuffer buffer, int offset, int end, String type) {
+        while (offset < end) {
+            if (type(buffer, offset).equals(type)) {
+                return offset;
+            }
+
+            offset += buffer.getInt(offset);
+        }
+
+        fail("No box " + type);
+        return -1;
+    }
+
+    @Test
+    public void testFragments() throws Exception {
+        SrtObject srtObject = new SrtObject();
+        srtObject.addCue(this.createCue("1", 500, 1500, "First"));
+        srtObject.addCue(this.createCue("2", 1000, 2500, "Second")); // Overlaps both fragments
+        ByteBuffer buffer = this.write(srtObject, 2000);
+
+        List<String> types = this.types(buffer, 0, buffer.limit());
+        assertEquals("[ftyp, moov, moof, mdat, moof, mdat]", types.toString());
+
+        int moov = this.find(buffer, 0, buffer.limit(), "moov");
+        int trak = this.find(buffer, moov + 8, moov + buffer.getInt(moov), "trak");
+        int mdia = this.find(buffer, trak + 8, trak + buffer.getInt(trak), "mdia");
+        assertEquals("[mdhd, hdlr, minf]", this.types(buffer, mdia + 8, mdia + buffer.getInt(mdia)).toString());
+
+        // First fragment: empty, First, First + Second, Second
+        int moof = this.find(buffer, 0, buffer.limit(), "moof");
+        int mdat = moof + buffer.getInt(moof);
+        int traf = this.find(buffer, moof + 8, mdat, "traf");
+        int tfdt = this.find(buffer, traf + 8, traf + buffer.getInt(traf), "tfdt");
+        assertEquals(0, buffer.getLong(tfdt + 12));
+        int trun = this.find(buffer, traf + 8, traf + buffer.getInt(traf), "trun");
+        int sampleCount = buffer.getInt(trun + 12);
+        assertEquals(4, sampleCount);
+        assertEquals(mdat + 8 - moof, buffer.getInt(trun + 16));
+
+        long[] durations = new long[sampleCount];
+        int sampleOffset = mdat + 8;
+        List<String> samples = new ArrayList<>();
+
+        for (int i = 0; i < sampleCount; i++) {
+            durations[i] = buffer.getInt(trun + 20 + 8 * i);
+            int size = buffer.getInt(trun + 24 + 8 * i);
+            samples.add(this.types(buffer, sampleOffset, sampleOffset + size).toString());
+            sampleOffset += size;
+        }
+
+        assertEquals(mdat + buffer.getInt(mdat), sampleOffset);
+        assertArrayEquals(new long[] {500, 500, 500, 500}, durations);
+        assertEquals("[[vtte], [vttc], [vttc, vttc], [vttc]]", samples.toString());
+
+        // Second cue is repeated in the second fragment
+        int vttc = mdat + 8 + 8 + buffer.getInt(mdat + 8 + 8); // After vtte and the vttc of First
+        assertEquals("[iden, payl]", this.types(buffer, vttc + 8, vttc + buffer.getInt(vttc)).toString());
+        int moof2 = mdat + buffer.getInt(mdat);
+        int mdat2 = moof2 + buffer.getInt(moof2);
+        int payl = this.find(buffer, mdat2 + 16, mdat2 + buffer.getInt(mdat2), "payl");
+        assertEquals("Second", new String(buffer.array(), payl + 8, buffer.getInt(payl) - 8, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTimeline() throws Exception {
+        SubtitleObject vttObject = new VttParser("utf-8").parse(new FileInputStream("src/test/resources/vtt/test.vtt"), false);
+        ByteBuffer buffer = this.write(vttObject, 2000);
+        long endMillis = 0;
+
+        for (SubtitleCue cue : vttObject.getCues()) {
+            endMillis = Math.max(endMillis, cue.getEndMillis());
+        }
+
+        // Fragments follow each other without gap
+        long decodeTime = 0;
+        int offset = this.find(buffer, 0, buffer.limit(), "moof");
+
+        while (offset < buffer.limit()) {
+            int traf = this.find(buffer, offset + 8, offset + buffer.getInt(offset), "traf");
+            int tfdt = this.find(buffer, traf + 8, traf + buffer.getInt(traf), "tfdt");
+            int trun = this.find(buffer, traf + 8, traf + buffer.getInt(traf), "trun");
+            assertEquals(decodeTime, buffer.getLong(tfdt + 12));
+
+            for (int i = 0; i < buffer.getInt(trun + 12); i++) {
+                decodeTime += buffer.getInt(trun + 20 + 8 * i);
+            }
+
+            offset += buffer.getInt(offset); // mdat
+            offset += buffer.getInt(offset);
+        }
+
+        assertEquals(((endMillis + 1999) / 2000) * 2000, decodeTime);
+    }
+
+    @Test
+    public void testUnsortedCues() throws Exception {
+        SrtObject sorted = new SrtObject();
+        sorted.addCue(this.createCue("1", 500, 1500, "First"));
+        sorted.addCue(this.createCue("2", 1000, 4500, "Second"));
+        sorted.addCue(this.createCue("3", 4000, 5000, "Third"));
+        SrtObject unsorted = new SrtObject();
+        unsorted.addCue(sorted.getCues().get(2));
+        unsorted.addCue(sorted.getCues().get(0));
+        unsorted.addCue(sorted.getCues().get(1));
+
+        assertArrayEquals(this.write(sorted, 2000).array(), this.write(unsorted, 2000).array());
+    }
+}
@@ -1,11 +1,17 @@
 package fr.noop.subtitle.srt;
 
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
 import fr.noop.subtitle.model.SubtitleParsingException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 public class SrtParserTest {
 
@@ -17,5 +23,83 @@ public class SrtParserTest {
         SrtObject srtObject = srtParser.parse(is);
 
         Assert.assertEquals(2, srtObject.getCues().size());
+        Assert.assertEquals(137440, srtObject.getCues().get(0).getStartMillis());
+        Assert.assertEquals(140375, srtObject.getCues().get(0).getEndMillis());
+        Assert.assertEquals("00:02:17.440", srtObject.getCues().get(0).getStartTime().toString());
+    }
+
+    @Test
+    public void testRead() throws IOException, SubtitleParsingException {
+        FileInputStream is = new FileInputStream("src/test/resources/srt/no-eof-nl.srt");
+        SubtitleCueReader reader = srtParser.read(is);
+
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals("1", reader.next().getId());
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals("Very good, Lieutenant.", reader.next().getText());
+        Assert.assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    /**
+     * Read the input with the byte scanner and with the reader, one byte at a time
+     */
+    private void assertSameCues(String input) throws IOException {
+        byte[] bytes = input.getBytes("utf-8");
+        String expected = this.readCues(new SrtCueReader(new ByteArrayInputStream(bytes), "utf-8"));
+        InputStream slow = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        Assert.assertEquals(expected, this.readCues(new SrtByteCueReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)));
+        Assert.assertEquals(expected, this.readCues(new SrtByteCueReader(slow, StandardCharsets.UTF_8)));
+    }
+
+    private String readCues(SubtitleCueReader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        try {
+            while (reader.hasNext()) {
+                SubtitleCue cue = reader.next();
+                sb.append(String.format("%s|%d|%d|%s|%d\n",
+                        cue.getId(), cue.getStartMillis(), cue.getEndMillis(), cue.getText(), cue.getLines().size()));
+            }
+        } catch (SubtitleParsingException e) {
+            sb.append(e.getMessage());
+        }
+
+        return sb.toString();
+    }
+
+    @Test
+    public void testByteScanner() throws IOException {
+        String cue = "1\n00:00:01,000 --> 00:00:02,500\nFirst line\nSecond line\n\n";
+        this.assertSameCues(cue + cue.replace('1', '2'));
+        this.assertSameCues(cue.replace("\n", "\r\n") + "\r\n\r\n" + cue.replace("\n", "\r"));
+        this.assertSameCues("  \t12  \n  00:00:01.000-->\t1:00:02,500 X1:53:11 \n \u00e9t\u00e9 \ud83d\ude00 \u65e5\u672c \n");
+        this.assertSameCues("\n\n3\n00:00:01,000 --> 00:00:02,500\nNo line break at the end");
+        this.assertSameCues(cue + "\n\n\n" + cue);
+
+        // Line longer than the buffer
+        StringBuilder longLine = new StringBuilder();
+
+        while (longLine.length() < 200000) {
+            longLine.append("A long line \u00e9");
+        }
+
+        this.assertSameCues(cue.replace("First line", longLine));
+
+        // Errors
+        this.assertSameCues(cue + "x1\n00:00:01,000 --> 00:00:02,500\ntext\n");
+        this.assertSameCues(cue + "12345678901\n00:00:01,000 --> 00:00:02,500\ntext\n");
+        this.assertSameCues("+4\n00:00:01,000 --> 00:00:02,500\ntext\n");
+        this.assertSameCues("\u0661\n00:00:01,000 --> 00:00:02,500\ntext\n");
+        this.assertSameCues("1\n00:00:01,000 -> 00:00:02,500\ntext\n");
+        this.assertSameCues("1\n00:00:01,000 --> 00:00:2,500\ntext\n");
+        this.assertSameCues("1\n00:00:01,000 -->\u2003 00:00:02,500\ntext\n");
+        this.assertSameCues("1\n00:00:01,000 --> 00:00:02,500\n\ntext\n");
     }
 }
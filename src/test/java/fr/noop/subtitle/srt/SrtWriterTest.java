@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.srt;
+
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+public class SrtWriterTest {
+
+    private SrtParser srtParser = new SrtParser("utf-8");
+    private SrtWriter srtWriter = new SrtWriter("utf-8");
+
+    @Test
+    public void testOpen() throws IOException, SubtitleParsingException {
+        // Write the whole object
+        FileInputStream is = new FileInputStream("src/test/resources/srt/no-eof-nl.srt");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        srtWriter.write(srtParser.parse(is), expected);
+        is.close();
+
+        // Write cues as soon as they are read
+        is = new FileInputStream("src/test/resources/srt/no-eof-nl.srt");
+        SubtitleCueReader reader = srtParser.read(is);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        SubtitleCueWriter cueWriter = srtWriter.open(actual);
+        cueWriter.begin(reader.getProperties());
+
+        while (reader.hasNext()) {
+            cueWriter.write(reader.next());
+        }
+
+        cueWriter.end();
+        reader.close();
+
+        Assert.assertEquals(expected.toString("utf-8"), actual.toString("utf-8"));
+        Assert.assertTrue(actual.toString("utf-8").startsWith("1\n00:02:17,440 --> 00:02:20,375"));
+    }
+}
@@ -14,13 +14,21 @@ import static org.junit.Assert.*;
 
 import fr.noop.subtitle.model.SubtitleCue;
 import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleParsingException;
 import fr.noop.subtitle.util.SubtitleStyledText;
 import org.junit.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by clebeaupin on 24/11/15.
@@ -209,4 +217,159 @@ public class StlParserTest {
         StlCue testedCue2 = (StlCue) tested.getCues().get(1);
         assertEquals(testedCue.getRegion(), testedCue2.getRegion());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCueLineCount() throws Exception {
+        StlCue cue = (StlCue) new StlParser().parse(Paths.get("src/test/resources/stl/test.stl")).getCues().get(0);
+
+        // Line count is known before lines are decoded
+        assertEquals(2, cue.getLineCount());
+        assertEquals(2, cue.getLines().size());
+    }
+
+    @Test
+    public void testParsePath() throws Exception {
+        StlObject mapped = new StlParser().parse(Paths.get("src/test/resources/stl/test.stl"));
+
+        assertEquals(testedGsi.getTnb(), mapped.getGsi().getTnb());
+        assertEquals(tested.getTtis().size(), mapped.getTtis().size());
+        assertEquals(tested.getCues().size(), mapped.getCues().size());
+
+        for (int i = 0; i < tested.getCues().size(); i++) {
+            SubtitleCue expected = tested.getCues().get(i);
+            SubtitleCue actual = mapped.getCues().get(i);
+            assertEquals(expected.getStartMillis(), actual.getStartMillis());
+            assertEquals(expected.getEndMillis(), actual.getEndMillis());
+            assertEquals(expected.getText(), actual.getText());
+        }
+    }
+
+    @Test
+    public void testParseByteBuffer() throws Exception {
+        byte[] stl = Files.readAllBytes(Paths.get("src/test/resources/stl/test.stl"));
+
+        // STL data starts at the buffer position
+        ByteBuffer buffer = ByteBuffer.allocate(stl.length + 10);
+        buffer.position(10);
+        buffer.put(stl);
+        buffer.position(10);
+        StlObject parsed = new StlParser().parse(buffer);
+
+        assertEquals(10, buffer.position());
+        assertEquals("TEST", parsed.getGsi().getOpt());
+        assertEquals(testedCue.getText(), parsed.getCues().get(0).getText());
+    }
+
+    @Test(expected = SubtitleParsingException.class)
+    public void testParseTruncated() throws Exception {
+        byte[] stl = Files.readAllBytes(Paths.get("src/test/resources/stl/test.stl"));
+        new StlParser().parse(ByteBuffer.wrap(stl, 0, stl.length - 100));
+    }
+
+    /**
+     * Stream of the fixture read by small chunks, without available bytes
+     *
+     * @param failAt Offset of a read failure, or -1
+     */
+    private InputStream createChunkedStream(final int failAt) throws Exception {
+        byte[] stl = Files.readAllBytes(Paths.get("src/test/resources/stl/test.stl"));
+
+        return new FilterInputStream(new ByteArrayInputStream(stl)) {
+            private int offset = 0;
+
+            @Override
+            public int available() {
+                return 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (failAt >= 0 && this.offset + len > failAt) {
+                    throw new IOException("Connection reset");
+                }
+
+                int read = super.read(b, off, Math.min(len, 100));
+                this.offset += Math.max(read, 0);
+                return read;
+            }
+        };
+    }
+
+    @Test
+    public void testParseChunkedStream() throws Exception {
+        StlObject parsed = new StlParser().parse(this.createChunkedStream(-1));
+        assertEquals(tested.getTtis().size(), parsed.getTtis().size());
+        assertEquals(testedCue.getText(), parsed.getCues().get(0).getText());
+    }
+
+    @Test
+    public void testParseStreamFailure() throws Exception {
+        try {
+            new StlParser().parse(this.createChunkedStream(2000));
+            fail();
+        } catch (IOException e) {
+            // Failure of the stream, not of the parsing
+            assertEquals("Connection reset", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testExtensionBlocks() throws Exception {
+        byte[] stl = Files.readAllBytes(Paths.get("src/test/resources/stl/test.stl"));
+
+        // Second block continues in the third one: same subtitle number, first extension block
+        stl[1024 + 128 + 3] = 0x00;
+        stl[1024 + 256 + 1] = stl[1024 + 128 + 1];
+        stl[1024 + 256 + 2] = stl[1024 + 128 + 2];
+        StlObject parsed = new StlParser().parse(ByteBuffer.wrap(stl));
+
+        assertEquals(tested.getTtis().size(), parsed.getTtis().size());
+        assertEquals(tested.getCues().size() - 1, parsed.getCues().size());
+
+        StlCue cue = (StlCue) parsed.getCues().get(0);
+        StlCue first = (StlCue) tested.getCues().get(0);
+        StlCue second = (StlCue) tested.getCues().get(1);
+        assertEquals(2, cue.getTtis().size());
+        assertEquals(first.getStartMillis(), cue.getStartMillis());
+        assertEquals(first.getLineCount() + second.getLineCount(), cue.getLineCount());
+        assertEquals(first.getText() + "\n" + second.getText(), cue.getText());
+        assertEquals(tested.getCues().get(2).getText(), parsed.getCues().get(1).getText());
+    }
+
+    @Test
+    public void testParseParallel() throws Exception {
+        byte[] stl = Files.readAllBytes(Paths.get("src/test/resources/stl/test.stl"));
+        int blocks = 5000;
+
+        // Repeat the fixture blocks, chaining some of them with extension blocks
+        ByteBuffer buffer = ByteBuffer.allocate(1024 + blocks * 128);
+        buffer.put(stl, 0, 1024);
+        buffer.put(238, String.format("%05d", blocks).getBytes("ascii"));
+        buffer.position(1024);
+
+        for (int i = 0; i < blocks; i++) {
+            int offset = 1024 + 128 * (1 + i % (testedGsi.getTnb() - 1));
+            buffer.put(stl, offset, 128);
+            int sn = (i % 7 == 1) ? i - 1 : i;
+            buffer.putShort(1024 + 128 * i + 1, Short.reverseBytes((short) sn));
+            buffer.put(1024 + 128 * i + 3, (byte) (i % 7 == 0 ? 0x00 : 0xff));
+        }
+
+        buffer.flip();
+        StlObject expected = new StlParser().parse(buffer);
+        StlObject actual = new StlParser(new ForkJoinPool(4)).parse(buffer);
+
+        assertEquals(blocks, actual.getTtis().size());
+        assertEquals(expected.getCues().size(), actual.getCues().size());
+
+        for (int i = 0; i < expected.getCues().size(); i++) {
+            StlCue expectedCue = (StlCue) expected.getCues().get(i);
+            StlCue actualCue = (StlCue) actual.getCues().get(i);
+            assertEquals(expectedCue.getStartMillis(), actualCue.getStartMillis());
+            assertEquals(expectedCue.getEndMillis(), actualCue.getEndMillis());
+            assertEquals(expectedCue.getTtis().size(), actualCue.getTtis().size());
+            assertEquals(expectedCue.getRegion(), actualCue.getRegion());
+            assertEquals(expectedCue.getText(), actualCue.getText());
+        }
+    }
+}
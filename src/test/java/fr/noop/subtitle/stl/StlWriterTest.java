@@ -0,0 +1,219 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.stl;
+
+import static org.junit.Assert.*;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.srt.SrtCue;
+import fr.noop.subtitle.srt.SrtObject;
+import fr.noop.subtitle.util.SubtitlePlainText;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StlWriterTest {
+    private StlObject stlObject;
+    private StlParser stlParser = new StlParser();
+    private StlWriter stlWriter = new StlWriter();
+
+    @Before
+    public void setUp() throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/stl/test.stl");
+        stlObject = stlParser.parse(is);
+        is.close();
+    }
+
+    private StlObject writeAndParse(SubtitleObject subtitleObject) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        stlWriter.write(subtitleObject, os);
+        return stlParser.parse(ByteBuffer.wrap(os.toByteArray()));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        StlObject actual = writeAndParse(stlObject);
+
+        assertEquals("TEST", actual.getGsi().getOpt());
+        assertEquals("FRA", actual.getGsi().getCo());
+        assertEquals(stlObject.getCues().size(), actual.getGsi().getTnb());
+        assertEquals(stlObject.getCues().size(), actual.getGsi().getTns());
+        assertEquals(stlObject.getCues().size(), actual.getCues().size());
+
+        for (int i = 0; i < stlObject.getCues().size(); i++) {
+            StlCue expectedCue = (StlCue) stlObject.getCues().get(i);
+            StlCue actualCue = (StlCue) actual.getCues().get(i);
+            assertEquals(expectedCue.getStartMillis(), actualCue.getStartMillis());
+            assertEquals(expectedCue.getEndMillis(), actualCue.getEndMillis());
+            assertEquals(expectedCue.getText(), actualCue.getText());
+            assertEquals(expectedCue.getRegion(), actualCue.getRegion());
+        }
+
+        // Colors are written back
+        SubtitleStyledText text = (SubtitleStyledText) actual.getCues().get(0).getLines().get(0).getTexts().get(0);
+        assertEquals("cyan", text.getStyle().getColor());
+    }
+
+    @Test
+    public void testWritePath() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        stlWriter.write(stlObject, os);
+        Path path = Files.createTempFile("subtitle", ".stl");
+
+        try {
+            // GSI block is written once TTI blocks are written
+            stlWriter.write(stlObject, path);
+            assertArrayEquals(os.toByteArray(), Files.readAllBytes(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testWriteAppend() throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        stlWriter.write(stlObject, expected);
+        Path path = Files.createTempFile("subtitle", ".stl");
+
+        try {
+            Files.write(path, "head".getBytes("ascii"));
+
+            // Writes of a stream opened for append ignore the channel position
+            try (FileOutputStream os = new FileOutputStream(path.toFile(), true)) {
+                stlWriter.write(stlObject, os);
+            }
+
+            byte[] actual = Files.readAllBytes(path);
+            assertEquals(4 + expected.size(), actual.length);
+            assertEquals(ByteBuffer.wrap(expected.toByteArray()), ByteBuffer.wrap(actual, 4, expected.size()));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testWrapRows() throws Exception {
+        SrtObject srtObject = new SrtObject();
+        SrtCue cue = new SrtCue();
+        cue.setStartMillis(1000);
+        cue.setEndMillis(3000);
+        SubtitleTextLine line = new SubtitleTextLine();
+        line.addText(new SubtitlePlainText("A subtitle line which is much longer than a teletext row, "));
+        line.addText(new SubtitlePlainText("and a run with an unbreakableeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeword"));
+        cue.addLine(line);
+        srtObject.addCue(cue);
+
+        StlObject actual = writeAndParse(srtObject);
+        assertEquals(40, actual.getGsi().getMnc());
+
+        List<String> rows = new ArrayList<>();
+
+        for (SubtitleLine actualLine : actual.getCues().get(0).getLines()) {
+            StringBuilder row = new StringBuilder();
+
+            for (SubtitleText text : ((SubtitleTextLine) actualLine).getTexts()) {
+                row.append(text.toString());
+            }
+
+            rows.add(row.toString());
+        }
+
+        // Rows are wrapped on word boundaries, a word longer than a row is cut
+        assertEquals(Arrays.asList(
+                "A subtitle line which is much longer",
+                "than a teletext row, and a run with an",
+                "unbreakableeeeeeeeeeeeeeeeeeeeeeeeeeeeee",
+                "eeeeeword"), rows);
+
+        // Wrapped rows move the first row up
+        assertEquals(22 - 2 * 3, ((StlCue) actual.getCues().get(0)).getTtis().get(0).getVp());
+    }
+
+    @Test
+    public void testExtensionBlocks() throws Exception {
+        SrtObject srtObject = new SrtObject();
+        SrtCue cue = new SrtCue();
+        cue.setStartMillis(1000);
+        cue.setEndMillis(3000);
+
+        for (int i = 0; i < 6; i++) {
+            SubtitleTextLine line = new SubtitleTextLine();
+            line.addText(new SubtitlePlainText(String.format("Line %d of a cue that is too long", i)));
+            cue.addLine(line);
+        }
+
+        srtObject.addCue(cue);
+        StlObject actual = writeAndParse(srtObject);
+
+        assertEquals(1, actual.getCues().size());
+        StlCue actualCue = (StlCue) actual.getCues().get(0);
+        assertTrue(actualCue.getTtis().size() > 1);
+        assertEquals(0, actualCue.getTtis().get(0).getEbn());
+        assertEquals(StlTti.EBN_LAST, actualCue.getTtis().get(actualCue.getTtis().size() - 1).getEbn());
+        assertEquals(cue.getText(), actualCue.getText());
+        assertEquals(1000, actualCue.getStartMillis());
+        assertEquals(3000, actualCue.getEndMillis());
+    }
+
+    @Test
+    public void testColors() throws Exception {
+        SrtObject srtObject = new SrtObject();
+        SrtCue cue = new SrtCue();
+        cue.setStartMillis(0);
+        cue.setEndMillis(1000);
+        SubtitleTextLine line = new SubtitleTextLine();
+        SubtitleStyle red = new SubtitleStyle();
+        red.setColor("#ff0000");
+        SubtitleStyle lime = new SubtitleStyle();
+        lime.setColor("lime");
+        line.addText(new SubtitleStyledText("red", red));
+        line.addText(new SubtitleStyledText("green", lime));
+        line.addText(new SubtitlePlainText("plain"));
+        cue.addLine(line);
+        srtObject.addCue(cue);
+
+        SubtitleCue actualCue = writeAndParse(srtObject).getCues().get(0);
+        SubtitleTextLine actualLine = (SubtitleTextLine) actualCue.getLines().get(0);
+        assertEquals(3, actualLine.getTexts().size());
+        assertEquals("red", ((SubtitleStyledText) actualLine.getTexts().get(0)).getStyle().getColor());
+        assertEquals("green", ((SubtitleStyledText) actualLine.getTexts().get(1)).getStyle().getColor());
+
+        // Teletext color is kept until the end of the row
+        assertEquals("white", ((SubtitleStyledText) actualLine.getTexts().get(2)).getStyle().getColor());
+        assertEquals("red\ngreen\nplain", actualCue.getText());
+    }
+
+    @Test
+    public void testAlphaColor() throws Exception {
+        assertEquals(StlTti.TextColor.ALPHA_YELLOW, StlTti.TextColor.getAlphaEnum("yellow"));
+        assertEquals(StlTti.TextColor.ALPHA_GREEN, StlTti.TextColor.getAlphaEnum("#008000"));
+        assertEquals(StlTti.TextColor.ALPHA_CYAN, StlTti.TextColor.getAlphaEnum("rgba(0, 200, 255, 128)"));
+        assertEquals(StlTti.TextColor.ALPHA_BLACK, StlTti.TextColor.getAlphaEnum("#000000ff"));
+        assertNull(StlTti.TextColor.getAlphaEnum("transparent"));
+        assertEquals(StlTti.TextColor.ALPHA_CYAN, StlTti.TextColor.getAlphaEnum("aqua"));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.vtt.VttObject;
+import fr.noop.subtitle.vtt.VttParser;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+
+public class TtmlParserTest {
+    private TtmlObject tested;
+
+    @Before
+    public void setUp() throws Exception {
+        tested = new TtmlParser().parse(new FileInputStream("src/test/resources/ttml/test.xml"));
+    }
+
+    private SubtitleStyle getStyle(SubtitleCue cue, int lineIndex, int textIndex) {
+        return ((SubtitleStyledText) cue.getLines().get(lineIndex).getTexts().get(textIndex)).getStyle();
+    }
+
+    @Test
+    public void testProperties() throws Exception {
+        Assert.assertEquals("Test TTML", tested.getProperty(SubtitleObject.Property.TITLE));
+        Assert.assertEquals(25, tested.getProperty(SubtitleObject.Property.FRAME_RATE));
+        Assert.assertEquals(3, tested.getStyles().size());
+        Assert.assertEquals(3, tested.getRegions().size());
+    }
+
+    @Test
+    public void testCues() throws Exception {
+        // Cue without text is skipped
+        Assert.assertEquals(4, tested.getCues().size());
+
+        TtmlCue cue = (TtmlCue) tested.getCues().get(0);
+        Assert.assertEquals("c1", cue.getId());
+        Assert.assertEquals(1500, cue.getStartMillis());
+        Assert.assertEquals(3250, cue.getEndMillis());
+        Assert.assertEquals(2, cue.getLines().size());
+        Assert.assertEquals("Ellis Island,", cue.getLines().get(0).toString());
+        Assert.assertEquals(2, cue.getLines().get(1).getTexts().size());
+        Assert.assertEquals("îlot de larmes", cue.getLines().get(1).getTexts().get(0).toString());
+        Assert.assertEquals(" et d'exil", cue.getLines().get(1).getTexts().get(1).toString());
+    }
+
+    @Test
+    public void testStyles() throws Exception {
+        SubtitleCue cue = tested.getCues().get(0);
+
+        // Body style
+        Assert.assertEquals("white", getStyle(cue, 0, 0).getColor());
+        Assert.assertEquals(SubtitleStyle.TextAlign.CENTER, getStyle(cue, 0, 0).getTextAlign());
+
+        // Span style overrides the body style
+        Assert.assertEquals("yellow", getStyle(cue, 1, 0).getColor());
+        Assert.assertEquals(SubtitleStyle.TextAlign.CENTER, getStyle(cue, 1, 0).getTextAlign());
+
+        // Style referencing another style
+        cue = tested.getCues().get(1);
+        Assert.assertEquals("white", getStyle(cue, 0, 0).getColor());
+        Assert.assertEquals(SubtitleStyle.FontStyle.ITALIC, getStyle(cue, 0, 0).getFontStyle());
+
+        // Inline styling attributes
+        cue = tested.getCues().get(2);
+        Assert.assertEquals("red", getStyle(cue, 0, 0).getColor());
+        Assert.assertEquals(SubtitleStyle.FontWeight.BOLD, getStyle(cue, 0, 0).getProperty(SubtitleStyle.Property.FONT_WEIGHT));
+    }
+
+    @Test
+    public void testRegions() throws Exception {
+        Assert.assertEquals(new SubtitleRegion(10, 80, 80, 15, SubtitleRegion.VerticalAlign.BOTTOM),
+                ((TtmlCue) tested.getCues().get(0)).getRegion());
+
+        // Pixels, relative to the tt extent
+        Assert.assertEquals(new SubtitleRegion(10, 5, 80, 15, SubtitleRegion.VerticalAlign.TOP),
+                ((TtmlCue) tested.getCues().get(1)).getRegion());
+
+        // Cells of the default 32x15 cell resolution
+        Assert.assertEquals(new SubtitleRegion(0, 80, 100, 20, SubtitleRegion.VerticalAlign.BOTTOM),
+                ((TtmlCue) tested.getCues().get(2)).getRegion());
+    }
+
+    @Test
+    public void testTimeExpressions() throws Exception {
+        // Frames at 25 fps
+        Assert.assertEquals(4400, tested.getCues().get(1).getStartMillis());
+        Assert.assertEquals(6000, tested.getCues().get(1).getEndMillis());
+
+        // Ticks and duration
+        Assert.assertEquals(7500, tested.getCues().get(2).getStartMillis());
+        Assert.assertEquals(9500, tested.getCues().get(2).getEndMillis());
+
+        // Offset times, relative to the div begin
+        Assert.assertEquals(61500, tested.getCues().get(3).getStartMillis());
+        Assert.assertEquals(62500, tested.getCues().get(3).getEndMillis());
+
+        TtmlTime time = new TtmlTime(30 * 1000 / 1001.0, 2, 60);
+        Assert.assertEquals(3723004, time.parse("01:02:03.004"));
+        Assert.assertEquals(3723000, time.parse("1:02:03"));
+        Assert.assertEquals(1033, time.parse("00:00:01:01"));
+        Assert.assertEquals(1050, time.parse("00:00:01:01.1"));
+        Assert.assertEquals(5400000, time.parse(" 1.5h "));
+        Assert.assertEquals(90000, time.parse("1.5m"));
+        Assert.assertEquals(120, time.parse("120ms"));
+        Assert.assertEquals(1001, time.parse("30f"));
+        Assert.assertEquals(500, time.parse("30t"));
+        Assert.assertEquals(-1, time.parse("00:60:00"));
+        Assert.assertEquals(-1, time.parse("12"));
+        Assert.assertEquals(-1, time.parse("1.s"));
+        Assert.assertEquals(-1, time.parse("00:00:01.5:01"));
+    }
+
+    @Test
+    public void testSpaces() throws Exception {
+        Assert.assertEquals("Frame based time", tested.getCues().get(1).getText());
+        Assert.assertEquals("  kept  spaces ", tested.getCues().get(3).getText());
+    }
+
+    @Test
+    public void testSpansOnSeparateLines() throws Exception {
+        String ttml = "<tt xmlns=\"http://www.w3.org/ns/ttml\"><body>\n" +
+                "  <p begin=\"1s\" end=\"2s\">\n" +
+                "    <span>Hello</span>\n" +
+                "    <span>world</span>\n" +
+                "    <br/>\n" +
+                "    <span>Second </span>\n" +
+                "    <span> line</span>\n" +
+                "  </p>\n" +
+                "</body></tt>";
+        TtmlObject ttmlObject = new TtmlParser().parse(new ByteArrayInputStream(ttml.getBytes("utf-8")));
+        SubtitleCue cue = ttmlObject.getCues().get(0);
+        Assert.assertEquals(2, cue.getLines().size());
+        Assert.assertEquals("Hello world", cue.getLines().get(0).toString());
+        Assert.assertEquals("Second line", cue.getLines().get(1).toString());
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        SubtitleCueReader reader = new TtmlParser().read(new FileInputStream("src/test/resources/ttml/test.xml"));
+        int count = 0;
+
+        while (reader.hasNext()) {
+            Assert.assertEquals(tested.getCues().get(count).getText(), reader.next().getText());
+            count++;
+        }
+
+        reader.close();
+        Assert.assertEquals(4, count);
+        Assert.assertEquals("Test TTML", reader.getProperties().get(SubtitleObject.Property.TITLE));
+    }
+
+    @Test
+    public void testWriteAndParse() throws Exception {
+        VttObject vttObject = new VttParser("utf-8").parse(new FileInputStream("src/test/resources/vtt/styled.vtt"));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new TtmlWriter().write(vttObject, os);
+        TtmlObject ttmlObject = new TtmlParser().parse(new ByteArrayInputStream(os.toByteArray()));
+
+        Assert.assertEquals(vttObject.getCues().size(), ttmlObject.getCues().size());
+
+        for (int i = 0; i < vttObject.getCues().size(); i++) {
+            SubtitleCue expected = vttObject.getCues().get(i);
+            SubtitleCue actual = ttmlObject.getCues().get(i);
+            Assert.assertEquals(expected.getStartMillis(), actual.getStartMillis());
+            Assert.assertEquals(expected.getEndMillis(), actual.getEndMillis());
+            Assert.assertEquals(expected.getText(), actual.getText());
+        }
+    }
+
+    @Test(expected = SubtitleParsingException.class)
+    public void testUnknownStyle() throws Exception {
+        String ttml = "<tt xmlns=\"http://www.w3.org/ns/ttml\"><body><p begin=\"1s\" end=\"2s\" style=\"none\">Text</p></body></tt>";
+        new TtmlParser().parse(new ByteArrayInputStream(ttml.getBytes("utf-8")));
+    }
+
+    @Test
+    public void testNotStrict() throws Exception {
+        String ttml = "<tt xmlns=\"http://www.w3.org/ns/ttml\"><body>" +
+                "<p begin=\"1s\" style=\"none\">Untimed</p><p begin=\"1s\" end=\"2s\" style=\"none\">Text</p>" +
+                "</body></tt>";
+        TtmlObject ttmlObject = new TtmlParser().parse(new ByteArrayInputStream(ttml.getBytes("utf-8")), false);
+        Assert.assertEquals(1, ttmlObject.getCues().size());
+        Assert.assertEquals("Text", ttmlObject.getCues().get(0).getText());
+    }
+}
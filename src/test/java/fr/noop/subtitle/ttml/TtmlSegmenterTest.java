@@ -0,0 +1,109 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.srt.SrtCue;
+import fr.noop.subtitle.srt.SrtObject;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TtmlSegmenterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SrtCue createCue(long startMillis, long endMillis, String text) {
+        SrtCue cue = new SrtCue();
+        cue.setStartMillis(startMillis);
+        cue.setEndMillis(endMillis);
+        SubtitleStyle style = new SubtitleStyle();
+        style.setFontStyle(SubtitleStyle.FontStyle.ITALIC);
+        SubtitleTextLine line = new SubtitleTextLine();
+        line.addText(new SubtitleStyledText(text, style));
+        cue.addLine(line);
+        return cue;
+    }
+
+    private SrtObject createObject() {
+        SrtObject srtObject = new SrtObject();
+        srtObject.addCue(this.createCue(1000, 2500, "Second")); // Overlaps both segments
+        srtObject.addCue(this.createCue(500, 1500, "First"));
+        return srtObject;
+    }
+
+    private SubtitleObject parse(byte[] bytes, int offset, int length) throws Exception {
+        return new TtmlParser().parse(new ByteArrayInputStream(bytes, offset, length));
+    }
+
+    @Test
+    public void testSegments() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        TtmlSegmenter segmenter = new TtmlSegmenter(directory, 2000);
+        segmenter.segment(this.createObject());
+        Assert.assertEquals(2, segmenter.getSegmentCount());
+
+        byte[] first = Files.readAllBytes(directory.resolve("segment1.ttml"));
+        byte[] second = Files.readAllBytes(directory.resolve("segment2.ttml"));
+        String ttml = new String(first, StandardCharsets.UTF_8);
+        Assert.assertTrue(ttml.contains("ttp:profile=\"http://www.w3.org/ns/ttml/profile/imsc1/text\""));
+        Assert.assertTrue(ttml.endsWith("</p>\n    </div>\n  </body>\n</tt>\n"));
+
+        // Cues are sorted, the second one is repeated in the second segment
+        SubtitleObject firstObject = this.parse(first, 0, first.length);
+        Assert.assertEquals(2, firstObject.getCues().size());
+        Assert.assertEquals("First", firstObject.getCues().get(0).getText());
+        SubtitleObject secondObject = this.parse(second, 0, second.length);
+        Assert.assertEquals(1, secondObject.getCues().size());
+        Assert.assertEquals("Second", secondObject.getCues().get(0).getText());
+        Assert.assertEquals(1000, secondObject.getCues().get(0).getStartMillis());
+
+        // Both segments share the same head
+        String head = ttml.substring(0, ttml.indexOf("<body>"));
+        Assert.assertTrue(head.contains("style-1"));
+        Assert.assertTrue(new String(second, StandardCharsets.UTF_8).startsWith(head));
+    }
+
+    @Test
+    public void testMp4() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        TtmlSegmenter segmenter = new TtmlSegmenter(directory, 2000);
+        segmenter.setMp4(true);
+        segmenter.segment(this.createObject());
+
+        ByteBuffer init = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("init.mp4")));
+        Assert.assertEquals("ftyp", new String(init.array(), 4, 4, StandardCharsets.US_ASCII));
+        Assert.assertTrue(new String(init.array(), StandardCharsets.US_ASCII).contains("stpp"));
+        Assert.assertEquals(init.limit(), init.getInt(0) + init.getInt(init.getInt(0)));
+
+        // styp, moof, mdat holding the TTML document
+        ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("segment2.m4s")));
+        int moof = segment.getInt(0);
+        int mdat = moof + segment.getInt(moof);
+        Assert.assertEquals("moof", new String(segment.array(), moof + 4, 4, StandardCharsets.US_ASCII));
+        Assert.assertEquals("mdat", new String(segment.array(), mdat + 4, 4, StandardCharsets.US_ASCII));
+        Assert.assertEquals(segment.limit(), mdat + segment.getInt(mdat));
+        Assert.assertEquals(2, segment.getInt(moof + 20)); // mfhd sequence number
+
+        SubtitleObject subtitleObject = this.parse(segment.array(), mdat + 8, segment.getInt(mdat) - 8);
+        Assert.assertEquals("Second", subtitleObject.getCues().get(0).getText());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.ttml;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueWriter;
+import fr.noop.subtitle.stl.StlObject;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.util.SubtitleTextLine;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+public class TtmlWriterTest {
+    private StlObject stlObject;
+    private TtmlWriter ttmlWriter = new TtmlWriter();
+
+    @Before
+    public void setUp() throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/stl/test.stl");
+        stlObject = new StlParser().parse(is);
+        is.close();
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ttmlWriter.write(stlObject, os);
+        String ttml = os.toString("utf-8");
+
+        // Encoded in utf-8
+        Assert.assertTrue(ttml.contains("<span style=\"style-1\">îlot de larmes et d'exil,</span>"));
+
+        // Indented
+        Assert.assertTrue(ttml.startsWith("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<tt "));
+        Assert.assertTrue(ttml.contains("\n  <head>\n    <metadata>\n      <ttm:title>TEST</ttm:title>\n    </metadata>\n"));
+        Assert.assertTrue(ttml.contains("\n        <br/>\n"));
+        Assert.assertTrue(ttml.endsWith("</p>\n    </div>\n  </body>\n</tt>\n"));
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ttmlWriter.write(stlObject, expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        SubtitleCueWriter cueWriter = ttmlWriter.open(actual);
+        cueWriter.begin(stlObject.getProperties());
+
+        for (SubtitleCue cue : stlObject.getCues()) {
+            cueWriter.write(cue);
+        }
+
+        cueWriter.end();
+
+        Assert.assertEquals(expected.toString("utf-8"), actual.toString("utf-8"));
+    }
+
+    @Test
+    public void testRegisterCue() throws Exception {
+        TtmlObject ttmlObject = new TtmlObject(stlObject);
+
+        // All cues of the STL file share the same region
+        Assert.assertEquals(1, ttmlObject.getRegions().size());
+        TtmlCue cue = (TtmlCue) ttmlObject.getCues().get(0);
+        Assert.assertEquals("region-1", cue.getRegionId());
+        Assert.assertEquals("region-1", ttmlObject.getRegionId(new SubtitleRegion(cue.getRegion())));
+
+        // Styles differing by their decoration only are distinct
+        SubtitleStyle underline = new SubtitleStyle();
+        underline.setColor("cyan");
+        underline.setTextDecoration(SubtitleStyle.TextDecoration.UNDERLINE);
+        SubtitleTextLine line = new SubtitleTextLine();
+        line.addText(new SubtitleStyledText("underlined", underline));
+        TtmlCue underlined = new TtmlCue();
+        underlined.addLine(line);
+        ttmlObject.registerCue(underlined);
+
+        SubtitleStyle cyan = new SubtitleStyle();
+        cyan.setColor("cyan");
+        Assert.assertNotNull(ttmlObject.getStyleId(cyan));
+        Assert.assertNotNull(ttmlObject.getStyleId(underline));
+        Assert.assertNotEquals(ttmlObject.getStyleId(cyan), ttmlObject.getStyleId(underline));
+    }
+}
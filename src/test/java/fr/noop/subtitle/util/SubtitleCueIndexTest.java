@@ -0,0 +1,97 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.srt.SrtCue;
+import fr.noop.subtitle.srt.SrtObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class SubtitleCueIndexTest {
+    private SrtCue createCue(String id, long startMillis, long endMillis) {
+        SrtCue cue = new SrtCue();
+        cue.setId(id);
+        cue.setStartMillis(startMillis);
+        cue.setEndMillis(endMillis);
+        return cue;
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        SrtObject srtObject = new SrtObject();
+        SrtCue third = this.createCue("3", 3000, 4000);
+        SrtCue first = this.createCue("1", 1000, 5000);
+        SrtCue second = this.createCue("2", 1000, 2000);
+        srtObject.addCue(third);
+        srtObject.addCue(first);
+        srtObject.addCue(second);
+
+        SubtitleCueIndex index = new SubtitleCueIndex(srtObject);
+        assertEquals(3, index.size());
+        assertSame(first, index.getCue(0));
+        assertSame(second, index.getCue(1));
+        assertSame(third, index.getCue(2));
+
+        assertEquals(Collections.emptyList(), index.getCues(999));
+        assertEquals(listOf(first, second), index.getCues(1000));
+        assertEquals(listOf(first), index.getCues(2000));
+        assertEquals(listOf(first, third), index.getCues(3500));
+        assertEquals(Collections.emptyList(), index.getCues(5000));
+        assertEquals(listOf(first, second, third), index.getCues(1999, 3001));
+        assertEquals(listOf(first), index.getCues(2000, 3000));
+        assertEquals(Collections.emptyList(), index.getCues(3000, 3000));
+        assertEquals(2, index.count(3000, 6000));
+    }
+
+    @Test
+    public void testLinearScan() throws Exception {
+        Random random = new Random(42);
+        List<SubtitleCue> cues = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(600000);
+            cues.add(this.createCue(Integer.toString(i), start, start + random.nextInt(i % 50 == 0 ? 60000 : 5000)));
+        }
+
+        SubtitleCueIndex index = new SubtitleCueIndex(cues);
+
+        for (int i = 0; i < 1000; i++) {
+            long start = random.nextInt(700000) - 50000;
+            long end = start + random.nextInt(10000);
+            List<SubtitleCue> expected = new ArrayList<>();
+
+            for (int j = 0; j < index.size(); j++) {
+                SubtitleCue cue = index.getCue(j);
+
+                if (cue.getStartMillis() < end && cue.getEndMillis() > start) {
+                    expected.add(cue);
+                }
+            }
+
+            assertEquals(expected, index.getCues(start, end));
+            assertEquals(expected.size(), index.count(start, end));
+        }
+    }
+
+    private static List<SubtitleCue> listOf(SubtitleCue... cues) {
+        List<SubtitleCue> list = new ArrayList<>();
+        Collections.addAll(list, cues);
+        return list;
+    }
+}
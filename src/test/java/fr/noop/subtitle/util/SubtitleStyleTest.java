@@ -93,4 +93,44 @@ public class SubtitleStyleTest {
         assertEquals(SubtitleStyle.TextDecoration.UNDERLINE, tested.getProperty(SubtitleStyle.Property.TEXT_DECORATION));
         assertEquals("white", tested.getProperty(SubtitleStyle.Property.COLOR));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIntern() throws Exception {
+        SubtitleStyle same = new SubtitleStyle(tested);
+        SubtitleStyle interned = tested.intern();
+
+        // Equal styles share the same interned instance
+        assertEquals(tested, same);
+        assertEquals(tested.hashCode(), same.hashCode());
+        assertSame(interned, same.intern());
+        assertSame(interned, interned.intern());
+        assertTrue(interned.isInterned());
+        assertEquals(interned, tested);
+
+        // Interned style is a copy
+        tested.setColor("black");
+        assertEquals("white", interned.getColor());
+        assertNotSame(interned, tested.intern());
+    }
+
+    @Test
+    public void testInternedColorIsReleased() throws Exception {
+        SubtitleStyle style = new SubtitleStyle();
+        style.setColor("#123456");
+        SubtitleStyle interned = style.intern();
+        assertSame(interned, style.intern());
+
+        // Styles with a color read from the input are not kept by the pool
+        assertTrue(SubtitleStyle.isWeaklyPooled(interned));
+
+        // Styles made of enum properties are kept
+        style = new SubtitleStyle();
+        style.setFontStyle(SubtitleStyle.FontStyle.ITALIC);
+        assertFalse(SubtitleStyle.isWeaklyPooled(style.intern()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInternedIsImmutable() throws Exception {
+        tested.intern().setColor("black");
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.srt.SrtCue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SubtitleTextLineTest {
+    private SubtitleTextLine createLine(String... texts) {
+        SubtitleTextLine line = new SubtitleTextLine();
+
+        for (String text : texts) {
+            line.addText(new SubtitlePlainText(text));
+        }
+
+        return line;
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        SubtitleTextLine line = this.createLine("first", "second");
+        String text = line.toString();
+        assertEquals("first\nsecond", text);
+        assertSame(text, line.toString());
+
+        line.addText(new SubtitlePlainText("third"));
+        assertEquals("first\nsecond\nthird", line.toString());
+    }
+
+    @Test
+    public void testToStringTextsChanged() throws Exception {
+        SubtitleTextLine line = this.createLine("first", "second");
+        assertEquals("first\nsecond", line.toString());
+
+        // Text replaced in the list of the line
+        line.getTexts().set(1, new SubtitlePlainText("other"));
+        assertEquals("first\nother", line.toString());
+
+        // List owned by the caller
+        List<SubtitleText> texts = new ArrayList<>();
+        texts.add(new SubtitlePlainText("mine"));
+        line = new SubtitleTextLine(texts);
+        assertEquals("mine", line.toString());
+        texts.set(0, new SubtitlePlainText("changed"));
+        assertEquals("changed", line.toString());
+    }
+
+    @Test
+    public void testIsEmpty() throws Exception {
+        assertTrue(this.createLine().isEmpty());
+        assertTrue(this.createLine("").isEmpty());
+        assertFalse(this.createLine("", "").isEmpty());
+        assertFalse(this.createLine("text").isEmpty());
+    }
+
+    @Test
+    public void testCueText() throws Exception {
+        SrtCue cue = new SrtCue();
+        SubtitleTextLine line = this.createLine("first");
+        cue.addLine(line);
+        cue.addLine(this.createLine("second"));
+        String text = cue.getText();
+        assertEquals("first\nsecond", text);
+        assertSame(text, cue.getText());
+
+        // Text added to a line of the cue
+        line.addText(new SubtitlePlainText("more"));
+        assertEquals("first\nmore\nsecond", cue.getText());
+
+        cue.addLine(this.createLine("third"));
+        assertEquals("first\nmore\nsecond\nthird", cue.getText());
+
+        cue.setLines(new ArrayList<SubtitleLine>());
+        assertEquals("", cue.getText());
+
+        // Lines list modified directly
+        cue.getLines().add(this.createLine("last"));
+        assertEquals("last", cue.getText());
+    }
+}
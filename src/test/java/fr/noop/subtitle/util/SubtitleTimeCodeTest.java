@@ -111,6 +111,17 @@ public class SubtitleTimeCodeTest  {
         assertEquals(4992010, tested.getTime());
     }
 
+    @Test
+    public void testToMillis() throws Exception {
+        assertEquals(tested.getTime(), SubtitleTimeCode.toMillis(1, 23, 12, 10));
+        assertEquals(tested.getTime(), new SubtitleTimeCode(SubtitleTimeCode.toMillis(1, 23, 12, 10)).getTime());
+    }
+
+    @Test (expected = InvalidParameterException.class)
+    public void testToMillisException() throws Exception {
+        SubtitleTimeCode.toMillis(1, 60, 12, 10);
+    }
+
     @Test
     public void testCompareTo() throws Exception {
         assertEquals(0, tested.compareTo(new SubtitleTimeCode(1, 23, 12, 10)));
@@ -0,0 +1,96 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+public class TextEncoderTest {
+    private final static String TEXT = "Plain ascii, é à ñ, 日本, 😀, lone \ud83d surrogate";
+
+    private byte[] encode(String charset, String... texts) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        TextEncoder encoder = TextEncoder.open(os, charset);
+
+        for (String text : texts) {
+            encoder.write(text);
+        }
+
+        encoder.end();
+        return os.toByteArray();
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        for (String charset : new String[] {"utf-8", "us-ascii", "iso-8859-1", "windows-1252", "iso-8859-15"}) {
+            assertArrayEquals(charset, TEXT.getBytes(charset), this.encode(charset, TEXT));
+        }
+    }
+
+    @Test
+    public void testStatefulCharset() throws Exception {
+        // Byte order mark is written once
+        byte[] expected = "first, second".getBytes("utf-16");
+        assertArrayEquals(expected, this.encode("utf-16", "first", ", ", "second"));
+    }
+
+    @Test
+    public void testSplitSurrogatePair() throws Exception {
+        assertArrayEquals("a😀b".getBytes("utf-16be"), this.encode("utf-16be", "a\ud83d", "\ude00b"));
+    }
+
+    @Test
+    public void testLargeText() throws Exception {
+        StringBuilder sb = new StringBuilder();
+
+        while (sb.length() < 3 * TextEncoder.BUFFER_SIZE) {
+            sb.append(TEXT);
+        }
+
+        String text = sb.toString();
+        assertArrayEquals(text.getBytes("utf-8"), this.encode("utf-8", text));
+        assertArrayEquals(text.getBytes("iso-8859-1"), this.encode("iso-8859-1", text));
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        TextEncoder encoder = new TextEncoder(os, Charset.forName("utf-16be"));
+        encoder.write(0).write(' ').write(-1234).write(' ').write(Long.MIN_VALUE).write(' ');
+        encoder.writeTimeCode(4992010, ',');
+        encoder.end();
+        assertEquals("0 -1234 " + Long.MIN_VALUE + " 01:23:12,010", os.toString("utf-16be"));
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        int poolSize = TextEncoder.getPoolSize();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        TextEncoder encoder = new TextEncoder(os, Charset.forName("iso-8859-1"));
+        encoder.write(TEXT);
+        encoder.discard();
+        encoder.discard();
+
+        // Nothing is written, the buffer is back in the pool
+        assertEquals(0, os.size());
+        assertEquals(Math.max(poolSize, 1), TextEncoder.getPoolSize());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedCharset() throws Exception {
+        TextEncoder.open(new ByteArrayOutputStream(), "unknown-charset");
+    }
+}
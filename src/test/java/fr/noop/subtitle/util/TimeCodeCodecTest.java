@@ -0,0 +1,68 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import java.nio.charset.StandardCharsets;
+
+public class TimeCodeCodecTest {
+    private final static long TIME = 4992010; // 01:23:12.010
+
+    @Test
+    public void testParse() throws Exception {
+        assertEquals(TIME, TimeCodeCodec.parse("01:23:12,010", 0));
+        assertEquals(TIME, TimeCodeCodec.parse("01:23:12.010", 0));
+        assertEquals(TIME, TimeCodeCodec.parse("1:23:12.010", 0));
+        assertEquals(TIME + 100 * 3600000L, TimeCodeCodec.parse("101:23:12.010", 0));
+        assertEquals(83 * 1000 + 10, TimeCodeCodec.parse("01:23.010", 0));
+    }
+
+    @Test
+    public void testParseOffset() throws Exception {
+        String line = "00:00:01.000 --> 01:23:12.010 align:start";
+        assertEquals(1000, TimeCodeCodec.parse(line, 0));
+        assertEquals(TIME, TimeCodeCodec.parse(line, 17));
+        assertEquals(TIME, TimeCodeCodec.parse(new StringBuilder(line), 17, 29));
+    }
+
+    @Test
+    public void testParseInvalid() throws Exception {
+        assertEquals(-1, TimeCodeCodec.parse("01:60:12.010", 0));
+        assertEquals(-1, TimeCodeCodec.parse("01:23:60.010", 0));
+        assertEquals(-1, TimeCodeCodec.parse("01:23:12.01", 0));
+        assertEquals(-1, TimeCodeCodec.parse("01:23:12;010", 0));
+        assertEquals(-1, TimeCodeCodec.parse("01.23:12.010", 0));
+        assertEquals(-1, TimeCodeCodec.parse("a1:23:12.010", 0));
+        assertEquals(-1, TimeCodeCodec.parse("-->", 0));
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        assertEquals("01:23:12,010", TimeCodeCodec.format(TIME, ','));
+        assertEquals("00:00:00.000", TimeCodeCodec.format(0, '.'));
+        assertEquals("101:23:12.010", TimeCodeCodec.format(TIME + 100 * 3600000L, '.'));
+        assertEquals("t=01:23:12.010", TimeCodeCodec.format(TIME, '.', new StringBuilder("t=")).toString());
+    }
+
+    @Test
+    public void testFormatBytes() throws Exception {
+        byte[] bytes = new byte[32];
+        int end = TimeCodeCodec.format(TIME, ',', bytes, 2);
+        assertEquals(14, end);
+        assertEquals("01:23:12,010", new String(bytes, 2, end - 2, StandardCharsets.US_ASCII));
+
+        end = TimeCodeCodec.format(TIME + 100 * 3600000L, '.', bytes, 0);
+        assertEquals("101:23:12.010", new String(bytes, 0, end, StandardCharsets.US_ASCII));
+    }
+}
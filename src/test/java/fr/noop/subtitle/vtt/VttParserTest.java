@@ -1,6 +1,10 @@
 package fr.noop.subtitle.vtt;
 
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleLine;
 import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -18,4 +22,77 @@ public class VttParserTest {
 
         Assert.assertEquals(12, vttObject.getCues().size());
     }
+
+    @Test
+    public void testStyles() throws IOException, SubtitleParsingException {
+        FileInputStream is = new FileInputStream("src/test/resources/vtt/styled.vtt");
+        VttObject vttObject = vttParser.parse(is);
+        SubtitleCue cue = vttObject.getCues().get(0);
+
+        Assert.assertEquals(2, cue.getLines().size());
+
+        // First line: voice and bold text
+        VttLine line = (VttLine) cue.getLines().get(0);
+        Assert.assertEquals("Mary", line.getVoice());
+        Assert.assertEquals(2, line.getTexts().size());
+        Assert.assertEquals("Hello ", line.getTexts().get(0).toString());
+        Assert.assertEquals("world", line.getTexts().get(1).toString());
+        Assert.assertFalse(line.getTexts().get(0) instanceof SubtitleStyledText);
+        SubtitleStyle style = ((SubtitleStyledText) line.getTexts().get(1)).getStyle();
+        Assert.assertEquals(SubtitleStyle.FontWeight.BOLD, style.getProperty(SubtitleStyle.Property.FONT_WEIGHT));
+
+        // Second line: nested styles
+        SubtitleLine secondLine = cue.getLines().get(1);
+        Assert.assertEquals(2, secondLine.getTexts().size());
+        Assert.assertEquals("italic", secondLine.getTexts().get(1).toString());
+        style = ((SubtitleStyledText) secondLine.getTexts().get(1)).getStyle();
+        Assert.assertEquals(SubtitleStyle.FontStyle.ITALIC, style.getFontStyle());
+        Assert.assertEquals(SubtitleStyle.TextDecoration.UNDERLINE, style.getTextDecoration());
+    }
+
+    @Test
+    public void testClasses() throws IOException, SubtitleParsingException {
+        FileInputStream is = new FileInputStream("src/test/resources/vtt/styled.vtt");
+        VttObject vttObject = vttParser.parse(is);
+        SubtitleCue cue = vttObject.getCues().get(1);
+
+        Assert.assertEquals(2, cue.getLines().get(0).getTexts().size());
+        Assert.assertEquals("Ellis ", cue.getLines().get(0).getTexts().get(0).toString());
+        Assert.assertEquals("Island", cue.getLines().get(0).getTexts().get(1).toString());
+        Assert.assertFalse(cue.getLines().get(0).getTexts().get(0) instanceof SubtitleStyledText);
+        Assert.assertTrue(cue.getLines().get(0).getTexts().get(1) instanceof SubtitleStyledText);
+    }
+
+    @Test
+    public void testTimestamps() throws IOException, SubtitleParsingException {
+        FileInputStream is = new FileInputStream("src/test/resources/vtt/styled.vtt");
+        VttObject vttObject = vttParser.parse(is);
+
+        Assert.assertEquals(3, vttObject.getCues().size());
+        Assert.assertEquals("Karaoke style", vttObject.getCues().get(2).getText());
+    }
+
+    @Test
+    public void testNoEofNewLine() throws IOException, SubtitleParsingException {
+        FileInputStream is = new FileInputStream("src/test/resources/vtt/no-eof-nl.vtt");
+        VttObject vttObject = vttParser.parse(is);
+
+        Assert.assertEquals(2, vttObject.getCues().size());
+        Assert.assertEquals("Last cue", vttObject.getCues().get(1).getText());
+    }
+
+    @Test
+    public void testShortTimeCodes() throws IOException, SubtitleParsingException {
+        FileInputStream is = new FileInputStream("src/test/resources/vtt/short-timecodes.vtt");
+        VttObject vttObject = vttParser.parse(is);
+
+        Assert.assertEquals(2, vttObject.getCues().size());
+        Assert.assertNull(vttObject.getCues().get(0).getId());
+        Assert.assertEquals(1000, vttObject.getCues().get(0).getStartMillis());
+        Assert.assertEquals(4500, vttObject.getCues().get(0).getEndMillis());
+        Assert.assertEquals("intro", vttObject.getCues().get(1).getId());
+        Assert.assertEquals(62000, vttObject.getCues().get(1).getStartMillis());
+        Assert.assertEquals(3603250, vttObject.getCues().get(1).getEndMillis());
+        Assert.assertEquals("Settings after time codes", vttObject.getCues().get(1).getText());
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Entry point of the benchmarks jar
+ *
+ * Accepts the regular JMH command line options and always enables the
+ * GC profiler, so every run reports allocation rates (gc.alloc.rate.norm)
+ * next to the throughput.
+ *
+ * Usage:
+ *
+ *     java -jar target/benchmarks.jar [jmh options] [benchmark regexp]
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws IOException, RunnerException {
+        CommandLineOptions commandLineOptions;
+
+        try {
+            commandLineOptions = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println(String.format("Unable to parse options: %s", e.getMessage()));
+            System.exit(1);
+            return;
+        }
+
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+
+        if (commandLineOptions.shouldList()) {
+            new Runner(commandLineOptions).list();
+            return;
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLineOptions);
+
+        if (!hasGcProfiler(commandLineOptions)) {
+            builder.addProfiler(GCProfiler.class);
+        }
+
+        Options options = builder.build();
+
+        new Runner(options).run();
+    }
+
+    private static boolean hasGcProfiler(Options options) {
+        for (ProfilerConfig profiler : options.getProfilers()) {
+            if (profiler.getKlass().equals(GCProfiler.class.getName()) || profiler.getKlass().equals("gc")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
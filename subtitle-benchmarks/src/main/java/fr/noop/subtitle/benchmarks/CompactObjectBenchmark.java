@@ -0,0 +1,111 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.base.CompactSubtitleObject;
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleStreamParser;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.vtt.VttParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep a large parsed track as cue objects or as a compact subtitle object
+ *
+ * The heap retained by the track is printed once it is loaded.
+ * The benchmark reads the text of every cue, as writers do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class CompactObjectBenchmark {
+    @Param({"SRT", "VTT"})
+    public Corpus.Format format;
+
+    @Param({"500000"})
+    public int cues;
+
+    @Param({"objects", "compact"})
+    public String representation;
+
+    private SubtitleObject subtitleObject;
+    private byte[] input; // Kept while the retained heap is measured
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SubtitleParsingException {
+        this.input = Corpus.generate(this.format, this.cues, this.format == Corpus.Format.VTT);
+        SubtitleStreamParser parser = (this.format == Corpus.Format.SRT) ?
+                new SrtParser("utf-8") : new VttParser("utf-8");
+        long before = usedHeap();
+
+        if ("compact".equals(this.representation)) {
+            // Cues are added as they are read
+            CompactSubtitleObject compact = new CompactSubtitleObject();
+            SubtitleCueReader reader = parser.read(new ByteArrayInputStream(this.input), false);
+
+            while (reader.hasNext()) {
+                compact.addCue(reader.next());
+            }
+
+            compact.trimToSize();
+            this.subtitleObject = compact;
+        } else {
+            this.subtitleObject = parser.parse(new ByteArrayInputStream(this.input), false);
+        }
+
+        long retained = usedHeap() - before;
+        System.out.println(String.format("%s %s: %d cues retain %.1f MB, %d bytes per cue",
+                this.format, this.representation, this.cues, retained / (1024.0 * 1024.0), retained / this.cues));
+        this.input = null;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public long getText() {
+        long length = 0;
+
+        for (SubtitleCue cue : this.subtitleObject.getCues()) {
+            length += cue.getText().length();
+        }
+
+        return length;
+    }
+}
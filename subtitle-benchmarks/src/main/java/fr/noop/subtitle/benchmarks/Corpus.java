@@ -0,0 +1,367 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Generated and on-disk subtitle corpora used by the benchmarks.
+ *
+ * Generated corpora are deterministic: the same format, cue count and style
+ * always produce the same bytes, so runs can be compared with each other.
+ * Cues have between 1 and 3 lines and start every 2 seconds.
+ */
+public final class Corpus {
+    public enum Format {
+        SRT,
+        VTT,
+        SAMI,
+        STL;
+    }
+
+    private static final Charset UTF_8 = Charset.forName("utf-8");
+    private static final Charset ISO_8859_1 = Charset.forName("iso-8859-1");
+
+    private static final String[] WORDS = {
+            "Ellis", "Island", "was", "the", "gateway", "for", "millions", "of",
+            "immigrants", "who", "crossed", "the", "ocean", "looking", "for", "a",
+            "better", "life", "in", "New", "York", "and", "beyond", "its", "harbour"
+    };
+
+    private static final String[] VOICES = {
+            "Narrator", "Officer", "Mary", "John"
+    };
+
+    private static final int CUE_INTERVAL = 2000; // Milliseconds between two cue starts
+    private static final int CUE_DURATION = 1800; // Milliseconds a cue is displayed
+    private static final int MAX_STL_CUES = 99999; // Maximum number of TTI blocks in a STL file
+
+    private Corpus() {
+    }
+
+    /**
+     * Generate a subtitle file
+     *
+     * @param format Format of the generated file
+     * @param cues Number of cues, STL files are limited to 99999 cues
+     * @param styled True to add style tags (or color codes for STL) to the text
+     * @return the encoded file
+     */
+    public static byte[] generate(Format format, int cues, boolean styled) {
+        switch (format) {
+            case SRT:
+                return generateSrt(cues, styled).getBytes(UTF_8);
+            case VTT:
+                return generateVtt(cues, styled).getBytes(UTF_8);
+            case SAMI:
+                return generateSami(cues, styled).getBytes(UTF_8);
+            case STL:
+                return generateStl(cues, styled);
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    /**
+     * Read a file from the unit test fixtures
+     *
+     * @param path Path relative to src/test/resources, ie: vtt/test.vtt
+     * @return the file content
+     */
+    public static byte[] fixture(String path) throws IOException {
+        File file = new File(fixturesDirectory(), path);
+
+        try (InputStream is = new FileInputStream(file)) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+
+            return bos.toByteArray();
+        }
+    }
+
+    private static File fixturesDirectory() throws IOException {
+        String directory = System.getProperty("subtitle.fixtures");
+
+        if (directory == null) {
+            Properties properties = new Properties();
+
+            try (InputStream is = Corpus.class.getResourceAsStream("/benchmarks.properties")) {
+                if (is != null) {
+                    properties.load(is);
+                }
+            }
+
+            directory = properties.getProperty("subtitle.fixtures");
+        }
+
+        if (directory == null) {
+            throw new IOException("Fixtures directory is not defined, use -Dsubtitle.fixtures");
+        }
+
+        return new File(directory);
+    }
+
+    private static int lineCount(int cueIndex) {
+        return 1 + cueIndex % 3;
+    }
+
+    private static String plainLine(int cueIndex, int lineIndex) {
+        StringBuilder sb = new StringBuilder();
+        int wordCount = 4 + (cueIndex + lineIndex) % 3;
+
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+
+            sb.append(WORDS[(cueIndex * 7 + lineIndex * 3 + i) % WORDS.length]);
+        }
+
+        return sb.toString();
+    }
+
+    private static String styledLine(int cueIndex, int lineIndex) {
+        String[] words = plainLine(cueIndex, lineIndex).split(" ");
+        StringBuilder sb = new StringBuilder();
+
+        if (lineIndex == 0 && cueIndex % 2 == 0) {
+            sb.append("<v ").append(VOICES[cueIndex % VOICES.length]).append('>');
+        }
+
+        for (int i = 0; i < words.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+
+            switch ((cueIndex + lineIndex + i) % 5) {
+                case 0:
+                    sb.append("<b>").append(words[i]).append("</b>");
+                    break;
+                case 1:
+                    sb.append("<i>").append(words[i]).append("</i>");
+                    break;
+                case 2:
+                    sb.append("<u>").append(words[i]).append("</u>");
+                    break;
+                case 3:
+                    sb.append("<c.yellow>").append(words[i]).append("</c>");
+                    break;
+                default:
+                    sb.append(words[i]);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String line(int cueIndex, int lineIndex, boolean styled) {
+        return styled ? styledLine(cueIndex, lineIndex) : plainLine(cueIndex, lineIndex);
+    }
+
+    private static void appendTimeCode(StringBuilder sb, long time, char separator) {
+        long hour = time / 3600000;
+        long minute = (time / 60000) % 60;
+        long second = (time / 1000) % 60;
+        long millisecond = time % 1000;
+        appendPadded(sb, hour, 2).append(':');
+        appendPadded(sb, minute, 2).append(':');
+        appendPadded(sb, second, 2).append(separator);
+        appendPadded(sb, millisecond, 3);
+    }
+
+    private static StringBuilder appendPadded(StringBuilder sb, long value, int width) {
+        String digits = Long.toString(value);
+
+        for (int i = digits.length(); i < width; i++) {
+            sb.append('0');
+        }
+
+        return sb.append(digits);
+    }
+
+    private static String generateSrt(int cues, boolean styled) {
+        StringBuilder sb = new StringBuilder(cues * 96);
+
+        for (int i = 0; i < cues; i++) {
+            long start = (long) i * CUE_INTERVAL;
+            sb.append(i + 1).append('\n');
+            appendTimeCode(sb, start, ',');
+            sb.append(" --> ");
+            appendTimeCode(sb, start + CUE_DURATION, ',');
+            sb.append('\n');
+
+            for (int j = 0; j < lineCount(i); j++) {
+                sb.append(line(i, j, styled)).append('\n');
+            }
+
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private static String generateVtt(int cues, boolean styled) {
+        StringBuilder sb = new StringBuilder(cues * 96);
+        sb.append("WEBVTT\n\n");
+
+        for (int i = 0; i < cues; i++) {
+            long start = (long) i * CUE_INTERVAL;
+            sb.append("c").append(i + 1).append('\n');
+            appendTimeCode(sb, start, '.');
+            sb.append(" --> ");
+            appendTimeCode(sb, start + CUE_DURATION, '.');
+            sb.append('\n');
+
+            for (int j = 0; j < lineCount(i); j++) {
+                sb.append(line(i, j, styled)).append('\n');
+            }
+
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private static String generateSami(int cues, boolean styled) {
+        StringBuilder sb = new StringBuilder(cues * 96);
+        sb.append("<SAMI>\n<Head>\n  <Title>Benchmark</Title>\n</Head>\n<Body>\n");
+
+        for (int i = 0; i < cues; i++) {
+            sb.append("  <SYNC Start=").append((long) i * CUE_INTERVAL).append(">\n");
+
+            for (int j = 0; j < lineCount(i); j++) {
+                String text = styled ?
+                        "<font color=\"yellow\">" + plainLine(i, j) + "</font>" :
+                        plainLine(i, j);
+                sb.append(j == 0 ? "    <P Class=ENCC>" : "    ").append(text).append('\n');
+            }
+        }
+
+        sb.append("</Body>\n</SAMI>\n");
+        return sb.toString();
+    }
+
+    private static byte[] generateStl(int cues, boolean styled) {
+        // TNB is a 5 digits field
+        cues = Math.min(cues, MAX_STL_CUES);
+        byte[] stl = new byte[1024 + cues * 128];
+        writeGsi(stl, cues);
+
+        for (int i = 0; i < cues; i++) {
+            writeTti(stl, 1024 + i * 128, i, styled);
+        }
+
+        return stl;
+    }
+
+    private static void putString(byte[] block, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(ISO_8859_1);
+        Arrays.fill(block, offset, offset + length, (byte) 0x20);
+        System.arraycopy(bytes, 0, block, offset, Math.min(length, bytes.length));
+    }
+
+    private static String padded(long value, int width) {
+        return appendPadded(new StringBuilder(), value, width).toString();
+    }
+
+    private static void writeGsi(byte[] stl, int cues) {
+        Arrays.fill(stl, 0, 1024, (byte) 0x20);
+        putString(stl, 0, 3, "850"); // CPN
+        putString(stl, 3, 8, "STL25.01"); // DFC
+        putString(stl, 11, 1, "1"); // DSC
+        putString(stl, 12, 2, "00"); // CCT
+        putString(stl, 14, 2, "0F"); // LC
+        putString(stl, 16, 32, "Benchmark"); // OPT
+        putString(stl, 224, 6, "151124"); // CD
+        putString(stl, 230, 6, "151124"); // RD
+        putString(stl, 236, 2, "00"); // RN
+        putString(stl, 238, 5, padded(cues, 5)); // TNB
+        putString(stl, 243, 5, padded(cues, 5)); // TNS
+        putString(stl, 248, 3, "001"); // TNG
+        putString(stl, 251, 2, "40"); // MNC
+        putString(stl, 253, 2, "23"); // MNR
+        putString(stl, 255, 1, "1"); // TCS
+        putString(stl, 256, 8, "00000000"); // TCP
+        putString(stl, 264, 8, "00000000"); // TCF
+        putString(stl, 272, 1, "1"); // TND
+        putString(stl, 273, 1, "1"); // DSN
+        putString(stl, 274, 3, "FRA"); // CO
+    }
+
+    private static void writeTimeCode(byte[] stl, int offset, long time) {
+        stl[offset] = (byte) (time / 3600000);
+        stl[offset + 1] = (byte) ((time / 60000) % 60);
+        stl[offset + 2] = (byte) ((time / 1000) % 60);
+        stl[offset + 3] = (byte) ((time % 1000) / 40); // 25 fps
+    }
+
+    private static void writeTti(byte[] stl, int offset, int cueIndex, boolean styled) {
+        long start = (long) cueIndex * CUE_INTERVAL;
+        int sn = cueIndex + 1;
+        stl[offset] = 0; // SGN
+        stl[offset + 1] = (byte) (sn & 0xff); // SN
+        stl[offset + 2] = (byte) ((sn >> 8) & 0xff);
+        stl[offset + 3] = (byte) 0xff; // EBN
+        stl[offset + 4] = 0; // CS
+        writeTimeCode(stl, offset + 5, start); // TCI
+        writeTimeCode(stl, offset + 9, start + CUE_DURATION); // TCO
+        stl[offset + 13] = (byte) (22 - 2 * (lineCount(cueIndex) - 1)); // VP
+        stl[offset + 14] = 2; // JC: centered
+        stl[offset + 15] = 0; // CF
+
+        // Text field: 112 bytes padded with unused space
+        int tfOffset = offset + 16;
+        int tfEnd = tfOffset + 112;
+        Arrays.fill(stl, tfOffset, tfEnd, (byte) 0x8f);
+        int cursor = tfOffset;
+
+        for (int j = 0; j < lineCount(cueIndex); j++) {
+            String text = plainLine(cueIndex, j);
+
+            // 0x0d: double height, 0x0b: start box, 0x0a: end box, 0x8a: new line
+            int needed = text.length() + (styled ? 6 : 5) + (j > 0 ? 1 : 0);
+
+            if (cursor + needed > tfEnd) {
+                break;
+            }
+
+            if (j > 0) {
+                stl[cursor++] = (byte) 0x8a;
+            }
+
+            stl[cursor++] = 0x0d;
+
+            if (styled) {
+                // Alpha colors from red (0x01) to white (0x07)
+                stl[cursor++] = (byte) (1 + (cueIndex + j) % 7);
+            }
+
+            stl[cursor++] = 0x0b;
+            stl[cursor++] = 0x0b;
+            byte[] bytes = text.getBytes(ISO_8859_1);
+            System.arraycopy(bytes, 0, stl, cursor, bytes.length);
+            cursor += bytes.length;
+            stl[cursor++] = 0x0a;
+        }
+    }
+}
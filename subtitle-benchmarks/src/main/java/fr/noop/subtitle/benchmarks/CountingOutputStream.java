@@ -0,0 +1,47 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import java.io.OutputStream;
+
+/**
+ * Output stream that discards its content but keeps track of the number
+ * of bytes and of write calls it received.
+ */
+public class CountingOutputStream extends OutputStream {
+    private long count; // Number of written bytes
+    private long writes; // Number of write calls
+
+    @Override
+    public void write(int b) {
+        this.count++;
+        this.writes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        this.count += len;
+        this.writes++;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getWrites() {
+        return this.writes;
+    }
+
+    public void reset() {
+        this.count = 0;
+        this.writes = 0;
+    }
+}
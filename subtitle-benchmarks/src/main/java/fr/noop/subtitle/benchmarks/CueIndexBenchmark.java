@@ -0,0 +1,145 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.util.SubtitleCueIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Find the cues active at a time, or during a 10 seconds range
+ *
+ * The "scan" benchmarks reproduce a lookup without index:
+ * a linear scan over the cues of the subtitle object.
+ * Scores are per query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CueIndexBenchmark {
+    private static final int QUERIES = 1024;
+    private static final long RANGE = 10000;
+
+    @Param({"1000", "100000"})
+    public int cues;
+
+    private SubtitleObject subtitleObject;
+    private SubtitleCueIndex index;
+    private long[] times = new long[QUERIES];
+    private List<SubtitleCue> result = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SubtitleParsingException {
+        byte[] input = Corpus.generate(Corpus.Format.SRT, this.cues, false);
+        this.subtitleObject = new SrtParser("utf-8").parse(new ByteArrayInputStream(input), false);
+        this.index = new SubtitleCueIndex(this.subtitleObject);
+
+        // Query times spread over the whole track
+        List<SubtitleCue> cues = this.subtitleObject.getCues();
+        long end = cues.get(cues.size() - 1).getEndMillis();
+        Random random = new Random(42);
+
+        for (int i = 0; i < QUERIES; i++) {
+            this.times[i] = (long) (random.nextDouble() * end);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int pointScan() {
+        int count = 0;
+
+        for (long time : this.times) {
+            this.result.clear();
+
+            for (SubtitleCue cue : this.subtitleObject.getCues()) {
+                if (cue.getStartMillis() <= time && cue.getEndMillis() > time) {
+                    this.result.add(cue);
+                }
+            }
+
+            count += this.result.size();
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int pointIndex() {
+        int count = 0;
+
+        for (long time : this.times) {
+            this.result.clear();
+            count += this.index.getCues(time, time + 1, this.result).size();
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int rangeScan() {
+        int count = 0;
+
+        for (long time : this.times) {
+            this.result.clear();
+
+            for (SubtitleCue cue : this.subtitleObject.getCues()) {
+                if (cue.getStartMillis() < time + RANGE && cue.getEndMillis() > time) {
+                    this.result.add(cue);
+                }
+            }
+
+            count += this.result.size();
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int rangeIndex() {
+        int count = 0;
+
+        for (long time : this.times) {
+            this.result.clear();
+            count += this.index.getCues(time, time + RANGE, this.result).size();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse the unit test fixtures (real world files)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FixtureParserBenchmark {
+    @Param({"srt/no-eof-nl.srt", "vtt/test.vtt", "stl/test.stl"})
+    public String fixture;
+
+    private byte[] input;
+    private SubtitleParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.input = Corpus.fixture(this.fixture);
+        String ext = this.fixture.substring(this.fixture.lastIndexOf('.') + 1);
+        this.parser = ParserBenchmark.createParser(Corpus.Format.valueOf(ext.toUpperCase()));
+    }
+
+    @Benchmark
+    public SubtitleObject parse(Throughput throughput) throws IOException, SubtitleParsingException {
+        SubtitleObject subtitleObject = this.parser.parse(new ByteArrayInputStream(this.input), false);
+        throughput.add(subtitleObject.getCues().size(), this.input.length);
+        return subtitleObject;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParser;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.sami.SamiParser;
+import fr.noop.subtitle.srt.SrtParser;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.vtt.VttParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse generated corpora with every parser
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    @Param({"SRT", "VTT", "SAMI", "STL"})
+    public Corpus.Format format;
+
+    @Param({"1000", "10000", "100000"})
+    public int cues;
+
+    @Param({"plain", "styled"})
+    public String style;
+
+    private byte[] input;
+    private SubtitleParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.input = Corpus.generate(this.format, this.cues, "styled".equals(this.style));
+        this.parser = createParser(this.format);
+    }
+
+    static SubtitleParser createParser(Corpus.Format format) {
+        switch (format) {
+            case SRT:
+                return new SrtParser("utf-8");
+            case VTT:
+                return new VttParser("utf-8");
+            case SAMI:
+                return new SamiParser("utf-8");
+            case STL:
+                return new StlParser();
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    @Benchmark
+    public SubtitleObject parse(Throughput throughput) throws IOException, SubtitleParsingException {
+        SubtitleObject subtitleObject = this.parser.parse(new ByteArrayInputStream(this.input), false);
+        throughput.add(subtitleObject.getCues().size(), this.input.length);
+        return subtitleObject;
+    }
+}
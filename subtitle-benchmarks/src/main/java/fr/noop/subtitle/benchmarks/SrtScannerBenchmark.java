@@ -0,0 +1,96 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleCueReader;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.srt.SrtByteCueReader;
+import fr.noop.subtitle.srt.SrtCueReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read a generated UTF-8 SRT corpus with the byte scanner and with the reader based cue reader
+ *
+ * Both build the same cues, so most of the allocations are the cue objects.
+ * "lines" only splits the input into trimmed lines the way the reader based cue reader does,
+ * to show the cost of decoding the whole input.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SrtScannerBenchmark {
+    @Param({"10000", "100000"})
+    public int cues;
+
+    private byte[] input;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.input = Corpus.generate(Corpus.Format.SRT, this.cues, false);
+    }
+
+    @Benchmark
+    public int scanner(Throughput throughput) throws IOException, SubtitleParsingException {
+        return this.read(new SrtByteCueReader(new ByteArrayInputStream(this.input), StandardCharsets.UTF_8), throughput);
+    }
+
+    @Benchmark
+    public int reader(Throughput throughput) throws IOException, SubtitleParsingException {
+        return this.read(new SrtCueReader(new ByteArrayInputStream(this.input), "utf-8"), throughput);
+    }
+
+    @Benchmark
+    public int lines() throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.input), "utf-8"));
+        String line;
+        int count = 0;
+
+        while ((line = br.readLine()) != null) {
+            count += line.trim().length();
+        }
+
+        return count;
+    }
+
+    private int read(SubtitleCueReader reader, Throughput throughput) throws IOException, SubtitleParsingException {
+        int count = 0;
+
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+
+        reader.close();
+        throughput.add(count, this.input.length);
+        return count;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.stl.StlObject;
+import fr.noop.subtitle.stl.StlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse a STL file from disk, through an input stream or memory mapped
+ *
+ * Texts of mapped files are decoded on demand: "mapped" only reads
+ * the TTI headers, "mappedText" also requests the text of every cue.
+ * "parallelText" decodes headers and texts of a mapped file on a fork/join pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class StlParserBenchmark {
+    @Param({"10000", "100000"})
+    public int cues;
+
+    @Param({"plain", "styled"})
+    public String style;
+
+    private Path file;
+    private long length;
+    private StlParser parser = new StlParser();
+    private ForkJoinPool pool;
+    private StlParser parallelParser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] input = Corpus.generate(Corpus.Format.STL, this.cues, "styled".equals(this.style));
+        this.file = Files.createTempFile("benchmark", ".stl");
+        Files.write(this.file, input);
+        this.length = input.length;
+        this.pool = new ForkJoinPool();
+        this.parallelParser = new StlParser(this.pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    public long stream(Throughput throughput) throws IOException, SubtitleParsingException {
+        try (InputStream is = new FileInputStream(this.file.toFile())) {
+            return this.readTexts(this.parser.parse(is), throughput);
+        }
+    }
+
+    @Benchmark
+    public StlObject mapped(Throughput throughput) throws IOException, SubtitleParsingException {
+        StlObject stlObject = this.parser.parse(this.file);
+        throughput.add(stlObject.getCues().size(), this.length);
+        return stlObject;
+    }
+
+    @Benchmark
+    public long mappedText(Throughput throughput) throws IOException, SubtitleParsingException {
+        return this.readTexts(this.parser.parse(this.file), throughput);
+    }
+
+    @Benchmark
+    public long parallelText(Throughput throughput) throws IOException, SubtitleParsingException {
+        return this.readTexts(this.parallelParser.parse(this.file), throughput);
+    }
+
+    private long readTexts(StlObject stlObject, Throughput throughput) {
+        long textLength = 0;
+
+        for (SubtitleCue cue : stlObject.getCues()) {
+            textLength += cue.getText().length();
+        }
+
+        throughput.add(stlObject.getCues().size(), this.length);
+        return textLength;
+    }
+}
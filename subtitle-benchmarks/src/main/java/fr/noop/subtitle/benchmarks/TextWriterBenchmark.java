@@ -0,0 +1,181 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.sami.SamiWriter;
+import fr.noop.subtitle.srt.SrtWriter;
+import fr.noop.subtitle.util.TimeCodeCodec;
+import fr.noop.subtitle.vtt.VttParser;
+import fr.noop.subtitle.vtt.VttWriter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write a parsed VTT corpus with the SRT, VTT and SAMI writers
+ *
+ * The "legacy" benchmark reproduces the former cue writers: a String.format
+ * and a getBytes per fragment, each written to the output stream.
+ * Each output stream write call stands for a system call when writing to a FileOutputStream,
+ * "writes" reports their number over each iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TextWriterBenchmark {
+    public enum Format {
+        SRT,
+        VTT,
+        SAMI;
+    }
+
+    @Param({"SRT", "VTT", "SAMI"})
+    public Format format;
+
+    @Param({"utf-8", "iso-8859-1"})
+    public String charset;
+
+    @Param({"10000"})
+    public int cues;
+
+    private SubtitleObject subtitleObject;
+    private SubtitleWriter writer;
+    private CountingOutputStream os = new CountingOutputStream();
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class WriteCalls {
+        public long writes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.writes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SubtitleParsingException {
+        byte[] input = Corpus.generate(Corpus.Format.VTT, this.cues, true);
+        this.subtitleObject = new VttParser("utf-8").parse(new ByteArrayInputStream(input), false);
+
+        switch (this.format) {
+            case SRT:
+                this.writer = new SrtWriter(this.charset);
+                break;
+            case VTT:
+                this.writer = new VttWriter(this.charset);
+                break;
+            default:
+                this.writer = new SamiWriter(this.charset);
+        }
+    }
+
+    @Benchmark
+    public long write(WriteCalls calls) throws IOException {
+        this.os.reset();
+        this.writer.write(this.subtitleObject, this.os);
+        calls.writes += this.os.getWrites();
+        return this.os.getCount();
+    }
+
+    @Benchmark
+    public long legacy(WriteCalls calls) throws IOException {
+        this.os.reset();
+
+        switch (this.format) {
+            case SRT:
+                this.writeSrt(this.os);
+                break;
+            case VTT:
+                this.writeVtt(this.os);
+                break;
+            default:
+                this.writeSami(this.os);
+        }
+
+        calls.writes += this.os.getWrites();
+        return this.os.getCount();
+    }
+
+    private void writeSrt(OutputStream os) throws IOException {
+        StringBuilder timeCodes = new StringBuilder();
+        int subtitleIndex = 0;
+
+        for (SubtitleCue cue : this.subtitleObject.getCues()) {
+            subtitleIndex++;
+            os.write(String.format("%d\n", subtitleIndex).getBytes(this.charset));
+            timeCodes.setLength(0);
+            TimeCodeCodec.format(cue.getStartMillis(), ',', timeCodes).append(" --> ");
+            TimeCodeCodec.format(cue.getEndMillis(), ',', timeCodes).append(" \n");
+            os.write(timeCodes.toString().getBytes(this.charset));
+            os.write(String.format("%s\n", cue.getText()).getBytes(this.charset));
+            os.write("\n".getBytes(this.charset));
+        }
+
+        os.flush();
+    }
+
+    private void writeVtt(OutputStream os) throws IOException {
+        StringBuilder timeCodes = new StringBuilder();
+        os.write("WEBVTT\n\n".getBytes(this.charset));
+
+        for (SubtitleCue cue : this.subtitleObject.getCues()) {
+            if (cue.getId() != null) {
+                os.write(String.format("%s\n", cue.getId()).getBytes(this.charset));
+            }
+
+            timeCodes.setLength(0);
+            TimeCodeCodec.format(cue.getStartMillis(), '.', timeCodes).append(" --> ");
+            TimeCodeCodec.format(cue.getEndMillis(), '.', timeCodes).append(" \n");
+            os.write(timeCodes.toString().getBytes(this.charset));
+            os.write(String.format("%s\n", cue.getText()).getBytes(this.charset));
+            os.write("\n".getBytes(this.charset));
+        }
+
+        os.flush();
+    }
+
+    private void writeSami(OutputStream os) throws IOException {
+        os.write("<SAMI>\n".getBytes(this.charset));
+        os.write("<Body>\n".getBytes(this.charset));
+
+        for (SubtitleCue cue : this.subtitleObject.getCues()) {
+            os.write(String.format("  <SYNC Start=%d>\n", cue.getStartMillis()).getBytes(this.charset));
+            os.write(String.format("    <P>%s\n", cue.getText()).getBytes(this.charset));
+        }
+
+        os.write("</Body>\n".getBytes(this.charset));
+        os.write("</SAMI>\n".getBytes(this.charset));
+        os.flush();
+    }
+}
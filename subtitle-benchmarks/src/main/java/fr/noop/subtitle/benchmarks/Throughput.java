@@ -0,0 +1,43 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary throughput metrics reported next to the benchmark score.
+ *
+ * JMH normalizes OPERATIONS counters per second, so "cues" is reported
+ * in cues/s and "megabytes" in MB/s.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class Throughput {
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    public long cues;
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.cues = 0;
+        this.megabytes = 0;
+    }
+
+    public void add(int cueCount, long byteCount) {
+        this.cues += cueCount;
+        this.megabytes += byteCount / MEGABYTE;
+    }
+}
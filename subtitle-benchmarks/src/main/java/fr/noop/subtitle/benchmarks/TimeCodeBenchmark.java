@@ -0,0 +1,125 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.util.TimeCodeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse and format SRT time codes
+ *
+ * The "legacy" benchmarks reproduce the former parser and writer code:
+ * four substring and Integer.parseInt calls per time code,
+ * and String.format("%02d:%02d:%02d,%03d").
+ * Scores are per time code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeCodeBenchmark {
+    private static final int COUNT = 1024;
+
+    private String[] timeCodes = new String[COUNT];
+    private long[] times = new long[COUNT];
+    private StringBuilder sb = new StringBuilder();
+    private byte[] bytes = new byte[16];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < COUNT; i++) {
+            // Spread times over 10 hours
+            this.times[i] = (i * 35153L) % 36000000L;
+            this.timeCodes[i] = TimeCodeCodec.format(this.times[i], ',');
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long parseLegacy() {
+        long sum = 0;
+
+        for (String timeCode : this.timeCodes) {
+            int hour = Integer.parseInt(timeCode.substring(0, 2));
+            int minute = Integer.parseInt(timeCode.substring(3, 5));
+            int second = Integer.parseInt(timeCode.substring(6, 8));
+            int millisecond = Integer.parseInt(timeCode.substring(9, 12));
+            sum += hour * 3600000L + minute * 60000L + second * 1000L + millisecond;
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long parseCodec() {
+        long sum = 0;
+
+        for (String timeCode : this.timeCodes) {
+            sum += TimeCodeCodec.parse(timeCode, 0, timeCode.length());
+        }
+
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long formatLegacy() {
+        long length = 0;
+
+        for (long time : this.times) {
+            String timeCode = String.format("%02d:%02d:%02d,%03d",
+                    time / 3600000, (time / 60000) % 60, (time / 1000) % 60, time % 1000);
+            length += timeCode.length();
+        }
+
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long formatCodecStringBuilder() {
+        long length = 0;
+
+        for (long time : this.times) {
+            this.sb.setLength(0);
+            length += TimeCodeCodec.format(time, ',', this.sb).length();
+        }
+
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long formatCodecBytes() {
+        long length = 0;
+
+        for (long time : this.times) {
+            length += TimeCodeCodec.format(time, ',', this.bytes, 0);
+        }
+
+        return length;
+    }
+}
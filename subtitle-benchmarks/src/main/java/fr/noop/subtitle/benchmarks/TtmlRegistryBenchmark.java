@@ -0,0 +1,181 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleLine;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleText;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.ttml.TtmlCue;
+import fr.noop.subtitle.ttml.TtmlObject;
+import fr.noop.subtitle.ttml.TtmlWriter;
+import fr.noop.subtitle.util.SubtitleRegion;
+import fr.noop.subtitle.util.SubtitleStyle;
+import fr.noop.subtitle.util.SubtitleStyledText;
+import fr.noop.subtitle.vtt.VttParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Register the styles and regions of a heavily styled document in a TTML object,
+ * then look up the id of each styled text and region as the TTML writer does
+ *
+ * "keys" is the TtmlObject registry: regions keyed by value, styles by interned instance.
+ * "signatures" reproduces the former registry: a String.format signature per region
+ * and styled text, built again when the writer looks up ids.
+ * "write" is the whole TtmlWriter.
+ * VTT cues have a style on most words, STL cues a color per line and a region.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TtmlRegistryBenchmark {
+    @Param({"VTT", "STL"})
+    public Corpus.Format source;
+
+    @Param({"20000"})
+    public int cues;
+
+    private SubtitleObject subtitleObject;
+    private TtmlWriter writer = new TtmlWriter();
+    private CountingOutputStream os = new CountingOutputStream();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SubtitleParsingException {
+        byte[] input = Corpus.generate(this.source, this.cues, true);
+
+        if (this.source == Corpus.Format.STL) {
+            this.subtitleObject = new StlParser().parse(new ByteArrayInputStream(input));
+        } else {
+            this.subtitleObject = new VttParser("utf-8").parse(new ByteArrayInputStream(input), false);
+        }
+    }
+
+    @Benchmark
+    public int keys() {
+        TtmlObject ttmlObject = new TtmlObject();
+        int found = 0;
+
+        for (SubtitleCue cue : this.subtitleObject.getCues()) {
+            TtmlCue ttmlCue = ttmlObject.registerCue(cue);
+
+            if (ttmlCue.getRegionId() != null) {
+                found++;
+            }
+
+            for (SubtitleLine line : ttmlCue.getLines()) {
+                for (SubtitleText text : line.getTexts()) {
+                    if (text instanceof SubtitleStyledText &&
+                            ttmlObject.getStyleId(((SubtitleStyledText) text).getStyle()) != null) {
+                        found++;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int signatures() {
+        Map<String, String> regionMapping = new HashMap<>();
+        Map<String, String> styleMapping = new HashMap<>();
+        int found = 0;
+
+        for (SubtitleCue cue : this.subtitleObject.getCues()) {
+            TtmlCue ttmlCue = new TtmlCue(cue);
+            SubtitleRegion region = ttmlCue.getRegion();
+
+            if (region != null) {
+                String regionSignature = buildRegionSignature(region);
+
+                if (!regionMapping.containsKey(regionSignature)) {
+                    regionMapping.put(regionSignature, String.format("region-%d", regionMapping.size() + 1));
+                }
+            }
+
+            for (SubtitleLine line : ttmlCue.getLines()) {
+                for (SubtitleText text : line.getTexts()) {
+                    if (text instanceof SubtitleStyledText) {
+                        String styleSignature = buildStyleSignature(((SubtitleStyledText) text).getStyle());
+
+                        if (!styleMapping.containsKey(styleSignature)) {
+                            styleMapping.put(styleSignature, String.format("style-%d", styleMapping.size() + 1));
+                        }
+                    }
+                }
+            }
+
+            // Ids are derived again while writing
+            if (region != null && regionMapping.get(buildRegionSignature(region)) != null) {
+                found++;
+            }
+
+            for (SubtitleLine line : ttmlCue.getLines()) {
+                for (SubtitleText text : line.getTexts()) {
+                    if (text instanceof SubtitleStyledText &&
+                            styleMapping.get(buildStyleSignature(((SubtitleStyledText) text).getStyle())) != null) {
+                        found++;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        this.os.reset();
+        this.writer.write(this.subtitleObject, this.os);
+        return this.os.getCount();
+    }
+
+    private static String buildRegionSignature(SubtitleRegion region) {
+        return String.format("%d-%d-%d-%d-%s",
+                (int) (region.getX()*100),
+                (int) (region.getY()*100),
+                (int) (region.getWidth()*100),
+                (int) (region.getHeight()*100),
+                region.getVerticalAlign());
+    }
+
+    private static String buildStyleSignature(SubtitleStyle style) {
+        return String.format("%s-%s-%s-%s-%s-%s",
+                style.getProperty(SubtitleStyle.Property.DIRECTION),
+                style.getProperty(SubtitleStyle.Property.TEXT_ALIGN),
+                style.getProperty(SubtitleStyle.Property.COLOR),
+                style.getProperty(SubtitleStyle.Property.FONT_STYLE),
+                style.getProperty(SubtitleStyle.Property.FONT_WEIGHT),
+                style.getProperty(SubtitleStyle.Property.TEXT_DECORATION));
+    }
+}
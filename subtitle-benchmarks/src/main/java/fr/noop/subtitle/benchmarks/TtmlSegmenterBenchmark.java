@@ -0,0 +1,139 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleCue;
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.stl.StlParser;
+import fr.noop.subtitle.ttml.TtmlObject;
+import fr.noop.subtitle.ttml.TtmlSegmenter;
+import fr.noop.subtitle.ttml.TtmlWriter;
+import fr.noop.subtitle.util.SubtitleCueIndex;
+import fr.noop.subtitle.vtt.VttParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write a styled document as TTML segments of 6 seconds in a temporary directory
+ *
+ * "segmenter" and "mp4" are the TtmlSegmenter, writing plain or fMP4 wrapped segments:
+ * styles and regions are registered once and the head is serialized once.
+ * "perSegment" is the former way: a subtitle object per segment, written by the TtmlWriter
+ * one segment after the other, registering styles and regions again for each segment.
+ * Both write each segment to a temporary file which is then renamed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TtmlSegmenterBenchmark {
+    private final static long SEGMENT_DURATION = 6000;
+
+    @Param({"VTT", "STL"})
+    public Corpus.Format source;
+
+    @Param({"20000"})
+    public int cues;
+
+    private SubtitleObject subtitleObject;
+    private TtmlWriter writer = new TtmlWriter();
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SubtitleParsingException {
+        byte[] input = Corpus.generate(this.source, this.cues, true);
+
+        if (this.source == Corpus.Format.STL) {
+            this.subtitleObject = new StlParser().parse(new ByteArrayInputStream(input));
+        } else {
+            this.subtitleObject = new VttParser("utf-8").parse(new ByteArrayInputStream(input), false);
+        }
+
+        this.directory = Files.createTempDirectory("subtitle-segments");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory)) {
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        }
+
+        Files.delete(this.directory);
+    }
+
+    @Benchmark
+    public int segmenter() throws IOException {
+        TtmlSegmenter segmenter = new TtmlSegmenter(this.directory, SEGMENT_DURATION);
+        segmenter.segment(this.subtitleObject);
+        return segmenter.getSegmentCount();
+    }
+
+    @Benchmark
+    public int mp4() throws IOException {
+        TtmlSegmenter segmenter = new TtmlSegmenter(this.directory, SEGMENT_DURATION);
+        segmenter.setMp4(true);
+        segmenter.segment(this.subtitleObject);
+        return segmenter.getSegmentCount();
+    }
+
+    @Benchmark
+    public int perSegment() throws IOException {
+        SubtitleCueIndex index = new SubtitleCueIndex(this.subtitleObject);
+        long endMillis = index.size() > 0 ? index.getCue(index.size() - 1).getEndMillis() : 0;
+        int count = 0;
+
+        for (long startMillis = 0; startMillis == 0 || startMillis < endMillis; startMillis += SEGMENT_DURATION) {
+            TtmlObject segment = new TtmlObject();
+
+            for (SubtitleCue cue : index.getCues(startMillis, startMillis + SEGMENT_DURATION)) {
+                segment.addCue(cue);
+            }
+
+            count++;
+            Path path = this.directory.resolve(String.format("segment%d.ttml", count));
+            Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmpPath))) {
+                this.writer.write(segment, os);
+            }
+
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.ttml.TtmlWriter;
+import fr.noop.subtitle.vtt.VttParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write a large styled TTML document
+ *
+ * "direct" is the TtmlWriter, indenting elements while it writes them to the output stream.
+ * "transformer" reproduces the former pretty print pass: the document is serialized
+ * in memory, copied to a string then indented by an identity Transformer.
+ * Compare gc.alloc.rate.norm to see the memory saved per document.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TtmlWriterBenchmark {
+    @Param({"direct", "transformer"})
+    public String mode;
+
+    @Param({"50000"})
+    public int cues;
+
+    private SubtitleObject subtitleObject;
+    private TtmlWriter writer = new TtmlWriter();
+    private CountingOutputStream os = new CountingOutputStream();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SubtitleParsingException {
+        byte[] input = Corpus.generate(Corpus.Format.VTT, this.cues, true);
+        this.subtitleObject = new VttParser("utf-8").parse(new ByteArrayInputStream(input), false);
+    }
+
+    @Benchmark
+    public long write() throws IOException, TransformerException {
+        this.os.reset();
+
+        if ("transformer".equals(this.mode)) {
+            this.writeWithTransformer();
+        } else {
+            this.writer.write(this.subtitleObject, this.os);
+        }
+
+        return this.os.getCount();
+    }
+
+    private void writeWithTransformer() throws IOException, TransformerException {
+        // Whole document in memory, then as a string
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        this.writer.write(this.subtitleObject, bos);
+        String xml = bos.toString("utf-8");
+
+        // Indent it again with an identity transform
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        transformer.transform(new StreamSource(new StringReader(xml)), new StreamResult(this.os));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  This file is part of the noOp organization .
+ *
+ *  (c) Cyrille Lebeaupin <clebeaupin@noop.fr>
+ *
+ *  For the full copyright and license information, please view the LICENSE
+ *  file that was distributed with this source code.
+ *
+ */
+
+package fr.noop.subtitle.benchmarks;
+
+import fr.noop.subtitle.model.SubtitleObject;
+import fr.noop.subtitle.model.SubtitleParsingException;
+import fr.noop.subtitle.model.SubtitleWriter;
+import fr.noop.subtitle.mp4.Mp4VttWriter;
+import fr.noop.subtitle.sami.SamiWriter;
+import fr.noop.subtitle.srt.SrtWriter;
+import fr.noop.subtitle.ttml.TtmlWriter;
+import fr.noop.subtitle.vtt.VttParser;
+import fr.noop.subtitle.vtt.VttWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write a parsed VTT corpus with every writer
+ *
+ * The styled corpus carries bold, italic, underline, voice and class spans,
+ * so the TTML writer has styles to register.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+    public enum Format {
+        SRT,
+        VTT,
+        SAMI,
+        TTML,
+        MP4;
+    }
+
+    @Param({"SRT", "VTT", "SAMI", "TTML", "MP4"})
+    public Format format;
+
+    @Param({"1000", "10000", "100000"})
+    public int cues;
+
+    @Param({"plain", "styled"})
+    public String style;
+
+    private SubtitleObject subtitleObject;
+    private SubtitleWriter writer;
+    private CountingOutputStream os = new CountingOutputStream();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SubtitleParsingException {
+        byte[] input = Corpus.generate(Corpus.Format.VTT, this.cues, "styled".equals(this.style));
+        this.subtitleObject = new VttParser("utf-8").parse(new ByteArrayInputStream(input), false);
+        this.writer = createWriter(this.format);
+    }
+
+    static SubtitleWriter createWriter(Format format) {
+        switch (format) {
+            case SRT:
+                return new SrtWriter("utf-8");
+            case VTT:
+                return new VttWriter("utf-8");
+            case SAMI:
+                return new SamiWriter("utf-8");
+            case TTML:
+                return new TtmlWriter();
+            case MP4:
+                return new Mp4VttWriter();
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    @Benchmark
+    public long write(Throughput throughput) throws IOException {
+        this.os.reset();
+        this.writer.write(this.subtitleObject, this.os);
+        throughput.add(this.subtitleObject.getCues().size(), this.os.getCount());
+        return this.os.getCount();
+    }
+}